@@ -0,0 +1,66 @@
+#!/usr/bin/env bash
+# Repeatable time-to-ready benchmark for the generator.
+#
+# Boots the jar RUNS times and measures, per boot, the wall-clock time from process launch
+# until /actuator/health/readiness reports UP (context refreshed and startup runners done),
+# plus Spring's own application.started.time / application.ready.time gauges.
+#
+# Usage (from fhir-generator/):
+#   scripts/boot-benchmark.sh [runs] [jvm options...]
+#   scripts/boot-benchmark.sh 5
+#   JAR=target/aot/fhir-generator-0.0.1-SNAPSHOT.jar scripts/boot-benchmark.sh 5 -XX:AOTCache=target/aot/app.aot
+#   scripts/boot-benchmark.sh 5 -Depisense.fhir.background-warm-up=false
+#
+# ScyllaDB must be reachable with the configured contact points. Run once beforehand on an
+# empty keyspace: the first boot seeds historical data, which would dominate the timing.
+set -euo pipefail
+
+RUNS=${1:-5}
+shift || true
+JVM_OPTS=("$@")
+PORT=${PORT:-18080}
+TIMEOUT_SECONDS=${TIMEOUT_SECONDS:-180}
+JAR=${JAR:-$(ls target/fhir-generator-*.jar | grep -v plain | head -1)}
+APP_ARGS=("--server.port=${PORT}" "--scheduler.enabled=false")
+
+now_ms() { date +%s%3N; }
+
+metric() {
+  curl -sf "http://localhost:${PORT}/actuator/metrics/$1" \
+    | sed -E 's/.*"value":([0-9.E-]+).*/\1/' \
+    | awk '{ printf "%d", $1 * 1000 }'
+}
+
+echo "jar=${JAR} runs=${RUNS} jvm=${JVM_OPTS[*]:-<none>}"
+printf '%-4s %14s %12s %12s\n' run time-to-ready started ready
+results=()
+for run in $(seq 1 "$RUNS"); do
+  start=$(now_ms)
+  java "${JVM_OPTS[@]}" -jar "$JAR" "${APP_ARGS[@]}" > "target/boot-benchmark-${run}.log" 2>&1 &
+  pid=$!
+  ready_ms=""
+  while [ $(( $(now_ms) - start )) -lt $(( TIMEOUT_SECONDS * 1000 )) ]; do
+    if curl -sf "http://localhost:${PORT}/actuator/health/readiness" > /dev/null 2>&1; then
+      ready_ms=$(( $(now_ms) - start ))
+      break
+    fi
+    if ! kill -0 "$pid" 2> /dev/null; then
+      break
+    fi
+    sleep 0.05
+  done
+  if [ -z "$ready_ms" ]; then
+    kill "$pid" 2> /dev/null || true
+    echo "run ${run} did not become ready, see target/boot-benchmark-${run}.log" >&2
+    exit 1
+  fi
+  printf '%-4s %12sms %10sms %10sms\n' "$run" "$ready_ms" \
+    "$(metric application.started.time)" "$(metric application.ready.time)"
+  results+=("$ready_ms")
+  kill "$pid"
+  wait "$pid" 2> /dev/null || true
+done
+
+printf '%s\n' "${results[@]}" | sort -n | awk '
+  { v[NR] = $1 }
+  END { printf "time-to-ready min=%dms median=%dms max=%dms\n", v[1], v[int((NR + 1) / 2)], v[NR] }'
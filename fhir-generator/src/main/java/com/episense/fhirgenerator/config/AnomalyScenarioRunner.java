@@ -1,8 +1,14 @@
 package com.episense.fhirgenerator.config;
 
 import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.model.DeliveryLane;
+import com.episense.fhirgenerator.model.GenerationConfig;
 import com.episense.fhirgenerator.service.ExternalApiService;
+import com.episense.fhirgenerator.service.GenerationConfigService;
 import com.episense.fhirgenerator.service.HemogramaService;
+import com.episense.fhirgenerator.service.MirrorDeliveryService;
+import com.episense.fhirgenerator.service.ScenarioService;
+import com.episense.fhirgenerator.service.ShardCoordinator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.ApplicationArguments;
@@ -23,6 +29,8 @@ import java.util.List;
  *   <li>Injects concentrated outbreaks in target cities for D-2 (Shewhart analysis target)</li>
  *   <li>Ensures enough cases for statistical significance (μ, σ calculation)</li>
  * </ul>
+ *
+ * <p>When {@code episense.scenario.startup} names a scenario, that scenario runs instead.</p>
  */
 @Slf4j
 @Component
@@ -30,21 +38,38 @@ import java.util.List;
 public class AnomalyScenarioRunner implements ApplicationRunner {
 
     private final HemogramaService hemogramaService;
+    private final MirrorDeliveryService mirrorDeliveryService;
     private final ExternalApiService externalApiService;
     private final AnomalyProperties anomalyProperties;
+    private final GenerationConfigService generationConfigService;
+    private final ShardCoordinator shardCoordinator;
+    private final ScenarioService scenarioService;
+    private final ScenarioProperties scenarioProperties;
 
     @Override
     public void run(ApplicationArguments args) throws Exception {
+        GenerationConfig config = generationConfigService.current();
         log.info("=== EpiSense FHIR Generator Startup ===");
         log.info("Anomaly generation: enabled={}, rate={}%, severe={}%",
-                anomalyProperties.isEnabled(),
-                (int)(anomalyProperties.getPercentage() * 100),
-                (int)(anomalyProperties.getSevereRatio() * 100));
-        log.info("Outbreak cities: {}", anomalyProperties.getOutbreakCities());
+                config.anomalyEnabled(),
+                (int)(config.percentage() * 100),
+                (int)(config.severeRatio() * 100));
+        log.info("Outbreak cities: {}", config.outbreakCities());
         log.info("Burst probability: {}%, rate: {}%, multiplier: {}x",
-                (int)(anomalyProperties.getBurstProbability() * 100),
-                (int)(anomalyProperties.getBurstAnomalyRate() * 100),
-                anomalyProperties.getBurstSizeMultiplier());
+                (int)(config.burstProbability() * 100),
+                (int)(config.burstAnomalyRate() * 100),
+                config.burstSizeMultiplier());
+
+        assignLegacyOutboxShards();
+
+        String startupScenario = scenarioProperties.getStartup();
+        if (startupScenario != null && !startupScenario.isBlank()) {
+            // Scenario runs are resumable, so no data-volume check is needed
+            log.info("Running startup scenario '{}' instead of built-in historical generation", startupScenario);
+            log.info("Startup scenario result: {}", scenarioService.run(startupScenario, false));
+            log.info("=== Startup complete. Scheduler will handle ongoing generation. ===");
+            return;
+        }
 
         long count = hemogramaService.count();
         int minDataThreshold = anomalyProperties.getHistoricalDays() * anomalyProperties.getHistoricalDailyCount() / 2;
@@ -53,11 +78,11 @@ public class AnomalyScenarioRunner implements ApplicationRunner {
             log.info("Insufficient data detected (count: {}, threshold: {}). Starting historical data generation...", 
                     count, minDataThreshold);
             
-            generateInitialData();
+            List<Hemograma> pending = generateInitialData(config);
             
+            // Sent as generated: a new instance may not hold any outbox shard leases yet
             log.info("Initial data generation complete. Sending to API...");
-            List<Hemograma> pending = hemogramaService.findNotSent();
-            externalApiService.sendHemogramas(pending);
+            externalApiService.sendHemogramas(pending, DeliveryLane.BACKFILL);
             log.info("Initial data sent to API ({} hemogramas).", pending.size());
         } else {
             log.info("Sufficient data detected (count: {}). Skipping historical generation.", count);
@@ -71,10 +96,15 @@ public class AnomalyScenarioRunner implements ApplicationRunner {
      * 1. Baseline data for all cities (low anomaly rate)
      * 2. Concentrated outbreak data for D-2 in outbreak cities (high anomaly rate)
      */
-    private void generateInitialData() {
+    private List<Hemograma> generateInitialData(GenerationConfig config) {
+        List<Hemograma> generated = new ArrayList<>();
         List<String> allCities = new ArrayList<>();
-        allCities.addAll(anomalyProperties.getNormalCities());
-        allCities.addAll(anomalyProperties.getOutbreakCities());
+        allCities.addAll(config.normalCities());
+        allCities.addAll(config.outbreakCities());
+
+        // Daily volume is split across all cities, but each instance only generates its own
+        List<String> ownedCities = shardCoordinator.filterOwnedCities(allCities);
+        List<String> ownedOutbreakCities = shardCoordinator.filterOwnedCities(config.outbreakCities());
 
         // 1. Generate baseline data (historical, low anomaly rate)
         log.info("Phase 1: Generating {} days of baseline data ({} cases/day, {}% anomaly rate)...",
@@ -84,36 +114,56 @@ public class AnomalyScenarioRunner implements ApplicationRunner {
 
         int casesPerCityPerDay = anomalyProperties.getHistoricalDailyCount() / allCities.size();
         
-        for (String city : allCities) {
-            hemogramaService.generateHistoricalData(
+        for (String city : ownedCities) {
+            generated.addAll(hemogramaService.generateHistoricalData(
                     city,
                     anomalyProperties.getHistoricalDays(),
                     Math.max(5, casesPerCityPerDay), // At least 5 cases per city per day
                     anomalyProperties.getHistoricalAnomalyRate()
-            );
+            ));
         }
 
         // 2. Generate concentrated outbreak for D-2 (Shewhart target date)
-        if (anomalyProperties.isEnabled() && !anomalyProperties.getOutbreakCities().isEmpty()) {
+        if (config.anomalyEnabled() && !ownedOutbreakCities.isEmpty()) {
             log.info("Phase 2: Generating concentrated outbreak for D-2 (Shewhart analysis target)...");
             
             LocalDateTime targetDate = LocalDateTime.now().minusDays(2);
             int outbreakCasesPerCity = 100; // Strong signal for detection
             
-            for (String city : anomalyProperties.getOutbreakCities()) {
+            for (String city : ownedOutbreakCities) {
                 log.warn("🔥 Injecting {} outbreak cases for {} at {} ({}% anomaly rate)",
                         outbreakCasesPerCity, city, targetDate.toLocalDate(),
-                        (int)(anomalyProperties.getBurstAnomalyRate() * 100));
+                        (int)(config.burstAnomalyRate() * 100));
                 
-                hemogramaService.generateOutbreak(
+                generated.addAll(hemogramaService.generateOutbreak(
                         city,
                         outbreakCasesPerCity,
-                        anomalyProperties.getBurstAnomalyRate(),
+                        config.burstAnomalyRate(),
                         targetDate
-                );
+                ));
             }
         }
 
         log.info("Historical data generation completed.");
+        return generated;
+    }
+
+    /**
+     * Unsent records and mirror rows from before outbox shards existed are only retried
+     * once they are in a shard. The assignment is idempotent, so every instance may run it.
+     */
+    private void assignLegacyOutboxShards() {
+        try {
+            int records = hemogramaService.assignLegacyOutboxShards();
+            int rows = 0;
+            for (String mirror : externalApiService.getMirrorNames()) {
+                rows += mirrorDeliveryService.assignLegacyOutboxShards(mirror);
+            }
+            if (records > 0 || rows > 0) {
+                log.info("Assigned outbox shards to {} unsent hemogramas and {} mirror rows", records, rows);
+            }
+        } catch (Exception e) {
+            log.error("Could not assign outbox shards to unsent records", e);
+        }
     }
 }
@@ -1,9 +1,14 @@
 package com.episense.fhirgenerator.config;
 
+import com.episense.fhirgenerator.model.DeliveryLane;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "external.api")
@@ -19,4 +24,90 @@ public class ExternalApiProperties {
      */
     private Long timeout = 30000L;
 
+    /**
+     * Transport compression for bundle POSTs. When enabled the stored JSON is re-encoded
+     * without whitespace and compressed on a dedicated pool before it reaches the sender
+     * threads. fhir-server decodes the body based on {@code Content-Encoding}.
+     */
+    private Compression compression = Compression.NONE;
+
+    /**
+     * Threads used to compact and compress payloads when compression is enabled.
+     */
+    private Integer compressionThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Global cap on requests per second to the external API. 0 disables the limit.
+     */
+    private Double maxRequestsPerSecond = 0.0;
+
+    /**
+     * Requests that may be sent back-to-back before the rate limit applies.
+     */
+    private Integer rateLimitBurst = 20;
+
+    /**
+     * Relative share of sender capacity per delivery lane when several lanes have work.
+     */
+    private Map<DeliveryLane, Integer> laneWeights = new EnumMap<>(Map.of(
+            DeliveryLane.LIVE, 8,
+            DeliveryLane.SCENARIO, 4,
+            DeliveryLane.BACKFILL, 2,
+            DeliveryLane.RETRY, 1));
+
+    /**
+     * How long a sender holds a claimed record before other workers may reclaim it.
+     * Must comfortably exceed the request timeout.
+     */
+    private Integer deliveryLeaseSeconds = 120;
+
+    /**
+     * Failed attempts after which a record is moved to DEAD and no longer retried.
+     */
+    private Integer maxDeliveryAttempts = 10;
+
+    /**
+     * Further endpoints that receive the same bundles as {@link #url}, keyed by name
+     * (e.g. {@code staging}, {@code capture}). Each mirror has its own sender queue,
+     * concurrency, rate limit and delivery state, so a slow or failing mirror never holds
+     * up the primary endpoint or the other mirrors.
+     */
+    private Map<String, Mirror> mirrors = new LinkedHashMap<>();
+
+    public enum Compression {
+        NONE,
+        GZIP,
+        ZSTD
+    }
+
+    @Data
+    public static class Mirror {
+
+        /**
+         * URL endpoint bundles are posted to.
+         */
+        private String url;
+
+        /**
+         * Concurrent requests to this endpoint.
+         */
+        private Integer concurrency = 4;
+
+        /**
+         * Bundles that may wait for a sender. Beyond that new bundles are left to the
+         * retry job instead of piling up in memory behind a slow endpoint.
+         */
+        private Integer queueCapacity = 10_000;
+
+        /**
+         * Cap on requests per second to this endpoint. 0 disables the limit.
+         */
+        private Double maxRequestsPerSecond = 0.0;
+
+        /**
+         * Requests that may be sent back-to-back before the rate limit applies.
+         */
+        private Integer rateLimitBurst = 20;
+    }
+
 }
@@ -2,20 +2,58 @@ package com.episense.fhirgenerator.config;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.parser.IParser;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.r4.model.*;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
 @Configuration
 public class FhirConfig {
     
     @Bean
-    public FhirContext fhirContext() {
-        return FhirContext.forR4();
+    public FhirContext fhirContext(FhirProperties fhirProperties) {
+        FhirContext fhirContext = FhirContext.forR4();
+        if (fhirProperties.isBackgroundWarmUp()) {
+            // Model scanning takes seconds; overlap it with the Cassandra handshake and the
+            // rest of context startup. Scanning is synchronized inside FhirContext, so early
+            // users simply wait for it as they did before.
+            Thread.ofPlatform().name("fhir-warm-up").daemon().start(() -> warmUp(fhirContext));
+        }
+        return fhirContext;
     }
     
     @Bean
     public IParser jsonParser(FhirContext fhirContext) {
         return fhirContext.newJsonParser().setPrettyPrint(true);
     }
-    
+
+    /**
+     * Scans the resource types used in hemograma bundles and runs the JSON encoder once,
+     * so that the first generated record does not pay for either.
+     */
+    static void warmUp(FhirContext fhirContext) {
+        long start = System.nanoTime();
+        try {
+            Observation observation = new Observation();
+            observation.addComponent().setValue(new Quantity().setValue(1.0).setUnit("cells/uL"))
+                    .addReferenceRange().setLow(new Quantity().setValue(0.0));
+            observation.setEffective(new DateTimeType());
+            Patient patient = new Patient();
+            patient.addName().setFamily("Warm-up");
+            patient.addAddress().setCity("Warm-up");
+
+            Bundle bundle = new Bundle();
+            bundle.addEntry().setResource(patient);
+            bundle.addEntry().setResource(new Encounter());
+            bundle.addEntry().setResource(observation);
+            fhirContext.newJsonParser().setPrettyPrint(true).encodeResourceToString(bundle);
+
+            log.info("FhirContext warmed up in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            log.warn("FhirContext warm-up failed, model will be scanned on first use: {}", e.getMessage());
+        }
+    }
 }
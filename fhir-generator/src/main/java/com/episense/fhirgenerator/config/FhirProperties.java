@@ -0,0 +1,27 @@
+package com.episense.fhirgenerator.config;
+
+import com.episense.fhirgenerator.model.BundleProfile;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the shared HAPI {@code FhirContext}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "episense.fhir")
+public class FhirProperties {
+
+    /**
+     * Scan the R4 model and encode a sample bundle on a background thread during
+     * startup instead of on the first generated hemograma.
+     */
+    private boolean backgroundWarmUp = true;
+
+    /**
+     * Detail carried by generated bundles. LAZY rebuilds use the profile in effect when
+     * the record is sent, not the one it was generated under.
+     */
+    private BundleProfile bundleProfile = BundleProfile.FULL;
+}
@@ -0,0 +1,40 @@
+package com.episense.fhirgenerator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for on-demand Java Flight Recorder recordings started via
+ * the {@code flightrecording} actuator endpoint.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "episense.jfr")
+public class FlightRecorderProperties {
+
+    /**
+     * JFR settings used when a start request does not name any: "default" (~1% overhead)
+     * or "profile" (more detail, ~2%). EpiSense events are enabled in both.
+     */
+    private String settings = "default";
+
+    /**
+     * How much history the ring buffer keeps; older chunks are discarded.
+     */
+    private Duration maxAge = Duration.ofMinutes(10);
+
+    /**
+     * Upper bound on the on-disk size of the recording.
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(256);
+
+    /**
+     * Directory dumps are written to while they are downloaded. Defaults to the JVM
+     * temp directory.
+     */
+    private String dumpDirectory = System.getProperty("java.io.tmpdir");
+}
@@ -0,0 +1,45 @@
+package com.episense.fhirgenerator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for logging per-record delivery outcomes.
+ *
+ * <p>Every outcome is counted in a periodic summary per destination and status code.
+ * Lines about individual records are sampled and rate limited, and log events are
+ * written by the asynchronous appender in {@code logback-spring.xml}.</p>
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "episense.logging")
+public class LoggingProperties {
+
+    /**
+     * Share of successful sends logged individually, at DEBUG.
+     */
+    private double successSampleRate = 0.01;
+
+    /**
+     * Lines about individual records (sampled successes and every failure) written per
+     * second at most. Dropped lines are still counted in the summary. 0 disables the limit.
+     */
+    private double maxRecordLinesPerSecond = 10.0;
+
+    /**
+     * Record lines allowed in a burst above that rate.
+     */
+    private int recordLineBurst = 50;
+
+    /**
+     * Interval between delivery summaries, in milliseconds.
+     */
+    private long summaryIntervalMs = 60000;
+
+    /**
+     * Log events the asynchronous appender buffers. Once it is 80% full, TRACE to INFO
+     * events are dropped so WARN and ERROR still get through.
+     */
+    private int asyncQueueSize = 8192;
+}
@@ -0,0 +1,22 @@
+package com.episense.fhirgenerator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the municipalities that normal exams are spread over.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "episense.municipalities")
+public class MunicipalityProperties {
+
+    /**
+     * CSV with header {@code ibge_code,name,uf,population} (comma or semicolon separated),
+     * e.g. {@code file:/data/municipios.csv} with all Brazilian municipalities. Records are
+     * then spread over every municipality in proportion to its population. When unset,
+     * {@code episense.anomaly.normal-cities} are used with equal weights.
+     */
+    private String file;
+}
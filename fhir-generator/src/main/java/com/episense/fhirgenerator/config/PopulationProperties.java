@@ -0,0 +1,33 @@
+package com.episense.fhirgenerator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the synthetic patient population that exams are drawn from.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "episense.population")
+public class PopulationProperties {
+
+    /**
+     * Draw exams from a fixed population of returning patients. When disabled, every
+     * exam gets a new one-off patient as before.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Number of synthetic patients, split across municipalities by population weight.
+     * Each patient takes 16 bytes of off-heap memory; at most 134,217,727 patients
+     * (2 GB) are supported.
+     */
+    private int size = 1_000_000;
+
+    /**
+     * Seed for patient baselines. The same seed and size rebuild the same population,
+     * so patient IDs and their baselines stay stable across restarts and instances.
+     */
+    private long seed = 20240101L;
+}
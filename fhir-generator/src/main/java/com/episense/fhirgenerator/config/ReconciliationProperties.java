@@ -0,0 +1,54 @@
+package com.episense.fhirgenerator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for reconciling what the generator marked as sent with what
+ * fhir-server stored in {@code fhir_messages}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "episense.reconciliation")
+public class ReconciliationProperties {
+
+    /**
+     * Keyspace of fhir-server's {@code fhir_messages} table, on the same cluster.
+     */
+    private String fhirServerKeyspace = "fhir_server";
+
+    /**
+     * Token slices both tables are scanned and joined in. One slice of hemogramas is held
+     * in memory at a time per worker, at up to 180 bytes per row, so raise this for very
+     * large tables. Each slice has one spill file open while messages are scanned.
+     */
+    private int slices = 256;
+
+    /**
+     * Slices scanned or joined concurrently.
+     */
+    private int parallelism = 4;
+
+    /**
+     * Rows fetched per page. Message payloads are full bundles, so keep pages small.
+     */
+    private int pageSize = 500;
+
+    /**
+     * Time from generation to arrival at fhir-server above which a delivery counts as late.
+     */
+    private Duration lateThreshold = Duration.ofMinutes(15);
+
+    /**
+     * Hemograma ids kept as examples per finding (missing, duplicated, late...).
+     */
+    private int sampleSize = 20;
+
+    /**
+     * Directory for the spill files of a run. They are deleted as slices are joined.
+     */
+    private String workDirectory = "reconciliation";
+}
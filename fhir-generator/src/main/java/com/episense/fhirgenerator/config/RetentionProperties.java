@@ -0,0 +1,62 @@
+package com.episense.fhirgenerator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for bounding the size of the {@code hemogramas} table.
+ *
+ * <p>Rows expire a TTL after they are written. The retry job writes rows it is still
+ * retrying again under a fresh TTL shortly before they expire; dead rows are not renewed. Before rows expire,
+ * a daily job copies each day of them into a gzip-compressed NDJSON file.</p>
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "episense.retention")
+public class RetentionProperties {
+
+    /**
+     * Expire rows after the TTL below.
+     */
+    private boolean enabled = true;
+
+    /**
+     * How long a row of {@code hemogramas} or {@code mirror_deliveries} lives after it
+     * is written.
+     */
+    private Duration ttl = Duration.ofDays(30);
+
+    /**
+     * How long before it expires an undelivered row is renewed by the retry job. Must be
+     * longer than the retry interval.
+     */
+    private Duration renewBefore = Duration.ofDays(1);
+
+    /**
+     * Copy rows to local archive files before they expire.
+     */
+    private boolean archiveEnabled = true;
+
+    /**
+     * Age at which a day of rows is archived. Must be at least a day shorter than the TTL.
+     */
+    private Duration archiveAfter = Duration.ofDays(21);
+
+    /**
+     * Directory for {@code hemogramas-<day>.ndjson.gz} archive files.
+     */
+    private String archiveDirectory = "archive";
+
+    /**
+     * Rows fetched per page while archiving. Bundles are large, so keep pages small.
+     */
+    private int archivePageSize = 200;
+
+    /**
+     * When the archival job runs.
+     */
+    private String archiveCron = "0 30 3 * * *";
+}
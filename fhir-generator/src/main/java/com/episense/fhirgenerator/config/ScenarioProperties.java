@@ -0,0 +1,35 @@
+package com.episense.fhirgenerator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for declarative epidemic scenarios.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "episense.scenario")
+public class ScenarioProperties {
+
+    /**
+     * Location of scenario files; {@code <name>.yml} is resolved against it.
+     */
+    private String location = "classpath:scenarios/";
+
+    /**
+     * Number of city-day work units generated in parallel.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Scenario to run on startup instead of the built-in baseline + D-2 outbreak.
+     * Empty keeps the built-in behaviour.
+     */
+    private String startup;
+
+    /**
+     * Send each work unit to the external API as soon as it is generated.
+     */
+    private boolean sendAfterGeneration = true;
+}
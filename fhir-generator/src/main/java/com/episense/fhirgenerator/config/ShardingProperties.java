@@ -0,0 +1,46 @@
+package com.episense.fhirgenerator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for splitting work across several generator instances.
+ *
+ * <p>Cities and outbox records are hashed into a fixed number of virtual shards.
+ * Each instance holds TTL leases on a fair share of those shards in ScyllaDB and only
+ * generates for, and retries, what it owns. Leases of a dead instance expire and are
+ * picked up by the survivors.</p>
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "episense.sharding")
+public class ShardingProperties {
+
+    /**
+     * Enable lease-based sharding. When disabled, this instance owns every shard.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Number of virtual shards. Must be the same on every instance and should be
+     * comfortably larger than the expected number of instances.
+     */
+    private int shards = 16;
+
+    /**
+     * Lease time-to-live in seconds. An instance that stops renewing loses its
+     * shards after this period.
+     */
+    private int leaseTtlSeconds = 30;
+
+    /**
+     * Interval in milliseconds between lease renewals and rebalancing.
+     */
+    private long heartbeatIntervalMs = 10000L;
+
+    /**
+     * Identifier of this instance. Defaults to the host name plus a random suffix.
+     */
+    private String instanceId;
+}
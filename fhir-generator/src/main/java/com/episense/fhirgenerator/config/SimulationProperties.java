@@ -0,0 +1,38 @@
+package com.episense.fhirgenerator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for time-warp simulations, which replay days of traffic in
+ * minutes of wall time.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "episense.simulation")
+public class SimulationProperties {
+
+    /**
+     * Simulated time covered by each generate-and-send step. Records of a step share
+     * its collection time, so shorter ticks give finer timestamps and smaller batches.
+     */
+    private Duration tick = Duration.ofMinutes(10);
+
+    /**
+     * Default number of exams per simulated day, spread over the lab's opening hours.
+     */
+    private int dailyCount = 500;
+
+    /**
+     * Default number of simulated days.
+     */
+    private int days = 90;
+
+    /**
+     * Default wall time the simulated days are compressed into.
+     */
+    private Duration wallDuration = Duration.ofMinutes(60);
+}
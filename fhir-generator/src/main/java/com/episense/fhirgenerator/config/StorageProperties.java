@@ -0,0 +1,34 @@
+package com.episense.fhirgenerator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for how generated hemogramas are persisted.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "episense.storage")
+public class StorageProperties {
+
+    /**
+     * How the FHIR bundle is stored alongside the numeric columns.
+     */
+    private BundleMode bundleMode = BundleMode.EAGER;
+
+    public enum BundleMode {
+        /**
+         * Encode the bundle during generation and store it in {@code fhir_bundle_json}.
+         */
+        EAGER,
+        /**
+         * Store only numeric columns and metadata; the bundle is rebuilt from them
+         * when the record is sent or exported. Bundle, Encounter and Observation IDs
+         * derive from the record ID and the Patient ID from the stored patient ID, so
+         * the rebuilt bundle is identical to the eager one as long as the bundle
+         * profile ({@code episense.fhir.bundle-profile}) is unchanged.
+         */
+        LAZY
+    }
+}
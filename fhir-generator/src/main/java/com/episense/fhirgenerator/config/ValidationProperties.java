@@ -0,0 +1,35 @@
+package com.episense.fhirgenerator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for sampled conformance validation of generated bundles.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "episense.validation")
+public class ValidationProperties {
+
+    /**
+     * Validate a sample of generated bundles with the HAPI instance validator.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Fraction of bundles validated (0.01 = 1%). The first bundle of every code path
+     * (anomaly type, storage mode) is always validated.
+     */
+    private double sampleRate = 0.01;
+
+    /**
+     * Validator threads. Validation takes ~100-200 ms per bundle once warm.
+     */
+    private int threads = 1;
+
+    /**
+     * Bundles waiting for validation; sampled bundles beyond this are dropped and counted.
+     */
+    private int queueCapacity = 1000;
+}
@@ -0,0 +1,55 @@
+package com.episense.fhirgenerator.controller;
+
+import com.episense.fhirgenerator.entity.DeadLetter;
+import com.episense.fhirgenerator.service.DeadLetterService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/dead-letters")
+@RequiredArgsConstructor
+public class DeadLetterController {
+
+    private final DeadLetterService deadLetterService;
+
+    @GetMapping
+    public ResponseEntity<List<DeadLetter>> list(@RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(deadLetterService.list(Math.max(1, limit)));
+        } catch (Exception e) {
+            log.error("Error listing dead letters", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    @PostMapping("/{id}/requeue")
+    public ResponseEntity<Map<String, Object>> requeue(@PathVariable UUID id) {
+        try {
+            boolean requeued = deadLetterService.requeue(id);
+            return requeued
+                    ? ResponseEntity.ok(Map.of("id", id, "requeued", true))
+                    : ResponseEntity.status(404).body(Map.of("id", id, "requeued", false));
+        } catch (Exception e) {
+            log.error("Error requeueing dead letter {}", id, e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    @PostMapping("/requeue")
+    public ResponseEntity<Map<String, Object>> requeueAll() {
+        log.info("Requeueing all dead letters");
+        try {
+            return ResponseEntity.ok(Map.of("requeued", deadLetterService.requeueAll()));
+        } catch (Exception e) {
+            log.error("Error requeueing dead letters", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+}
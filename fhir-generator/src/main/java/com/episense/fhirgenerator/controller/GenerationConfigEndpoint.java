@@ -0,0 +1,99 @@
+package com.episense.fhirgenerator.controller;
+
+import com.episense.fhirgenerator.model.GenerationConfig;
+import com.episense.fhirgenerator.service.GenerationConfigService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint for changing generation settings without a restart.
+ *
+ * <ul>
+ *   <li>{@code GET /actuator/generationconfig} shows the snapshot in effect and its version</li>
+ *   <li>{@code POST /actuator/generationconfig} with a JSON body of the fields to change, e.g.
+ *       {@code {"percentage": 0.4, "outbreakCities": ["Anapolis|GO"]}}; invalid values are
+ *       rejected with 400 and nothing changes</li>
+ *   <li>{@code DELETE /actuator/generationconfig} goes back to the startup configuration</li>
+ * </ul>
+ *
+ * <p>Running batches finish with the snapshot they started with.</p>
+ */
+@Component
+@Endpoint(id = "generationconfig")
+@RequiredArgsConstructor
+public class GenerationConfigEndpoint {
+
+    private final GenerationConfigService generationConfigService;
+
+    @ReadOperation
+    public GenerationConfigService.Applied current() {
+        return generationConfigService.applied();
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<Object> update(@Nullable Boolean anomalyEnabled, @Nullable Double percentage,
+                                              @Nullable Double severeRatio, @Nullable List<String> outbreakCities,
+                                              @Nullable List<String> normalCities, @Nullable Double burstProbability,
+                                              @Nullable Double burstAnomalyRate, @Nullable Double burstSizeMultiplier,
+                                              @Nullable Integer minBatchSize, @Nullable Integer maxBatchSize,
+                                              @Nullable Integer minIntervalMinutes, @Nullable Integer maxIntervalMinutes) {
+        try {
+            return new WebEndpointResponse<>(generationConfigService.update(config -> {
+                GenerationConfig.GenerationConfigBuilder builder = config.toBuilder();
+                if (anomalyEnabled != null) {
+                    builder.anomalyEnabled(anomalyEnabled);
+                }
+                if (percentage != null) {
+                    builder.percentage(percentage);
+                }
+                if (severeRatio != null) {
+                    builder.severeRatio(severeRatio);
+                }
+                if (outbreakCities != null) {
+                    builder.outbreakCities(outbreakCities);
+                }
+                if (normalCities != null) {
+                    builder.normalCities(normalCities);
+                }
+                if (burstProbability != null) {
+                    builder.burstProbability(burstProbability);
+                }
+                if (burstAnomalyRate != null) {
+                    builder.burstAnomalyRate(burstAnomalyRate);
+                }
+                if (burstSizeMultiplier != null) {
+                    builder.burstSizeMultiplier(burstSizeMultiplier);
+                }
+                if (minBatchSize != null) {
+                    builder.minBatchSize(minBatchSize);
+                }
+                if (maxBatchSize != null) {
+                    builder.maxBatchSize(maxBatchSize);
+                }
+                if (minIntervalMinutes != null) {
+                    builder.minIntervalMinutes(minIntervalMinutes);
+                }
+                if (maxIntervalMinutes != null) {
+                    builder.maxIntervalMinutes(maxIntervalMinutes);
+                }
+                return builder.build();
+            }));
+        } catch (IllegalArgumentException e) {
+            return new WebEndpointResponse<>(Map.of("error", e.getMessage()), WebEndpointResponse.STATUS_BAD_REQUEST);
+        }
+    }
+
+    @DeleteOperation
+    public GenerationConfigService.Applied reset() {
+        return generationConfigService.reset();
+    }
+}
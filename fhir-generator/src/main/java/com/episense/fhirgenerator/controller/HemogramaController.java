@@ -1,15 +1,35 @@
 package com.episense.fhirgenerator.controller;
 
 import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.entity.MirrorDelivery;
+import com.episense.fhirgenerator.model.BundleProfile;
+import com.episense.fhirgenerator.model.DeliveryLane;
+import com.episense.fhirgenerator.model.DeliveryState;
+import com.episense.fhirgenerator.model.ExpectedAlarm;
+import com.episense.fhirgenerator.service.ExportService;
+import com.episense.fhirgenerator.service.GroundTruthService;
 import com.episense.fhirgenerator.service.HemogramaService;
+import com.episense.fhirgenerator.service.MirrorDeliveryService;
+import com.episense.fhirgenerator.service.ShardCoordinator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 @Slf4j
 @RestController
@@ -17,8 +37,14 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class HemogramaController {
     
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/fhir+ndjson");
+
     private final HemogramaService hemogramaService;
+    private final ExportService exportService;
     private final com.episense.fhirgenerator.service.ExternalApiService externalApiService;
+    private final GroundTruthService groundTruthService;
+    private final ShardCoordinator shardCoordinator;
+    private final MirrorDeliveryService mirrorDeliveryService;
 
     @GetMapping("/patient/{patientId}")
     public ResponseEntity<List<Hemograma>> getHemogramasByPatient(
@@ -34,6 +60,51 @@ public class HemogramaController {
         }
     }
     
+    /**
+     * Streams the bundles collected in a date range as NDJSON ({@code application/fhir+ndjson}),
+     * gzip-compressed when the client accepts it. To resume an interrupted download, pass
+     * the ID of the last bundle received as {@code cursor}.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportBundles(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "city", required = false) Set<String> cities,
+            @RequestParam(required = false) String cursor,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        UUID after;
+        try {
+            after = ExportService.parseCursor(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (to.isBefore(from)) {
+            return ResponseEntity.badRequest().build();
+        }
+        Set<String> citySet = cities != null ? cities : Set.of();
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        log.info("Exporting bundles collected {}..{} for {} (cursor: {}, gzip: {})",
+                from, to, citySet.isEmpty() ? "all cities" : citySet, cursor, gzip);
+
+        // Once streaming has started, failures can only cut the body short; clients resume with their cursor
+        StreamingResponseBody body = out -> {
+            if (!gzip) {
+                exportService.export(from, to, citySet, after, out);
+                return;
+            }
+            GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+            exportService.export(from, to, citySet, after, compressed);
+            compressed.finish();
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(NDJSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getStats() {
         log.info("Retrieving statistics");
@@ -45,7 +116,24 @@ public class HemogramaController {
             Map<String, Object> stats = new HashMap<>();
             stats.put("total", total);
             stats.put("sent", total - notSent.size());
-            stats.put("pending", notSent.size());
+            // Rows written before the delivery state machine have no state and are PENDING
+            Map<DeliveryState, Long> byState = countByState(notSent.stream()
+                    .map(h -> h.getDeliveryState() != null ? h.getDeliveryState() : DeliveryState.PENDING)
+                    .toList());
+            byState.put(DeliveryState.SENT, total - notSent.size());
+            stats.put("pending", byState.get(DeliveryState.PENDING));
+            stats.put("inFlight", byState.get(DeliveryState.IN_FLIGHT));
+            stats.put("dead", byState.get(DeliveryState.DEAD));
+            stats.put("byState", byState);
+            Map<String, Object> mirrors = new LinkedHashMap<>();
+            for (String mirror : externalApiService.getMirrorNames()) {
+                Map<DeliveryState, Long> mirrorByState = countByState(mirrorDeliveryService.findNotSent(mirror).stream()
+                        .map(MirrorDelivery::getDeliveryState)
+                        .toList());
+                mirrorByState.remove(DeliveryState.SENT);
+                mirrors.put(mirror, mirrorByState);
+            }
+            stats.put("mirrors", mirrors);
             
             return ResponseEntity.ok(stats);
         } catch (Exception e) {
@@ -54,6 +142,52 @@ public class HemogramaController {
         }
     }
     
+    /**
+     * Number of records in each delivery state, with every state present.
+     */
+    private static Map<DeliveryState, Long> countByState(List<DeliveryState> states) {
+        Map<DeliveryState, Long> counts = new EnumMap<>(DeliveryState.class);
+        for (DeliveryState state : DeliveryState.values()) {
+            counts.put(state, 0L);
+        }
+        states.forEach(state -> counts.merge(state, 1L, Long::sum));
+        return counts;
+    }
+
+    @GetMapping("/ground-truth/alarms")
+    public ResponseEntity<List<ExpectedAlarm>> getExpectedAlarms() {
+        log.info("Retrieving expected Shewhart alarms");
+
+        try {
+            return ResponseEntity.ok(groundTruthService.findExpectedAlarms());
+        } catch (Exception e) {
+            log.error("Error retrieving expected alarms", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    @GetMapping("/ground-truth")
+    public ResponseEntity<ExpectedAlarm> getExpectedVerdict(
+            @RequestParam String city,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        try {
+            return ResponseEntity.ok(groundTruthService.evaluate(city, date));
+        } catch (Exception e) {
+            log.error("Error evaluating ground truth", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    @GetMapping("/ground-truth/stats")
+    public ResponseEntity<Map<String, Map<String, Object>>> getGroundTruthStats() {
+        return ResponseEntity.ok(groundTruthService.getCityStatistics());
+    }
+
+    @GetMapping("/sharding")
+    public ResponseEntity<Map<String, Object>> getShardingStatus() {
+        return ResponseEntity.ok(shardCoordinator.getStatus());
+    }
+
     @GetMapping("/health")
     public ResponseEntity<Map<String, String>> healthCheck() {
         Map<String, String> response = new HashMap<>();
@@ -62,11 +196,15 @@ public class HemogramaController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * A sample bundle, pretty-printed, under the given profile (FULL, STANDARD or MINIMAL)
+     * or the configured one.
+     */
     @GetMapping("/debug/fhir")
-    public ResponseEntity<String> getDebugFhir() {
+    public ResponseEntity<String> getDebugFhir(@RequestParam(required = false) BundleProfile profile) {
         log.info("Generating debug FHIR bundle");
         try {
-            String fhirJson = hemogramaService.generateDebugFhir();
+            String fhirJson = hemogramaService.generateDebugFhir(profile);
             return ResponseEntity.ok()
                     .header("Content-Type", "application/fhir+json")
                     .body(fhirJson);
@@ -76,6 +214,14 @@ public class HemogramaController {
         }
     }
 
+    /**
+     * Encoded size in bytes of the same sample hemograma under each bundle profile.
+     */
+    @GetMapping("/debug/fhir/sizes")
+    public ResponseEntity<Map<BundleProfile, Integer>> getBundleSizes() {
+        return ResponseEntity.ok(hemogramaService.bundleSizesByProfile());
+    }
+
     @PostMapping("/anomaly-scenario")
     public ResponseEntity<String> triggerAnomalyScenario(
             @RequestParam(defaultValue = "Sao Paulo|SP") String city,
@@ -88,17 +234,18 @@ public class HemogramaController {
         
         try {
             // 1. Generate baseline (up to today)
-            hemogramaService.generateHistoricalData(city, baselineDays, baselineDailyCount, baselineAnomalyRate);
+            List<Hemograma> pending = new ArrayList<>(
+                    hemogramaService.generateHistoricalData(city, baselineDays, baselineDailyCount, baselineAnomalyRate));
             
             // 2. Generate outbreak for D-2 (Target date of Shewhart Job)
             // The job analyzes D-2 to ensure data consolidation. To test immediately, we must inject data in the past.
             java.time.LocalDateTime targetDate = java.time.LocalDateTime.now().minusDays(2);
-            hemogramaService.generateOutbreak(city, outbreakDailyCount, 0.9, targetDate); 
+            pending.addAll(hemogramaService.generateOutbreak(city, outbreakDailyCount, 0.9, targetDate));
             
             // 3. Force send data to API immediately
+            // What was just generated, whichever outbox shards this instance holds
             log.info("Force sending generated data to external API...");
-            List<Hemograma> pending = hemogramaService.findNotSent();
-            externalApiService.sendHemogramas(pending);
+            externalApiService.sendHemogramas(pending, DeliveryLane.SCENARIO);
             
             return ResponseEntity.ok("Anomaly scenario generated and sent successfully for " + city + " targeting date " + targetDate.toLocalDate());
         } catch (Exception e) {
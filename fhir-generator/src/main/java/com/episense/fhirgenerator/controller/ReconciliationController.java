@@ -0,0 +1,38 @@
+package com.episense.fhirgenerator.controller;
+
+import com.episense.fhirgenerator.service.ReconciliationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/reconciliation")
+@RequiredArgsConstructor
+public class ReconciliationController {
+
+    private final ReconciliationService reconciliationService;
+
+    /**
+     * Starts matching sent hemogramas against fhir-server's messages; poll {@code GET} for
+     * progress and the report.
+     */
+    @PostMapping("/start")
+    public ResponseEntity<Map<String, Object>> start() {
+        log.info("Starting delivery reconciliation");
+
+        try {
+            return ResponseEntity.ok(reconciliationService.start());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> status() {
+        return ResponseEntity.ok(reconciliationService.status());
+    }
+}
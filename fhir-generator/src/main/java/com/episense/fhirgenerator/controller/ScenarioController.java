@@ -0,0 +1,59 @@
+package com.episense.fhirgenerator.controller;
+
+import com.episense.fhirgenerator.model.ScenarioWorkUnit;
+import com.episense.fhirgenerator.service.ScenarioService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/scenario")
+@RequiredArgsConstructor
+public class ScenarioController {
+
+    private final ScenarioService scenarioService;
+
+    @GetMapping("/{name}/plan")
+    public ResponseEntity<Map<String, Object>> getPlan(@PathVariable String name) {
+        log.info("Compiling plan for scenario {}", name);
+
+        try {
+            List<ScenarioWorkUnit> plan = scenarioService.plan(name);
+            Map<String, Object> response = new HashMap<>();
+            response.put("scenario", name);
+            response.put("units", plan.size());
+            response.put("hemogramas", plan.stream().mapToLong(ScenarioWorkUnit::getTotal).sum());
+            response.put("plan", plan);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error compiling scenario", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    @PostMapping("/{name}/run")
+    public ResponseEntity<Map<String, Object>> runScenario(
+            @PathVariable String name,
+            @RequestParam(defaultValue = "false") boolean restart) {
+        log.info("Running scenario {} (restart: {})", name, restart);
+
+        try {
+            return ResponseEntity.ok(scenarioService.run(name, restart));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error running scenario", e);
+            return ResponseEntity.status(500).body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+}
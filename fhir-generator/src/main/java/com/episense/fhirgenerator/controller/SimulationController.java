@@ -0,0 +1,54 @@
+package com.episense.fhirgenerator.controller;
+
+import com.episense.fhirgenerator.service.SimulationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/simulation")
+@RequiredArgsConstructor
+public class SimulationController {
+
+    private final SimulationService simulationService;
+
+    /**
+     * Starts a time-warp simulation, e.g. {@code POST /api/v1/simulation/start?days=90&minutes=60}
+     * replays a quarter of live traffic in an hour.
+     */
+    @PostMapping("/start")
+    public ResponseEntity<Map<String, Object>> start(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) Integer days,
+            @RequestParam(required = false) Long minutes,
+            @RequestParam(required = false) Integer dailyCount) {
+        log.info("Starting simulation (from: {}, days: {}, minutes: {}, daily count: {})", from, days, minutes, dailyCount);
+
+        try {
+            Duration wallDuration = minutes != null ? Duration.ofMinutes(minutes) : null;
+            return ResponseEntity.ok(simulationService.start(from, days, wallDuration, dailyCount));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> status() {
+        return ResponseEntity.ok(simulationService.status());
+    }
+
+    @PostMapping("/stop")
+    public ResponseEntity<Map<String, Object>> stop() {
+        log.info("Stopping simulation");
+        return ResponseEntity.ok(simulationService.stop());
+    }
+}
@@ -0,0 +1,50 @@
+package com.episense.fhirgenerator.entity;
+
+import com.episense.fhirgenerator.model.FailureClass;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A hemograma that was moved to DEAD, with what fhir-server last answered.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("dead_letters")
+public class DeadLetter {
+
+    @PrimaryKeyColumn(name = "id", ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+    private UUID id;
+
+    @Column("city")
+    private String city;
+
+    @Column("failure_class")
+    private FailureClass failureClass;
+
+    @Column("status_code")
+    private Integer statusCode;
+
+    @Column("reason")
+    private String reason;
+
+    @Column("response_excerpt")
+    private String responseExcerpt;
+
+    @Column("attempts")
+    private Integer attempts;
+
+    @Column("failed_at")
+    private Instant failedAt;
+
+}
@@ -0,0 +1,30 @@
+package com.episense.fhirgenerator.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.Instant;
+
+/**
+ * Heartbeat of a live generator instance, used to compute each instance's fair share of shards.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("generator_instances")
+public class GeneratorInstance {
+
+    @PrimaryKeyColumn(name = "instance_id", ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+    private String instanceId;
+
+    @Column("last_seen")
+    private Instant lastSeen;
+
+}
@@ -1,9 +1,12 @@
 package com.episense.fhirgenerator.entity;
 
+import com.episense.fhirgenerator.model.DeliveryState;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
 import org.springframework.data.cassandra.core.mapping.Column;
 import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
@@ -13,7 +16,7 @@ import java.time.Instant;
 import java.util.UUID;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @Table("hemogramas")
@@ -30,12 +33,23 @@ public class Hemograma {
 
     @Column("city")
     private String city;
+
+    @Column("state")
+    private String state;
     
     @Column("collection_date")
     private Instant collectionDate;
     
     @Column("fhir_bundle_json")
     private String fhirBundleJson;
+
+    /**
+     * Set on rows read without {@code fhir_bundle_json}; a stored bundle is then read as
+     * raw bytes when the record is sent.
+     */
+    @Transient
+    @EqualsAndHashCode.Exclude
+    private boolean bundleOmitted;
     
     @Column("sent_to_api")
     private Boolean sentToApi;
@@ -45,6 +59,31 @@ public class Hemograma {
     
     @Column("api_response_status")
     private Integer apiResponseStatus;
+
+    @Column("delivery_state")
+    private DeliveryState deliveryState;
+
+    @Column("lease_owner")
+    private String leaseOwner;
+
+    @Column("lease_until")
+    private Instant leaseUntil;
+
+    @Column("delivery_attempts")
+    private Integer deliveryAttempts;
+
+    /**
+     * Outbox shard the record is retried from, -1 once it is sent or -2 while it is DEAD.
+     * Indexed, so that each instance reads only the unsent records of its own shards.
+     */
+    @Column("outbox_shard")
+    private Integer outboxShard;
+
+    /**
+     * When the row runs out of its retention TTL, or {@code null} if it does not expire.
+     */
+    @Column("expires_at")
+    private Instant expiresAt;
     
     @Column("created_at")
     private Instant createdAt;
@@ -0,0 +1,37 @@
+package com.episense.fhirgenerator.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * A day of hemogramas (by {@code created_at}, UTC) that has been copied to an archive file.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("hemograma_archive")
+public class HemogramaArchive {
+
+    @PrimaryKeyColumn(name = "day", ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+    private LocalDate day;
+
+    @Column("file")
+    private String file;
+
+    @Column("row_count")
+    private Long rowCount;
+
+    @Column("archived_at")
+    private Instant archivedAt;
+
+}
@@ -0,0 +1,66 @@
+package com.episense.fhirgenerator.entity;
+
+import com.episense.fhirgenerator.model.DeliveryState;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Delivery state of a hemograma at one mirror endpoint. The primary endpoint keeps its
+ * state on the {@link Hemograma} row itself.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("mirror_deliveries")
+public class MirrorDelivery {
+
+    @PrimaryKeyColumn(name = "hemograma_id", ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+    private UUID hemogramaId;
+
+    @PrimaryKeyColumn(name = "mirror", ordinal = 1, type = PrimaryKeyType.CLUSTERED)
+    private String mirror;
+
+    @Column("sent")
+    private Boolean sent;
+
+    @Column("sent_at")
+    private Instant sentAt;
+
+    @Column("api_response_status")
+    private Integer apiResponseStatus;
+
+    @Column("delivery_state")
+    private DeliveryState deliveryState;
+
+    @Column("lease_owner")
+    private String leaseOwner;
+
+    @Column("lease_until")
+    private Instant leaseUntil;
+
+    @Column("delivery_attempts")
+    private Integer deliveryAttempts;
+
+    /**
+     * Outbox shard of the hemograma while the row is not sent, as on {@link Hemograma}.
+     */
+    @Column("outbox_shard")
+    private Integer outboxShard;
+
+    /**
+     * When the row runs out of its retention TTL, as on {@link Hemograma}.
+     */
+    @Column("expires_at")
+    private Instant expiresAt;
+
+}
@@ -0,0 +1,40 @@
+package com.episense.fhirgenerator.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Completed work unit of a scenario run. Lets an interrupted run resume where it stopped.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("scenario_progress")
+public class ScenarioProgress {
+
+    @PrimaryKeyColumn(name = "scenario", ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+    private String scenario;
+
+    @PrimaryKeyColumn(name = "city", ordinal = 1, type = PrimaryKeyType.CLUSTERED)
+    private String city;
+
+    @PrimaryKeyColumn(name = "day", ordinal = 2, type = PrimaryKeyType.CLUSTERED)
+    private LocalDate day;
+
+    @Column("generated")
+    private Integer generated;
+
+    @Column("completed_at")
+    private Instant completedAt;
+
+}
@@ -0,0 +1,34 @@
+package com.episense.fhirgenerator.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.Instant;
+
+/**
+ * Lease held by a generator instance over one virtual shard.
+ * Rows are written with a TTL by {@code ShardLeaseRepository}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("generator_leases")
+public class ShardLease {
+
+    @PrimaryKeyColumn(name = "shard", ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+    private Integer shard;
+
+    @Column("owner")
+    private String owner;
+
+    @Column("renewed_at")
+    private Instant renewedAt;
+
+}
@@ -0,0 +1,30 @@
+package com.episense.fhirgenerator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Construction of the HAPI resource tree for one hemograma ({@code createHemogramaBundle}).
+ */
+@Name("episense.BundleCreate")
+@Label("Create FHIR Bundle")
+@Category({"EpiSense", "Generation"})
+@Description("Construction of the Patient/Encounter/Observation bundle for one hemograma")
+@StackTrace(false)
+public class BundleCreateEvent extends Event {
+
+    @Label("City")
+    public String city;
+
+    @Label("Anomaly Type")
+    @Description("Unknown (null) when a LAZY record is rebuilt from its stored columns")
+    public String anomalyType;
+
+    @Label("Lazy")
+    @Description("True when the bundle is rebuilt at send or export time")
+    public boolean lazy;
+}
@@ -0,0 +1,49 @@
+package com.episense.fhirgenerator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * HTTP exchange with fhir-server (or a mirror endpoint) for one bundle, excluding payload preparation.
+ */
+@Name("episense.BundleDelivery")
+@Label("Deliver FHIR Bundle")
+@Category({"EpiSense", "Delivery"})
+@Description("POST of one hemograma bundle to the external API")
+@StackTrace(false)
+public class BundleDeliveryEvent extends Event {
+
+    @Label("Hemograma Id")
+    public String hemogramaId;
+
+    @Label("City")
+    public String city;
+
+    @Label("Lane")
+    public String lane;
+
+    @Label("Destination")
+    @Description("primary, or the name of the mirror endpoint")
+    public String destination;
+
+    @Label("Payload Size")
+    @Description("Bundle size before compaction and compression")
+    @DataAmount
+    public long payloadSize;
+
+    @Label("Wire Size")
+    @DataAmount
+    public long wireSize;
+
+    @Label("Content Encoding")
+    public String contentEncoding;
+
+    @Label("Status Code")
+    @Description("HTTP status, 0 when no response was received")
+    public int statusCode;
+}
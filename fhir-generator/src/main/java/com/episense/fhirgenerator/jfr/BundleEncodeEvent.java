@@ -0,0 +1,34 @@
+package com.episense.fhirgenerator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JSON serialization of one FHIR bundle by the HAPI parser.
+ */
+@Name("episense.BundleEncode")
+@Label("Encode FHIR Bundle")
+@Category({"EpiSense", "Generation"})
+@Description("HAPI JSON encoding of one hemograma bundle")
+@StackTrace(false)
+public class BundleEncodeEvent extends Event {
+
+    @Label("City")
+    public String city;
+
+    @Label("Payload Size")
+    @DataAmount
+    public long payloadSize;
+
+    @Label("Profile")
+    public String profile;
+
+    @Label("Lazy")
+    @Description("True when the bundle is encoded at send or export time")
+    public boolean lazy;
+}
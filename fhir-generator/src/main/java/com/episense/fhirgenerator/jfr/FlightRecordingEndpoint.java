@@ -0,0 +1,114 @@
+package com.episense.fhirgenerator.jfr;
+
+import com.episense.fhirgenerator.config.FlightRecorderProperties;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Actuator endpoint controlling a single in-process flight recording.
+ *
+ * <ul>
+ *   <li>{@code POST /actuator/flightrecording} starts a continuous recording
+ *       (optional {@code settings}: "default" or "profile")</li>
+ *   <li>{@code GET /actuator/flightrecording} dumps the buffered history to a
+ *       {@code .jfr} file and downloads it; the recording keeps running and the file
+ *       is deleted once it has been sent</li>
+ *   <li>{@code DELETE /actuator/flightrecording} stops and discards the recording</li>
+ * </ul>
+ *
+ * <p>Dumps can be opened in JDK Mission Control or summarized with
+ * {@code jfr print --events 'episense.*'}.</p>
+ */
+@Slf4j
+@Component
+@WebEndpoint(id = "flightrecording")
+@RequiredArgsConstructor
+public class FlightRecordingEndpoint {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final FlightRecorderProperties properties;
+
+    private Recording recording;
+
+    @WriteOperation
+    public synchronized Map<String, Object> start(@Nullable String settings) throws IOException, ParseException {
+        if (isRunning()) {
+            return status();
+        }
+        String settingsName = settings != null ? settings : properties.getSettings();
+        Recording newRecording = new Recording(Configuration.getConfiguration(settingsName));
+        newRecording.setName("episense-generator");
+        newRecording.setToDisk(true);
+        newRecording.setMaxAge(properties.getMaxAge());
+        newRecording.setMaxSize(properties.getMaxSize().toBytes());
+        newRecording.start();
+        recording = newRecording;
+        log.info("Started flight recording with '{}' settings (max age {}, max size {})",
+                settingsName, properties.getMaxAge(), properties.getMaxSize());
+        return status();
+    }
+
+    @ReadOperation(produces = "application/octet-stream")
+    public synchronized WebEndpointResponse<Resource> dump() throws IOException {
+        if (!isRunning()) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        Path directory = Path.of(properties.getDumpDirectory());
+        Files.createDirectories(directory);
+        Path file = directory.resolve("episense-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".jfr");
+        recording.dump(file);
+        log.info("Dumped flight recording to {} ({} bytes)", file, Files.size(file));
+        // Dumps are up to max-size each; closing the stream after the response removes the file
+        return new WebEndpointResponse<>(new InputStreamResource(
+                Files.newInputStream(file, StandardOpenOption.DELETE_ON_CLOSE), file.getFileName().toString()));
+    }
+
+    @DeleteOperation
+    public synchronized Map<String, Object> stop() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+            log.info("Stopped flight recording");
+        }
+        return status();
+    }
+
+    private boolean isRunning() {
+        return recording != null && recording.getState() == RecordingState.RUNNING;
+    }
+
+    private Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", isRunning());
+        if (recording != null) {
+            status.put("name", recording.getName());
+            status.put("startTime", recording.getStartTime());
+            status.put("maxAge", recording.getMaxAge());
+            status.put("maxSize", recording.getMaxSize());
+        }
+        return status;
+    }
+}
@@ -0,0 +1,25 @@
+package com.episense.fhirgenerator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Random analyte sampling for one hemograma ({@code buildHemogramaData}).
+ */
+@Name("episense.HemogramaBuild")
+@Label("Build Hemograma Data")
+@Category({"EpiSense", "Generation"})
+@Description("Sampling of the analyte values for one synthetic hemograma")
+@StackTrace(false)
+public class HemogramaBuildEvent extends Event {
+
+    @Label("City")
+    public String city;
+
+    @Label("Anomaly Type")
+    public String anomalyType;
+}
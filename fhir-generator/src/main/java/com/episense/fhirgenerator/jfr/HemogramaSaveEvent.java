@@ -0,0 +1,34 @@
+package com.episense.fhirgenerator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Write of one hemograma row to ScyllaDB ({@code repository.save}).
+ */
+@Name("episense.HemogramaSave")
+@Label("Save Hemograma")
+@Category({"EpiSense", "Persistence"})
+@Description("Insert of one generated hemograma into ScyllaDB")
+@StackTrace(false)
+public class HemogramaSaveEvent extends Event {
+
+    @Label("Hemograma Id")
+    public String hemogramaId;
+
+    @Label("City")
+    public String city;
+
+    @Label("Anomaly Type")
+    public String anomalyType;
+
+    @Label("Payload Size")
+    @Description("Size of the stored bundle JSON, 0 in LAZY mode")
+    @DataAmount
+    public long payloadSize;
+}
@@ -0,0 +1,25 @@
+package com.episense.fhirgenerator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Update of the sent flag after a successful delivery ({@code markAsSent}).
+ */
+@Name("episense.MarkSent")
+@Label("Mark Hemograma Sent")
+@Category({"EpiSense", "Persistence"})
+@Description("ScyllaDB update recording a successful delivery")
+@StackTrace(false)
+public class MarkSentEvent extends Event {
+
+    @Label("Hemograma Id")
+    public String hemogramaId;
+
+    @Label("Status Code")
+    public int statusCode;
+}
@@ -0,0 +1,27 @@
+package com.episense.fhirgenerator.model;
+
+/**
+ * Type of anomaly injected into a generated hemograma.
+ *
+ * <p>The weight mirrors the backend aggregation (ADR-011): SIB_GRAVE counts as
+ * two SIB_SUSPEITA cases, SIB_SUSPEITA as one, and anything else is not counted.</p>
+ */
+public enum AnomalyType {
+    NORMAL(0),           // All values within normal range
+    LEUCOCYTOSIS(0),     // Only WBC elevated (triggers LAB_LEUCOCITOSE)
+    SIB_SUSPEITA(1),     // Leucocytosis + Neutrophilia (triggers SIB_SUSPEITA)
+    SIB_GRAVE(2);        // Neutrophilia + Left Shift (triggers SIB_GRAVE, weight 2x)
+
+    private final int aggregationWeight;
+
+    AnomalyType(int aggregationWeight) {
+        this.aggregationWeight = aggregationWeight;
+    }
+
+    /**
+     * Weight of this anomaly in the backend daily SIB_SUSPEITA aggregation.
+     */
+    public int getAggregationWeight() {
+        return aggregationWeight;
+    }
+}
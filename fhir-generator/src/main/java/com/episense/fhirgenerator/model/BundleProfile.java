@@ -0,0 +1,25 @@
+package com.episense.fhirgenerator.model;
+
+/**
+ * How much of the clinical detail a generated hemograma bundle carries. Every profile
+ * keeps {@code Bundle.id}, so delivery reconciliation works the same for all of them.
+ */
+public enum BundleProfile {
+    /**
+     * Patient, Encounter and a CBC panel with seven components, each with LOINC display,
+     * UCUM quantity and reference range; pretty-printed. For conformance testing.
+     */
+    FULL,
+    /**
+     * Conformant resources without human-readable text: no displays, no reference ranges
+     * and no Encounter. Quantities keep their UCUM system and code; compact JSON.
+     */
+    STANDARD,
+    /**
+     * Only what the backend analysis reads (patient city and state, collection time and
+     * the leukocyte, neutrophil and band form counts) plus the elements R4 requires,
+     * including entry fullUrls and the LOINC and UCUM systems of the codes it keeps;
+     * compact JSON.
+     */
+    MINIMAL
+}
@@ -0,0 +1,12 @@
+package com.episense.fhirgenerator.model;
+
+/**
+ * Priority lane a batch of hemogramas is delivered through.
+ * Lanes share the sender threads in proportion to their configured weights.
+ */
+public enum DeliveryLane {
+    LIVE,        // Fresh data from the scheduler (including outbreak bursts)
+    SCENARIO,    // Declarative scenarios and /anomaly-scenario
+    BACKFILL,    // Historical baseline generated on startup
+    RETRY        // Records left unsent by earlier attempts
+}
@@ -0,0 +1,13 @@
+package com.episense.fhirgenerator.model;
+
+/**
+ * Delivery lifecycle of a stored hemograma.
+ * A record is only sent while a worker holds it IN_FLIGHT; the lease expiry lets another
+ * worker reclaim it when that worker dies mid-send.
+ */
+public enum DeliveryState {
+    PENDING,     // Waiting to be claimed (new, or released after a failed attempt)
+    IN_FLIGHT,   // Claimed by lease_owner until lease_until
+    SENT,        // Accepted by the external API
+    DEAD         // Gave up after the maximum number of attempts
+}
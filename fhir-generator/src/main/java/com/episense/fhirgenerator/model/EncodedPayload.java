@@ -0,0 +1,14 @@
+package com.episense.fhirgenerator.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Request body ready to be written to the wire.
+ *
+ * @param body            bytes to send, between position and limit. Shared by every endpoint
+ *                        the bundle goes to, so readers must not move its position
+ * @param contentEncoding value for {@code Content-Encoding}, or {@code null} when uncompressed
+ * @param rawBytes        size of the UTF-8 JSON before compaction and compression
+ */
+public record EncodedPayload(ByteBuffer body, String contentEncoding, int rawBytes) {
+}
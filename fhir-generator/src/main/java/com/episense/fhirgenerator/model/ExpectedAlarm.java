@@ -0,0 +1,43 @@
+package com.episense.fhirgenerator.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Shewhart verdict the backend is expected to reach for one city-day,
+ * computed from the ground truth kept by the generator.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpectedAlarm {
+
+    private String city;                 // Cidade|UF
+    private LocalDate date;              // Dia-alvo da análise
+    private long observedValue;          // Casos ponderados no dia-alvo
+    private double mean;                 // μ do baseline
+    private double stdDev;               // σ do baseline
+    private double ucl;                  // μ + 3σ
+    private double lcl;                  // max(0, μ - 3σ)
+    private long baselineCases;          // Total de casos ponderados no baseline
+    private boolean insufficientData;    // Baseline abaixo do mínimo do backend
+    private boolean breach;              // Valor observado fora dos limites de controle
+    private Direction direction;         // Lado violado, ou null sem violação
+
+    /**
+     * Side of the control limits a breach is on, as the backend's {@code AbruptIncrease}
+     * and {@code AbruptDecrease} anomaly types.
+     */
+    public enum Direction {
+        /** Above the UCL: possible outbreak. */
+        INCREASE,
+        /** Below the LCL: possible under-reporting. */
+        DECREASE
+    }
+
+}
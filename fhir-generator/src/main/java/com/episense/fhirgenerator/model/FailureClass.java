@@ -0,0 +1,19 @@
+package com.episense.fhirgenerator.model;
+
+/**
+ * Whether a failed delivery is worth retrying.
+ */
+public enum FailureClass {
+    RETRYABLE,   // No response (timeout, connection error), 408, 429 or 5xx
+    TERMINAL;    // Any other non-2xx: fhir-server will reject the same bundle again
+
+    /**
+     * @param statusCode response status, or {@code null} when no response was received
+     */
+    public static FailureClass of(Integer statusCode) {
+        if (statusCode == null || statusCode == 408 || statusCode == 429 || statusCode >= 500) {
+            return RETRYABLE;
+        }
+        return TERMINAL;
+    }
+}
@@ -0,0 +1,131 @@
+package com.episense.fhirgenerator.model;
+
+import com.episense.fhirgenerator.config.AnomalyProperties;
+import com.episense.fhirgenerator.config.SchedulerProperties;
+import lombok.Builder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the settings that shape generated data: anomaly mix, outbreak
+ * cities, bursts, clinical ranges and scheduler batch sizes.
+ *
+ * <p>Generators read one snapshot per batch, so a batch never mixes two configurations.
+ * Startup-only settings (historical backfill) stay in {@link AnomalyProperties}.</p>
+ */
+@Builder(toBuilder = true)
+public record GenerationConfig(
+        boolean anomalyEnabled,
+        double percentage,
+        double severeRatio,
+        List<String> outbreakCities,
+        List<String> normalCities,
+        double burstProbability,
+        double burstAnomalyRate,
+        double burstSizeMultiplier,
+        double leucocytosisThreshold,
+        double neutrophiliaThreshold,
+        double leftShiftThreshold,
+        Range leucocytosisRange,
+        Range neutrophiliaRange,
+        Range leftShiftRange,
+        int minBatchSize,
+        int maxBatchSize,
+        int minIntervalMinutes,
+        int maxIntervalMinutes) {
+
+    public GenerationConfig {
+        outbreakCities = outbreakCities != null ? List.copyOf(outbreakCities) : List.of();
+        normalCities = normalCities != null ? List.copyOf(normalCities) : List.of();
+    }
+
+    /**
+     * Closed interval of values drawn for an anomalous analyte.
+     */
+    public record Range(double min, double max) {
+
+        static Range of(double[] bounds) {
+            return bounds != null && bounds.length == 2 ? new Range(bounds[0], bounds[1]) : null;
+        }
+    }
+
+    public static GenerationConfig of(AnomalyProperties anomaly, SchedulerProperties scheduler) {
+        return GenerationConfig.builder()
+                .anomalyEnabled(anomaly.isEnabled())
+                .percentage(anomaly.getPercentage())
+                .severeRatio(anomaly.getSevereRatio())
+                .outbreakCities(anomaly.getOutbreakCities())
+                .normalCities(anomaly.getNormalCities())
+                .burstProbability(anomaly.getBurstProbability())
+                .burstAnomalyRate(anomaly.getBurstAnomalyRate())
+                .burstSizeMultiplier(anomaly.getBurstSizeMultiplier())
+                .leucocytosisThreshold(anomaly.getLeucocytosisThreshold())
+                .neutrophiliaThreshold(anomaly.getNeutrophiliaThreshold())
+                .leftShiftThreshold(anomaly.getLeftShiftThreshold())
+                .leucocytosisRange(Range.of(anomaly.getLeucocytosisRange()))
+                .neutrophiliaRange(Range.of(anomaly.getNeutrophiliaRange()))
+                .leftShiftRange(Range.of(anomaly.getLeftShiftRange()))
+                .minBatchSize(scheduler.getMinBatchSize())
+                .maxBatchSize(scheduler.getMaxBatchSize())
+                .minIntervalMinutes(scheduler.getMinIntervalMinutes())
+                .maxIntervalMinutes(scheduler.getMaxIntervalMinutes())
+                .build();
+    }
+
+    /**
+     * Problems that would make generated data contradict its ground truth or break the
+     * scheduler; empty when the snapshot can be applied.
+     */
+    public List<String> validate() {
+        List<String> problems = new ArrayList<>();
+        requireRate(problems, "percentage", percentage);
+        requireRate(problems, "severe-ratio", severeRatio);
+        requireRate(problems, "burst-probability", burstProbability);
+        requireRate(problems, "burst-anomaly-rate", burstAnomalyRate);
+        if (burstSizeMultiplier <= 0) {
+            problems.add("burst-size-multiplier must be positive");
+        }
+        if (normalCities.isEmpty()) {
+            problems.add("normal-cities must not be empty");
+        }
+        if (outbreakCities.stream().anyMatch(city -> city == null || city.isBlank())
+                || normalCities.stream().anyMatch(city -> city == null || city.isBlank())) {
+            problems.add("city keys must not be blank");
+        }
+        // Normal exams are drawn below each threshold, anomalous ones above it
+        if (leucocytosisThreshold - 500 <= 4000) {
+            problems.add("leucocytosis-threshold must exceed 4500");
+        }
+        if (neutrophiliaThreshold - 500 <= 1800) {
+            problems.add("neutrophilia-threshold must exceed 2300");
+        }
+        if (leftShiftThreshold - 50 <= 0) {
+            problems.add("left-shift-threshold must exceed 50");
+        }
+        requireAbove(problems, "leucocytosis-range", leucocytosisRange, leucocytosisThreshold);
+        requireAbove(problems, "neutrophilia-range", neutrophiliaRange, neutrophiliaThreshold);
+        requireAbove(problems, "left-shift-range", leftShiftRange, leftShiftThreshold);
+        if (minBatchSize < 1 || maxBatchSize < minBatchSize) {
+            problems.add("batch sizes must satisfy 1 <= min-batch-size <= max-batch-size");
+        }
+        if (minIntervalMinutes < 1 || maxIntervalMinutes < minIntervalMinutes) {
+            problems.add("intervals must satisfy 1 <= min-interval-minutes <= max-interval-minutes");
+        }
+        return problems;
+    }
+
+    private static void requireRate(List<String> problems, String name, double value) {
+        if (!(value >= 0.0 && value <= 1.0)) {
+            problems.add(name + " must be between 0.0 and 1.0");
+        }
+    }
+
+    private static void requireAbove(List<String> problems, String name, Range range, double threshold) {
+        if (range == null) {
+            problems.add(name + " must have exactly two bounds");
+        } else if (range.min() <= threshold || range.max() <= range.min()) {
+            problems.add(name + " must satisfy " + threshold + " < min < max");
+        }
+    }
+}
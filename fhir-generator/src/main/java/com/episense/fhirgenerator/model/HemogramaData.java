@@ -13,11 +13,13 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class HemogramaData {
     
+    private String examId;               // Identificador do exame (Bundle/Encounter/Observation)
     private String patientId;
     private String patientName;
     private String city;                 // Cidade
     private String state;                // Estado (UF)
     private LocalDateTime collectionDate;
+    private AnomalyType anomalyType;     // Padrão de anomalia injetado
     
     // Eritrograma
     private Double redBloodCells;        // Hemácias (milhões/mm³)
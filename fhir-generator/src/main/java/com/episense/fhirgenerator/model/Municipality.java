@@ -0,0 +1,12 @@
+package com.episense.fhirgenerator.model;
+
+/**
+ * A municipality with its name and state parsed once and interned, so generated records
+ * share the same {@code String} instances instead of re-splitting {@code "City|UF"}.
+ *
+ * @param key        the {@code City|UF} form used in configuration and sharding
+ * @param ibgeCode   7-digit IBGE code, or {@code null} when not loaded from a file
+ * @param population weight used for sampling
+ */
+public record Municipality(String key, String city, String state, String ibgeCode, long population) {
+}
@@ -0,0 +1,48 @@
+package com.episense.fhirgenerator.model;
+
+import lombok.Builder;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Outcome of matching the hemogramas the generator marked as sent against the messages
+ * fhir-server stored.
+ *
+ * @param cutoff         records marked as sent after this instant are not expected yet
+ * @param hemogramas     generator rows scanned
+ * @param sent           rows marked as sent before the cutoff
+ * @param messages       fhir-server messages scanned
+ * @param uncorrelated   messages without a generator bundle id
+ * @param matched        sent rows with at least one message
+ * @param missing        sent rows without any message
+ * @param duplicated     rows with more than one message
+ * @param extraCopies    messages beyond the first for duplicated rows
+ * @param unacknowledged rows fhir-server has but the generator has not marked as sent
+ * @param unknown        correlated messages whose hemograma no longer exists (e.g. expired)
+ * @param late           rows that arrived more than the late threshold after being generated
+ * @param latencyMs      generation-to-arrival percentiles of the first copy of each row
+ * @param samples        example hemograma ids per finding
+ */
+@Builder
+public record ReconciliationReport(
+        Instant startedAt,
+        Instant finishedAt,
+        Instant cutoff,
+        int slices,
+        long hemogramas,
+        long sent,
+        long messages,
+        long uncorrelated,
+        long matched,
+        long missing,
+        long duplicated,
+        long extraCopies,
+        long unacknowledged,
+        long unknown,
+        long late,
+        Map<String, Long> latencyMs,
+        Map<String, List<UUID>> samples) {
+}
@@ -0,0 +1,113 @@
+package com.episense.fhirgenerator.model;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Declarative epidemic scenario, bound from a YAML file under the {@code scenario} key.
+ *
+ * <p>Each city has an incidence curve made of a seasonal baseline, optional SIR-like
+ * outbreak waves and optional step changes. The curve is evaluated day by day between
+ * {@code start-date} and {@code end-date} to produce the generation plan.</p>
+ */
+@Data
+public class ScenarioDefinition {
+
+    private String name;
+
+    private String description;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate startDate;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate endDate;
+
+    /**
+     * Share of anomalous cases generated as SIB_GRAVE (weight 2x in the backend).
+     */
+    private double severeRatio = 0.30;
+
+    private List<CityCurve> cities = new ArrayList<>();
+
+    @Data
+    public static class CityCurve {
+
+        /**
+         * City in {@code City|UF} form.
+         */
+        private String city;
+
+        private Baseline baseline = new Baseline();
+
+        private List<Wave> waves = new ArrayList<>();
+
+        private List<Step> steps = new ArrayList<>();
+    }
+
+    /**
+     * Background volume with an optional yearly (or custom period) cosine seasonality.
+     */
+    @Data
+    public static class Baseline {
+
+        private double dailyCases = 50;
+
+        /**
+         * Share of baseline cases that are anomalous (background SIB noise).
+         */
+        private double anomalyRate = 0.05;
+
+        /**
+         * Relative amplitude of the seasonal component (0.2 = ±20%).
+         */
+        private double seasonalAmplitude = 0.0;
+
+        private int seasonalPeriodDays = 365;
+
+        /**
+         * Day of year at which the seasonal component peaks.
+         */
+        private int seasonalPeakDay = 1;
+    }
+
+    /**
+     * Outbreak wave following a discrete SIR model. Each day's new infections,
+     * scaled by {@code detection-rate}, become additional anomalous hemogramas.
+     */
+    @Data
+    public static class Wave {
+
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+        private LocalDate startDate;
+
+        private double r0 = 2.0;
+
+        private double infectiousDays = 5;
+
+        private long population = 10000;
+
+        private double initialInfected = 5;
+
+        /**
+         * Fraction of new infections that produce a SIB hemogram.
+         */
+        private double detectionRate = 0.2;
+    }
+
+    /**
+     * Permanent change of baseline volume from a given date on (e.g. a new lab joining).
+     */
+    @Data
+    public static class Step {
+
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+        private LocalDate date;
+
+        private double multiplier = 1.0;
+    }
+}
@@ -0,0 +1,29 @@
+package com.episense.fhirgenerator.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * One city-day of a compiled scenario: how many hemogramas of each anomaly type to generate.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScenarioWorkUnit {
+
+    private String city;                 // Cidade|UF
+    private LocalDate date;
+    private int normalCount;
+    private int suspeitaCount;           // SIB_SUSPEITA
+    private int graveCount;              // SIB_GRAVE
+
+    public int getTotal() {
+        return normalCount + suspeitaCount + graveCount;
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.episense.fhirgenerator.repository;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.internal.core.metadata.token.Murmur3Token;
+import com.datastax.oss.driver.internal.core.metadata.token.Murmur3TokenFactory;
+import com.episense.fhirgenerator.config.ReconciliationProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * CQL implementation of {@link ReconciliationRepository}. Pages are fetched as the
+ * result set is iterated, so a scan holds one page in memory.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CqlReconciliationRepository implements ReconciliationRepository {
+
+    // Same hash the cluster applies to partition keys
+    private static final Murmur3TokenFactory TOKENS = new Murmur3TokenFactory();
+
+    private final CqlSession session;
+    private final ReconciliationProperties reconciliationProperties;
+
+    @Override
+    public void scanHemogramas(long startExclusive, long endInclusive, Consumer<Delivery> consumer) {
+        SimpleStatement statement = SimpleStatement.newInstance(
+                        "SELECT id, created_at, sent_at, sent_to_api FROM hemogramas WHERE token(id) > ? AND token(id) <= ?",
+                        startExclusive, endInclusive)
+                .setPageSize(reconciliationProperties.getPageSize());
+        for (Row row : session.execute(statement)) {
+            consumer.accept(new Delivery(row.getUuid("id"), row.getInstant("created_at"),
+                    row.getBoolean("sent_to_api") ? row.getInstant("sent_at") : null));
+        }
+    }
+
+    @Override
+    public void scanMessages(long startExclusive, long endInclusive, Consumer<Message> consumer) {
+        // Keyspace names cannot be bound as parameters
+        SimpleStatement statement = SimpleStatement.newInstance(String.format(
+                        "SELECT payload, received_at FROM %s.fhir_messages WHERE token(id) > ? AND token(id) <= ?",
+                        reconciliationProperties.getFhirServerKeyspace()),
+                        startExclusive, endInclusive)
+                .setPageSize(reconciliationProperties.getPageSize());
+        for (Row row : session.execute(statement)) {
+            consumer.accept(new Message(row.getString("payload"), row.getInstant("received_at")));
+        }
+    }
+
+    @Override
+    public long tokenOf(UUID id) {
+        ByteBuffer key = ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .flip();
+        return ((Murmur3Token) TOKENS.hash(key)).getValue();
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.episense.fhirgenerator.repository;
+
+import com.episense.fhirgenerator.entity.DeadLetter;
+import org.springframework.data.cassandra.repository.CassandraRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface DeadLetterRepository extends CassandraRepository<DeadLetter, UUID> {
+
+}
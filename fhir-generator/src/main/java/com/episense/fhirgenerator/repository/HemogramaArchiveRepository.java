@@ -0,0 +1,12 @@
+package com.episense.fhirgenerator.repository;
+
+import com.episense.fhirgenerator.entity.HemogramaArchive;
+import org.springframework.data.cassandra.repository.CassandraRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+
+@Repository
+public interface HemogramaArchiveRepository extends CassandraRepository<HemogramaArchive, LocalDate> {
+
+}
@@ -0,0 +1,84 @@
+package com.episense.fhirgenerator.repository;
+
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.model.DeliveryState;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Delivery state transitions of hemogramas, implemented as lightweight transactions so
+ * that each record is sent by at most one worker at a time.
+ *
+ * <p>Updates take the {@code expires_at} of the record as read, and write their columns
+ * with the retention TTL left until then, so that the record expires as a whole.</p>
+ */
+public interface HemogramaDeliveryRepository {
+
+    /**
+     * {@code outbox_shard} of a sent record. Overwriting the shard, rather than deleting
+     * it, takes the record out of the outbox without a tombstone.
+     */
+    int SENT_SHARD = -1;
+
+    /**
+     * {@code outbox_shard} of a DEAD record, which no retry cycle reads until it is
+     * requeued into its own shard.
+     */
+    int DEAD_SHARD = -2;
+
+    /**
+     * Inserts a new record without its null columns. With retention enabled it is written
+     * under the retention TTL, and {@code expires_at} is set to when that runs out.
+     */
+    Hemograma insertExpiring(Hemograma hemograma);
+
+    /**
+     * Moves a record to IN_FLIGHT for {@code owner} if its state and lease are still the
+     * ones the caller observed. Conditioning on the observed lease is what lets exactly
+     * one worker take over an expired lease.
+     */
+    boolean claim(UUID id, DeliveryState observedState, Instant observedLeaseUntil,
+                  String owner, Instant leaseUntil, int attempts, Instant expiresAt);
+
+    /**
+     * Marks a record as SENT unless it already is.
+     */
+    boolean markSent(UUID id, Instant sentAt, int apiResponseStatus, Instant expiresAt);
+
+    /**
+     * Ends the lease of {@code owner} after a failed attempt, moving the record to
+     * {@code nextState} (PENDING or DEAD) with its lease ending at {@code releasedAt}.
+     * A DEAD record moves to {@link #DEAD_SHARD}. Does nothing if the lease was taken over.
+     */
+    boolean release(UUID id, String owner, DeliveryState nextState, Integer apiResponseStatus, Instant releasedAt,
+                    Instant expiresAt);
+
+    /**
+     * Puts an unsent record written before outbox shards existed into its shard.
+     */
+    boolean assignOutboxShard(UUID id, int shard, Instant expiresAt);
+
+    /**
+     * Moves a DEAD record back to PENDING in outbox {@code shard}, with a fresh attempt
+     * budget.
+     */
+    boolean requeue(UUID id, int shard, Instant expiresAt);
+
+    /**
+     * Writes an unsent record again under a fresh retention TTL when it is about to
+     * expire, so that records are never lost for want of delivery. Updates
+     * {@code expires_at} of {@code observed} when it renews it.
+     *
+     * @return whether the record was renewed
+     */
+    boolean renewIfExpiring(Hemograma observed);
+
+    /**
+     * The stored bundle of a record as the UTF-8 bytes of the text column, without
+     * decoding them, or {@code null} when it was stored in LAZY mode.
+     */
+    ByteBuffer findBundle(UUID id);
+
+}
@@ -0,0 +1,130 @@
+package com.episense.fhirgenerator.repository;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.episense.fhirgenerator.config.RetentionProperties;
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.model.DeliveryState;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.InsertOptions;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * CQL implementation of {@link HemogramaDeliveryRepository}, mixed into
+ * {@link HemogramaRepository}.
+ *
+ * <p>All writes to the delivery columns go through LWT. Mixing conditional and plain
+ * writes on the same row is unsafe, so {@code sent_to_api} is also only updated here.
+ * None of them writes a null, which would leave a tombstone. Retention TTLs follow
+ * {@link RowTtl}.</p>
+ */
+@RequiredArgsConstructor
+class HemogramaDeliveryRepositoryImpl implements HemogramaDeliveryRepository {
+
+    private final CqlSession session;
+    private final CassandraOperations cassandraOperations;
+    private final RetentionProperties retentionProperties;
+
+    @Override
+    public Hemograma insertExpiring(Hemograma hemograma) {
+        Instant expiresAt = RowTtl.newExpiry(retentionProperties);
+        if (expiresAt == null) {
+            return cassandraOperations.insert(hemograma);
+        }
+        hemograma.setExpiresAt(expiresAt);
+        return cassandraOperations.insert(hemograma,
+                InsertOptions.builder().ttl(retentionProperties.getTtl()).build()).getEntity();
+    }
+
+    @Override
+    public boolean claim(UUID id, DeliveryState observedState, Instant observedLeaseUntil,
+                         String owner, Instant leaseUntil, int attempts, Instant expiresAt) {
+        return session.execute(SimpleStatement.newInstance(
+                "UPDATE hemogramas" + RowTtl.using(expiresAt)
+                        + " SET delivery_state = ?, lease_owner = ?, lease_until = ?, delivery_attempts = ? "
+                        + "WHERE id = ? IF delivery_state = ? AND lease_until = ?",
+                RowTtl.values(expiresAt, DeliveryState.IN_FLIGHT.name(), owner, leaseUntil, attempts,
+                        id, name(observedState), observedLeaseUntil))).wasApplied();
+    }
+
+    @Override
+    public boolean markSent(UUID id, Instant sentAt, int apiResponseStatus, Instant expiresAt) {
+        // A sender whose lease expired mid-request still delivered the bundle, so only SENT is excluded
+        return session.execute(SimpleStatement.newInstance(
+                "UPDATE hemogramas" + RowTtl.using(expiresAt)
+                        + " SET delivery_state = ?, sent_to_api = true, outbox_shard = ?, sent_at = ?, "
+                        + "api_response_status = ? WHERE id = ? IF delivery_state != ?",
+                RowTtl.values(expiresAt, DeliveryState.SENT.name(), SENT_SHARD, sentAt, apiResponseStatus,
+                        id, DeliveryState.SENT.name()))).wasApplied();
+    }
+
+    @Override
+    public boolean release(UUID id, String owner, DeliveryState nextState, Integer apiResponseStatus, Instant releasedAt,
+                           Instant expiresAt) {
+        // The lease ends rather than being cleared; a missing status leaves the previous one
+        List<Object> values = new ArrayList<>(List.of(nextState.name(), releasedAt));
+        String set = "delivery_state = ?, lease_until = ?";
+        if (apiResponseStatus != null) {
+            set += ", api_response_status = ?";
+            values.add(apiResponseStatus);
+        }
+        if (nextState == DeliveryState.DEAD) {
+            set += ", outbox_shard = ?";
+            values.add(DEAD_SHARD);
+        }
+        values.addAll(List.of(id, DeliveryState.IN_FLIGHT.name(), owner));
+        return session.execute(SimpleStatement.newInstance(
+                "UPDATE hemogramas" + RowTtl.using(expiresAt) + " SET " + set
+                        + " WHERE id = ? IF delivery_state = ? AND lease_owner = ?",
+                RowTtl.values(expiresAt, values.toArray()))).wasApplied();
+    }
+
+    @Override
+    public boolean assignOutboxShard(UUID id, int shard, Instant expiresAt) {
+        return session.execute(SimpleStatement.newInstance(
+                "UPDATE hemogramas" + RowTtl.using(expiresAt) + " SET outbox_shard = ? WHERE id = ? IF sent_to_api = false",
+                RowTtl.values(expiresAt, shard, id))).wasApplied();
+    }
+
+    @Override
+    public boolean requeue(UUID id, int shard, Instant expiresAt) {
+        return session.execute(SimpleStatement.newInstance(
+                "UPDATE hemogramas" + RowTtl.using(expiresAt)
+                        + " SET delivery_state = ?, delivery_attempts = 0, outbox_shard = ? WHERE id = ? IF delivery_state = ?",
+                RowTtl.values(expiresAt, DeliveryState.PENDING.name(), shard, id, DeliveryState.DEAD.name()))).wasApplied();
+    }
+
+    @Override
+    public boolean renewIfExpiring(Hemograma observed) {
+        if (!RowTtl.isExpiring(retentionProperties, observed.getExpiresAt())) {
+            return false;
+        }
+        Instant expiresAt = RowTtl.renew(session, retentionProperties, "hemogramas", Map.of("id", observed.getId()));
+        if (expiresAt == null) {
+            return false;
+        }
+        observed.setExpiresAt(expiresAt);
+        return true;
+    }
+
+    @Override
+    public ByteBuffer findBundle(UUID id) {
+        Row row = session.execute(SimpleStatement.newInstance(
+                "SELECT fhir_bundle_json FROM hemogramas WHERE id = ?", id)).one();
+        // The cell as received, UTF-8 being the wire format of text
+        return row != null ? row.getBytesUnsafe(0) : null;
+    }
+
+    private static String name(DeliveryState state) {
+        return state != null ? state.name() : null;
+    }
+
+}
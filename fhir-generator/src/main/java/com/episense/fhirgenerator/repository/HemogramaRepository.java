@@ -1,24 +1,61 @@
 package com.episense.fhirgenerator.repository;
 
 import com.episense.fhirgenerator.entity.Hemograma;
+import org.springframework.data.cassandra.core.cql.QueryOptions;
 import org.springframework.data.cassandra.repository.CassandraRepository;
 import org.springframework.data.cassandra.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
-public interface HemogramaRepository extends CassandraRepository<Hemograma, UUID> {
+public interface HemogramaRepository extends CassandraRepository<Hemograma, UUID>, HemogramaDeliveryRepository {
 
-    @Query("SELECT * FROM hemogramas WHERE sent_to_api = false ALLOW FILTERING")
+    /**
+     * Every column but {@code fhir_bundle_json}, for queries that load many records to
+     * count or send them. Senders read stored bundles with {@link #findBundle}.
+     */
+    String WITHOUT_BUNDLE = "id, patient_id, patient_name, city, state, collection_date, sent_to_api, sent_at, "
+            + "api_response_status, delivery_state, lease_owner, lease_until, delivery_attempts, outbox_shard, expires_at, "
+            + "created_at, red_blood_cells, hemoglobin, hematocrit, mcv, mch, mchc, rdw, white_blood_cells, neutrophils, "
+            + "neutrophils_band_form, lymphocytes, monocytes, eosinophils, basophils, platelets, mpv";
+
+    @Query("SELECT " + WITHOUT_BUNDLE + " FROM hemogramas WHERE sent_to_api = false ALLOW FILTERING")
     List<Hemograma> findNotSent();
 
+    /**
+     * Unsent records of one outbox shard, read through the {@code outbox_shard} index
+     * without touching other shards.
+     */
+    @Query("SELECT " + WITHOUT_BUNDLE + " FROM hemogramas WHERE outbox_shard = ?0")
+    List<Hemograma> findNotSentInShard(int shard);
+
+    @Query("SELECT " + WITHOUT_BUNDLE + " FROM hemogramas WHERE id IN ?0")
+    List<Hemograma> findWithoutBundleByIdIn(Collection<UUID> ids);
+
     @Query("SELECT * FROM hemogramas WHERE patient_id = ?0 ALLOW FILTERING")
     List<Hemograma> findByPatientId(String patientId);
 
-    @Query("UPDATE hemogramas SET sent_to_api = ?1, sent_at = ?2, api_response_status = ?3 WHERE id = ?0")
-    void updateSentStatus(UUID id, Boolean sentToApi, Instant sentAt, Integer apiResponseStatus);
+    /**
+     * Full-table scan paged with the given options, for background jobs.
+     */
+    @Query("SELECT * FROM hemogramas WHERE created_at >= ?0 AND created_at < ?1 ALLOW FILTERING")
+    Stream<Hemograma> streamCreatedBetween(Instant from, Instant to, QueryOptions options);
+
+    /**
+     * Records collected in {@code [from, to)}, in token order, for exports.
+     */
+    @Query("SELECT * FROM hemogramas WHERE collection_date >= ?0 AND collection_date < ?1 ALLOW FILTERING")
+    Stream<Hemograma> streamCollectedBetween(Instant from, Instant to, QueryOptions options);
+
+    /**
+     * Like {@link #streamCollectedBetween} but resuming after the record {@code after}.
+     */
+    @Query("SELECT * FROM hemogramas WHERE token(id) > token(?0) AND collection_date >= ?1 AND collection_date < ?2 ALLOW FILTERING")
+    Stream<Hemograma> streamCollectedBetweenAfter(UUID after, Instant from, Instant to, QueryOptions options);
 
 }
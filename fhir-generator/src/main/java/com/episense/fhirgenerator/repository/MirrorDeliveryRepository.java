@@ -0,0 +1,24 @@
+package com.episense.fhirgenerator.repository;
+
+import com.episense.fhirgenerator.entity.MirrorDelivery;
+import org.springframework.data.cassandra.core.mapping.MapId;
+import org.springframework.data.cassandra.repository.CassandraRepository;
+import org.springframework.data.cassandra.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface MirrorDeliveryRepository extends CassandraRepository<MirrorDelivery, MapId>, MirrorDeliveryStateRepository {
+
+    @Query("SELECT * FROM mirror_deliveries WHERE mirror = ?0 AND sent = false ALLOW FILTERING")
+    List<MirrorDelivery> findNotSent(String mirror);
+
+    /**
+     * Unsent rows of a mirror in one outbox shard. The index narrows the read to the
+     * shard; only the rows of other mirrors in it are filtered out.
+     */
+    @Query("SELECT * FROM mirror_deliveries WHERE outbox_shard = ?0 AND mirror = ?1 ALLOW FILTERING")
+    List<MirrorDelivery> findNotSentInShard(int shard, String mirror);
+
+}
@@ -0,0 +1,56 @@
+package com.episense.fhirgenerator.repository;
+
+import com.episense.fhirgenerator.entity.MirrorDelivery;
+import com.episense.fhirgenerator.model.DeliveryState;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Delivery state transitions at mirror endpoints, with the same lightweight-transaction
+ * and retention semantics as {@link HemogramaDeliveryRepository}. A row is written
+ * PENDING before a mirror is handed a hemograma.
+ */
+public interface MirrorDeliveryStateRepository {
+
+    /**
+     * Creates the row of a hemograma not seen by the mirror yet as PENDING, as given in
+     * {@code pending}, and sets its {@code expiresAt}. Does nothing if the row exists.
+     */
+    boolean defer(MirrorDelivery pending);
+
+    /**
+     * Moves a row to IN_FLIGHT for {@code owner} if its state and lease are still the ones
+     * the caller observed.
+     */
+    boolean claim(UUID hemogramaId, String mirror, DeliveryState observedState, Instant observedLeaseUntil,
+                  String owner, Instant leaseUntil, int attempts, Instant expiresAt);
+
+    /**
+     * Marks a row as SENT unless it already is.
+     */
+    boolean markSent(UUID hemogramaId, String mirror, Instant sentAt, int apiResponseStatus, Instant expiresAt);
+
+    /**
+     * Puts an unsent row written before outbox shards existed into its shard.
+     */
+    boolean assignOutboxShard(UUID hemogramaId, String mirror, int shard, Instant expiresAt);
+
+    /**
+     * Ends the lease of {@code owner} after a failed attempt, moving the row to
+     * {@code nextState} (PENDING or DEAD) with its lease ending at {@code releasedAt}.
+     * A DEAD row moves to {@link HemogramaDeliveryRepository#DEAD_SHARD}. Does nothing if
+     * the lease was taken over.
+     */
+    boolean release(UUID hemogramaId, String mirror, String owner, DeliveryState nextState, Integer apiResponseStatus,
+                    Instant releasedAt, Instant expiresAt);
+
+    /**
+     * Writes an unsent row again under a fresh retention TTL when it is about to expire.
+     * Updates {@code expiresAt} of {@code observed} when it renews it.
+     *
+     * @return whether the row was renewed
+     */
+    boolean renewIfExpiring(MirrorDelivery observed);
+
+}
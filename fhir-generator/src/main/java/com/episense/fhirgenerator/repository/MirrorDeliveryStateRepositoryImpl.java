@@ -0,0 +1,113 @@
+package com.episense.fhirgenerator.repository;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.episense.fhirgenerator.config.RetentionProperties;
+import com.episense.fhirgenerator.entity.MirrorDelivery;
+import com.episense.fhirgenerator.model.DeliveryState;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * CQL implementation of {@link MirrorDeliveryStateRepository}, mixed into
+ * {@link MirrorDeliveryRepository}. As for hemogramas, every write goes through LWT,
+ * none writes a null and retention TTLs follow {@link RowTtl}.
+ */
+@RequiredArgsConstructor
+class MirrorDeliveryStateRepositoryImpl implements MirrorDeliveryStateRepository {
+
+    private final CqlSession session;
+    private final RetentionProperties retentionProperties;
+
+    @Override
+    public boolean defer(MirrorDelivery pending) {
+        Instant expiresAt = RowTtl.newExpiry(retentionProperties);
+        pending.setExpiresAt(expiresAt);
+        if (expiresAt == null) {
+            return session.execute(SimpleStatement.newInstance(
+                    "INSERT INTO mirror_deliveries (hemograma_id, mirror, sent, delivery_state, delivery_attempts, "
+                            + "outbox_shard) VALUES (?, ?, false, ?, ?, ?) IF NOT EXISTS",
+                    pending.getHemogramaId(), pending.getMirror(), pending.getDeliveryState().name(),
+                    pending.getDeliveryAttempts(), pending.getOutboxShard())).wasApplied();
+        }
+        // USING TTL comes after IF NOT EXISTS in an insert
+        return session.execute(SimpleStatement.newInstance(
+                "INSERT INTO mirror_deliveries (hemograma_id, mirror, sent, delivery_state, delivery_attempts, outbox_shard, "
+                        + "expires_at) VALUES (?, ?, false, ?, ?, ?, ?) IF NOT EXISTS USING TTL ?",
+                pending.getHemogramaId(), pending.getMirror(), pending.getDeliveryState().name(),
+                pending.getDeliveryAttempts(), pending.getOutboxShard(), expiresAt,
+                RowTtl.remaining(expiresAt))).wasApplied();
+    }
+
+    @Override
+    public boolean claim(UUID hemogramaId, String mirror, DeliveryState observedState, Instant observedLeaseUntil,
+                         String owner, Instant leaseUntil, int attempts, Instant expiresAt) {
+        return session.execute(SimpleStatement.newInstance(
+                "UPDATE mirror_deliveries" + RowTtl.using(expiresAt)
+                        + " SET delivery_state = ?, lease_owner = ?, lease_until = ?, delivery_attempts = ? "
+                        + "WHERE hemograma_id = ? AND mirror = ? IF delivery_state = ? AND lease_until = ?",
+                RowTtl.values(expiresAt, DeliveryState.IN_FLIGHT.name(), owner, leaseUntil, attempts,
+                        hemogramaId, mirror, observedState.name(), observedLeaseUntil))).wasApplied();
+    }
+
+    @Override
+    public boolean markSent(UUID hemogramaId, String mirror, Instant sentAt, int apiResponseStatus, Instant expiresAt) {
+        return session.execute(SimpleStatement.newInstance(
+                "UPDATE mirror_deliveries" + RowTtl.using(expiresAt)
+                        + " SET delivery_state = ?, sent = true, outbox_shard = ?, sent_at = ?, api_response_status = ? "
+                        + "WHERE hemograma_id = ? AND mirror = ? IF delivery_state != ?",
+                RowTtl.values(expiresAt, DeliveryState.SENT.name(), HemogramaDeliveryRepository.SENT_SHARD, sentAt,
+                        apiResponseStatus, hemogramaId, mirror, DeliveryState.SENT.name()))).wasApplied();
+    }
+
+    @Override
+    public boolean assignOutboxShard(UUID hemogramaId, String mirror, int shard, Instant expiresAt) {
+        return session.execute(SimpleStatement.newInstance(
+                "UPDATE mirror_deliveries" + RowTtl.using(expiresAt)
+                        + " SET outbox_shard = ? WHERE hemograma_id = ? AND mirror = ? IF sent = false",
+                RowTtl.values(expiresAt, shard, hemogramaId, mirror))).wasApplied();
+    }
+
+    @Override
+    public boolean release(UUID hemogramaId, String mirror, String owner, DeliveryState nextState,
+                           Integer apiResponseStatus, Instant releasedAt, Instant expiresAt) {
+        List<Object> values = new ArrayList<>(List.of(nextState.name(), releasedAt));
+        String set = "delivery_state = ?, lease_until = ?";
+        if (apiResponseStatus != null) {
+            set += ", api_response_status = ?";
+            values.add(apiResponseStatus);
+        }
+        if (nextState == DeliveryState.DEAD) {
+            set += ", outbox_shard = ?";
+            values.add(HemogramaDeliveryRepository.DEAD_SHARD);
+        }
+        values.addAll(List.of(hemogramaId, mirror, DeliveryState.IN_FLIGHT.name(), owner));
+        return session.execute(SimpleStatement.newInstance(
+                "UPDATE mirror_deliveries" + RowTtl.using(expiresAt) + " SET " + set
+                        + " WHERE hemograma_id = ? AND mirror = ? IF delivery_state = ? AND lease_owner = ?",
+                RowTtl.values(expiresAt, values.toArray()))).wasApplied();
+    }
+
+    @Override
+    public boolean renewIfExpiring(MirrorDelivery observed) {
+        if (!RowTtl.isExpiring(retentionProperties, observed.getExpiresAt())) {
+            return false;
+        }
+        Map<String, Object> key = new LinkedHashMap<>();
+        key.put("hemograma_id", observed.getHemogramaId());
+        key.put("mirror", observed.getMirror());
+        Instant expiresAt = RowTtl.renew(session, retentionProperties, "mirror_deliveries", key);
+        if (expiresAt == null) {
+            return false;
+        }
+        observed.setExpiresAt(expiresAt);
+        return true;
+    }
+
+}
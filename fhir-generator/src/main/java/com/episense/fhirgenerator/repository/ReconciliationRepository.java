@@ -0,0 +1,38 @@
+package com.episense.fhirgenerator.repository;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Token-range scans of the generator's {@code hemogramas} and fhir-server's
+ * {@code fhir_messages}, for reconciliation. Both tables use the Murmur3 partitioner, so
+ * a slice is a range {@code (start, end]} of 64-bit tokens. Rows are handed to the
+ * consumer page by page and never collected.
+ */
+public interface ReconciliationRepository {
+
+    /**
+     * Delivery columns of a hemograma.
+     *
+     * @param sentAt when the generator marked it as sent, or {@code null}
+     */
+    record Delivery(UUID id, Instant createdAt, Instant sentAt) {
+    }
+
+    /**
+     * A message as stored by fhir-server: the bundle as received and when it arrived.
+     */
+    record Message(String payload, Instant receivedAt) {
+    }
+
+    void scanHemogramas(long startExclusive, long endInclusive, Consumer<Delivery> consumer);
+
+    void scanMessages(long startExclusive, long endInclusive, Consumer<Message> consumer);
+
+    /**
+     * Token of the partition a hemograma id is stored in.
+     */
+    long tokenOf(UUID id);
+
+}
@@ -0,0 +1,116 @@
+package com.episense.fhirgenerator.repository;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.episense.fhirgenerator.config.RetentionProperties;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Retention of rows that several statements write over their life, in {@code hemogramas}
+ * and {@code mirror_deliveries}.
+ *
+ * <p>The insert that creates a row writes it under the retention TTL and records the
+ * moment it runs out in {@code expires_at}. A TTL only covers the cells its statement
+ * writes, so every later update writes its few columns with the TTL left until then,
+ * and the row expires as a whole. Rows without {@code expires_at} do not expire.</p>
+ */
+final class RowTtl {
+
+    private RowTtl() {
+    }
+
+    /**
+     * When a row created now expires, or {@code null} with retention disabled.
+     */
+    static Instant newExpiry(RetentionProperties retention) {
+        return retention.isEnabled()
+                ? Instant.now().plus(retention.getTtl()).truncatedTo(ChronoUnit.MILLIS)
+                : null;
+    }
+
+    /**
+     * The {@code USING TTL} clause of an update to a row expiring at {@code expiresAt}, to
+     * be bound first, or nothing for a row that does not expire.
+     */
+    static String using(Instant expiresAt) {
+        return expiresAt != null ? " USING TTL ?" : "";
+    }
+
+    /**
+     * The bound values of an update, after the TTL left until {@code expiresAt}.
+     */
+    static Object[] values(Instant expiresAt, Object... values) {
+        if (expiresAt == null) {
+            return values;
+        }
+        Object[] bound = new Object[values.length + 1];
+        bound[0] = remaining(expiresAt);
+        System.arraycopy(values, 0, bound, 1, values.length);
+        return bound;
+    }
+
+    /**
+     * Whether a row should be renewed by the retry path before it expires undelivered.
+     */
+    static boolean isExpiring(RetentionProperties retention, Instant expiresAt) {
+        return retention.isEnabled() && expiresAt != null
+                && expiresAt.isBefore(Instant.now().plus(retention.getRenewBefore()));
+    }
+
+    /**
+     * Writes every live cell of a row again under a fresh TTL, if the row is still in the
+     * delivery state and lease it was read with. Rows only get here shortly before they
+     * expire undelivered, so the cost of reading and writing the whole row is rare.
+     *
+     * @param key primary key columns and their values
+     * @return the new expiry, or {@code null} if the row changed or is gone
+     */
+    static Instant renew(CqlSession session, RetentionProperties retention, String table, Map<String, Object> key) {
+        String where = key.keySet().stream().map(column -> column + " = ?").collect(Collectors.joining(" AND "));
+        Row row = session.execute(SimpleStatement.newInstance(
+                "SELECT * FROM " + table + " WHERE " + where, key.values().toArray())).one();
+        if (row == null) {
+            return null;
+        }
+        Instant expiresAt = newExpiry(retention);
+        Map<String, Object> columns = new LinkedHashMap<>();
+        ColumnDefinitions definitions = row.getColumnDefinitions();
+        for (int i = 0; i < definitions.size(); i++) {
+            String column = definitions.get(i).getName().asInternal();
+            if (!key.containsKey(column) && !row.isNull(i)) {
+                columns.put(column, row.getObject(i));
+            }
+        }
+        columns.put("expires_at", expiresAt);
+
+        List<Object> values = new ArrayList<>();
+        values.add((int) retention.getTtl().toSeconds());
+        values.addAll(columns.values());
+        values.addAll(key.values());
+        values.add(row.getString("delivery_state"));
+        values.add(row.getInstant("lease_until"));
+        boolean applied = session.execute(SimpleStatement.newInstance("UPDATE " + table + " USING TTL ? SET "
+                + columns.keySet().stream().map(column -> column + " = ?").collect(Collectors.joining(", "))
+                + " WHERE " + where + " IF delivery_state = ? AND lease_until = ?", values.toArray())).wasApplied();
+        return applied ? expiresAt : null;
+    }
+
+    /**
+     * The TTL left until {@code expiresAt}, in seconds.
+     */
+    static int remaining(Instant expiresAt) {
+        // A row past its expiry is about to disappear; its cells follow within a second
+        return (int) Math.max(1, Duration.between(Instant.now(), expiresAt).toSeconds() + 1);
+    }
+
+}
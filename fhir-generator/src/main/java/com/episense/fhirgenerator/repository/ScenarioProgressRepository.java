@@ -0,0 +1,20 @@
+package com.episense.fhirgenerator.repository;
+
+import com.episense.fhirgenerator.entity.ScenarioProgress;
+import org.springframework.data.cassandra.core.mapping.MapId;
+import org.springframework.data.cassandra.repository.CassandraRepository;
+import org.springframework.data.cassandra.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ScenarioProgressRepository extends CassandraRepository<ScenarioProgress, MapId> {
+
+    @Query("SELECT * FROM scenario_progress WHERE scenario = ?0")
+    List<ScenarioProgress> findByScenario(String scenario);
+
+    @Query("DELETE FROM scenario_progress WHERE scenario = ?0")
+    void deleteByScenario(String scenario);
+
+}
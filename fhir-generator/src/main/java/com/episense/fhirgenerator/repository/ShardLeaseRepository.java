@@ -0,0 +1,55 @@
+package com.episense.fhirgenerator.repository;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+/**
+ * Lease bookkeeping for sharded generation.
+ *
+ * <p>Claims, renewals and releases are lightweight transactions so that at most one
+ * instance holds a shard at any time. Every write carries a TTL, which is what frees
+ * the shards of an instance that died without releasing them.</p>
+ */
+@Repository
+@RequiredArgsConstructor
+public class ShardLeaseRepository {
+
+    private final CqlSession session;
+
+    public boolean tryClaim(int shard, String owner, int ttlSeconds) {
+        return session.execute(SimpleStatement.newInstance(
+                "INSERT INTO generator_leases (shard, owner, renewed_at) VALUES (?, ?, ?) IF NOT EXISTS USING TTL ?",
+                shard, owner, Instant.now(), ttlSeconds)).wasApplied();
+    }
+
+    public boolean renew(int shard, String owner, int ttlSeconds) {
+        return session.execute(SimpleStatement.newInstance(
+                "UPDATE generator_leases USING TTL ? SET owner = ?, renewed_at = ? WHERE shard = ? IF owner = ?",
+                ttlSeconds, owner, Instant.now(), shard, owner)).wasApplied();
+    }
+
+    public void release(int shard, String owner) {
+        session.execute(SimpleStatement.newInstance(
+                "DELETE FROM generator_leases WHERE shard = ? IF owner = ?", shard, owner));
+    }
+
+    public void registerInstance(String instanceId, int ttlSeconds) {
+        session.execute(SimpleStatement.newInstance(
+                "INSERT INTO generator_instances (instance_id, last_seen) VALUES (?, ?) USING TTL ?",
+                instanceId, Instant.now(), ttlSeconds));
+    }
+
+    public void unregisterInstance(String instanceId) {
+        session.execute(SimpleStatement.newInstance(
+                "DELETE FROM generator_instances WHERE instance_id = ?", instanceId));
+    }
+
+    public int countLiveInstances() {
+        return session.execute("SELECT instance_id FROM generator_instances").all().size();
+    }
+
+}
@@ -1,10 +1,13 @@
 package com.episense.fhirgenerator.scheduler;
 
-import com.episense.fhirgenerator.config.AnomalyProperties;
-import com.episense.fhirgenerator.config.SchedulerProperties;
 import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.model.DeliveryLane;
+import com.episense.fhirgenerator.model.GenerationConfig;
 import com.episense.fhirgenerator.service.ExternalApiService;
+import com.episense.fhirgenerator.service.GenerationConfigService;
 import com.episense.fhirgenerator.service.HemogramaService;
+import com.episense.fhirgenerator.service.SimulationClock;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -13,7 +16,11 @@ import org.springframework.stereotype.Component;
 
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Scheduler for automatic FHIR hemograma generation with anomaly injection.
@@ -25,6 +32,9 @@ import java.util.concurrent.TimeUnit;
  *   <li>20% of batches trigger burst mode (3x volume, 80% anomaly rate)</li>
  *   <li>Bursts target D-2 for immediate Shewhart analysis</li>
  * </ul>
+ *
+ * <p>The retry drain runs on a thread of its own, so retried records reach the RETRY lane
+ * while a generation batch is feeding the LIVE lane rather than only between batches.</p>
  */
 @Slf4j
 @Component
@@ -34,9 +44,12 @@ public class HemogramaGeneratorScheduler {
 
     private final HemogramaService hemogramaService;
     private final ExternalApiService externalApiService;
-    private final SchedulerProperties schedulerProperties;
-    private final AnomalyProperties anomalyProperties;
+    private final GenerationConfigService generationConfigService;
+    private final SimulationClock simulationClock;
     private final Random random = new Random();
+    private final ExecutorService retryExecutor = Executors.newSingleThreadExecutor(
+            runnable -> Thread.ofPlatform().name("retry-drain").daemon().unstarted(runnable));
+    private final AtomicBoolean retrying = new AtomicBoolean();
 
     private long lastExecutionTime = 0;
     private long nextExecutionDelay = 0;
@@ -48,18 +61,25 @@ public class HemogramaGeneratorScheduler {
         if (lastExecutionTime > 0 && (currentTime - lastExecutionTime) < nextExecutionDelay) {
             return;
         }
+        // A time-warp simulation drives generation on its own clock
+        if (simulationClock.isWarped()) {
+            return;
+        }
 
         try {
+            // Config updates take effect from the next run
+            GenerationConfig config = generationConfigService.current();
+
             // Gerar quantidade aleatória de hemogramas
-            int batchSize = schedulerProperties.getMinBatchSize() +
-                    random.nextInt(schedulerProperties.getMaxBatchSize() - schedulerProperties.getMinBatchSize() + 1);
+            int batchSize = config.minBatchSize() +
+                    random.nextInt(config.maxBatchSize() - config.minBatchSize() + 1);
 
             log.info("===== Starting hemograma generation batch =====");
             log.info("Anomaly config: enabled={}, rate={}%, severe={}%, burst={}%", 
-                    anomalyProperties.isEnabled(),
-                    (int)(anomalyProperties.getPercentage() * 100),
-                    (int)(anomalyProperties.getSevereRatio() * 100),
-                    (int)(anomalyProperties.getBurstProbability() * 100));
+                    config.anomalyEnabled(),
+                    (int)(config.percentage() * 100),
+                    (int)(config.severeRatio() * 100),
+                    (int)(config.burstProbability() * 100));
             
             // Use smart batch generation (handles bursts and concentration automatically)
             List<Hemograma> hemogramas = hemogramaService.generateSmartBatch(batchSize);
@@ -70,9 +90,8 @@ public class HemogramaGeneratorScheduler {
             log.info("Sent {} hemogramas to external API", hemogramas.size());
 
             // Calcular próximo intervalo aleatório
-            int nextIntervalMinutes = schedulerProperties.getMinIntervalMinutes() +
-                    random.nextInt(schedulerProperties.getMaxIntervalMinutes()
-                            - schedulerProperties.getMinIntervalMinutes() + 1);
+            int nextIntervalMinutes = config.minIntervalMinutes() +
+                    random.nextInt(config.maxIntervalMinutes() - config.minIntervalMinutes() + 1);
             nextExecutionDelay = TimeUnit.MINUTES.toMillis(nextIntervalMinutes);
             lastExecutionTime = currentTime;
 
@@ -88,14 +107,35 @@ public class HemogramaGeneratorScheduler {
 
     @Scheduled(fixedDelay = 5, timeUnit = TimeUnit.MINUTES)
     public void retryFailedHemogramas() {
+        if (!retrying.compareAndSet(false, true)) {
+            log.debug("Previous retry drain still running");
+            return;
+        }
+        try {
+            retryExecutor.execute(this::drainRetries);
+        } catch (RejectedExecutionException e) {
+            retrying.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryExecutor.shutdownNow();
+    }
+
+    private void drainRetries() {
         try {
-            List<Hemograma> notSent = hemogramaService.findNotSent();
+            List<Hemograma> notSent = hemogramaService.findOwnedNotSent();
             if (!notSent.isEmpty()) {
                 log.info("Retrying {} unsent hemogramas", notSent.size());
-                externalApiService.sendHemogramas(notSent);
+                externalApiService.sendHemogramas(notSent, DeliveryLane.RETRY);
             }
+            // Mirrors retry on their own senders; not waited for
+            externalApiService.retryMirrors();
         } catch (Exception e) {
             log.error("Error retrying failed hemogramas", e);
+        } finally {
+            retrying.set(false);
         }
     }
 
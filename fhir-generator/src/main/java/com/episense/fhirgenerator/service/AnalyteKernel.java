@@ -0,0 +1,71 @@
+package com.episense.fhirgenerator.service;
+
+/**
+ * Column-wise numeric kernels behind {@link AnalyteSampler}.
+ *
+ * <p>Every element depends only on its index, so implementations can process any number
+ * of lanes at once and still agree with each other (up to the last bits of the
+ * transcendental functions). Random numbers are counter-based: element {@code i} of a
+ * stream hashes {@code seed + i}, which needs no state shared between lanes.</p>
+ */
+interface AnalyteKernel {
+
+    long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Fills {@code out[0, length)} with standard normal deviates (Box-Muller) for stream
+     * {@code seed}, starting at element {@code offset} of the stream.
+     */
+    void normals(long seed, long offset, double[] out, int length);
+
+    /**
+     * Turns standard normal deviates into values of a distribution:
+     * {@code center + spread * z}, or {@code center * exp(spread * z)} when log-normal
+     * ({@code center} is then the median).
+     */
+    void transform(double[] z, double[] out, int length, boolean logNormal, double center, double spread);
+
+    /**
+     * {@code out[i] = a[i] * b[i]}.
+     */
+    void multiply(double[] a, double[] b, double[] out, int length);
+
+    /**
+     * Rounds non-negative values to two decimals, as reported by the lab.
+     */
+    void round2(double[] values, int length);
+
+    /**
+     * The kernel used by this JVM: vectorized when the {@code jdk.incubator.vector}
+     * module is present (see {@code --add-modules}), scalar otherwise.
+     */
+    static AnalyteKernel best() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                // Loaded reflectively: the class does not link without the module
+                return (AnalyteKernel) Class.forName("com.episense.fhirgenerator.service.VectorAnalyteKernel")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return new ScalarAnalyteKernel();
+            }
+        }
+        return new ScalarAnalyteKernel();
+    }
+
+    /**
+     * SplitMix64 finalizer: a bijective mix giving independent-looking 64-bit values
+     * for consecutive inputs.
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Uniform double in (0, 1] from the top 53 bits.
+     */
+    static double toUnit(long bits) {
+        return ((bits >>> 11) + 1) * 0x1.0p-53;
+    }
+}
@@ -0,0 +1,349 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.model.AnomalyType;
+import com.episense.fhirgenerator.model.GenerationConfig;
+import com.episense.fhirgenerator.service.PatientRegistry.Analyte;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws the analyte values of many hemogramas at once, column by column.
+ *
+ * <h3>Distributions:</h3>
+ * <ul>
+ *   <li>Eritrograma, platelets and the differential are normal or log-normal
+ *       (skewed counts such as platelets, monocytes and eosinophils) around the middle
+ *       of their reference range</li>
+ *   <li>Leukocytes are log-normal, with ranges per {@link AnomalyType}</li>
+ *   <li>Neutrophils are a fraction of the leukocytes, so both move together</li>
+ *   <li>Population patients keep 70% of the variance from their own baseline</li>
+ * </ul>
+ *
+ * <p>Every value is truncated to the range the anomaly type allows (redrawn, then
+ * clamped), so the clinical flags of each exam still match its ground truth.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AnalyteSampler {
+
+    /** Rows processed per kernel call; keeps the scratch arrays in cache. */
+    static final int CHUNK = 2048;
+
+    private static final int MAX_REDRAWS = 32;
+    private static final double PATIENT_WEIGHT = Math.sqrt(0.7);
+    private static final double NOISE_WEIGHT = Math.sqrt(0.3);
+    // Baselines are the average of two uniforms: mean 1/2, variance 1/24
+    private static final double BASELINE_SD = Math.sqrt(1.0 / 24);
+    private static final Analyte[] ALL_ANALYTES = Analyte.values();
+    private static final int ANALYTES = ALL_ANALYTES.length;
+    private static final int FRACTION_STREAM = ANALYTES;
+
+    private static final Spec[] STABLE = new Spec[ANALYTES];
+
+    static {
+        STABLE[Analyte.RED_BLOOD_CELLS.ordinal()] = Spec.normal(5.0, 0.25, 4.5, 5.5);
+        STABLE[Analyte.HEMOGLOBIN.ordinal()] = Spec.normal(15.0, 1.0, 13.0, 17.0);
+        STABLE[Analyte.HEMATOCRIT.ordinal()] = Spec.normal(45.0, 2.5, 40.0, 50.0);
+        STABLE[Analyte.MCV.ordinal()] = Spec.normal(90.0, 5.0, 80.0, 100.0);
+        STABLE[Analyte.MCH.ordinal()] = Spec.normal(29.5, 1.25, 27.0, 32.0);
+        STABLE[Analyte.MCHC.ordinal()] = Spec.normal(34.0, 1.0, 32.0, 36.0);
+        STABLE[Analyte.RDW.ordinal()] = Spec.logNormal(12.8, 0.06, 11.5, 14.5);
+        STABLE[Analyte.PLATELETS.ordinal()] = Spec.logNormal(250.0, 0.2, 150.0, 400.0);
+        STABLE[Analyte.MPV.ordinal()] = Spec.normal(9.5, 1.0, 7.5, 11.5);
+        STABLE[Analyte.LYMPHOCYTES.ordinal()] = Spec.normal(32.0, 6.0, 20.0, 45.0);
+        STABLE[Analyte.MONOCYTES.ordinal()] = Spec.logNormal(5.0, 0.3, 2.0, 10.0);
+        STABLE[Analyte.EOSINOPHILS.ordinal()] = Spec.logNormal(2.5, 0.45, 1.0, 6.0);
+        STABLE[Analyte.BASOPHILS.ordinal()] = Spec.logNormal(0.5, 0.5, 0.0, 2.0);
+    }
+
+    private final PatientRegistry patientRegistry;
+
+    private final AnalyteKernel kernel = AnalyteKernel.best();
+
+    @PostConstruct
+    public void init() {
+        log.info("Analyte sampling uses {}", kernel.getClass().getSimpleName());
+    }
+
+    /**
+     * Samples one exam.
+     */
+    public Columns sample(GenerationConfig config, AnomalyType type, int patient) {
+        return sample(config, new AnomalyType[]{type}, new int[]{patient});
+    }
+
+    /**
+     * Samples one exam per row: {@code types[i]} is its anomaly pattern and
+     * {@code patients[i]} the population index of its patient, or -1. Ranges and
+     * thresholds come from {@code config}, the snapshot of the whole batch.
+     */
+    public Columns sample(GenerationConfig config, AnomalyType[] types, int[] patients) {
+        int rows = types.length;
+        Columns columns = new Columns(rows);
+        if (rows == 0) {
+            return columns;
+        }
+
+        // Counting sort by type: each run shares its distributions
+        AnomalyType[] all = AnomalyType.values();
+        int[] start = new int[all.length + 1];
+        for (AnomalyType type : types) {
+            start[type.ordinal() + 1]++;
+        }
+        for (int t = 0; t < all.length; t++) {
+            start[t + 1] += start[t];
+        }
+        int[] order = new int[rows];
+        int[] fill = start.clone();
+        for (int row = 0; row < rows; row++) {
+            order[fill[types[row].ordinal()]++] = row;
+        }
+
+        Scratch scratch = new Scratch(Math.min(rows, CHUNK));
+        long seed = ThreadLocalRandom.current().nextLong();
+        for (int t = 0; t < all.length; t++) {
+            Spec[] specs = specsFor(config, all[t]);
+            for (int from = start[t]; from < start[t + 1]; from += CHUNK) {
+                int length = Math.min(CHUNK, start[t + 1] - from);
+                sampleChunk(all[t], specs, seed, order, from, length, patients, columns, scratch);
+            }
+        }
+        return columns;
+    }
+
+    private void sampleChunk(AnomalyType type, Spec[] specs, long seed, int[] order, int from, int length,
+                             int[] patients, Columns columns, Scratch scratch) {
+        double[] z = scratch.z;
+        double[] values = scratch.values;
+        for (int a = 0; a < ANALYTES; a++) {
+            if (a == Analyte.NEUTROPHILS.ordinal()) {
+                continue;
+            }
+            Analyte analyte = ALL_ANALYTES[a];
+            boolean personal = mixesBaseline(type, analyte);
+            kernel.normals(stream(seed, a), from, z, length);
+            if (personal) {
+                mixBaselines(analyte, order, from, length, patients, z);
+            }
+            Spec spec = specs[a];
+            kernel.transform(z, values, length, spec.logNormal, spec.center, spec.spread);
+            truncate(spec, personal ? analyte : null, order, from, length, patients, values);
+            if (a == Analyte.WHITE_BLOOD_CELLS.ordinal()) {
+                System.arraycopy(values, 0, scratch.leukocytes, 0, length);
+            }
+            kernel.round2(values, length);
+            scatter(columns.values[a], order, from, length, values);
+        }
+
+        // Neutrophils: a share of the leukocytes drawn before rounding
+        Spec fraction = specs[FRACTION_STREAM];
+        Spec neutrophils = specs[Analyte.NEUTROPHILS.ordinal()];
+        boolean personal = mixesBaseline(type, Analyte.NEUTROPHILS);
+        kernel.normals(stream(seed, FRACTION_STREAM), from, z, length);
+        if (personal) {
+            mixBaselines(Analyte.NEUTROPHILS, order, from, length, patients, z);
+        }
+        kernel.transform(z, scratch.fractions, length, false, fraction.center, fraction.spread);
+        truncate(fraction, personal ? Analyte.NEUTROPHILS : null, order, from, length, patients, scratch.fractions);
+        kernel.multiply(scratch.leukocytes, scratch.fractions, values, length);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < length; i++) {
+            for (int redraw = 0; redraw < MAX_REDRAWS && !neutrophils.contains(values[i]); redraw++) {
+                values[i] = scratch.leukocytes[i] * fraction.clamp(fraction.value(random.nextGaussian()));
+            }
+            values[i] = neutrophils.clamp(values[i]);
+        }
+        kernel.round2(values, length);
+        scatter(columns.values[Analyte.NEUTROPHILS.ordinal()], order, from, length, values);
+    }
+
+    /**
+     * Blends standard normal noise with the patient's baseline, keeping unit variance.
+     */
+    private void mixBaselines(Analyte analyte, int[] order, int from, int length, int[] patients, double[] z) {
+        for (int i = 0; i < length; i++) {
+            int patient = patients[order[from + i]];
+            if (patient >= 0) {
+                z[i] = PATIENT_WEIGHT * baselineDeviate(patient, analyte) + NOISE_WEIGHT * z[i];
+            }
+        }
+    }
+
+    /**
+     * Redraws values outside the allowed range, then clamps the few that are left.
+     * Redraws of population patients keep their baseline of {@code analyte} when given.
+     */
+    private void truncate(Spec spec, Analyte analyte, int[] order, int from, int length, int[] patients,
+                          double[] values) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < length; i++) {
+            int patient = analyte != null ? patients[order[from + i]] : -1;
+            for (int redraw = 0; redraw < MAX_REDRAWS && !spec.contains(values[i]); redraw++) {
+                double z = random.nextGaussian();
+                if (patient >= 0) {
+                    z = PATIENT_WEIGHT * baselineDeviate(patient, analyte) + NOISE_WEIGHT * z;
+                }
+                values[i] = spec.value(z);
+            }
+            values[i] = spec.clamp(values[i]);
+        }
+    }
+
+    private double baselineDeviate(int patient, Analyte analyte) {
+        return (patientRegistry.baseline(patient, analyte) - 0.5) / BASELINE_SD;
+    }
+
+    private static Spec[] specsFor(GenerationConfig config, AnomalyType type) {
+        // The extra slot holds the neutrophil fraction
+        Spec[] specs = Arrays.copyOf(STABLE, ANALYTES + 1);
+        GenerationConfig.Range leucocytosis = config.leucocytosisRange();
+        GenerationConfig.Range neutrophilia = config.neutrophiliaRange();
+        GenerationConfig.Range leftShift = config.leftShiftRange();
+        double normalBands = config.leftShiftThreshold() - 50;
+        Spec leukocytes;
+        Spec fraction;
+        Spec neutrophils;
+        Spec bands;
+        switch (type) {
+            case SIB_GRAVE -> {
+                // Neutrophilia (>7500) + Left Shift (>500) = SIB_GRAVE (weight 2x)
+                leukocytes = Spec.logNormalWithin(leucocytosis.min(), leucocytosis.max());
+                fraction = Spec.normal(0.82, 0.05, 0.6, 0.92);
+                neutrophils = Spec.range(neutrophilia.min(), neutrophilia.max());
+                bands = Spec.logNormalWithin(leftShift.min(), leftShift.max());
+            }
+            case SIB_SUSPEITA -> {
+                // Leucocytosis (>11000) + Neutrophilia (>7500) = SIB_SUSPEITA
+                leukocytes = Spec.logNormalWithin(leucocytosis.min(), leucocytosis.max());
+                fraction = Spec.normal(0.78, 0.05, 0.6, 0.92);
+                neutrophils = Spec.range(neutrophilia.min(), neutrophilia.max());
+                bands = Spec.logNormalWithin(0.0, normalBands);
+            }
+            case LEUCOCYTOSIS -> {
+                // Only leucocytosis - lymphocytes or monocytes carry the excess
+                leukocytes = Spec.logNormalWithin(leucocytosis.min(), leucocytosis.max());
+                fraction = Spec.normal(0.35, 0.05, 0.2, 0.5);
+                neutrophils = Spec.range(1800.0, config.neutrophiliaThreshold() - 100);
+                bands = Spec.logNormalWithin(0.0, normalBands);
+            }
+            default -> {
+                // All values within normal range
+                leukocytes = Spec.logNormalWithin(4000.0, config.leucocytosisThreshold() - 500);
+                fraction = Spec.normal(0.58, 0.07, 0.40, 0.75);
+                neutrophils = Spec.range(1800.0, config.neutrophiliaThreshold() - 500);
+                bands = Spec.logNormalWithin(0.0, normalBands);
+            }
+        }
+        specs[Analyte.WHITE_BLOOD_CELLS.ordinal()] = leukocytes;
+        specs[Analyte.NEUTROPHILS.ordinal()] = neutrophils;
+        specs[Analyte.NEUTROPHILS_BAND_FORM.ordinal()] = bands;
+        specs[FRACTION_STREAM] = fraction;
+        return specs;
+    }
+
+    /**
+     * Patient baselines shape the stable analytes of every exam, but the leukogram only
+     * of normal ones: an infection overrides the patient's usual counts.
+     */
+    private static boolean mixesBaseline(AnomalyType type, Analyte analyte) {
+        return switch (analyte) {
+            case WHITE_BLOOD_CELLS, NEUTROPHILS, NEUTROPHILS_BAND_FORM -> type == AnomalyType.NORMAL;
+            default -> true;
+        };
+    }
+
+    private static long stream(long seed, int stream) {
+        return AnalyteKernel.mix64(seed + stream * AnalyteKernel.GOLDEN_GAMMA);
+    }
+
+    private static void scatter(double[] column, int[] order, int from, int length, double[] values) {
+        for (int i = 0; i < length; i++) {
+            column[order[from + i]] = values[i];
+        }
+    }
+
+    /**
+     * A normal or log-normal distribution truncated to {@code [min, max]}.
+     */
+    record Spec(boolean logNormal, double center, double spread, double min, double max) {
+
+        static Spec normal(double mean, double sd, double min, double max) {
+            return new Spec(false, mean, sd, min, max);
+        }
+
+        static Spec logNormal(double median, double sigma, double min, double max) {
+            return new Spec(true, median, sigma, min, max);
+        }
+
+        /**
+         * Log-normal spanning the range: geometric middle and four sigmas wide, or with
+         * its median at a third of the range when it starts at zero.
+         */
+        static Spec logNormalWithin(double min, double max) {
+            if (min <= 0) {
+                return logNormal(max / 3, 0.6, min, max);
+            }
+            return logNormal(Math.sqrt(min * max), Math.log(max / min) / 4, min, max);
+        }
+
+        /**
+         * Bounds only, for values derived from other columns.
+         */
+        static Spec range(double min, double max) {
+            return new Spec(false, (min + max) / 2, 0.0, min, max);
+        }
+
+        double value(double z) {
+            return logNormal ? center * Math.exp(spread * z) : center + spread * z;
+        }
+
+        boolean contains(double value) {
+            return value >= min && value <= max;
+        }
+
+        double clamp(double value) {
+            return Math.clamp(value, min, max);
+        }
+    }
+
+    private static final class Scratch {
+        final double[] z;
+        final double[] values;
+        final double[] leukocytes;
+        final double[] fractions;
+
+        Scratch(int size) {
+            z = new double[size];
+            values = new double[size];
+            leukocytes = new double[size];
+            fractions = new double[size];
+        }
+    }
+
+    /**
+     * Sampled values, one array per analyte indexed by row.
+     */
+    public static final class Columns {
+        private final double[][] values;
+        private final int size;
+
+        Columns(int size) {
+            this.values = new double[ANALYTES][size];
+            this.size = size;
+        }
+
+        public double get(Analyte analyte, int row) {
+            return values[analyte.ordinal()][row];
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+}
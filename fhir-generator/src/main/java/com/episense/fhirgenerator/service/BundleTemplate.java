@@ -0,0 +1,255 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.model.BundleProfile;
+import com.episense.fhirgenerator.model.HemogramaData;
+import org.hl7.fhir.r4.model.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Builds hemograma bundles for one {@link BundleProfile}. The profile is resolved once
+ * into flags and the list of components to emit, so building a bundle makes no
+ * per-element decisions about it. HAPI elements are mutable (their getters create
+ * children on demand), so every bundle is built from new ones rather than shared copies.
+ */
+final class BundleTemplate {
+
+    private static final String LOINC = "http://loinc.org";
+    private static final String UCUM = "http://unitsofmeasure.org";
+    private static final String CELLS_PER_UL = "cells/uL";
+
+    /**
+     * A CBC component: its LOINC code, how its value is read from the exam, and the
+     * reference range.
+     *
+     * @param analyzed whether the backend reads it (see FhirAnalysisService)
+     */
+    private record Component(String loinc, String display, Function<HemogramaData, Double> value, double scale,
+                             String unit, double refLow, double refHigh, boolean analyzed) {
+    }
+
+    private static final List<Component> COMPONENTS = List.of(
+            // Leucocitose
+            new Component("6690-2", "Leukocytes [#/volume] in Blood",
+                    HemogramaData::getWhiteBloodCells, 1, CELLS_PER_UL, 4000.0, 11000.0, true),
+            // Neutrofilia
+            new Component("751-8", "Neutrophils [#/volume] in Blood",
+                    HemogramaData::getNeutrophils, 1, CELLS_PER_UL, 2000.0, 7500.0, true),
+            // Desvio à Esquerda
+            new Component("764-1", "Neutrophils.band form [#/volume] in Blood",
+                    HemogramaData::getNeutrophilsBandForm, 1, CELLS_PER_UL, 0.0, 500.0, true),
+            // Eritrograma and platelets, for completeness
+            new Component("789-8", "Erythrocytes [#/volume] in Blood",
+                    HemogramaData::getRedBloodCells, 1000000, CELLS_PER_UL, 4500000.0, 5500000.0, false),
+            new Component("718-7", "Hemoglobin [Mass/volume] in Blood",
+                    HemogramaData::getHemoglobin, 1, "g/dL", 13.0, 17.0, false),
+            new Component("4544-3", "Hematocrit [Volume Fraction] of Blood",
+                    HemogramaData::getHematocrit, 1, "%", 40.0, 50.0, false),
+            new Component("777-3", "Platelets [#/volume] in Blood",
+                    HemogramaData::getPlatelets, 1000, CELLS_PER_UL, 150000.0, 400000.0, false));
+
+    private static final Map<BundleProfile, BundleTemplate> TEMPLATES = compileAll();
+
+    private final BundleProfile profile;
+    private final boolean prettyPrint;
+    /** Resource ids, patient name, category, subject and the rest of the conformant detail */
+    private final boolean conformant;
+    private final boolean displays;
+    private final boolean referenceRanges;
+    private final boolean encounter;
+    private final List<Component> components;
+
+    private BundleTemplate(BundleProfile profile) {
+        this.profile = profile;
+        this.prettyPrint = profile == BundleProfile.FULL;
+        this.conformant = profile != BundleProfile.MINIMAL;
+        this.displays = profile == BundleProfile.FULL;
+        this.referenceRanges = profile == BundleProfile.FULL;
+        this.encounter = profile == BundleProfile.FULL;
+        this.components = profile == BundleProfile.MINIMAL
+                ? COMPONENTS.stream().filter(Component::analyzed).toList()
+                : COMPONENTS;
+    }
+
+    private static Map<BundleProfile, BundleTemplate> compileAll() {
+        Map<BundleProfile, BundleTemplate> templates = new EnumMap<>(BundleProfile.class);
+        for (BundleProfile profile : BundleProfile.values()) {
+            templates.put(profile, new BundleTemplate(profile));
+        }
+        return Collections.unmodifiableMap(templates);
+    }
+
+    static BundleTemplate of(BundleProfile profile) {
+        return TEMPLATES.get(profile);
+    }
+
+    BundleProfile profile() {
+        return profile;
+    }
+
+    boolean prettyPrint() {
+        return prettyPrint;
+    }
+
+    Bundle build(HemogramaData data, String bundleIdPrefix) {
+        // Patients return for repeat exams, so exam resources are keyed by the exam
+        String examKey = data.getExamId() != null ? data.getExamId() : data.getPatientId();
+        Date collected = toDate(data.getCollectionDate());
+
+        Bundle bundle = new Bundle();
+        bundle.setId(bundleIdPrefix + examKey);
+        bundle.setType(Bundle.BundleType.COLLECTION);
+        bundle.setTimestamp(collected);
+
+        String patientUuid = "urn:uuid:patient-" + data.getPatientId();
+        String encounterUuid = "urn:uuid:encounter-" + examKey;
+
+        // Every profile keeps fullUrl: R4 requires it on the entries of a collection
+        bundle.addEntry()
+                .setFullUrl(patientUuid)
+                .setResource(createPatient(data));
+
+        // Encounter Resource (clinical context)
+        if (encounter) {
+            Encounter encounterResource = new Encounter();
+            encounterResource.setId("encounter-" + examKey);
+            encounterResource.setStatus(Encounter.EncounterStatus.FINISHED);
+            encounterResource.getClass_()
+                    .setSystem("http://terminology.hl7.org/CodeSystem/v3-ActCode")
+                    .setCode("AMB")
+                    .setDisplay("ambulatory");
+            encounterResource.getSubject().setReference(patientUuid);
+            encounterResource.getPeriod()
+                    .setStart(collected)
+                    .setEnd(toDate(data.getCollectionDate().plusMinutes(30)));
+            bundle.addEntry()
+                    .setFullUrl(encounterUuid)
+                    .setResource(encounterResource);
+        }
+
+        // CBC Panel Observation with components (for Shewhart detection)
+        bundle.addEntry()
+                .setFullUrl("urn:uuid:observation-" + examKey)
+                .setResource(createCbcPanelObservation(data, examKey, patientUuid, encounterUuid, collected));
+        return bundle;
+    }
+
+    private Patient createPatient(HemogramaData data) {
+        Patient patient = new Patient();
+        if (conformant) {
+            patient.setId("patient-" + data.getPatientId());
+            patient.addName()
+                    .setFamily(data.getPatientName())
+                    .setUse(HumanName.NameUse.OFFICIAL);
+        }
+
+        // Consolidated address with city, state and country
+        if (data.getCity() != null || data.getState() != null) {
+            Address address = patient.addAddress();
+            if (conformant) {
+                address.setUse(Address.AddressUse.HOME);
+            }
+            if (data.getCity() != null) {
+                address.setCity(data.getCity());
+            }
+            if (data.getState() != null) {
+                address.setState(data.getState());
+            }
+            if (conformant) {
+                address.setCountry("BRA");
+            }
+        }
+        return patient;
+    }
+
+    /**
+     * Creates a CBC (Complete Blood Count) Panel Observation with components.
+     * This structure is required for proper SIB detection (Leucocitose + Neutrofilia)
+     * as the backend consolidates values from component[] array.
+     */
+    private Observation createCbcPanelObservation(HemogramaData data, String examKey, String patientRef,
+                                                  String encounterRef, Date collected) {
+        Observation observation = new Observation();
+        observation.setStatus(Observation.ObservationStatus.FINAL);
+
+        // Code - CBC Panel (58410-2)
+        Coding panel = observation.getCode()
+                .addCoding()
+                .setSystem(LOINC)
+                .setCode("58410-2");
+        if (displays) {
+            panel.setDisplay("Complete blood count (CBC) panel - Blood by Automated count");
+            observation.getCode().setText("Complete Blood Count");
+        }
+
+        if (conformant) {
+            observation.setId("cbc-" + examKey);
+            // Category - Laboratory
+            Coding category = observation.addCategory()
+                    .addCoding()
+                    .setSystem("http://terminology.hl7.org/CodeSystem/observation-category")
+                    .setCode("laboratory");
+            if (displays) {
+                category.setDisplay("Laboratory");
+            }
+            observation.getSubject().setReference(patientRef);
+        }
+        if (encounter) {
+            observation.getEncounter().setReference(encounterRef);
+        }
+
+        observation.setEffective(new DateTimeType(collected));
+
+        for (Component component : components) {
+            Double value = component.value().apply(data);
+            if (value != null) {
+                addObservationComponent(observation, component, value * component.scale());
+            }
+        }
+        return observation;
+    }
+
+    /**
+     * Adds a component to an Observation with LOINC code, value, unit and reference range.
+     */
+    private void addObservationComponent(Observation observation, Component spec, double value) {
+        Observation.ObservationComponentComponent component = observation.addComponent();
+
+        // Code
+        Coding coding = component.getCode()
+                .addCoding()
+                .setSystem(LOINC)
+                .setCode(spec.loinc());
+        if (displays) {
+            coding.setDisplay(spec.display());
+        }
+
+        // Value; the backend normalizes counts by the unit code, which needs its system (qty-3)
+        Quantity quantity = new Quantity();
+        quantity.setValue(value);
+        if (displays) {
+            quantity.setUnit(spec.unit());
+        }
+        quantity.setSystem(UCUM);
+        quantity.setCode(spec.unit());
+        component.setValue(quantity);
+
+        // Reference Range
+        if (referenceRanges) {
+            component.addReferenceRange()
+                    .setLow(new Quantity().setValue(spec.refLow()).setUnit(spec.unit()))
+                    .setHigh(new Quantity().setValue(spec.refHigh()).setUnit(spec.unit()));
+        }
+    }
+
+    private static Date toDate(LocalDateTime dateTime) {
+        return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
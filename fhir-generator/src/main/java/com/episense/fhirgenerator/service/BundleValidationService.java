@@ -0,0 +1,207 @@
+package com.episense.fhirgenerator.service;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.support.DefaultProfileValidationSupport;
+import ca.uhn.fhir.validation.FhirValidator;
+import ca.uhn.fhir.validation.ResultSeverityEnum;
+import ca.uhn.fhir.validation.SingleValidationMessage;
+import ca.uhn.fhir.validation.ValidationResult;
+import com.episense.fhirgenerator.config.ValidationProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.common.hapi.validation.support.CachingValidationSupport;
+import org.hl7.fhir.common.hapi.validation.support.CommonCodeSystemsTerminologyService;
+import org.hl7.fhir.common.hapi.validation.support.InMemoryTerminologyServerValidationSupport;
+import org.hl7.fhir.common.hapi.validation.support.SnapshotGeneratingValidationSupport;
+import org.hl7.fhir.common.hapi.validation.support.ValidationSupportChain;
+import org.hl7.fhir.common.hapi.validation.validator.FhirInstanceValidator;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Quantity;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Validates a sample of generated bundles against the base R4 profiles off the hot path.
+ *
+ * <p>Bundles are handed over as encoded JSON and validated on a dedicated bounded pool, so
+ * generation never waits for the validator; when the queue is full the bundle is dropped
+ * and counted. The validation support chain (structure definitions, snapshots, in-memory
+ * terminology) is built once, wrapped in a cache and warmed up in the background at
+ * startup, since the first validation takes over ten seconds.</p>
+ *
+ * <p>Results are exported as {@code episense.validation.bundles} (by result and trigger),
+ * {@code episense.validation.issues} (by severity) and {@code episense.validation.duration}.
+ * Each distinct error or warning message is also logged once.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BundleValidationService {
+
+    private static final int MAX_LOGGED_ISSUES = 100;
+
+    private final FhirContext fhirContext;
+    private final ValidationProperties validationProperties;
+    private final MeterRegistry meterRegistry;
+
+    private final Set<String> validatedCodePaths = ConcurrentHashMap.newKeySet();
+    private final Set<String> loggedIssues = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolExecutor executor;
+    private FhirValidator validator;
+    private Timer duration;
+
+    @PostConstruct
+    public void init() {
+        if (!validationProperties.isEnabled()) {
+            return;
+        }
+        int threads = Math.max(1, validationProperties.getThreads());
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, validationProperties.getQueueCapacity())),
+                runnable -> Thread.ofPlatform().daemon()
+                        .name("fhir-validation-" + threadCount.incrementAndGet()).unstarted(runnable));
+        duration = Timer.builder("episense.validation.duration")
+                .description("Time to validate one generated bundle")
+                .register(meterRegistry);
+        Gauge.builder("episense.validation.queue", executor, e -> e.getQueue().size())
+                .description("Bundles waiting for validation")
+                .register(meterRegistry);
+        executor.execute(this::warmUp);
+        log.info("Bundle validation enabled: sample rate {}, {} thread(s)", validationProperties.getSampleRate(), threads);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return executor != null;
+    }
+
+    /**
+     * Queues the bundle for validation if it is the first of its code path or falls in
+     * the sample. Never blocks.
+     *
+     * @param codePath identifies how the bundle was produced, e.g. {@code SIB_GRAVE/eager}
+     */
+    public void offer(String bundleJson, String codePath) {
+        if (executor == null) {
+            return;
+        }
+        String trigger;
+        if (validatedCodePaths.add(codePath)) {
+            trigger = "new-path";
+        } else if (ThreadLocalRandom.current().nextDouble() < validationProperties.getSampleRate()) {
+            trigger = "sampled";
+        } else {
+            return;
+        }
+        try {
+            executor.execute(() -> validate(bundleJson, codePath, trigger));
+        } catch (RejectedExecutionException e) {
+            if ("new-path".equals(trigger)) {
+                // Let the next bundle of this path claim the guaranteed validation
+                validatedCodePaths.remove(codePath);
+            }
+            count("dropped", trigger);
+        }
+    }
+
+    private void validate(String bundleJson, String codePath, String trigger) {
+        try {
+            ValidationResult result = duration.recordCallable(() -> validator().validateWithResult(bundleJson));
+            boolean valid = true;
+            for (SingleValidationMessage message : result.getMessages()) {
+                ResultSeverityEnum severity = message.getSeverity();
+                meterRegistry.counter("episense.validation.issues", "severity", severity.getCode()).increment();
+                if (severity == ResultSeverityEnum.ERROR || severity == ResultSeverityEnum.FATAL) {
+                    valid = false;
+                }
+                if (severity != ResultSeverityEnum.INFORMATION) {
+                    logOnce(message, codePath);
+                }
+            }
+            count(valid ? "valid" : "invalid", trigger);
+        } catch (Exception e) {
+            log.warn("Validation of a {} bundle failed: {}", codePath, e.getMessage());
+            count("failed", trigger);
+        }
+    }
+
+    private void logOnce(SingleValidationMessage message, String codePath) {
+        if (loggedIssues.size() >= MAX_LOGGED_ISSUES) {
+            return;
+        }
+        // Strip parenthesised instance details so repeats of the same issue match
+        String key = message.getSeverity() + " " + message.getMessage().replaceAll("\\(.*?\\)", "");
+        if (loggedIssues.add(key)) {
+            log.warn("FHIR validation {} in {} bundle at {}: {}", message.getSeverity(), codePath,
+                    message.getLocationString(), message.getMessage());
+        }
+    }
+
+    private void count(String result, String trigger) {
+        meterRegistry.counter("episense.validation.bundles", "result", result, "trigger", trigger).increment();
+    }
+
+    synchronized FhirValidator validator() {
+        if (validator == null) {
+            ValidationSupportChain chain = new ValidationSupportChain(
+                    new DefaultProfileValidationSupport(fhirContext),
+                    new CommonCodeSystemsTerminologyService(fhirContext),
+                    new InMemoryTerminologyServerValidationSupport(fhirContext),
+                    new SnapshotGeneratingValidationSupport(fhirContext));
+            FhirInstanceValidator module = new FhirInstanceValidator(new CachingValidationSupport(chain));
+            validator = fhirContext.newValidator().registerValidatorModule(module);
+        }
+        return validator;
+    }
+
+    /**
+     * Loads structure definitions and fills the caches before real bundles arrive.
+     */
+    private void warmUp() {
+        long start = System.nanoTime();
+        try {
+            Observation observation = new Observation();
+            observation.setStatus(Observation.ObservationStatus.FINAL);
+            observation.getCode().addCoding().setSystem("http://loinc.org").setCode("58410-2");
+            observation.addComponent().setValue(new Quantity().setValue(1.0).setSystem("http://unitsofmeasure.org").setCode("%"))
+                    .getCode().addCoding().setSystem("http://loinc.org").setCode("4544-3");
+            Bundle bundle = new Bundle().setType(Bundle.BundleType.COLLECTION);
+            bundle.addEntry().setResource(observation);
+            validator().validateWithResult(bundle);
+            log.info("FHIR validator warmed up in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            log.warn("FHIR validator warm-up failed: {}", e.getMessage());
+        }
+    }
+}
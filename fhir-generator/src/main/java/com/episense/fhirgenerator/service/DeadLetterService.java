@@ -0,0 +1,96 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.entity.DeadLetter;
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.model.FailureClass;
+import com.episense.fhirgenerator.repository.DeadLetterRepository;
+import com.episense.fhirgenerator.repository.HemogramaRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Records hemogramas that delivery gave up on and puts them back in the queue on request.
+ *
+ * <p>Terminal rejections (4xx other than 408/429) go here on the first attempt, so a
+ * bundle fhir-server will never accept stops taking sender capacity every retry cycle.
+ * Retryable failures only end up here once the attempt budget is spent.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeadLetterService {
+
+    private static final int EXCERPT_LENGTH = 500;
+    private static final int REQUEUE_PAGE_SIZE = 500;
+
+    private final DeadLetterRepository deadLetterRepository;
+    private final HemogramaRepository hemogramaRepository;
+    private final ShardCoordinator shardCoordinator;
+
+    public DeadLetter record(Hemograma hemograma, FailureClass failureClass, Integer statusCode, String response) {
+        String reason = failureClass == FailureClass.TERMINAL
+                ? "Rejected with status " + statusCode
+                : "Gave up after " + hemograma.getDeliveryAttempts() + " attempts"
+                        + (statusCode != null ? " (last status " + statusCode + ")" : " (no response)");
+        DeadLetter deadLetter = deadLetterRepository.save(DeadLetter.builder()
+                .id(hemograma.getId())
+                .city(hemograma.getCity())
+                .failureClass(failureClass)
+                .statusCode(statusCode)
+                .reason(reason)
+                .responseExcerpt(excerpt(response))
+                .attempts(hemograma.getDeliveryAttempts())
+                .failedAt(Instant.now())
+                .build());
+        log.warn("Dead-lettered hemograma {}: {}", hemograma.getId(), reason);
+        return deadLetter;
+    }
+
+    public List<DeadLetter> list(int limit) {
+        return deadLetterRepository.findAll(CassandraPageRequest.first(limit)).getContent();
+    }
+
+    /**
+     * Moves a dead hemograma back to PENDING in its outbox shard; the retry job sends it
+     * again.
+     *
+     * @return {@code false} if the hemograma is no longer dead (or has expired)
+     */
+    public boolean requeue(UUID id) {
+        boolean requeued = hemogramaRepository.findWithoutBundleByIdIn(List.of(id)).stream()
+                .anyMatch(hemograma -> hemogramaRepository.requeue(id, shardCoordinator.shardOfRecord(id),
+                        hemograma.getExpiresAt()));
+        // Stale entries (requeued elsewhere, or expired) are dropped as well
+        deadLetterRepository.deleteById(id);
+        log.info("Requeue of dead-lettered hemograma {}: {}", id, requeued ? "requeued" : "no longer dead");
+        return requeued;
+    }
+
+    public int requeueAll() {
+        int requeued = 0;
+        Slice<DeadLetter> page;
+        // Every processed entry is deleted, so the first page always holds the next ones
+        while (!(page = deadLetterRepository.findAll(CassandraPageRequest.first(REQUEUE_PAGE_SIZE))).isEmpty()) {
+            for (DeadLetter deadLetter : page) {
+                if (requeue(deadLetter.getId())) {
+                    requeued++;
+                }
+            }
+        }
+        return requeued;
+    }
+
+    private static String excerpt(String response) {
+        if (response == null || response.length() <= EXCERPT_LENGTH) {
+            return response;
+        }
+        return response.substring(0, EXCERPT_LENGTH) + "...";
+    }
+}
@@ -0,0 +1,162 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.LoggingProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logs delivery outcomes on the send path, where one line per record would cost more
+ * CPU and disk than the deliveries themselves at thousands of bundles a minute.
+ *
+ * <p>Every outcome is counted per destination and status code and written as one
+ * summary line per interval. Individual records are only logged for a sample of the
+ * successes and for failures, and those lines share a rate limit; the summary says how
+ * many were dropped, so the counts stay complete even when the lines are not.</p>
+ */
+@Slf4j
+@Service
+public class DeliveryLog {
+
+    private final LoggingProperties loggingProperties;
+    private final TokenBucket recordLines;
+    private final ConcurrentMap<String, StatusCounts> window = new ConcurrentHashMap<>();
+    private final LongAdder suppressed = new LongAdder();
+    private volatile Instant windowStart = Instant.now();
+
+    public DeliveryLog(LoggingProperties loggingProperties) {
+        this.loggingProperties = loggingProperties;
+        this.recordLines = new TokenBucket(loggingProperties.getMaxRecordLinesPerSecond(),
+                loggingProperties.getRecordLineBurst());
+    }
+
+    /**
+     * Response status codes and how often each was seen, safe to update concurrently.
+     * A failure without a response is counted as {@code none}.
+     */
+    public static final class StatusCounts {
+
+        private static final int NO_RESPONSE = -1;
+
+        private final ConcurrentMap<Integer, LongAdder> counts = new ConcurrentHashMap<>();
+
+        public void add(Integer statusCode) {
+            int key = statusCode != null ? statusCode : NO_RESPONSE;
+            LongAdder count = counts.get(key);
+            if (count == null) {
+                count = counts.computeIfAbsent(key, _ -> new LongAdder());
+            }
+            count.increment();
+        }
+
+        /**
+         * Counts so far, by status code in ascending order, resetting them. Updates made
+         * while draining land in this result or the next one.
+         */
+        Map<String, Long> drain() {
+            Map<String, Long> drained = new TreeMap<>();
+            counts.forEach((status, count) -> {
+                long sum = count.sumThenReset();
+                if (sum > 0) {
+                    drained.put(status == NO_RESPONSE ? "none" : status.toString(), sum);
+                }
+            });
+            return drained;
+        }
+
+        @Override
+        public String toString() {
+            Map<String, Long> sorted = new TreeMap<>();
+            counts.forEach((status, count) -> sorted.put(status == NO_RESPONSE ? "none" : status.toString(), count.sum()));
+            return sorted.toString();
+        }
+    }
+
+    public void sent(String destination, UUID hemogramaId, int statusCode) {
+        counts(destination).add(statusCode);
+        if (log.isDebugEnabled() && ThreadLocalRandom.current().nextDouble() < loggingProperties.getSuccessSampleRate()
+                && permitted()) {
+            log.debug("Sent hemograma {} to {} - Status: {}", hemogramaId, destination, statusCode);
+        }
+    }
+
+    public void failed(String destination, UUID hemogramaId, Integer statusCode, String reason) {
+        counts(destination).add(statusCode);
+        if (permitted()) {
+            log.warn("Failed to send hemograma {} to {} - Status: {} ({})", hemogramaId, destination,
+                    statusCode != null ? statusCode : "none", reason);
+        }
+    }
+
+    /**
+     * Logs a failure outside the HTTP exchange, such as a payload that could not be
+     * prepared or a claim that could not be written. Not counted as a delivery outcome.
+     */
+    public void error(UUID hemogramaId, Throwable cause) {
+        if (permitted()) {
+            log.error("Error sending hemograma {}: {}", hemogramaId, cause.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${episense.logging.summary-interval-ms:60000}",
+            initialDelayString = "${episense.logging.summary-interval-ms:60000}")
+    public void logSummary() {
+        String summary = summary();
+        if (summary != null) {
+            log.info(summary);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        logSummary();
+    }
+
+    /**
+     * The summary line of the window since the previous one, starting a new window, or
+     * {@code null} when nothing happened.
+     */
+    String summary() {
+        Instant now = Instant.now();
+        Duration elapsed = Duration.between(windowStart, now);
+        windowStart = now;
+        StringJoiner destinations = new StringJoiner(", ");
+        window.forEach((destination, counts) -> {
+            Map<String, Long> drained = counts.drain();
+            if (!drained.isEmpty()) {
+                destinations.add(destination + " " + drained);
+            }
+        });
+        long dropped = suppressed.sumThenReset();
+        if (destinations.length() == 0 && dropped == 0) {
+            return null;
+        }
+        return String.format("Deliveries in the last %ds: %s (%d record lines suppressed)",
+                elapsed.toSeconds(), destinations.length() > 0 ? destinations : "none", dropped);
+    }
+
+    private StatusCounts counts(String destination) {
+        StatusCounts counts = window.get(destination);
+        return counts != null ? counts : window.computeIfAbsent(destination, _ -> new StatusCounts());
+    }
+
+    private boolean permitted() {
+        if (recordLines.tryAcquire()) {
+            return true;
+        }
+        suppressed.increment();
+        return false;
+    }
+}
@@ -0,0 +1,106 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.repository.HemogramaRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.cassandra.core.cql.QueryOptions;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Bulk export of generated bundles as NDJSON, one compact FHIR bundle per line.
+ *
+ * <p>Rows are paged from ScyllaDB in token order and written as they arrive, so memory
+ * use does not depend on the size of the export. Because the order is stable, a
+ * client whose download broke off resumes by passing the ID of the last bundle it
+ * received ({@code bundle-<id>}) as cursor.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExportService {
+
+    private static final int PAGE_SIZE = 500;
+
+    private final HemogramaRepository hemogramaRepository;
+    private final HemogramaService hemogramaService;
+    private final PayloadEncoder payloadEncoder;
+
+    /**
+     * Writes every bundle collected between {@code from} and {@code to} (inclusive) in
+     * one of {@code cities} ({@code City|UF}, all cities when empty) to {@code out}. Rows
+     * stored before the state column existed have no UF and match by city name alone.
+     *
+     * @param after record of the last bundle already received (see {@link #parseCursor}),
+     *              or {@code null} to start from the beginning
+     * @return the number of bundles written
+     */
+    public long export(LocalDate from, LocalDate to, Set<String> cities, UUID after, OutputStream out) throws IOException {
+        Instant start = from.atStartOfDay(ZoneId.systemDefault()).toInstant();
+        Instant end = to.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant();
+        QueryOptions options = QueryOptions.builder().pageSize(PAGE_SIZE).build();
+
+        Set<String> cityNames = cities.stream().map(ExportService::cityName).collect(Collectors.toSet());
+
+        long startTime = System.currentTimeMillis();
+        long count = 0;
+        try (Stream<Hemograma> rows = after == null
+                ? hemogramaRepository.streamCollectedBetween(start, end, options)
+                : hemogramaRepository.streamCollectedBetweenAfter(after, start, end, options)) {
+            Iterator<Hemograma> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Hemograma hemograma = iterator.next();
+                if (!cities.isEmpty() && !inCities(hemograma, cities, cityNames)) {
+                    continue;
+                }
+                payloadEncoder.compact(hemogramaService.getBundleJson(hemograma).getBytes(StandardCharsets.UTF_8), out);
+                out.write('\n');
+                count++;
+            }
+        }
+        log.info("Exported {} bundles collected {}..{} (cities: {}, cursor: {}) in {}ms",
+                count, from, to, cities.isEmpty() ? "all" : cities, after, System.currentTimeMillis() - startTime);
+        return count;
+    }
+
+    private static boolean inCities(Hemograma hemograma, Set<String> cities, Set<String> cityNames) {
+        if (hemograma.getState() == null) {
+            return cityNames.contains(hemograma.getCity());
+        }
+        return cities.contains(hemograma.getCity() + "|" + hemograma.getState());
+    }
+
+    private static String cityName(String cityKey) {
+        int separator = cityKey.indexOf('|');
+        return separator < 0 ? cityKey : cityKey.substring(0, separator);
+    }
+
+    /**
+     * Accepts a bundle ID ({@code bundle-<uuid>}) or the bare record UUID.
+     *
+     * @throws IllegalArgumentException if the cursor is neither
+     */
+    public static UUID parseCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String id = cursor.startsWith(HemogramaService.BUNDLE_ID_PREFIX) ? cursor.substring(HemogramaService.BUNDLE_ID_PREFIX.length()) : cursor;
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid export cursor: " + cursor, e);
+        }
+    }
+}
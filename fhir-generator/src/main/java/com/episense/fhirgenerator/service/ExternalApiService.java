@@ -2,19 +2,53 @@ package com.episense.fhirgenerator.service;
 
 import com.episense.fhirgenerator.config.ExternalApiProperties;
 import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.entity.MirrorDelivery;
+import com.episense.fhirgenerator.jfr.BundleDeliveryEvent;
+import com.episense.fhirgenerator.model.DeliveryLane;
+import com.episense.fhirgenerator.model.DeliveryState;
+import com.episense.fhirgenerator.model.EncodedPayload;
+import com.episense.fhirgenerator.model.FailureClass;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Delivers stored hemogramas to fhir-server and to any configured mirror endpoints.
+ *
+ * <p>The primary endpoint ({@code external.api.url}) is the one callers wait for; its
+ * delivery state lives on the hemograma row. Each mirror has its own sender pool, lane
+ * queues, rate limit and delivery state in {@code mirror_deliveries}. Bundles are encoded
+ * once and the same bytes are handed to every endpoint. Mirrors are fed without waiting,
+ * and when a mirror's queue is full its share is left to its retry job, so a slow mirror
+ * holds up neither the primary nor the other mirrors. A bundle gets its PENDING row for
+ * a mirror before it is queued there, so the retry job redelivers bundles still queued
+ * when the process dies.</p>
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -22,88 +56,282 @@ public class ExternalApiService {
 
     private static final int THREAD_POOL_SIZE = 10;
     private static final int BATCH_SIZE = 50;
-    private static final int DELAY_BETWEEN_BATCHES_MS = 100;
+    private static final int ID_LOOKUP_SIZE = 100;
+    private static final String PRIMARY = "primary";
 
     private final RestTemplate restTemplate;
     private final HemogramaService hemogramaService;
     private final ExternalApiProperties externalApiProperties;
+    private final PayloadEncoder payloadEncoder;
+    private final MeterRegistry meterRegistry;
+    private final DeadLetterService deadLetterService;
+    private final MirrorDeliveryService mirrorDeliveryService;
+    private final DeliveryLog deliveryLog;
 
-    private ExecutorService executorService;
-    private Semaphore semaphore;
+    private LaneDispatcher laneDispatcher;
+    private List<MirrorEndpoint> mirrors = List.of();
+    private ExecutorService encodingExecutor;
+    private Counter uncompressedBytes;
+    private Counter wireBytes;
+
+    /**
+     * A mirror endpoint with its own sender pool and lane queues.
+     */
+    private record MirrorEndpoint(String name, String url, LaneDispatcher dispatcher, int queueCapacity,
+                                  AtomicBoolean retrying) {
+    }
 
     @PostConstruct
     public void init() {
-        executorService = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
-        semaphore = new Semaphore(THREAD_POOL_SIZE);
-        log.info("ExternalApiService initialized with thread pool size: {}", THREAD_POOL_SIZE);
+        TokenBucket tokenBucket = new TokenBucket(
+                externalApiProperties.getMaxRequestsPerSecond(), externalApiProperties.getRateLimitBurst());
+        laneDispatcher = new LaneDispatcher(externalApiProperties.getLaneWeights(), tokenBucket, THREAD_POOL_SIZE);
+        registerQueueGauges(PRIMARY, laneDispatcher);
+        mirrors = createMirrors();
+        if (isCompressionEnabled() || !mirrors.isEmpty()) {
+            // CPU-bound compaction/compression stays off the blocking I/O threads, and a
+            // bundle shared by several endpoints is encoded before any of them picks it up
+            encodingExecutor = Executors.newFixedThreadPool(Math.max(1, externalApiProperties.getCompressionThreads()));
+        }
+        uncompressedBytes = Counter.builder("episense.delivery.bytes")
+                .tag("kind", "uncompressed")
+                .description("Size of FHIR bundles as stored, before compaction and compression")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        wireBytes = Counter.builder("episense.delivery.bytes")
+                .tag("kind", "wire")
+                .description("Size of FHIR bundle request bodies as sent")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        log.info("ExternalApiService initialized with thread pool size: {}, compression: {}, rate limit: {}/s, lanes: {}, mirrors: {}",
+                THREAD_POOL_SIZE, externalApiProperties.getCompression(),
+                tokenBucket.isUnlimited() ? "unlimited" : externalApiProperties.getMaxRequestsPerSecond(),
+                externalApiProperties.getLaneWeights(), mirrors.stream().map(MirrorEndpoint::name).toList());
+    }
+
+    private List<MirrorEndpoint> createMirrors() {
+        List<MirrorEndpoint> endpoints = new ArrayList<>();
+        externalApiProperties.getMirrors().forEach((name, mirror) -> {
+            if (PRIMARY.equals(name)) {
+                throw new IllegalStateException("external.api.mirrors." + PRIMARY + " is reserved for external.api.url");
+            }
+            if (mirror.getUrl() == null || mirror.getUrl().isBlank()) {
+                throw new IllegalStateException("external.api.mirrors." + name + ".url must be set");
+            }
+            TokenBucket tokenBucket = new TokenBucket(mirror.getMaxRequestsPerSecond(), mirror.getRateLimitBurst());
+            LaneDispatcher dispatcher = new LaneDispatcher(externalApiProperties.getLaneWeights(), tokenBucket,
+                    Math.max(1, mirror.getConcurrency()));
+            registerQueueGauges(name, dispatcher);
+            endpoints.add(new MirrorEndpoint(name, mirror.getUrl(), dispatcher, mirror.getQueueCapacity(), new AtomicBoolean()));
+            log.info("Mirroring bundles to {} at {} (concurrency: {}, queue capacity: {})",
+                    name, mirror.getUrl(), mirror.getConcurrency(), mirror.getQueueCapacity());
+        });
+        return List.copyOf(endpoints);
+    }
+
+    private void registerQueueGauges(String destination, LaneDispatcher dispatcher) {
+        for (DeliveryLane lane : DeliveryLane.values()) {
+            Gauge.builder("episense.delivery.queue", dispatcher, d -> d.queued(lane))
+                    .tag("destination", destination)
+                    .tag("lane", lane.name().toLowerCase())
+                    .description("Hemogramas waiting for a sender thread")
+                    .register(meterRegistry);
+        }
     }
 
     @PreDestroy
     public void destroy() {
-        if (executorService != null) {
-            executorService.shutdown();
+        if (encodingExecutor != null) {
+            encodingExecutor.shutdown();
+        }
+        List<LaneDispatcher> dispatchers = new ArrayList<>();
+        if (laneDispatcher != null) {
+            dispatchers.add(laneDispatcher);
+        }
+        mirrors.forEach(mirror -> dispatchers.add(mirror.dispatcher()));
+        for (LaneDispatcher dispatcher : dispatchers) {
             try {
-                if (!executorService.awaitTermination(30, TimeUnit.SECONDS)) {
-                    executorService.shutdownNow();
-                }
+                dispatcher.shutdown(30, TimeUnit.SECONDS);
             } catch (InterruptedException e) {
-                executorService.shutdownNow();
                 Thread.currentThread().interrupt();
             }
         }
     }
 
     public void sendHemogramas(List<Hemograma> hemogramas) {
-        log.info("Sending {} hemogramas to external API in batches of {} (pool size: {})", 
-                hemogramas.size(), BATCH_SIZE, THREAD_POOL_SIZE);
+        sendHemogramas(hemogramas, DeliveryLane.LIVE);
+    }
+
+    /**
+     * Sends hemogramas through the given priority lane and blocks until the primary
+     * endpoint is done with all of them. Batches bound how much of a large backlog is
+     * queued at once, so other lanes are never stuck behind it.
+     *
+     * <p>The same bundles are also queued for every mirror, on the retry lane too: records
+     * the primary only gets through the retry job, such as those left by a stopped
+     * instance, would otherwise never reach the mirrors. A mirror row is created with an
+     * LWT insert, so records a mirror has seen already are not sent to it again.</p>
+     */
+    public void sendHemogramas(List<Hemograma> hemogramas, DeliveryLane lane) {
+        log.info("Sending {} hemogramas to external API in batches of {} (pool size: {}, lane: {})", 
+                hemogramas.size(), BATCH_SIZE, THREAD_POOL_SIZE, lane);
 
         long startTime = System.currentTimeMillis();
         AtomicInteger successCount = new AtomicInteger(0);
         AtomicInteger errorCount = new AtomicInteger(0);
+        AtomicInteger skippedCount = new AtomicInteger(0);
+        DeliveryLog.StatusCounts statuses = new DeliveryLog.StatusCounts();
+        Duration lease = Duration.ofSeconds(externalApiProperties.getDeliveryLeaseSeconds());
+        boolean fanOut = !mirrors.isEmpty();
 
         // Process in batches to avoid overwhelming the server
         List<List<Hemograma>> batches = partition(hemogramas, BATCH_SIZE);
         
         for (int i = 0; i < batches.size(); i++) {
             List<Hemograma> batch = batches.get(i);
-            log.info("Processing batch {}/{} ({} items)", i + 1, batches.size(), batch.size());
+            log.debug("Processing batch {}/{} ({} items)", i + 1, batches.size(), batch.size());
             
             List<CompletableFuture<Void>> futures = batch.stream()
-                    .map(hemograma -> CompletableFuture.runAsync(() -> {
-                        try {
-                            semaphore.acquire();
-                            try {
-                                sendSingleHemograma(hemograma);
-                                successCount.incrementAndGet();
-                            } finally {
-                                semaphore.release();
-                            }
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                            errorCount.incrementAndGet();
-                        } catch (Exception e) {
-                            errorCount.incrementAndGet();
-                            log.error("Error sending hemograma {}: {}", hemograma.getId(), e.getMessage());
-                        }
-                    }, executorService))
+                    .map(hemograma -> preparePayload(hemograma)
+                            .whenComplete((payload, _) -> {
+                                if (fanOut) {
+                                    offerToMirrors(hemograma, payload, lane);
+                                }
+                            })
+                            .thenCompose(payload -> laneDispatcher.submit(lane, () -> {
+                                // Another worker may be sending the same record right now
+                                if (hemogramaService.claimForDelivery(hemograma, lease)) {
+                                    sendToPrimary(hemograma, payload, lane, statuses);
+                                } else {
+                                    skippedCount.incrementAndGet();
+                                }
+                            }))
+                            .handle((_, e) -> {
+                                if (e == null) {
+                                    successCount.incrementAndGet();
+                                } else {
+                                    errorCount.incrementAndGet();
+                                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                                    // Failed exchanges were logged with their status already
+                                    if (!(cause instanceof RestClientException)) {
+                                        deliveryLog.error(hemograma.getId(), cause);
+                                    }
+                                }
+                                return (Void) null;
+                            }))
                     .toList();
 
             // Wait for batch to complete
             CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
-            
-            // Small delay between batches to let the server breathe
-            if (i < batches.size() - 1) {
-                try {
-                    Thread.sleep(DELAY_BETWEEN_BATCHES_MS);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            }
         }
 
         long duration = System.currentTimeMillis() - startTime;
-        log.info("Finished sending {} hemogramas in {}ms (success: {}, errors: {})", 
-                hemogramas.size(), duration, successCount.get(), errorCount.get());
+        log.info("Finished sending {} hemogramas in {}ms (success: {}, errors: {}, skipped: {}, statuses: {}, lane: {})", 
+                hemogramas.size(), duration, successCount.get() - skippedCount.get(), errorCount.get(),
+                skippedCount.get(), statuses, lane);
+    }
+
+    public boolean isCompressionEnabled() {
+        return externalApiProperties.getCompression() != ExternalApiProperties.Compression.NONE;
+    }
+
+    /**
+     * Starts a retry round for every mirror that has none running: rows left PENDING by
+     * failed attempts or a full queue, and IN_FLIGHT rows whose lease expired. Rounds run
+     * on each mirror's own senders, so the caller does not wait for slow mirrors.
+     *
+     * @return completes once every round started here has finished
+     */
+    public CompletableFuture<Void> retryMirrors() {
+        Duration lease = Duration.ofSeconds(externalApiProperties.getDeliveryLeaseSeconds());
+        List<CompletableFuture<Void>> rounds = new ArrayList<>();
+        for (MirrorEndpoint mirror : mirrors) {
+            if (!mirror.retrying().compareAndSet(false, true)) {
+                log.debug("Previous retry round for mirror {} still running", mirror.name());
+                continue;
+            }
+            try {
+                rounds.add(retryMirror(mirror, lease).whenComplete((_, _) -> mirror.retrying().set(false)));
+            } catch (RuntimeException e) {
+                mirror.retrying().set(false);
+                log.error("Could not start retry round for mirror {}: {}", mirror.name(), e.getMessage());
+            }
+        }
+        return CompletableFuture.allOf(rounds.toArray(new CompletableFuture[0]));
+    }
+
+    private CompletableFuture<Void> retryMirror(MirrorEndpoint mirror, Duration lease) {
+        List<MirrorDelivery> due = mirrorDeliveryService.findOwnedNotSent(mirror.name());
+        if (due.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // Scylla caps IN restrictions on the partition key at 100 values
+        Map<UUID, Hemograma> hemogramas = partition(due.stream().map(MirrorDelivery::getHemogramaId).toList(), ID_LOOKUP_SIZE)
+                .stream()
+                .flatMap(ids -> hemogramaService.findByIds(ids).stream())
+                .collect(Collectors.toMap(Hemograma::getId, Function.identity()));
+        log.info("Retrying {} hemogramas unsent to mirror {} ({} expired)", hemogramas.size(), mirror.name(),
+                due.size() - hemogramas.size());
+
+        List<CompletableFuture<Void>> futures = due.stream()
+                .filter(delivery -> hemogramas.containsKey(delivery.getHemogramaId()))
+                .map(delivery -> {
+                    Hemograma hemograma = hemogramas.get(delivery.getHemogramaId());
+                    return preparePayload(hemograma)
+                            .thenCompose(payload -> mirror.dispatcher().submit(DeliveryLane.RETRY,
+                                    () -> sendToMirror(mirror, hemograma, delivery, payload, DeliveryLane.RETRY, lease)))
+                            .exceptionally(_ -> null);
+                })
+                .toList();
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    public List<String> getMirrorNames() {
+        return mirrors.stream().map(MirrorEndpoint::name).toList();
+    }
+
+    /**
+     * Builds the request body. Uncompressed payloads for the primary alone are prepared
+     * inline; compressed or shared ones on the encoding pool so that sender threads only
+     * do I/O.
+     */
+    private CompletableFuture<EncodedPayload> preparePayload(Hemograma hemograma) {
+        if (encodingExecutor == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.supplyAsync(
+                () -> payloadEncoder.encode(hemogramaService.getBundleBytes(hemograma)), encodingExecutor);
+    }
+
+    /**
+     * Queues an encoded bundle for every mirror without waiting for any of them, once its
+     * PENDING row is written. A mirror whose queue is full, or a bundle that could not be
+     * encoded, is left to the retry job, as is one the mirror already has a row for.
+     */
+    private void offerToMirrors(Hemograma hemograma, EncodedPayload payload, DeliveryLane lane) {
+        Duration lease = Duration.ofSeconds(externalApiProperties.getDeliveryLeaseSeconds());
+        for (MirrorEndpoint mirror : mirrors) {
+            MirrorDelivery pending = defer(mirror, hemograma);
+            if (pending == null) {
+                continue;
+            }
+            if (payload == null || mirror.dispatcher().queued() >= mirror.queueCapacity()) {
+                countMirror(mirror, "deferred");
+                continue;
+            }
+            // Rejected at shutdown: the row is left to the next run
+            mirror.dispatcher().submit(lane, () -> sendToMirror(mirror, hemograma, pending, payload, lane, lease))
+                    .exceptionally(_ -> null);
+        }
+    }
+
+    private MirrorDelivery defer(MirrorEndpoint mirror, Hemograma hemograma) {
+        try {
+            return mirrorDeliveryService.defer(mirror.name(), hemograma.getId());
+        } catch (Exception e) {
+            log.warn("Could not defer hemograma {} for mirror {}: {}", hemograma.getId(), mirror.name(), e.getMessage());
+            return null;
+        }
     }
     
     private <T> List<List<T>> partition(List<T> list, int size) {
@@ -114,32 +342,186 @@ public class ExternalApiService {
         return partitions;
     }
 
-    private void sendSingleHemograma(Hemograma hemograma) {
+    private void sendToPrimary(Hemograma hemograma, EncodedPayload payload, DeliveryLane lane,
+                               DeliveryLog.StatusCounts statuses) {
+        BundleDeliveryEvent event = new BundleDeliveryEvent();
+        boolean exchangeStarted = false;
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
+            if (payload == null) {
+                payload = payloadEncoder.encode(hemogramaService.getBundleBytes(hemograma));
+            }
 
-            HttpEntity<String> request = new HttpEntity<>(hemograma.getFhirBundleJson(), headers);
+            exchangeStarted = true;
+            HttpStatusCode status = post(externalApiProperties.getUrl(), payload, event);
 
-            ResponseEntity<String> response = restTemplate.exchange(
-                    externalApiProperties.getUrl(),
-                    HttpMethod.POST,
-                    request,
-                    String.class);
+            statuses.add(event.statusCode);
+            if (status.is2xxSuccessful()) {
+                deliveryLog.sent(PRIMARY, hemograma.getId(), event.statusCode);
+                hemogramaService.markAsSent(hemograma, event.statusCode);
+            } else {
+                deliveryLog.failed(PRIMARY, hemograma.getId(), event.statusCode, "unexpected status");
+                release(hemograma, event.statusCode, null);
+            }
 
-            if (response.getStatusCode().is2xxSuccessful()) {
-                log.info("Successfully sent hemograma {} - Status: {}",
-                        hemograma.getId(), response.getStatusCode());
-                hemogramaService.markAsSent(hemograma.getId(), response.getStatusCode().value());
+        } catch (Exception e) {
+            if (e instanceof HttpStatusCodeException statusException) {
+                event.statusCode = statusException.getStatusCode().value();
+                statuses.add(event.statusCode);
+                deliveryLog.failed(PRIMARY, hemograma.getId(), event.statusCode, e.getMessage());
+                release(hemograma, event.statusCode, statusException.getResponseBodyAsString());
+            } else if (e instanceof RestClientException) {
+                statuses.add(null);
+                deliveryLog.failed(PRIMARY, hemograma.getId(), null, e.getMessage());
+                release(hemograma, null, e.getMessage());
             } else {
-                log.warn("Failed to send hemograma {} - Status: {}",
-                        hemograma.getId(), response.getStatusCode());
+                // Logged by the caller
+                release(hemograma, null, e.getMessage());
             }
+            throw e;
+        } finally {
+            // Failures while preparing the payload are not part of the exchange timing
+            if (exchangeStarted) {
+                commit(event, hemograma, lane, PRIMARY);
+            }
+        }
+    }
 
+    private void sendToMirror(MirrorEndpoint mirror, Hemograma hemograma, MirrorDelivery observed,
+                              EncodedPayload payload, DeliveryLane lane, Duration lease) {
+        MirrorDelivery delivery = mirrorDeliveryService.claim(mirror.name(), hemograma.getId(), observed, lease);
+        if (delivery == null) {
+            return;
+        }
+        BundleDeliveryEvent event = new BundleDeliveryEvent();
+        try {
+            HttpStatusCode status = post(mirror.url(), payload, event);
+            if (status.is2xxSuccessful()) {
+                deliveryLog.sent(mirror.name(), hemograma.getId(), event.statusCode);
+                mirrorDeliveryService.markAsSent(delivery, event.statusCode);
+                countMirror(mirror, "sent");
+            } else {
+                deliveryLog.failed(mirror.name(), hemograma.getId(), event.statusCode, "unexpected status");
+                releaseMirror(mirror, delivery, event.statusCode);
+            }
         } catch (Exception e) {
-            log.error("Exception sending hemograma {}: {}", hemograma.getId(), e.getMessage());
+            Integer statusCode = null;
+            if (e instanceof HttpStatusCodeException statusException) {
+                statusCode = event.statusCode = statusException.getStatusCode().value();
+            }
+            deliveryLog.failed(mirror.name(), hemograma.getId(), statusCode, e.getMessage());
+            releaseMirror(mirror, delivery, statusCode);
             throw e;
+        } finally {
+            commit(event, hemograma, lane, mirror.name());
+        }
+    }
+
+    /**
+     * POSTs an encoded bundle, timing the exchange in {@code event}.
+     *
+     * <p>The body is streamed from the payload buffer to the connection with a fixed
+     * length, without message converters or an intermediate copy. Success bodies are
+     * never read: closing the response drains them into a scratch buffer so the
+     * connection can be reused. Error bodies are still read by the error handler, for
+     * dead letters.</p>
+     */
+    private HttpStatusCode post(String url, EncodedPayload payload, BundleDeliveryEvent event) {
+        ByteBuffer body = payload.body();
+        int length = body.remaining();
+        uncompressedBytes.increment(payload.rawBytes());
+        wireBytes.increment(length);
+
+        event.payloadSize = payload.rawBytes();
+        event.wireSize = length;
+        event.contentEncoding = payload.contentEncoding();
+        event.begin();
+        HttpStatusCode status = restTemplate.execute(url, HttpMethod.POST, request -> {
+            HttpHeaders headers = request.getHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setContentLength(length);
+            if (payload.contentEncoding() != null) {
+                headers.set(HttpHeaders.CONTENT_ENCODING, payload.contentEncoding());
+            }
+            if (request instanceof StreamingHttpOutputMessage streaming) {
+                streaming.setBody(new StreamingHttpOutputMessage.Body() {
+                    @Override
+                    public void writeTo(OutputStream out) throws IOException {
+                        write(body, out);
+                    }
+
+                    @Override
+                    public boolean repeatable() {
+                        return true;
+                    }
+                });
+            } else {
+                write(body, request.getBody());
+            }
+        }, ClientHttpResponse::getStatusCode);
+        event.end();
+        event.statusCode = status.value();
+        return status;
+    }
+
+    /**
+     * Writes the buffer without moving its position, as it is shared by every endpoint
+     * the bundle goes to.
+     */
+    private static void write(ByteBuffer body, OutputStream out) throws IOException {
+        if (body.hasArray()) {
+            out.write(body.array(), body.arrayOffset() + body.position(), body.remaining());
+        } else {
+            Channels.newChannel(out).write(body.duplicate());
         }
     }
 
+    private static void commit(BundleDeliveryEvent event, Hemograma hemograma, DeliveryLane lane, String destination) {
+        if (event.shouldCommit()) {
+            event.hemogramaId = hemograma.getId().toString();
+            event.city = hemograma.getCity();
+            event.lane = lane.name();
+            event.destination = destination;
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns a failed record to the retry path, or dead-letters it when the failure is
+     * terminal or its attempts are used up.
+     */
+    private void release(Hemograma hemograma, Integer statusCode, String response) {
+        FailureClass failureClass = FailureClass.of(statusCode);
+        try {
+            DeliveryState state = hemogramaService.releaseClaim(hemograma, statusCode, failureClass,
+                    externalApiProperties.getMaxDeliveryAttempts());
+            if (state == DeliveryState.DEAD) {
+                deadLetterService.record(hemograma, failureClass, statusCode, response);
+                meterRegistry.counter("episense.delivery.dead_letters", "class", failureClass.name().toLowerCase()).increment();
+            }
+        } catch (Exception e) {
+            // The lease expires on its own and the retry path reclaims the record
+            log.warn("Could not release hemograma {}: {}", hemograma.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Mirror counterpart of {@link #release}. Mirrors do not write dead letters, which
+     * describe the primary; a DEAD row stays in {@code mirror_deliveries} instead.
+     */
+    private void releaseMirror(MirrorEndpoint mirror, MirrorDelivery delivery, Integer statusCode) {
+        FailureClass failureClass = FailureClass.of(statusCode);
+        try {
+            DeliveryState state = mirrorDeliveryService.releaseClaim(delivery, statusCode, failureClass,
+                    externalApiProperties.getMaxDeliveryAttempts());
+            countMirror(mirror, state == DeliveryState.DEAD ? "dead" : "failed");
+        } catch (Exception e) {
+            log.warn("Could not release hemograma {} at mirror {}: {}", delivery.getHemogramaId(), mirror.name(),
+                    e.getMessage());
+        }
+    }
+
+    private void countMirror(MirrorEndpoint mirror, String outcome) {
+        meterRegistry.counter("episense.delivery.mirror", "mirror", mirror.name(), "outcome", outcome).increment();
+    }
+
 }
@@ -0,0 +1,86 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.AnomalyProperties;
+import com.episense.fhirgenerator.config.SchedulerProperties;
+import com.episense.fhirgenerator.model.GenerationConfig;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Holds the {@link GenerationConfig} in effect and swaps it at runtime.
+ *
+ * <p>Readers take {@link #current()} (a single volatile read) at the start of a batch or
+ * chunk and use it throughout. Updates are validated first and published with a
+ * compare-and-set, so a concurrent update is never lost and an invalid one never
+ * becomes visible.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GenerationConfigService {
+
+    private final AnomalyProperties anomalyProperties;
+    private final SchedulerProperties schedulerProperties;
+
+    private final AtomicReference<Applied> applied = new AtomicReference<>();
+    private GenerationConfig initial;
+
+    /**
+     * A snapshot with the number of updates that led to it.
+     */
+    public record Applied(GenerationConfig config, long version, Instant appliedAt) {
+    }
+
+    @PostConstruct
+    public void init() {
+        initial = GenerationConfig.of(anomalyProperties, schedulerProperties);
+        List<String> problems = initial.validate();
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Invalid generation configuration: " + String.join("; ", problems));
+        }
+        applied.set(new Applied(initial, 0, Instant.now()));
+    }
+
+    public GenerationConfig current() {
+        return applied.get().config();
+    }
+
+    public Applied applied() {
+        return applied.get();
+    }
+
+    /**
+     * Applies {@code change} to the current snapshot and publishes the result.
+     *
+     * @throws IllegalArgumentException listing the problems when the result is invalid
+     */
+    public Applied update(UnaryOperator<GenerationConfig> change) {
+        while (true) {
+            Applied base = applied.get();
+            GenerationConfig candidate = change.apply(base.config());
+            List<String> problems = candidate.validate();
+            if (!problems.isEmpty()) {
+                throw new IllegalArgumentException(String.join("; ", problems));
+            }
+            Applied next = new Applied(candidate, base.version() + 1, Instant.now());
+            if (applied.compareAndSet(base, next)) {
+                log.info("Applied generation config v{}: {}", next.version(), candidate);
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Goes back to the configuration the application started with.
+     */
+    public Applied reset() {
+        return update(_ -> initial);
+    }
+}
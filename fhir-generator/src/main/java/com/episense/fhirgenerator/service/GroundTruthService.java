@@ -0,0 +1,199 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.model.ExpectedAlarm;
+import com.episense.fhirgenerator.model.HemogramaData;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Streaming ground truth of what the backend Shewhart job should detect.
+ *
+ * <p>Every generated hemograma is folded into per-city, per-day weighted counts using
+ * the same weighting as the backend aggregation (SIB_GRAVE = 2, SIB_SUSPEITA = 1).
+ * Each city also keeps a running mean and standard deviation over its active days, so
+ * nothing has to be scanned to answer "should this city-day alarm?".</p>
+ *
+ * <p>The evaluation mirrors {@code ShewhartAnalyzer} in the backend:</p>
+ * <ul>
+ *   <li>Baseline of the 15 days before the target date, missing days counted as zero</li>
+ *   <li>Population standard deviation, UCL = μ + 3σ, LCL = max(0, μ - 3σ)</li>
+ *   <li>A breach above the UCL is an increase, one below the LCL a decrease</li>
+ *   <li>At least 10 weighted cases in the baseline, otherwise insufficient data</li>
+ * </ul>
+ *
+ * <p>State is in memory and only covers records generated since this instance started.</p>
+ */
+@Slf4j
+@Service
+public class GroundTruthService {
+
+    private static final int BASELINE_DAYS = 15;
+    private static final double CONTROL_LIMIT_SIGMA = 3.0;
+    private static final int MINIMUM_CASES_FOR_ANALYSIS = 10;
+
+    private final Map<String, CitySeries> seriesByCity = new ConcurrentHashMap<>();
+
+    /**
+     * Folds a generated record into the ground truth. Records that carry no SIB weight
+     * are ignored, just like in the backend aggregation.
+     */
+    public void record(HemogramaData data) {
+        if (data.getAnomalyType() == null || data.getCollectionDate() == null) {
+            return;
+        }
+        int weight = data.getAnomalyType().getAggregationWeight();
+        if (weight == 0) {
+            return;
+        }
+        seriesByCity.computeIfAbsent(cityKey(data.getCity(), data.getState()), _ -> new CitySeries())
+                .add(data.getCollectionDate().toLocalDate(), weight);
+    }
+
+    /**
+     * Evaluates the expected Shewhart verdict for one city-day in constant time.
+     *
+     * @param city city in {@code City|UF} form, as used in the anomaly configuration
+     */
+    public ExpectedAlarm evaluate(String city, LocalDate targetDate) {
+        CitySeries series = seriesByCity.get(city);
+
+        double sum = 0;
+        double sumSquares = 0;
+        for (int offset = BASELINE_DAYS; offset >= 1; offset--) {
+            long value = series == null ? 0 : series.get(targetDate.minusDays(offset));
+            sum += value;
+            sumSquares += (double) value * value;
+        }
+        double mean = sum / BASELINE_DAYS;
+        double stdDev = Math.sqrt(Math.max(0, sumSquares / BASELINE_DAYS - mean * mean));
+        double ucl = mean + CONTROL_LIMIT_SIGMA * stdDev;
+        double lcl = Math.max(0, mean - CONTROL_LIMIT_SIGMA * stdDev);
+        long observed = series == null ? 0 : series.get(targetDate);
+        boolean insufficientData = sum < MINIMUM_CASES_FOR_ANALYSIS;
+        ExpectedAlarm.Direction direction = null;
+        if (!insufficientData && observed > ucl) {
+            direction = ExpectedAlarm.Direction.INCREASE;
+        } else if (!insufficientData && observed < lcl) {
+            direction = ExpectedAlarm.Direction.DECREASE;
+        }
+
+        return ExpectedAlarm.builder()
+                .city(city)
+                .date(targetDate)
+                .observedValue(observed)
+                .mean(mean)
+                .stdDev(stdDev)
+                .ucl(ucl)
+                .lcl(lcl)
+                .baselineCases((long) sum)
+                .insufficientData(insufficientData)
+                .breach(direction != null)
+                .direction(direction)
+                .build();
+    }
+
+    /**
+     * Lists every city-day whose weighted count should fall outside the control limits,
+     * from the first to the last day of each city. Days without cases are included, as
+     * they are where drops below the LCL show.
+     */
+    public List<ExpectedAlarm> findExpectedAlarms() {
+        List<ExpectedAlarm> alarms = new ArrayList<>();
+        seriesByCity.forEach((city, series) -> {
+            Set<LocalDate> days = series.days();
+            if (days.isEmpty()) {
+                return;
+            }
+            LocalDate last = Collections.max(days);
+            for (LocalDate date = Collections.min(days); !date.isAfter(last); date = date.plusDays(1)) {
+                ExpectedAlarm alarm = evaluate(city, date);
+                if (alarm.isBreach()) {
+                    alarms.add(alarm);
+                }
+            }
+        });
+        alarms.sort(Comparator.comparing(ExpectedAlarm::getCity).thenComparing(ExpectedAlarm::getDate));
+        return alarms;
+    }
+
+    /**
+     * Running statistics per city over the days that had at least one weighted case.
+     */
+    public Map<String, Map<String, Object>> getCityStatistics() {
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        seriesByCity.forEach((city, series) -> {
+            Map<String, Object> cityStats = new LinkedHashMap<>();
+            cityStats.put("activeDays", series.activeDays());
+            cityStats.put("weightedCases", (long) series.sum.sum());
+            cityStats.put("mean", series.mean());
+            cityStats.put("stdDev", series.stdDev());
+            stats.put(city, cityStats);
+        });
+        return stats;
+    }
+
+    public void reset() {
+        seriesByCity.clear();
+        log.info("Ground truth reset");
+    }
+
+    private String cityKey(String city, String state) {
+        return state == null ? city : city + "|" + state;
+    }
+
+    /**
+     * Daily weighted counts of one city plus running sums for its mean and variance.
+     * All updates are lock-free so concurrent generators can record into the same city.
+     */
+    private static final class CitySeries {
+
+        private final Map<LocalDate, AtomicLong> daily = new ConcurrentHashMap<>();
+        private final DoubleAdder sum = new DoubleAdder();
+        private final DoubleAdder sumSquares = new DoubleAdder();
+        private final AtomicLong activeDays = new AtomicLong();
+
+        void add(LocalDate date, int weight) {
+            long updated = daily.computeIfAbsent(date, _ -> new AtomicLong()).addAndGet(weight);
+            long previous = updated - weight;
+            if (previous == 0) {
+                activeDays.incrementAndGet();
+            }
+            sum.add(weight);
+            // (c + w)² - c² keeps Σc² exact without revisiting the day
+            sumSquares.add((double) updated * updated - (double) previous * previous);
+        }
+
+        long get(LocalDate date) {
+            AtomicLong value = daily.get(date);
+            return value == null ? 0 : value.get();
+        }
+
+        Set<LocalDate> days() {
+            return daily.keySet();
+        }
+
+        long activeDays() {
+            return activeDays.get();
+        }
+
+        double mean() {
+            long days = activeDays.get();
+            return days == 0 ? 0 : sum.sum() / days;
+        }
+
+        double stdDev() {
+            long days = activeDays.get();
+            if (days == 0) {
+                return 0;
+            }
+            double mean = sum.sum() / days;
+            return Math.sqrt(Math.max(0, sumSquares.sum() / days - mean * mean));
+        }
+    }
+}
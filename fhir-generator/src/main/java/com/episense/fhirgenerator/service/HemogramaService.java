@@ -1,19 +1,41 @@
 package com.episense.fhirgenerator.service;
 
+import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.parser.IParser;
-import com.episense.fhirgenerator.config.AnomalyProperties;
+import com.episense.fhirgenerator.config.FhirProperties;
+import com.episense.fhirgenerator.config.StorageProperties;
 import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.jfr.BundleCreateEvent;
+import com.episense.fhirgenerator.jfr.BundleEncodeEvent;
+import com.episense.fhirgenerator.jfr.HemogramaBuildEvent;
+import com.episense.fhirgenerator.jfr.HemogramaSaveEvent;
+import com.episense.fhirgenerator.jfr.MarkSentEvent;
+import com.episense.fhirgenerator.model.AnomalyType;
+import com.episense.fhirgenerator.model.BundleProfile;
+import com.episense.fhirgenerator.model.DeliveryState;
+import com.episense.fhirgenerator.model.FailureClass;
+import com.episense.fhirgenerator.model.GenerationConfig;
 import com.episense.fhirgenerator.model.HemogramaData;
+import com.episense.fhirgenerator.model.Municipality;
 import com.episense.fhirgenerator.repository.HemogramaRepository;
+import com.episense.fhirgenerator.service.AnalyteSampler.Columns;
+import com.episense.fhirgenerator.service.PatientRegistry.Analyte;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.r4.model.*;
 import org.springframework.stereotype.Service;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for generating FHIR Hemograma data with automatic anomaly injection.
@@ -38,31 +60,126 @@ import java.util.*;
 @RequiredArgsConstructor
 public class HemogramaService {
 
+    /**
+     * Prefix of {@code Bundle.id}, followed by the hemograma id. fhir-server stores the
+     * bundle as received, so this is what correlates its messages with our records.
+     */
+    public static final String BUNDLE_ID_PREFIX = "bundle-";
+
     private final HemogramaRepository hemogramaRepository;
     private final IParser jsonParser;
-    private final AnomalyProperties anomalyProperties;
+    private final FhirContext fhirContext;
+    private final GenerationConfigService generationConfigService;
+    private final StorageProperties storageProperties;
+    private final GroundTruthService groundTruthService;
+    private final ShardCoordinator shardCoordinator;
+    private final PatientRegistry patientRegistry;
+    private final MunicipalityCatalog municipalityCatalog;
+    private final BundleValidationService bundleValidationService;
+    private final AnalyteSampler analyteSampler;
+    private final SimulationClock simulationClock;
+    private final FhirProperties fhirProperties;
+    private final MeterRegistry meterRegistry;
     
     private final Random random = new Random();
 
+    // HAPI parsers are not thread-safe; generation and lazy encoding run on several threads
+    private final ThreadLocal<IParser> threadParser = ThreadLocal.withInitial(this::newJsonParser);
+
+    private final Map<BundleProfile, DistributionSummary> bundleSizes = new ConcurrentHashMap<>();
+
     public Hemograma generateAndSaveHemograma(String patientId) {
-        return generateAndSaveHemograma(patientId, null, false, LocalDateTime.now());
+        return generateAndSaveHemograma(patientId, null, false, LocalDateTime.now(simulationClock));
     }
 
     public Hemograma generateAndSaveHemograma(String patientId, String city, boolean isSick, LocalDateTime date) {
         // log.info("Generating hemograma for patient: {} (Sick: {})", patientId, isSick);
 
-        HemogramaData data = generateRandomHemogramaData(patientId, city, isSick, date);
-        Bundle bundle = createHemogramaBundle(data);
-        String fhirJson = jsonParser.encodeResourceToString(bundle);
+        // One snapshot for the anomaly type and the values, even if the config changes meanwhile
+        GenerationConfig config = generationConfigService.current();
+        AnomalyType anomalyType = isSick ? determineAnomalyType(config) : AnomalyType.NORMAL;
+        return generateAndSaveHemograma(config, patientId, city, anomalyType, date);
+    }
+
+    /**
+     * Generates and saves a hemograma with an explicit anomaly pattern, bypassing the
+     * configured severe ratio. Used by scenarios that carry their own severity mix.
+     */
+    public Hemograma generateAndSaveHemograma(String patientId, String city, AnomalyType anomalyType, LocalDateTime date) {
+        return generateAndSaveHemograma(generationConfigService.current(), patientId, city, anomalyType, date);
+    }
+
+    private Hemograma generateAndSaveHemograma(GenerationConfig config, String patientId, String city,
+                                               AnomalyType anomalyType, LocalDateTime date) {
+        Columns values = analyteSampler.sample(config, anomalyType, patientRegistry.indexOf(patientId));
+        return saveHemograma(patientId, city, anomalyType, date, values, 0);
+    }
+
+    /**
+     * Generates and saves one hemograma per collection time, all with the same anomaly
+     * pattern, sampling their analyte values in a single pass.
+     */
+    public List<Hemograma> generateAndSaveHemogramas(String patientPrefix, String city, AnomalyType anomalyType,
+                                                     List<LocalDateTime> collectionDates) {
+        int count = collectionDates.size();
+        String[] patientIds = new String[count];
+        String[] cities = new String[count];
+        AnomalyType[] types = new AnomalyType[count];
+        for (int i = 0; i < count; i++) {
+            patientIds[i] = nextPatientId(patientPrefix, city);
+            cities[i] = city;
+            types[i] = anomalyType;
+        }
+        return saveAll(generationConfigService.current(), patientIds, cities, types,
+                collectionDates.toArray(LocalDateTime[]::new));
+    }
+
+    private List<Hemograma> saveAll(GenerationConfig config, String[] patientIds, String[] cities, AnomalyType[] types,
+                                    LocalDateTime[] dates) {
+        int[] patients = new int[patientIds.length];
+        for (int i = 0; i < patients.length; i++) {
+            patients[i] = patientRegistry.indexOf(patientIds[i]);
+        }
+        Columns values = analyteSampler.sample(config, types, patients);
+        List<Hemograma> saved = new ArrayList<>(patients.length);
+        for (int i = 0; i < patients.length; i++) {
+            saved.add(saveHemograma(patientIds[i], cities[i], types[i], dates[i], values, i));
+        }
+        return saved;
+    }
+
+    private Hemograma saveHemograma(String patientId, String city, AnomalyType anomalyType, LocalDateTime date,
+                                    Columns values, int row) {
+        HemogramaBuildEvent buildEvent = new HemogramaBuildEvent();
+        buildEvent.begin();
+        HemogramaData data = generateRandomHemogramaData(patientId, city, anomalyType, date, values, row);
+        buildEvent.end();
+        UUID id = IdGenerator.newId();
+        data.setExamId(id.toString());
+        if (buildEvent.shouldCommit()) {
+            buildEvent.city = data.getCity();
+            buildEvent.anomalyType = anomalyType.name();
+            buildEvent.commit();
+        }
+        
+        // In LAZY mode the bundle is only built if and when the record is sent or exported
+        String fhirJson = null;
+        if (storageProperties.getBundleMode() == StorageProperties.BundleMode.EAGER) {
+            fhirJson = encodeBundle(data, false);
+        }
 
         Hemograma hemograma = Hemograma.builder()
-                .id(UUID.randomUUID())
+                .id(id)
                 .patientId(data.getPatientId())
                 .patientName(data.getPatientName())
                 .city(data.getCity())
+                .state(data.getState())
                 .collectionDate(data.getCollectionDate().atZone(ZoneId.systemDefault()).toInstant())
                 .fhirBundleJson(fhirJson)
                 .sentToApi(false)
+                .deliveryState(DeliveryState.PENDING)
+                .deliveryAttempts(0)
+                .outboxShard(shardCoordinator.shardOfRecord(id))
                 .createdAt(Instant.now())
                 .redBloodCells(data.getRedBloodCells())
                 .hemoglobin(data.getHemoglobin())
@@ -82,7 +199,20 @@ public class HemogramaService {
                 .mpv(data.getMpv())
                 .build();
 
-        return hemogramaRepository.save(hemograma);
+        HemogramaSaveEvent saveEvent = new HemogramaSaveEvent();
+        saveEvent.begin();
+        // insert leaves null columns unset, where save would write a tombstone for each
+        Hemograma saved = hemogramaRepository.insertExpiring(hemograma);
+        saveEvent.end();
+        if (saveEvent.shouldCommit()) {
+            saveEvent.hemogramaId = hemograma.getId().toString();
+            saveEvent.city = data.getCity();
+            saveEvent.anomalyType = anomalyType.name();
+            saveEvent.payloadSize = fhirJson != null ? utf8Length(fhirJson) : 0;
+            saveEvent.commit();
+        }
+        groundTruthService.record(data);
+        return saved;
     }
 
     public List<Hemograma> generateBatch(int count) {
@@ -90,47 +220,54 @@ public class HemogramaService {
     }
 
     public List<Hemograma> generateBatch(int count, String city, double anomalyRate) {
-        return generateBatch(count, city, anomalyRate, LocalDateTime.now());
+        return generateBatch(count, city, anomalyRate, LocalDateTime.now(simulationClock));
     }
 
     public List<Hemograma> generateBatch(int count, String city, double anomalyRate, LocalDateTime date) {
         log.info("Generating batch of {} hemogramas for {} (Anomaly Rate: {})", count, city, anomalyRate);
+        return generateBatch(generationConfigService.current(), "PATIENT", count, city, anomalyRate, date);
+    }
 
-        return java.util.stream.IntStream.range(0, count)
-                .mapToObj(_ -> {
-                    boolean isSick = Math.random() < anomalyRate;
-                    return generateAndSaveHemograma("PATIENT-" + UUID.randomUUID().toString().substring(0, 8), 
-                            city, isSick, date);
-                })
-                .toList();
+    private List<Hemograma> generateBatch(GenerationConfig config, String patientPrefix, int count, String city,
+                                          double anomalyRate, LocalDateTime date) {
+        // Types and patients are decided up front so the values are sampled in one pass
+        String[] patientIds = new String[count];
+        String[] cities = new String[count];
+        AnomalyType[] types = new AnomalyType[count];
+        LocalDateTime[] dates = new LocalDateTime[count];
+        for (int i = 0; i < count; i++) {
+            boolean isSick = Math.random() < anomalyRate;
+            types[i] = isSick ? determineAnomalyType(config) : AnomalyType.NORMAL;
+            patientIds[i] = nextPatientId(patientPrefix, city);
+            cities[i] = city;
+            dates[i] = date;
+        }
+        return saveAll(config, patientIds, cities, types, dates);
     }
 
-    public void generateHistoricalData(String city, int days, int dailyCount) {
-        generateHistoricalData(city, days, dailyCount, 0.01);
+    public List<Hemograma> generateHistoricalData(String city, int days, int dailyCount) {
+        return generateHistoricalData(city, days, dailyCount, 0.01);
     }
 
-    public void generateHistoricalData(String city, int days, int dailyCount, double anomalyRate) {
+    public List<Hemograma> generateHistoricalData(String city, int days, int dailyCount, double anomalyRate) {
         log.info("Generating historical data for {} over {} days ({} per day) with anomaly rate {}", city, days, dailyCount, anomalyRate);
         
-        LocalDateTime endDate = LocalDateTime.now().minusDays(1); // Until yesterday
+        LocalDateTime endDate = LocalDateTime.now(simulationClock).minusDays(1); // Until yesterday
         LocalDateTime startDate = endDate.minusDays(days);
 
+        List<Hemograma> generated = new ArrayList<>(days * dailyCount);
         for (int i = 0; i < days; i++) {
             LocalDateTime currentDate = startDate.plusDays(i);
             // log.info("Generating data for date: {}", currentDate.toLocalDate());
-            
-            java.util.stream.IntStream.range(0, dailyCount).forEach(_ -> {
-                // Use configurable anomaly rate
-                boolean isSick = Math.random() < anomalyRate; 
-                generateAndSaveHemograma("HIST-" + UUID.randomUUID().toString().substring(0, 8), 
-                        city, isSick, currentDate);
-            });
+            // Each day is a chunk: config updates apply from the next day on
+            generated.addAll(generateBatch(generationConfigService.current(), "HIST", dailyCount, city, anomalyRate, currentDate));
         }
         log.info("Historical data generation completed.");
+        return generated;
     }
 
     public List<Hemograma> generateOutbreak(String city, int count, double anomalyRate) {
-        return generateOutbreak(city, count, anomalyRate, LocalDateTime.now());
+        return generateOutbreak(city, count, anomalyRate, LocalDateTime.now(simulationClock));
     }
 
     public List<Hemograma> generateOutbreak(String city, int count, double anomalyRate, LocalDateTime date) {
@@ -138,240 +275,339 @@ public class HemogramaService {
         return generateBatch(count, city, anomalyRate, date);
     }
 
-    public String generateDebugFhir() {
-        HemogramaData data = generateRandomHemogramaData("DEBUG-PATIENT", "Sao Paulo|SP", true, LocalDateTime.now());
-        Bundle bundle = createHemogramaBundle(data);
+    public String generateDebugFhir(BundleProfile profile) {
+        Bundle bundle = BundleTemplate.of(profile != null ? profile : fhirProperties.getBundleProfile())
+                .build(debugHemogramaData(), BUNDLE_ID_PREFIX);
         return jsonParser.setPrettyPrint(true).encodeResourceToString(bundle);
     }
 
-    public List<Hemograma> findNotSent() {
-        return hemogramaRepository.findNotSent();
+    /**
+     * Encoded size in bytes of one sample hemograma under each bundle profile, as it
+     * would be stored and sent.
+     */
+    public Map<BundleProfile, Integer> bundleSizesByProfile() {
+        HemogramaData data = debugHemogramaData();
+        data.setExamId(UUID.randomUUID().toString());
+        IParser parser = fhirContext.newJsonParser();
+        Map<BundleProfile, Integer> sizes = new EnumMap<>(BundleProfile.class);
+        for (BundleProfile profile : BundleProfile.values()) {
+            BundleTemplate template = BundleTemplate.of(profile);
+            String json = parser.setPrettyPrint(template.prettyPrint())
+                    .encodeResourceToString(template.build(data, BUNDLE_ID_PREFIX));
+            sizes.put(profile, utf8Length(json));
+        }
+        return sizes;
     }
 
-    public void markAsSent(UUID id, int statusCode) {
-        log.debug("Marking hemograma {} as sent with status code {}", id, statusCode);
-        hemogramaRepository.updateSentStatus(id, true, Instant.now(), statusCode);
+    private HemogramaData debugHemogramaData() {
+        GenerationConfig config = generationConfigService.current();
+        AnomalyType anomalyType = determineAnomalyType(config);
+        return generateRandomHemogramaData("DEBUG-PATIENT", "Sao Paulo|SP", anomalyType,
+                LocalDateTime.now(simulationClock), analyteSampler.sample(config, anomalyType, -1), 0);
     }
 
-    public List<Hemograma> findByPatientId(String patientId) {
-        return hemogramaRepository.findByPatientId(patientId);
+    /**
+     * Patient for the next exam in a city: a returning patient from the population
+     * registry when the city belongs to it, otherwise a new one-off patient.
+     */
+    public String nextPatientId(String prefix, String city) {
+        String patientId = patientRegistry.samplePatientId(city);
+        return patientId != null ? patientId : IdGenerator.newPatientId(prefix);
     }
 
-    public long count() {
-        return hemogramaRepository.count();
+    /**
+     * Records to send, read without their bundles; see {@link #getBundleBytes}.
+     */
+    public List<Hemograma> findByIds(Collection<UUID> ids) {
+        return bundlesOmitted(hemogramaRepository.findWithoutBundleByIdIn(ids));
     }
 
-    private Bundle createHemogramaBundle(HemogramaData data) {
-        Bundle bundle = new Bundle();
-        bundle.setId("bundle-" + data.getPatientId());
-        bundle.setType(Bundle.BundleType.COLLECTION);
-        bundle.setTimestamp(Date.from(data.getCollectionDate().atZone(ZoneId.systemDefault()).toInstant()));
-
-        String patientUuid = "urn:uuid:patient-" + data.getPatientId();
-        String encounterUuid = "urn:uuid:encounter-" + data.getPatientId();
-        String observationUuid = "urn:uuid:observation-" + data.getPatientId();
+    public List<Hemograma> findNotSent() {
+        return bundlesOmitted(hemogramaRepository.findNotSent());
+    }
 
-        // Patient Resource
-        Patient patient = new Patient();
-        patient.setId("patient-" + data.getPatientId());
-        patient.addName()
-                .setFamily(data.getPatientName())
-                .setUse(org.hl7.fhir.r4.model.HumanName.NameUse.OFFICIAL);
-        
-        // Consolidated address with city, state and country
-        if (data.getCity() != null || data.getState() != null) {
-            Address address = patient.addAddress();
-            address.setUse(Address.AddressUse.HOME);
-            if (data.getCity() != null) {
-                address.setCity(data.getCity());
-            }
-            if (data.getState() != null) {
-                address.setState(data.getState());
+    /**
+     * Unsent records that belong to the outbox shards owned by this instance and can be
+     * claimed now: pending ones and those whose delivery lease has expired. Those about
+     * to run out of their retention TTL are renewed first.
+     */
+    public List<Hemograma> findOwnedNotSent() {
+        Instant now = Instant.now();
+        List<Hemograma> claimable = new ArrayList<>();
+        for (int shard : shardCoordinator.getOwnedOutboxShards()) {
+            for (Hemograma hemograma : bundlesOmitted(hemogramaRepository.findNotSentInShard(shard))) {
+                if (isClaimable(hemograma, now)) {
+                    if (hemogramaRepository.renewIfExpiring(hemograma)) {
+                        log.info("Renewed retention of undelivered hemograma {}", hemograma.getId());
+                    }
+                    claimable.add(hemograma);
+                }
             }
-            address.setCountry("BRA");
-        }
-        bundle.addEntry()
-                .setFullUrl(patientUuid)
-                .setResource(patient);
-
-        // Encounter Resource (clinical context)
-        Encounter encounter = new Encounter();
-        encounter.setId("encounter-" + data.getPatientId());
-        encounter.setStatus(Encounter.EncounterStatus.FINISHED);
-        encounter.getClass_()
-                .setSystem("http://terminology.hl7.org/CodeSystem/v3-ActCode")
-                .setCode("AMB")
-                .setDisplay("ambulatory");
-        encounter.getSubject().setReference(patientUuid);
-        encounter.getPeriod()
-                .setStart(Date.from(data.getCollectionDate().atZone(ZoneId.systemDefault()).toInstant()))
-                .setEnd(Date.from(data.getCollectionDate().plusMinutes(30).atZone(ZoneId.systemDefault()).toInstant()));
-        bundle.addEntry()
-                .setFullUrl(encounterUuid)
-                .setResource(encounter);
-
-        // CBC Panel Observation with components (for Shewhart detection)
-        // This is the KEY change: single Observation with component[] for SIB detection
-        Observation cbcPanel = createCbcPanelObservation(data, patientUuid, encounterUuid);
-        bundle.addEntry()
-                .setFullUrl(observationUuid)
-                .setResource(cbcPanel);
-
-        return bundle;
+        }
+        return claimable;
     }
 
     /**
-     * Creates a CBC (Complete Blood Count) Panel Observation with components.
-     * This structure is required for proper SIB detection (Leucocitose + Neutrofilia)
-     * as the backend consolidates values from component[] array.
+     * Puts unsent records written before outbox shards existed into their shards, where
+     * {@link #findOwnedNotSent} finds them. Reads every unsent record, so it is meant to
+     * run once, at startup.
+     *
+     * @return the number of records assigned a shard
      */
-    private Observation createCbcPanelObservation(HemogramaData data, String patientRef, String encounterRef) {
-        Observation observation = new Observation();
-        observation.setId("cbc-" + data.getPatientId());
-        observation.setStatus(Observation.ObservationStatus.FINAL);
-
-        // Category - Laboratory
-        observation.addCategory()
-                .addCoding()
-                .setSystem("http://terminology.hl7.org/CodeSystem/observation-category")
-                .setCode("laboratory")
-                .setDisplay("Laboratory");
-
-        // Code - CBC Panel (58410-2)
-        observation.getCode()
-                .addCoding()
-                .setSystem("http://loinc.org")
-                .setCode("58410-2")
-                .setDisplay("Complete blood count (CBC) panel - Blood by Automated count");
-        observation.getCode().setText("Complete Blood Count");
-
-        // Subject and Encounter references
-        observation.getSubject().setReference(patientRef);
-        observation.getEncounter().setReference(encounterRef);
-
-        // Effective DateTime
-        observation.setEffective(new DateTimeType(
-                Date.from(data.getCollectionDate().atZone(ZoneId.systemDefault()).toInstant())));
-
-        // === COMPONENTS - Critical for Shewhart SIB detection ===
-        
-        // Leukocytes (6690-2) - Required for Leucocitose detection
-        if (data.getWhiteBloodCells() != null) {
-            addObservationComponent(observation, "6690-2", "Leukocytes [#/volume] in Blood",
-                    data.getWhiteBloodCells(), "cells/uL", 4000.0, 11000.0);
+    public int assignLegacyOutboxShards() {
+        int assigned = 0;
+        for (Hemograma hemograma : hemogramaRepository.findNotSent()) {
+            int shard = hemograma.getDeliveryState() == DeliveryState.DEAD
+                    ? HemogramaRepository.DEAD_SHARD : shardCoordinator.shardOfRecord(hemograma.getId());
+            if (hemograma.getOutboxShard() == null
+                    && hemogramaRepository.assignOutboxShard(hemograma.getId(), shard, hemograma.getExpiresAt())) {
+                assigned++;
+            }
         }
+        return assigned;
+    }
 
-        // Neutrophils (751-8) - Required for Neutrofilia detection
-        if (data.getNeutrophils() != null) {
-            addObservationComponent(observation, "751-8", "Neutrophils [#/volume] in Blood",
-                    data.getNeutrophils(), "cells/uL", 2000.0, 7500.0);
+    public static boolean isClaimable(Hemograma hemograma, Instant now) {
+        DeliveryState state = hemograma.getDeliveryState();
+        if (state == null || state == DeliveryState.PENDING) {
+            return true;
         }
+        return state == DeliveryState.IN_FLIGHT && hemograma.getLeaseUntil() != null
+                && hemograma.getLeaseUntil().isBefore(now);
+    }
 
-        // Band Forms/Stabs (764-1) - Required for Desvio à Esquerda detection
-        if (data.getNeutrophilsBandForm() != null) {
-            addObservationComponent(observation, "764-1", "Neutrophils.band form [#/volume] in Blood",
-                    data.getNeutrophilsBandForm(), "cells/uL", 0.0, 500.0);
+    /**
+     * Atomically takes the delivery lease of a record, as observed in {@code hemograma}.
+     * Fails when the record was claimed, sent or given up by someone else since it was
+     * read, or when it is held under a lease that has not expired yet.
+     */
+    public boolean claimForDelivery(Hemograma hemograma, Duration lease) {
+        Instant now = Instant.now();
+        if (!isClaimable(hemograma, now)) {
+            return false;
         }
+        String owner = shardCoordinator.getInstanceId();
+        Instant leaseUntil = now.plus(lease);
+        int attempts = (hemograma.getDeliveryAttempts() != null ? hemograma.getDeliveryAttempts() : 0) + 1;
+        if (!hemogramaRepository.claim(hemograma.getId(), hemograma.getDeliveryState(), hemograma.getLeaseUntil(),
+                owner, leaseUntil, attempts, hemograma.getExpiresAt())) {
+            return false;
+        }
+        if (hemograma.getDeliveryState() == DeliveryState.IN_FLIGHT) {
+            log.info("Reclaimed hemograma {} after lease of {} expired", hemograma.getId(), hemograma.getLeaseOwner());
+        }
+        hemograma.setDeliveryState(DeliveryState.IN_FLIGHT);
+        hemograma.setLeaseOwner(owner);
+        hemograma.setLeaseUntil(leaseUntil);
+        hemograma.setDeliveryAttempts(attempts);
+        return true;
+    }
 
-        // Additional eritrograma components (for completeness)
-        if (data.getRedBloodCells() != null) {
-            addObservationComponent(observation, "789-8", "Erythrocytes [#/volume] in Blood",
-                    data.getRedBloodCells() * 1000000, "cells/uL", 4500000.0, 5500000.0);
+    /**
+     * Gives a claimed record back after a failed attempt: PENDING for the retry path, or
+     * DEAD after a terminal failure or once {@code maxAttempts} attempts have been made.
+     */
+    public DeliveryState releaseClaim(Hemograma hemograma, Integer statusCode, FailureClass failureClass, int maxAttempts) {
+        int attempts = hemograma.getDeliveryAttempts() != null ? hemograma.getDeliveryAttempts() : 0;
+        DeliveryState next = failureClass == FailureClass.TERMINAL || attempts >= maxAttempts
+                ? DeliveryState.DEAD : DeliveryState.PENDING;
+        // Stored timestamps have millisecond precision, and a later claim compares against this one
+        Instant releasedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        if (!hemogramaRepository.release(hemograma.getId(), hemograma.getLeaseOwner(), next, statusCode, releasedAt,
+                hemograma.getExpiresAt())) {
+            log.warn("Lease on hemograma {} was lost before it could be released", hemograma.getId());
+            return hemograma.getDeliveryState();
         }
-        if (data.getHemoglobin() != null) {
-            addObservationComponent(observation, "718-7", "Hemoglobin [Mass/volume] in Blood",
-                    data.getHemoglobin(), "g/dL", 13.0, 17.0);
+        hemograma.setDeliveryState(next);
+        hemograma.setLeaseUntil(releasedAt);
+        if (next == DeliveryState.DEAD) {
+            hemograma.setOutboxShard(HemogramaRepository.DEAD_SHARD);
         }
-        if (data.getHematocrit() != null) {
-            addObservationComponent(observation, "4544-3", "Hematocrit [Volume Fraction] of Blood",
-                    data.getHematocrit(), "%", 40.0, 50.0);
+        if (statusCode != null) {
+            hemograma.setApiResponseStatus(statusCode);
         }
+        return next;
+    }
 
-        // Platelets
-        if (data.getPlatelets() != null) {
-            addObservationComponent(observation, "777-3", "Platelets [#/volume] in Blood",
-                    data.getPlatelets() * 1000, "cells/uL", 150000.0, 400000.0);
+    public void markAsSent(Hemograma hemograma, int statusCode) {
+        UUID id = hemograma.getId();
+        MarkSentEvent event = new MarkSentEvent();
+        event.begin();
+        hemogramaRepository.markSent(id, Instant.now(), statusCode, hemograma.getExpiresAt());
+        event.end();
+        if (event.shouldCommit()) {
+            event.hemogramaId = id.toString();
+            event.statusCode = statusCode;
+            event.commit();
         }
+    }
 
-        return observation;
+    public List<Hemograma> findByPatientId(String patientId) {
+        List<Hemograma> hemogramas = hemogramaRepository.findByPatientId(patientId);
+        hemogramas.forEach(h -> h.setFhirBundleJson(getBundleJson(h)));
+        return hemogramas;
     }
 
     /**
-     * Adds a component to an Observation with LOINC code, value, unit and reference range.
+     * Returns the FHIR bundle of a stored hemograma, rebuilding it from the numeric
+     * columns when it was persisted in LAZY mode.
      */
-    private void addObservationComponent(Observation observation, String loincCode, String display,
-            Double value, String unit, Double refLow, Double refHigh) {
-        Observation.ObservationComponentComponent component = observation.addComponent();
-        
-        // Code
-        component.getCode()
-                .addCoding()
-                .setSystem("http://loinc.org")
-                .setCode(loincCode)
-                .setDisplay(display);
-
-        // Value
-        Quantity quantity = new Quantity();
-        quantity.setValue(value);
-        quantity.setUnit(unit);
-        quantity.setSystem("http://unitsofmeasure.org");
-        quantity.setCode(unit);
-        component.setValue(quantity);
-
-        // Reference Range
-        if (refLow != null || refHigh != null) {
-            Observation.ObservationReferenceRangeComponent refRange = component.addReferenceRange();
-            if (refLow != null) {
-                refRange.setLow(new Quantity().setValue(refLow).setUnit(unit));
+    public String getBundleJson(Hemograma hemograma) {
+        if (hemograma.getFhirBundleJson() != null) {
+            return hemograma.getFhirBundleJson();
+        }
+        if (hemograma.isBundleOmitted()) {
+            ByteBuffer stored = hemogramaRepository.findBundle(hemograma.getId());
+            if (stored != null) {
+                return StandardCharsets.UTF_8.decode(stored).toString();
             }
-            if (refHigh != null) {
-                refRange.setHigh(new Quantity().setValue(refHigh).setUnit(unit));
+        }
+        return encodeBundle(toHemogramaData(hemograma), true);
+    }
+
+    /**
+     * Returns the FHIR bundle of a hemograma as UTF-8 bytes, for sending. A bundle that is
+     * stored but was not loaded with the record is read as the raw bytes of its column,
+     * so it is never decoded into a {@code String} and encoded back.
+     */
+    public ByteBuffer getBundleBytes(Hemograma hemograma) {
+        if (hemograma.getFhirBundleJson() != null) {
+            return ByteBuffer.wrap(hemograma.getFhirBundleJson().getBytes(StandardCharsets.UTF_8));
+        }
+        if (hemograma.isBundleOmitted()) {
+            ByteBuffer stored = hemogramaRepository.findBundle(hemograma.getId());
+            if (stored != null) {
+                return stored;
             }
         }
+        return ByteBuffer.wrap(encodeBundle(toHemogramaData(hemograma), true).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<Hemograma> bundlesOmitted(List<Hemograma> hemogramas) {
+        hemogramas.forEach(h -> h.setBundleOmitted(true));
+        return hemogramas;
+    }
+
+    public long count() {
+        return hemogramaRepository.count();
     }
 
-    private HemogramaData generateRandomHemogramaData(String patientId, String cityInput, boolean isSick, LocalDateTime date) {
-        String city = cityInput;
-        String state = null;
+    /**
+     * Builds and encodes the bundle under the configured profile, recording both stages
+     * as JFR events and the encoded size per profile.
+     */
+    private String encodeBundle(HemogramaData data, boolean lazy) {
+        BundleTemplate template = BundleTemplate.of(fhirProperties.getBundleProfile());
+        BundleCreateEvent createEvent = new BundleCreateEvent();
+        createEvent.begin();
+        Bundle bundle = template.build(data, BUNDLE_ID_PREFIX);
+        createEvent.end();
+        if (createEvent.shouldCommit()) {
+            createEvent.city = data.getCity();
+            createEvent.anomalyType = data.getAnomalyType() != null ? data.getAnomalyType().name() : null;
+            createEvent.lazy = lazy;
+            createEvent.commit();
+        }
 
-        if (city == null) {
-            // Randomly select from normal cities (anomalies go to outbreak cities)
-            List<String> cities = anomalyProperties.getNormalCities();
-            String selection = cities.get(random.nextInt(cities.size()));
-            String[] parts = selection.split("\\|");
-            city = parts[0];
-            state = parts.length > 1 ? parts[1] : null;
-        } else if (city.contains("|")) {
-            String[] parts = city.split("\\|");
-            city = parts[0];
-            state = parts[1];
+        BundleEncodeEvent encodeEvent = new BundleEncodeEvent();
+        encodeEvent.begin();
+        String json = threadParser.get().setPrettyPrint(template.prettyPrint()).encodeResourceToString(bundle);
+        encodeEvent.end();
+        int size = utf8Length(json);
+        bundleSize(template.profile()).record(size);
+        if (encodeEvent.shouldCommit()) {
+            encodeEvent.city = data.getCity();
+            encodeEvent.payloadSize = size;
+            encodeEvent.profile = template.profile().name();
+            encodeEvent.lazy = lazy;
+            encodeEvent.commit();
         }
 
-        // Determine anomaly type
-        AnomalyType anomalyType = isSick ? determineAnomalyType() : AnomalyType.NORMAL;
-        
-        return buildHemogramaData(patientId, city, state, date, anomalyType);
+        if (bundleValidationService.isEnabled()) {
+            // LAZY rebuilds have no anomaly type; they are a code path of their own
+            String anomaly = data.getAnomalyType() != null ? data.getAnomalyType().name() : "REBUILT";
+            String state = data.getState() != null ? "" : "/no-state";
+            bundleValidationService.offer(json, anomaly + (lazy ? "/lazy" : "/eager") + state
+                    + "/" + template.profile().name().toLowerCase(Locale.ROOT));
+        }
+        return json;
+    }
+
+    private DistributionSummary bundleSize(BundleProfile profile) {
+        return bundleSizes.computeIfAbsent(profile, p -> DistributionSummary.builder("episense.bundle.size")
+                .description("Encoded size of generated FHIR bundles")
+                .baseUnit("bytes")
+                .tag("profile", p.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry));
     }
 
     /**
-     * Enum representing the type of anomaly to generate.
+     * Number of bytes the string takes in UTF-8, without encoding it.
      */
-    public enum AnomalyType {
-        NORMAL,           // All values within normal range
-        LEUCOCYTOSIS,     // Only WBC elevated (triggers LAB_LEUCOCITOSE)
-        SIB_SUSPEITA,     // Leucocytosis + Neutrophilia (triggers SIB_SUSPEITA)
-        SIB_GRAVE         // Neutrophilia + Left Shift (triggers SIB_GRAVE, weight 2x)
+    static int utf8Length(String s) {
+        int bytes = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x800) {
+                // Surrogate pairs are four bytes for two chars
+                bytes += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                bytes++;
+            }
+        }
+        return bytes;
+    }
+
+    private IParser newJsonParser() {
+        return fhirContext.newJsonParser();
+    }
+
+    private HemogramaData toHemogramaData(Hemograma hemograma) {
+        return HemogramaData.builder()
+                .examId(hemograma.getId().toString())
+                .patientId(hemograma.getPatientId())
+                .patientName(hemograma.getPatientName())
+                .city(hemograma.getCity())
+                .state(hemograma.getState())
+                .collectionDate(LocalDateTime.ofInstant(hemograma.getCollectionDate(), ZoneId.systemDefault()))
+                .redBloodCells(hemograma.getRedBloodCells())
+                .hemoglobin(hemograma.getHemoglobin())
+                .hematocrit(hemograma.getHematocrit())
+                .mcv(hemograma.getMcv())
+                .mch(hemograma.getMch())
+                .mchc(hemograma.getMchc())
+                .rdw(hemograma.getRdw())
+                .whiteBloodCells(hemograma.getWhiteBloodCells())
+                .neutrophils(hemograma.getNeutrophils())
+                .neutrophilsBandForm(hemograma.getNeutrophilsBandForm())
+                .lymphocytes(hemograma.getLymphocytes())
+                .monocytes(hemograma.getMonocytes())
+                .eosinophils(hemograma.getEosinophils())
+                .basophils(hemograma.getBasophils())
+                .platelets(hemograma.getPlatelets())
+                .mpv(hemograma.getMpv())
+                .build();
+    }
+
+    private HemogramaData generateRandomHemogramaData(String patientId, String cityInput, AnomalyType anomalyType,
+                                                      LocalDateTime date, Columns values, int row) {
+        // Without a city, pick from the normal catalog by population (anomalies go to outbreak cities)
+        Municipality municipality = cityInput == null
+                ? municipalityCatalog.sampleNormal()
+                : municipalityCatalog.resolve(cityInput);
+
+        return buildHemogramaData(patientId, municipality.city(), municipality.state(), date, anomalyType, values, row);
     }
 
     /**
      * Determines the type of anomaly based on configuration ratios.
      * Priority for severe cases to maximize Shewhart detection (weight 2x).
      */
-    private AnomalyType determineAnomalyType() {
+    private AnomalyType determineAnomalyType(GenerationConfig config) {
         double roll = random.nextDouble();
         
         // severeRatio% of anomalies are SIB_GRAVE (e.g., 30%)
-        if (roll < anomalyProperties.getSevereRatio()) {
+        if (roll < config.severeRatio()) {
             return AnomalyType.SIB_GRAVE;
         }
         // Remaining are SIB_SUSPEITA (e.g., 70%)
@@ -379,73 +615,37 @@ public class HemogramaService {
     }
 
     /**
-     * Builds HemogramaData with specific anomaly pattern.
+     * Builds HemogramaData from one row of sampled analyte values.
      */
-    private HemogramaData buildHemogramaData(String patientId, String city, String state, 
-                                              LocalDateTime date, AnomalyType anomalyType) {
-        HemogramaData.HemogramaDataBuilder builder = HemogramaData.builder()
+    private HemogramaData buildHemogramaData(String patientId, String city, String state,
+                                              LocalDateTime date, AnomalyType anomalyType, Columns values, int row) {
+        return HemogramaData.builder()
                 .patientId(patientId)
                 .patientName("Patient " + patientId)
                 .city(city)
                 .state(state)
                 .collectionDate(date)
+                .anomalyType(anomalyType)
                 // Eritrograma - always normal
-                .redBloodCells(randomInRange(4.5, 5.5))
-                .hemoglobin(randomInRange(13.0, 17.0))
-                .hematocrit(randomInRange(40.0, 50.0))
-                .mcv(randomInRange(80.0, 100.0))
-                .mch(randomInRange(27.0, 32.0))
-                .mchc(randomInRange(32.0, 36.0))
-                .rdw(randomInRange(11.5, 14.5))
+                .redBloodCells(values.get(Analyte.RED_BLOOD_CELLS, row))
+                .hemoglobin(values.get(Analyte.HEMOGLOBIN, row))
+                .hematocrit(values.get(Analyte.HEMATOCRIT, row))
+                .mcv(values.get(Analyte.MCV, row))
+                .mch(values.get(Analyte.MCH, row))
+                .mchc(values.get(Analyte.MCHC, row))
+                .rdw(values.get(Analyte.RDW, row))
                 // Plaquetas - always normal
-                .platelets(randomInRange(150.0, 400.0))
-                .mpv(randomInRange(7.5, 11.5))
-                // Other leucogram
-                .lymphocytes(randomInRange(20.0, 45.0))
-                .monocytes(randomInRange(2.0, 10.0))
-                .eosinophils(randomInRange(1.0, 6.0))
-                .basophils(randomInRange(0.0, 2.0));
-
-        // Apply anomaly-specific values
-        switch (anomalyType) {
-            case SIB_GRAVE:
-                // Neutrophilia (>7500) + Left Shift (>500) = SIB_GRAVE (weight 2x)
-                builder.whiteBloodCells(randomInRange(anomalyProperties.getLeucocytosisRange()[0], 
-                        anomalyProperties.getLeucocytosisRange()[1])) // Can have leucocytosis too
-                       .neutrophils(randomInRange(anomalyProperties.getNeutrophiliaRange()[0], 
-                        anomalyProperties.getNeutrophiliaRange()[1]))
-                       .neutrophilsBandForm(randomInRange(anomalyProperties.getLeftShiftRange()[0], 
-                        anomalyProperties.getLeftShiftRange()[1]));
-                break;
-                
-            case SIB_SUSPEITA:
-                // Leucocytosis (>11000) + Neutrophilia (>7500) = SIB_SUSPEITA
-                builder.whiteBloodCells(randomInRange(anomalyProperties.getLeucocytosisRange()[0], 
-                        anomalyProperties.getLeucocytosisRange()[1]))
-                       .neutrophils(randomInRange(anomalyProperties.getNeutrophiliaRange()[0], 
-                        anomalyProperties.getNeutrophiliaRange()[1]))
-                       .neutrophilsBandForm(randomInRange(0.0, 
-                        anomalyProperties.getLeftShiftThreshold() - 50)); // Below threshold
-                break;
-                
-            case LEUCOCYTOSIS:
-                // Only leucocytosis - less specific
-                builder.whiteBloodCells(randomInRange(anomalyProperties.getLeucocytosisRange()[0], 
-                        anomalyProperties.getLeucocytosisRange()[1]))
-                       .neutrophils(randomInRange(1800.0, anomalyProperties.getNeutrophiliaThreshold() - 100))
-                       .neutrophilsBandForm(randomInRange(0.0, anomalyProperties.getLeftShiftThreshold() - 50));
-                break;
-                
-            case NORMAL:
-            default:
-                // All values within normal range
-                builder.whiteBloodCells(randomInRange(4000.0, anomalyProperties.getLeucocytosisThreshold() - 500))
-                       .neutrophils(randomInRange(1800.0, anomalyProperties.getNeutrophiliaThreshold() - 500))
-                       .neutrophilsBandForm(randomInRange(0.0, anomalyProperties.getLeftShiftThreshold() - 50));
-                break;
-        }
-
-        return builder.build();
+                .platelets(values.get(Analyte.PLATELETS, row))
+                .mpv(values.get(Analyte.MPV, row))
+                // Leucograma - ranges depend on the anomaly pattern
+                .whiteBloodCells(values.get(Analyte.WHITE_BLOOD_CELLS, row))
+                .neutrophils(values.get(Analyte.NEUTROPHILS, row))
+                .neutrophilsBandForm(values.get(Analyte.NEUTROPHILS_BAND_FORM, row))
+                .lymphocytes(values.get(Analyte.LYMPHOCYTES, row))
+                .monocytes(values.get(Analyte.MONOCYTES, row))
+                .eosinophils(values.get(Analyte.EOSINOPHILS, row))
+                .basophils(values.get(Analyte.BASOPHILS, row))
+                .build();
     }
 
     /**
@@ -453,26 +653,37 @@ public class HemogramaService {
      * Used during burst periods to create strong signals for Shewhart detection.
      */
     public List<Hemograma> generateOutbreakBatch(int count, LocalDateTime targetDate) {
-        if (anomalyProperties.getOutbreakCities().isEmpty()) {
+        return generateOutbreakBatch(generationConfigService.current(), count, targetDate);
+    }
+
+    private List<Hemograma> generateOutbreakBatch(GenerationConfig config, int count, LocalDateTime targetDate) {
+        if (config.outbreakCities().isEmpty()) {
             log.warn("No outbreak cities configured. Using default.");
-            return generateBatch(count, "Trindade|GO", anomalyProperties.getBurstAnomalyRate(), targetDate);
+            return generateBatch(config, "PATIENT", count, "Trindade|GO", config.burstAnomalyRate(), targetDate);
         }
 
         List<Hemograma> results = new ArrayList<>();
         
+        // Only cities whose shard this instance owns
+        List<String> outbreakCities = shardCoordinator.filterOwnedCities(config.outbreakCities());
+        if (outbreakCities.isEmpty()) {
+            log.info("No outbreak cities owned by this instance. Skipping outbreak batch.");
+            return results;
+        }
+
         // Distribute cases across outbreak cities
-        int citiesCount = anomalyProperties.getOutbreakCities().size();
+        int citiesCount = outbreakCities.size();
         int casesPerCity = count / citiesCount;
         int remainder = count % citiesCount;
 
         for (int i = 0; i < citiesCount; i++) {
-            String city = anomalyProperties.getOutbreakCities().get(i);
+            String city = outbreakCities.get(i);
             int cityCount = casesPerCity + (i < remainder ? 1 : 0);
             
             log.info("🔥 Generating {} outbreak cases for {} (anomaly rate: {}%)", 
-                    cityCount, city, (int)(anomalyProperties.getBurstAnomalyRate() * 100));
+                    cityCount, city, (int)(config.burstAnomalyRate() * 100));
             
-            results.addAll(generateBatch(cityCount, city, anomalyProperties.getBurstAnomalyRate(), targetDate));
+            results.addAll(generateBatch(config, "PATIENT", cityCount, city, config.burstAnomalyRate(), targetDate));
         }
 
         return results;
@@ -483,31 +694,34 @@ public class HemogramaService {
      * Normal cities get normal rate, outbreak cities get higher rate.
      */
     public List<Hemograma> generateSmartBatch(int count) {
-        return generateSmartBatch(count, LocalDateTime.now());
+        return generateSmartBatch(count, LocalDateTime.now(simulationClock));
     }
 
     public List<Hemograma> generateSmartBatch(int count, LocalDateTime date) {
         List<Hemograma> results = new ArrayList<>();
+        // One snapshot for the whole batch, however the config changes meanwhile
+        GenerationConfig config = generationConfigService.current();
         
         // Determine if this is a burst period
-        boolean isBurst = random.nextDouble() < anomalyProperties.getBurstProbability();
+        boolean isBurst = random.nextDouble() < config.burstProbability();
         
-        if (isBurst && anomalyProperties.isEnabled()) {
+        if (isBurst && config.anomalyEnabled()) {
             log.warn("⚡⚡⚡ BURST PERIOD TRIGGERED - Concentrated outbreak generation ⚡⚡⚡");
             
             // Calculate burst size
-            int burstSize = (int) (count * anomalyProperties.getBurstSizeMultiplier());
+            int burstSize = (int) (count * config.burstSizeMultiplier());
             
-            // Target D-2 for immediate Shewhart analysis
-            LocalDateTime targetDate = LocalDateTime.now().minusDays(2);
+            // Target D-2 for immediate Shewhart analysis; simulations stay in time order
+            // instead, and the analysis windows pick the burst up as the days pass
+            LocalDateTime targetDate = simulationClock.isWarped() ? date : LocalDateTime.now(simulationClock).minusDays(2);
             
-            results.addAll(generateOutbreakBatch(burstSize, targetDate));
+            results.addAll(generateOutbreakBatch(config, burstSize, targetDate));
             
             log.info("Burst complete: {} cases generated for outbreak cities at {}", 
                     results.size(), targetDate.toLocalDate());
         } else {
             // Normal generation with configured anomaly rate
-            results.addAll(generateDistributedBatch(count, date));
+            results.addAll(generateDistributedBatch(config, count, date));
         }
 
         return results;
@@ -517,40 +731,50 @@ public class HemogramaService {
      * Generates batch distributed across normal and outbreak cities.
      * Outbreak cities receive proportionally more anomalies.
      */
-    private List<Hemograma> generateDistributedBatch(int count, LocalDateTime date) {
+    private List<Hemograma> generateDistributedBatch(GenerationConfig config, int count, LocalDateTime date) {
         List<Hemograma> results = new ArrayList<>();
         
-        List<String> allCities = new ArrayList<>();
-        allCities.addAll(anomalyProperties.getNormalCities());
-        allCities.addAll(anomalyProperties.getOutbreakCities());
+        // Only cities whose shard this instance owns, sampled by population
+        MunicipalityCatalog.Selection cities = municipalityCatalog.ownedSelection();
+
+        if (cities.isEmpty()) {
+            log.info("No cities owned by this instance. Skipping distributed batch.");
+            return results;
+        }
         
-        double baseAnomalyRate = anomalyProperties.isEnabled() ? anomalyProperties.getPercentage() : 0.0;
+        double baseAnomalyRate = config.anomalyEnabled() ? config.percentage() : 0.0;
+        String[] patientIds = new String[count];
+        String[] cityKeys = new String[count];
+        AnomalyType[] types = new AnomalyType[count];
+        LocalDateTime[] dates = new LocalDateTime[count];
         
         for (int i = 0; i < count; i++) {
             // Select city - bias towards outbreak cities for anomalous cases
             boolean isAnomaly = random.nextDouble() < baseAnomalyRate;
-            String city;
+            Municipality municipality;
             
-            if (isAnomaly && !anomalyProperties.getOutbreakCities().isEmpty()) {
+            if (isAnomaly && cities.hasOutbreakCities()) {
                 // 70% chance to send anomaly to outbreak city (concentration)
                 if (random.nextDouble() < 0.7) {
-                    city = anomalyProperties.getOutbreakCities()
-                            .get(random.nextInt(anomalyProperties.getOutbreakCities().size()));
+                    municipality = cities.sampleOutbreak();
                 } else {
-                    city = allCities.get(random.nextInt(allCities.size()));
+                    municipality = cities.sampleAny();
                 }
             } else {
-                city = allCities.get(random.nextInt(allCities.size()));
+                municipality = cities.sampleAny();
             }
+            String city = municipality.key();
             
-            results.add(generateAndSaveHemograma(
-                    "PAT-" + UUID.randomUUID().toString().substring(0, 8),
-                    city, isAnomaly, date));
+            patientIds[i] = nextPatientId("PAT", city);
+            cityKeys[i] = city;
+            types[i] = isAnomaly ? determineAnomalyType(config) : AnomalyType.NORMAL;
+            dates[i] = date;
         }
+        results.addAll(saveAll(config, patientIds, cityKeys, types, dates));
 
         // Log summary
         long anomalyCount = results.stream()
-                .filter(h -> h.getWhiteBloodCells() > anomalyProperties.getLeucocytosisThreshold())
+                .filter(h -> h.getWhiteBloodCells() > config.leucocytosisThreshold())
                 .count();
         log.info("Generated {} hemogramas ({} anomalies, {}%)", 
                 results.size(), anomalyCount, (anomalyCount * 100) / Math.max(1, results.size()));
@@ -558,8 +782,4 @@ public class HemogramaService {
         return results;
     }
 
-    private double randomInRange(double min, double max) {
-        return Math.round((min + random.nextDouble() * (max - min)) * 100.0) / 100.0;
-    }
-
 }
@@ -0,0 +1,188 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.model.DeliveryLane;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed pool of sender threads fed from one queue per {@link DeliveryLane}.
+ *
+ * <p>Workers pick the next task with smooth weighted round-robin over the non-empty
+ * lanes, so with weights 8/4/2/1 a live bundle waits behind at most a few backfill
+ * bundles no matter how deep the backfill queue is. Every send first takes a token
+ * from the global {@link TokenBucket}.</p>
+ */
+class LaneDispatcher {
+
+    private final Map<DeliveryLane, Lane> lanes = new EnumMap<>(DeliveryLane.class);
+    private final TokenBucket tokenBucket;
+    private final ExecutorService workers;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private volatile boolean running = true;
+
+    LaneDispatcher(Map<DeliveryLane, Integer> weights, TokenBucket tokenBucket, int threads) {
+        for (DeliveryLane lane : DeliveryLane.values()) {
+            lanes.put(lane, new Lane(Math.max(1, weights.getOrDefault(lane, 1))));
+        }
+        this.tokenBucket = tokenBucket;
+        this.workers = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.execute(this::workLoop);
+        }
+    }
+
+    CompletableFuture<Void> submit(DeliveryLane lane, Runnable send) {
+        Task task = new Task(send, new CompletableFuture<>());
+        lock.lock();
+        try {
+            lanes.get(lane).queue.add(task);
+            workAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        return task.done;
+    }
+
+    int queued(DeliveryLane lane) {
+        lock.lock();
+        try {
+            return lanes.get(lane).queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int queued() {
+        lock.lock();
+        try {
+            int queued = 0;
+            for (Lane lane : lanes.values()) {
+                queued += lane.queue.size();
+            }
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        running = false;
+        lock.lock();
+        try {
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        workers.shutdown();
+        if (!workers.awaitTermination(timeout, unit)) {
+            workers.shutdownNow();
+        }
+        // Release callers still blocked on work that will never be sent
+        lock.lock();
+        try {
+            for (Lane lane : lanes.values()) {
+                Task task;
+                while ((task = lane.queue.poll()) != null) {
+                    task.done.completeExceptionally(new RejectedExecutionException("Delivery stopped"));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void workLoop() {
+        while (running) {
+            try {
+                awaitWork();
+                tokenBucket.acquire();
+                // Pick after the rate-limit wait so newly arrived live work is considered
+                Task task = next();
+                if (task == null) {
+                    continue;
+                }
+                try {
+                    task.send.run();
+                    task.done.complete(null);
+                } catch (Exception e) {
+                    task.done.completeExceptionally(e);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void awaitWork() throws InterruptedException {
+        lock.lock();
+        try {
+            while (running && isEmpty()) {
+                workAvailable.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isEmpty() {
+        for (Lane lane : lanes.values()) {
+            if (!lane.queue.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Smooth weighted round-robin (as in nginx) over the lanes that have work.
+     */
+    private Task next() {
+        lock.lock();
+        try {
+            Lane selected = null;
+            int totalWeight = 0;
+            for (Lane lane : lanes.values()) {
+                if (lane.queue.isEmpty()) {
+                    continue;
+                }
+                lane.current += lane.weight;
+                totalWeight += lane.weight;
+                if (selected == null || lane.current > selected.current) {
+                    selected = lane;
+                }
+            }
+            if (selected == null) {
+                return null;
+            }
+            selected.current -= totalWeight;
+            return selected.queue.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Lane {
+        private final int weight;
+        private final ArrayDeque<Task> queue = new ArrayDeque<>();
+        private int current;
+
+        Lane(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private record Task(Runnable send, CompletableFuture<Void> done) {
+    }
+}
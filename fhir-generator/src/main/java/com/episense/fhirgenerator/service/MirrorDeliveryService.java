@@ -0,0 +1,164 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.entity.MirrorDelivery;
+import com.episense.fhirgenerator.model.DeliveryState;
+import com.episense.fhirgenerator.model.FailureClass;
+import com.episense.fhirgenerator.repository.HemogramaDeliveryRepository;
+import com.episense.fhirgenerator.repository.MirrorDeliveryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Delivery state of hemogramas at mirror endpoints: the per-mirror counterpart of the
+ * claim, release and sent transitions {@link HemogramaService} applies for the primary.
+ *
+ * <p>A hemograma gets a PENDING row for a mirror before it is first queued for, or left
+ * to the retry job of, that mirror, so no bundle is ever waiting without one. Only rows that are not SENT are ever
+ * scanned, so sent-status checks stay cheap however many mirrors are configured.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MirrorDeliveryService {
+
+    private final MirrorDeliveryRepository mirrorDeliveryRepository;
+    private final ShardCoordinator shardCoordinator;
+
+    /**
+     * Rows of a mirror that belong to the outbox shards owned by this instance and can be
+     * claimed now, renewed first when they are about to run out of their retention TTL.
+     */
+    public List<MirrorDelivery> findOwnedNotSent(String mirror) {
+        Instant now = Instant.now();
+        List<MirrorDelivery> claimable = new ArrayList<>();
+        for (int shard : shardCoordinator.getOwnedOutboxShards()) {
+            for (MirrorDelivery delivery : mirrorDeliveryRepository.findNotSentInShard(shard, mirror)) {
+                if (isClaimable(delivery, now)) {
+                    if (mirrorDeliveryRepository.renewIfExpiring(delivery)) {
+                        log.info("Renewed retention of undelivered hemograma {} at mirror {}",
+                                delivery.getHemogramaId(), mirror);
+                    }
+                    claimable.add(delivery);
+                }
+            }
+        }
+        return claimable;
+    }
+
+    /**
+     * Puts the unsent rows of a mirror written before outbox shards existed into their
+     * shards. Like {@link HemogramaService#assignLegacyOutboxShards}, meant for startup.
+     *
+     * @return the number of rows assigned a shard
+     */
+    public int assignLegacyOutboxShards(String mirror) {
+        int assigned = 0;
+        for (MirrorDelivery delivery : mirrorDeliveryRepository.findNotSent(mirror)) {
+            int shard = delivery.getDeliveryState() == DeliveryState.DEAD
+                    ? HemogramaDeliveryRepository.DEAD_SHARD : shardCoordinator.shardOfRecord(delivery.getHemogramaId());
+            if (delivery.getOutboxShard() == null && mirrorDeliveryRepository.assignOutboxShard(delivery.getHemogramaId(),
+                    mirror, shard, delivery.getExpiresAt())) {
+                assigned++;
+            }
+        }
+        return assigned;
+    }
+
+    public List<MirrorDelivery> findNotSent(String mirror) {
+        return mirrorDeliveryRepository.findNotSent(mirror);
+    }
+
+    /**
+     * Takes the delivery lease of a hemograma at a mirror, as {@code observed} when it was
+     * written by {@link #defer} or read by the retry job.
+     *
+     * @return the claimed row, or {@code null} when someone else holds, sent or gave up on it
+     */
+    public MirrorDelivery claim(String mirror, UUID hemogramaId, MirrorDelivery observed, Duration lease) {
+        Instant now = Instant.now();
+        String owner = shardCoordinator.getInstanceId();
+        Instant leaseUntil = now.plus(lease);
+        if (!isClaimable(observed, now)) {
+            return null;
+        }
+        int attempts = (observed.getDeliveryAttempts() != null ? observed.getDeliveryAttempts() : 0) + 1;
+        if (!mirrorDeliveryRepository.claim(hemogramaId, mirror, observed.getDeliveryState(), observed.getLeaseUntil(),
+                owner, leaseUntil, attempts, observed.getExpiresAt())) {
+            return null;
+        }
+        observed.setDeliveryState(DeliveryState.IN_FLIGHT);
+        observed.setLeaseOwner(owner);
+        observed.setLeaseUntil(leaseUntil);
+        observed.setDeliveryAttempts(attempts);
+        return observed;
+    }
+
+    /**
+     * Writes the PENDING row of a hemograma the mirror has not seen, where the retry job
+     * finds it unless a sender claims it first.
+     *
+     * @return the row written, or {@code null} when the mirror already has one
+     */
+    public MirrorDelivery defer(String mirror, UUID hemogramaId) {
+        MirrorDelivery pending = MirrorDelivery.builder()
+                .hemogramaId(hemogramaId)
+                .mirror(mirror)
+                .sent(false)
+                .deliveryState(DeliveryState.PENDING)
+                .deliveryAttempts(0)
+                .outboxShard(shardCoordinator.shardOfRecord(hemogramaId))
+                .build();
+        return mirrorDeliveryRepository.defer(pending) ? pending : null;
+    }
+
+    public void markAsSent(MirrorDelivery delivery, int statusCode) {
+        mirrorDeliveryRepository.markSent(delivery.getHemogramaId(), delivery.getMirror(), Instant.now(), statusCode,
+                delivery.getExpiresAt());
+        delivery.setDeliveryState(DeliveryState.SENT);
+        delivery.setSent(true);
+        delivery.setApiResponseStatus(statusCode);
+    }
+
+    /**
+     * Gives a claimed row back after a failed attempt: PENDING for the retry job, or DEAD
+     * after a terminal failure or once {@code maxAttempts} attempts have been made.
+     */
+    public DeliveryState releaseClaim(MirrorDelivery delivery, Integer statusCode, FailureClass failureClass, int maxAttempts) {
+        int attempts = delivery.getDeliveryAttempts() != null ? delivery.getDeliveryAttempts() : 0;
+        DeliveryState next = failureClass == FailureClass.TERMINAL || attempts >= maxAttempts
+                ? DeliveryState.DEAD : DeliveryState.PENDING;
+        Instant releasedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        if (!mirrorDeliveryRepository.release(delivery.getHemogramaId(), delivery.getMirror(), delivery.getLeaseOwner(),
+                next, statusCode, releasedAt, delivery.getExpiresAt())) {
+            log.warn("Lease on hemograma {} at mirror {} was lost before it could be released",
+                    delivery.getHemogramaId(), delivery.getMirror());
+            return delivery.getDeliveryState();
+        }
+        delivery.setDeliveryState(next);
+        delivery.setLeaseUntil(releasedAt);
+        if (next == DeliveryState.DEAD) {
+            delivery.setOutboxShard(HemogramaDeliveryRepository.DEAD_SHARD);
+        }
+        if (statusCode != null) {
+            delivery.setApiResponseStatus(statusCode);
+        }
+        return next;
+    }
+
+    private static boolean isClaimable(MirrorDelivery delivery, Instant now) {
+        DeliveryState state = delivery.getDeliveryState();
+        if (state == DeliveryState.PENDING) {
+            return true;
+        }
+        return state == DeliveryState.IN_FLIGHT && delivery.getLeaseUntil() != null
+                && delivery.getLeaseUntil().isBefore(now);
+    }
+}
@@ -0,0 +1,206 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.MunicipalityProperties;
+import com.episense.fhirgenerator.model.GenerationConfig;
+import com.episense.fhirgenerator.model.Municipality;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Municipalities that generated exams are assigned to, with constant-time weighted sampling.
+ *
+ * <p>The catalog is either the national list from {@code episense.municipalities.file}
+ * (weighted by population) or the configured {@code normal-cities} (equal weights). Every
+ * {@code City|UF} key is parsed once into a {@link Municipality}; later lookups are a map
+ * hit. Sampling uses precomputed {@link AliasTable}s. Tables are rebuilt only when shard
+ * ownership or the cities of the {@link GenerationConfig} change.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MunicipalityCatalog {
+
+    private final MunicipalityProperties municipalityProperties;
+    private final GenerationConfigService generationConfigService;
+    private final ShardCoordinator shardCoordinator;
+    private final ResourceLoader resourceLoader;
+
+    private final Map<String, Municipality> byKey = new ConcurrentHashMap<>();
+    private List<Municipality> fileCatalog;
+
+    private volatile Cities cities;
+    private volatile Selection ownedSelection;
+    private volatile Set<Integer> ownedSelectionShards;
+    private volatile Cities ownedSelectionCities;
+
+    /**
+     * Municipalities for one pair of configured city lists.
+     */
+    private record Cities(List<String> normalKeys, List<String> outbreakKeys,
+                          List<Municipality> normal, List<Municipality> outbreak, Selection normalSelection) {
+    }
+
+    @PostConstruct
+    public void init() {
+        String file = municipalityProperties.getFile();
+        if (file != null && !file.isBlank()) {
+            fileCatalog = load(resourceLoader.getResource(file));
+            fileCatalog.forEach(m -> byKey.put(m.key(), m));
+            log.info("Loaded {} municipalities ({} inhabitants) from {}",
+                    fileCatalog.size(), fileCatalog.stream().mapToLong(Municipality::population).sum(), file);
+        }
+        cities = buildCities(generationConfigService.current());
+    }
+
+    /**
+     * The municipality for a {@code City|UF} key (or a bare city name), parsed on first use.
+     */
+    public Municipality resolve(String key) {
+        Municipality municipality = byKey.get(key);
+        return municipality != null ? municipality : byKey.computeIfAbsent(key, MunicipalityCatalog::parse);
+    }
+
+    /**
+     * A municipality from the whole catalog, weighted by population.
+     */
+    public Municipality sampleNormal() {
+        return cities().normalSelection().sampleAny();
+    }
+
+    /**
+     * Normal and outbreak municipalities whose shard this instance owns.
+     */
+    public Selection ownedSelection() {
+        // Heartbeats publish a new set instance, so identity is enough to detect a change
+        Set<Integer> shards = shardCoordinator.getOwnedShards();
+        Cities current = cities();
+        Selection selection = ownedSelection;
+        if (selection == null || shards != ownedSelectionShards || current != ownedSelectionCities) {
+            List<Municipality> ownedNormal = current.normal().stream().filter(m -> shardCoordinator.ownsCity(m.key())).toList();
+            List<Municipality> ownedOutbreak = current.outbreak().stream().filter(m -> shardCoordinator.ownsCity(m.key())).toList();
+            selection = new Selection(ownedNormal, ownedOutbreak);
+            ownedSelection = selection;
+            ownedSelectionShards = shards;
+            ownedSelectionCities = current;
+        }
+        return selection;
+    }
+
+    /**
+     * Every municipality exams can be assigned to: the catalog followed by outbreak cities
+     * that are not part of it.
+     */
+    public List<Municipality> all() {
+        Cities current = cities();
+        List<Municipality> all = new ArrayList<>(current.normal());
+        current.outbreak().stream().filter(m -> !all.contains(m)).forEach(all::add);
+        return all;
+    }
+
+    private Cities cities() {
+        // Snapshots share unchanged lists, so identity is enough to detect a change
+        GenerationConfig config = generationConfigService.current();
+        Cities current = cities;
+        if (current.normalKeys() != config.normalCities() || current.outbreakKeys() != config.outbreakCities()) {
+            current = buildCities(config);
+            cities = current;
+        }
+        return current;
+    }
+
+    private Cities buildCities(GenerationConfig config) {
+        List<Municipality> normal = fileCatalog != null
+                ? fileCatalog
+                : config.normalCities().stream().map(this::resolve).toList();
+        List<Municipality> outbreak = config.outbreakCities().stream().map(this::resolve).toList();
+        return new Cities(config.normalCities(), config.outbreakCities(), normal, outbreak, new Selection(normal, List.of()));
+    }
+
+    static Municipality parse(String key) {
+        int separator = key.indexOf('|');
+        String city = separator < 0 ? key : key.substring(0, separator);
+        String state = separator < 0 ? null : key.substring(separator + 1).intern();
+        return new Municipality(key.intern(), city.intern(), state, null, 1);
+    }
+
+    static List<Municipality> load(Resource resource) {
+        List<Municipality> municipalities = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line = reader.readLine(); // header: ibge_code,name,uf,population
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] columns = line.split("[;,]");
+                if (columns.length < 4) {
+                    throw new IllegalArgumentException("Expected ibge_code,name,uf,population but got: " + line);
+                }
+                String city = columns[1].trim().intern();
+                String state = columns[2].trim().intern();
+                municipalities.add(new Municipality((city + "|" + state).intern(), city, state,
+                        columns[0].trim(), Long.parseLong(columns[3].trim())));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read municipalities from " + resource, e);
+        }
+        if (municipalities.isEmpty()) {
+            throw new IllegalArgumentException("No municipalities in " + resource);
+        }
+        return municipalities;
+    }
+
+    /**
+     * Alias tables over a fixed set of municipalities: one over all of them by population,
+     * one over the outbreak cities with equal weights (outbreaks concentrate in those cities
+     * whatever their size).
+     */
+    public static final class Selection {
+
+        private final Municipality[] all;
+        private final AliasTable allTable;
+        private final Municipality[] outbreak;
+
+        Selection(List<Municipality> normal, List<Municipality> outbreak) {
+            List<Municipality> combined = new ArrayList<>(normal);
+            outbreak.stream().filter(m -> !combined.contains(m)).forEach(combined::add);
+            this.all = combined.toArray(Municipality[]::new);
+            this.allTable = all.length > 0
+                    ? new AliasTable(combined.stream().mapToDouble(Municipality::population).toArray())
+                    : null;
+            this.outbreak = outbreak.toArray(Municipality[]::new);
+        }
+
+        public boolean isEmpty() {
+            return all.length == 0;
+        }
+
+        public boolean hasOutbreakCities() {
+            return outbreak.length > 0;
+        }
+
+        public Municipality sampleAny() {
+            return all[allTable.sample(ThreadLocalRandom.current())];
+        }
+
+        public Municipality sampleOutbreak() {
+            return outbreak[ThreadLocalRandom.current().nextInt(outbreak.length)];
+        }
+    }
+}
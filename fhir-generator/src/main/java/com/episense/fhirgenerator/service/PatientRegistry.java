@@ -0,0 +1,189 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.PopulationProperties;
+import com.episense.fhirgenerator.model.Municipality;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Fixed population of synthetic patients that generated exams are drawn from, so the
+ * same patient comes back for repeat exams.
+ *
+ * <h3>Layout</h3>
+ * <p>There are no per-patient objects. A patient is an {@code int} index; patients are
+ * laid out contiguously by home city and, within a city, by visit-frequency tier, so
+ * both are implied by the index range and cost no memory. The only per-patient data
+ * is the baseline of each {@link Analyte}, stored as one byte (its position within the
+ * normal range) in a direct buffer: 16 bytes per patient, 160 MB for 10 million. A
+ * single buffer is indexed by {@code int}, which caps the population at
+ * {@link #MAX_SIZE} patients (2 GB).</p>
+ *
+ * <h3>Sampling</h3>
+ * <p>Tiers follow a heavy-tailed visit pattern: most people have an exam about once a
+ * year, a small chronic group almost weekly. Drawing a tier is a scan of four
+ * cumulative weights and the patient a uniform index within the tier block, so each
+ * draw is constant time regardless of population size.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PatientRegistry {
+
+    /**
+     * Analytes with a per-patient baseline, in storage order.
+     */
+    public enum Analyte {
+        RED_BLOOD_CELLS, HEMOGLOBIN, HEMATOCRIT, MCV, MCH, MCHC, RDW,
+        PLATELETS, MPV, LYMPHOCYTES, MONOCYTES, EOSINOPHILS, BASOPHILS,
+        WHITE_BLOOD_CELLS, NEUTROPHILS, NEUTROPHILS_BAND_FORM
+    }
+
+    private static final String ID_PREFIX = "POP-";
+    private static final int BYTES_PER_PATIENT = Analyte.values().length;
+
+    /**
+     * Largest population whose baselines fit in one direct buffer.
+     */
+    public static final int MAX_SIZE = Integer.MAX_VALUE / BYTES_PER_PATIENT;
+
+    // Visit-frequency tiers: share of the population and exams per year
+    private static final double[] TIER_SHARES = {0.60, 0.30, 0.09, 0.01};
+    private static final double[] TIER_VISITS_PER_YEAR = {1, 4, 12, 52};
+    private static final int TIERS = TIER_SHARES.length;
+
+    private final PopulationProperties populationProperties;
+    private final MunicipalityCatalog municipalityCatalog;
+
+    private final Map<String, Integer> cityIndex = new HashMap<>();
+    private final double[] tierCumulative = new double[TIERS];
+    private int[] blockStart;
+    private ByteBuffer baselines;
+    private int size;
+
+    @PostConstruct
+    public void init() {
+        if (!populationProperties.isEnabled()) {
+            log.info("Patient population disabled: every exam gets a new patient");
+            return;
+        }
+        List<Municipality> municipalities = municipalityCatalog.all();
+        build(municipalities.stream().map(Municipality::key).toList(),
+                municipalities.stream().mapToLong(Municipality::population).toArray(),
+                populationProperties.getSize(), populationProperties.getSeed());
+    }
+
+    void build(List<String> cities, long[] weights, int population, long seed) {
+        if (population <= 0 || population > MAX_SIZE) {
+            throw new IllegalArgumentException("episense.population.size must be between 1 and " + MAX_SIZE
+                    + " but was " + population);
+        }
+        long start = System.currentTimeMillis();
+        double totalWeight = 0;
+        for (long weight : weights) {
+            totalWeight += weight;
+        }
+        blockStart = new int[cities.size() * TIERS + 1];
+        int next = 0;
+        for (int c = 0; c < cities.size(); c++) {
+            cityIndex.put(cities.get(c), c);
+            // Every city gets at least one resident, however small
+            int residents = Math.max(1, (int) Math.round(population * weights[c] / totalWeight));
+            for (int t = 0; t < TIERS; t++) {
+                blockStart[c * TIERS + t] = next;
+                next += t == TIERS - 1
+                        ? residents - (next - blockStart[c * TIERS])
+                        : (int) (residents * TIER_SHARES[t]);
+            }
+        }
+        blockStart[blockStart.length - 1] = next;
+        // One resident per city on top of the configured size can still cross the cap
+        if (next > MAX_SIZE) {
+            throw new IllegalArgumentException("Population of " + next + " patients across " + cities.size()
+                    + " cities exceeds " + MAX_SIZE);
+        }
+        size = next;
+
+        // Probability that an exam comes from each tier: population share times visit rate
+        double total = 0;
+        for (int t = 0; t < TIERS; t++) {
+            total += TIER_SHARES[t] * TIER_VISITS_PER_YEAR[t];
+            tierCumulative[t] = total;
+        }
+        for (int t = 0; t < TIERS; t++) {
+            tierCumulative[t] /= total;
+        }
+
+        // Average of two uniforms: baselines cluster around the middle of the normal range
+        baselines = ByteBuffer.allocateDirect(size * BYTES_PER_PATIENT);
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < size * BYTES_PER_PATIENT; i++) {
+            baselines.put(i, (byte) ((random.nextInt(256) + random.nextInt(256)) >> 1));
+        }
+        log.info("Built population of {} patients in {} cities ({} MB off-heap) in {} ms",
+                size, cities.size(), (long) size * BYTES_PER_PATIENT >> 20, System.currentTimeMillis() - start);
+    }
+
+    public boolean isEnabled() {
+        return baselines != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Draws the patient for the next exam in the given city ({@code City|UF}), weighted
+     * by visit frequency. Returns {@code null} when the city is not part of the population.
+     */
+    public String samplePatientId(String city) {
+        Integer c = city != null && isEnabled() ? cityIndex.get(city) : null;
+        if (c == null) {
+            return null;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double roll = random.nextDouble();
+        int tier = 0;
+        while (tier < TIERS - 1 && roll >= tierCumulative[tier]) {
+            tier++;
+        }
+        int from = blockStart[c * TIERS + tier];
+        int to = blockStart[c * TIERS + tier + 1];
+        if (from == to) {
+            // Tiny populations can leave a tier empty
+            from = blockStart[c * TIERS];
+            to = blockStart[(c + 1) * TIERS];
+        }
+        return ID_PREFIX + Integer.toString(random.nextInt(from, to), 36).toUpperCase();
+    }
+
+    /**
+     * Index of a population patient, or -1 for any other patient ID.
+     */
+    public int indexOf(String patientId) {
+        if (!isEnabled() || patientId == null || !patientId.startsWith(ID_PREFIX)) {
+            return -1;
+        }
+        try {
+            int index = Integer.parseInt(patientId, ID_PREFIX.length(), patientId.length(), 36);
+            return index < size ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The patient's usual position within the normal range of an analyte, from 0 to 1.
+     */
+    public double baseline(int patientIndex, Analyte analyte) {
+        return (baselines.get(patientIndex * BYTES_PER_PATIENT + analyte.ordinal()) & 0xFF) / 255.0;
+    }
+}
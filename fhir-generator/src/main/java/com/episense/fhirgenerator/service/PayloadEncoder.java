@@ -0,0 +1,92 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.ExternalApiProperties;
+import com.episense.fhirgenerator.model.EncodedPayload;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.github.luben.zstd.ZstdOutputStream;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Turns a stored FHIR bundle into the request body sent to fhir-server.
+ *
+ * <p>With compression enabled the pretty-printed JSON is streamed token by token into a
+ * compact generator (no tree is built) that writes straight into a gzip or zstd stream.
+ * Bundles repeat the same LOINC and terminology URLs, so they compress very well.</p>
+ */
+@Service
+@RequiredArgsConstructor
+public class PayloadEncoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int ZSTD_LEVEL = 3;
+
+    private final ExternalApiProperties externalApiProperties;
+
+    /**
+     * Encodes UTF-8 JSON as read from storage. Uncompressed, the buffer itself is the body.
+     */
+    public EncodedPayload encode(ByteBuffer json) {
+        int rawBytes = json.remaining();
+        ExternalApiProperties.Compression compression = externalApiProperties.getCompression();
+        if (compression == ExternalApiProperties.Compression.NONE) {
+            return new EncodedPayload(json, null, rawBytes);
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(rawBytes / 4);
+        try (OutputStream compressed = compress(buffer, compression);
+             JsonParser parser = createParser(json)) {
+            compact(parser, compressed);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not compress FHIR bundle", e);
+        }
+        return new EncodedPayload(ByteBuffer.wrap(buffer.toByteArray()), compression.name().toLowerCase(), rawBytes);
+    }
+
+    private OutputStream compress(OutputStream target, ExternalApiProperties.Compression compression) throws IOException {
+        return switch (compression) {
+            case GZIP -> new GZIPOutputStream(target, 8192);
+            case ZSTD -> new ZstdOutputStream(target, ZSTD_LEVEL);
+            case NONE -> target;
+        };
+    }
+
+    /**
+     * Re-encodes JSON without whitespace, e.g. to turn a stored bundle into one NDJSON line.
+     */
+    void compact(byte[] json, OutputStream target) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            compact(parser, target);
+        }
+    }
+
+    private void compact(JsonParser parser, OutputStream target) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(target)) {
+            // Closing the generator must not close the compression stream before it is finished
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Nor flush it, which would emit a tiny chunk per bundle when exporting
+            generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            while (parser.nextToken() != null) {
+                generator.copyCurrentEvent(parser);
+            }
+        }
+    }
+
+    private static JsonParser createParser(ByteBuffer json) throws IOException {
+        if (json.hasArray()) {
+            return JSON_FACTORY.createParser(json.array(), json.arrayOffset() + json.position(), json.remaining());
+        }
+        byte[] copy = new byte[json.remaining()];
+        json.duplicate().get(copy);
+        return JSON_FACTORY.createParser(copy);
+    }
+}
@@ -0,0 +1,562 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.ReconciliationProperties;
+import com.episense.fhirgenerator.model.ReconciliationReport;
+import com.episense.fhirgenerator.repository.ReconciliationRepository;
+import com.episense.fhirgenerator.repository.ReconciliationRepository.Delivery;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Proves that the hemogramas the generator marked as sent reached fhir-server's
+ * {@code fhir_messages}, matching them on the hemograma id carried in {@code Bundle.id}.
+ *
+ * <p>{@code fhir_messages} is keyed by fhir-server's own UUIDs, so the two tables cannot
+ * be joined by key. A run works like a partitioned hash join over the token ring:</p>
+ * <ol>
+ *   <li>Messages are scanned by token range in parallel. The correlation id is read from
+ *       the start of each payload and the message is appended, as a fixed-size record, to
+ *       the spill file of the hemogramas token slice that id falls in.</li>
+ *   <li>Each hemogramas slice is scanned in parallel into a compact hash table and joined
+ *       with its spill file, which is deleted afterwards.</li>
+ * </ol>
+ * <p>Memory per worker is bounded by one slice of hemogramas and one page of messages,
+ * whatever the size of the tables; disk use by 24 bytes per message.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReconciliationService {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    // Correlation id (two longs) and arrival time
+    private static final int RECORD_BYTES = 24;
+    private static final int SPILL_BUFFER_RECORDS = 170;
+
+    private final ReconciliationRepository reconciliationRepository;
+    private final ReconciliationProperties reconciliationProperties;
+
+    private volatile Run run;
+
+    private static final class Run {
+        final Instant startedAt = Instant.now();
+        final AtomicInteger scannedSlices = new AtomicInteger();
+        final AtomicInteger joinedSlices = new AtomicInteger();
+        volatile ReconciliationReport report;
+        volatile String error;
+        volatile boolean finished;
+    }
+
+    /**
+     * Starts a reconciliation in the background.
+     *
+     * @throws IllegalStateException when one is already running
+     */
+    public synchronized Map<String, Object> start() {
+        if (run != null && !run.finished) {
+            throw new IllegalStateException("A reconciliation is already running");
+        }
+        Run next = new Run();
+        run = next;
+        Thread.ofPlatform().name("reconciliation").daemon().start(() -> {
+            try {
+                next.report = reconcile(next);
+            } catch (RuntimeException e) {
+                log.error("Reconciliation failed", e);
+                next.error = e.getMessage();
+            } finally {
+                next.finished = true;
+            }
+        });
+        return status();
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        Run current = run;
+        status.put("running", current != null && !current.finished);
+        if (current == null) {
+            return status;
+        }
+        status.put("startedAt", current.startedAt);
+        status.put("slices", reconciliationProperties.getSlices());
+        status.put("scannedSlices", current.scannedSlices.get());
+        status.put("joinedSlices", current.joinedSlices.get());
+        if (current.error != null) {
+            status.put("error", current.error);
+        }
+        if (current.report != null) {
+            status.put("report", current.report);
+        }
+        return status;
+    }
+
+    /**
+     * Runs a reconciliation on the calling thread.
+     */
+    public ReconciliationReport reconcile() {
+        return reconcile(new Run());
+    }
+
+    private ReconciliationReport reconcile(Run current) {
+        int slices = Math.max(1, reconciliationProperties.getSlices());
+        // Records marked as sent once messages are being scanned may not show up in the scan
+        Instant cutoff = current.startedAt;
+        Tally total = new Tally(reconciliationProperties.getSampleSize());
+        Path directory = Path.of(reconciliationProperties.getWorkDirectory()).resolve("run-" + cutoff.toEpochMilli());
+        log.info("Reconciling deliveries in {} token slices with {} workers (spill files in {})",
+                slices, reconciliationProperties.getParallelism(), directory);
+
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, reconciliationProperties.getParallelism()));
+        try (SpillFiles spill = new SpillFiles(directory, slices)) {
+            runAll(workers, IntStream.range(0, slices).<Callable<Void>>mapToObj(slice -> () -> {
+                Tally tally = spillMessages(slice, slices, spill);
+                total.merge(tally);
+                current.scannedSlices.incrementAndGet();
+                return null;
+            }).toList());
+            spill.closeWriters();
+
+            runAll(workers, IntStream.range(0, slices).<Callable<Void>>mapToObj(slice -> () -> {
+                Tally tally = join(slice, slices, spill.file(slice), cutoff);
+                total.merge(tally);
+                Files.deleteIfExists(spill.file(slice));
+                current.joinedSlices.incrementAndGet();
+                return null;
+            }).toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not use reconciliation work directory " + directory, e);
+        } finally {
+            workers.shutdownNow();
+        }
+
+        ReconciliationReport report = total.report(current.startedAt, Instant.now(), cutoff, slices);
+        log.info("Reconciliation done in {}: {} sent, {} matched, {} missing, {} duplicated, {} late, p99 latency {} ms",
+                Duration.between(report.startedAt(), report.finishedAt()), report.sent(), report.matched(),
+                report.missing(), report.duplicated(), report.late(), report.latencyMs().get("p99"));
+        return report;
+    }
+
+    private Tally spillMessages(int slice, int slices, SpillFiles spill) {
+        Tally tally = new Tally(reconciliationProperties.getSampleSize());
+        ByteBuffer[] buffers = new ByteBuffer[slices];
+        reconciliationRepository.scanMessages(sliceStart(slice, slices), sliceEnd(slice, slices), message -> {
+            tally.messages++;
+            UUID id = correlationId(message.payload());
+            if (id == null) {
+                tally.uncorrelated++;
+                return;
+            }
+            int target = sliceOf(reconciliationRepository.tokenOf(id), slices);
+            ByteBuffer buffer = buffers[target];
+            if (buffer == null) {
+                buffer = buffers[target] = ByteBuffer.allocate(RECORD_BYTES * SPILL_BUFFER_RECORDS);
+            }
+            buffer.putLong(id.getMostSignificantBits())
+                    .putLong(id.getLeastSignificantBits())
+                    .putLong(message.receivedAt() != null ? message.receivedAt().toEpochMilli() : Long.MIN_VALUE);
+            if (!buffer.hasRemaining()) {
+                spill.append(target, buffer);
+            }
+        });
+        for (int target = 0; target < slices; target++) {
+            if (buffers[target] != null && buffers[target].position() > 0) {
+                spill.append(target, buffers[target]);
+            }
+        }
+        return tally;
+    }
+
+    private Tally join(int slice, int slices, Path spillFile, Instant cutoff) throws IOException {
+        Tally tally = new Tally(reconciliationProperties.getSampleSize());
+        DeliveryTable table = new DeliveryTable();
+        reconciliationRepository.scanHemogramas(sliceStart(slice, slices), sliceEnd(slice, slices), table::add);
+        tally.hemogramas += table.size;
+
+        if (Files.exists(spillFile)) {
+            try (FileChannel channel = FileChannel.open(spillFile, StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * SPILL_BUFFER_RECORDS * 16);
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    while (buffer.remaining() >= RECORD_BYTES) {
+                        int row = table.find(buffer.getLong(), buffer.getLong());
+                        long receivedAt = buffer.getLong();
+                        if (row < 0) {
+                            tally.unknown++;
+                        } else {
+                            table.receive(row, receivedAt);
+                        }
+                    }
+                    buffer.compact();
+                }
+            }
+        }
+
+        long cutoffMillis = cutoff.toEpochMilli();
+        long lateMillis = reconciliationProperties.getLateThreshold().toMillis();
+        for (int row = 0; row < table.capacity; row++) {
+            if (!table.used[row]) {
+                continue;
+            }
+            boolean sent = table.sentAt[row] != DeliveryTable.NONE;
+            int copies = table.copies[row];
+            if (sent && table.sentAt[row] < cutoffMillis) {
+                tally.sent++;
+            }
+            if (copies == 0) {
+                if (sent && table.sentAt[row] < cutoffMillis) {
+                    tally.missing++;
+                    tally.sample("missing", table.id(row));
+                }
+                continue;
+            }
+            if (sent) {
+                tally.matched++;
+            } else {
+                tally.unacknowledged++;
+                tally.sample("unacknowledged", table.id(row));
+            }
+            if (copies > 1) {
+                tally.duplicated++;
+                tally.extraCopies += copies - 1;
+                tally.sample("duplicated", table.id(row));
+            }
+            if (table.createdAt[row] != DeliveryTable.NONE && table.receivedAt[row] != DeliveryTable.NONE) {
+                long latency = Math.max(0, table.receivedAt[row] - table.createdAt[row]);
+                tally.latency.recordValue(latency);
+                if (latency > lateMillis) {
+                    tally.late++;
+                    tally.sample("late", table.id(row));
+                }
+            }
+        }
+        return tally;
+    }
+
+    private static void runAll(ExecutorService workers, List<Callable<Void>> tasks) throws IOException {
+        try {
+            for (Future<Void> future : workers.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reconciliation interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Hemograma id from {@code Bundle.id}, or {@code null} for messages that are not
+     * generator bundles. Only the top-level fields before {@code id} are read.
+     */
+    static UUID correlationId(String payload) {
+        if (payload == null) {
+            return null;
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("id".equals(field)) {
+                    String id = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    if (id == null || !id.startsWith(HemogramaService.BUNDLE_ID_PREFIX)) {
+                        return null;
+                    }
+                    return UUID.fromString(id.substring(HemogramaService.BUNDLE_ID_PREFIX.length()));
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // The ring (Long.MIN_VALUE, Long.MAX_VALUE] is cut into equal slices; MIN_VALUE is never a token
+
+    static long sliceStart(int slice, int slices) {
+        return Long.MIN_VALUE + slice * sliceWidth(slices);
+    }
+
+    static long sliceEnd(int slice, int slices) {
+        return slice == slices - 1 ? Long.MAX_VALUE : sliceStart(slice + 1, slices);
+    }
+
+    static int sliceOf(long token, int slices) {
+        long offset = token - Long.MIN_VALUE - 1;
+        return (int) Math.min(slices - 1, Long.divideUnsigned(offset, sliceWidth(slices)));
+    }
+
+    private static long sliceWidth(int slices) {
+        return Long.divideUnsigned(-1L, slices);
+    }
+
+    /**
+     * Open-addressing table of one slice of hemogramas in parallel primitive arrays, 45
+     * bytes per slot and at most half full.
+     */
+    private static final class DeliveryTable {
+
+        static final long NONE = Long.MIN_VALUE;
+
+        int capacity = 1024;
+        int size;
+        boolean[] used = new boolean[capacity];
+        long[] msb = new long[capacity];
+        long[] lsb = new long[capacity];
+        long[] createdAt = new long[capacity];
+        long[] sentAt = new long[capacity];
+        long[] receivedAt = new long[capacity];
+        int[] copies = new int[capacity];
+
+        void add(Delivery delivery) {
+            if (size * 2 >= capacity) {
+                grow();
+            }
+            long m = delivery.id().getMostSignificantBits();
+            long l = delivery.id().getLeastSignificantBits();
+            int row = slot(m, l);
+            if (!used[row]) {
+                used[row] = true;
+                msb[row] = m;
+                lsb[row] = l;
+                receivedAt[row] = NONE;
+                size++;
+            }
+            createdAt[row] = delivery.createdAt() != null ? delivery.createdAt().toEpochMilli() : NONE;
+            sentAt[row] = delivery.sentAt() != null ? delivery.sentAt().toEpochMilli() : NONE;
+        }
+
+        int find(long m, long l) {
+            int row = slot(m, l);
+            return used[row] ? row : -1;
+        }
+
+        void receive(int row, long millis) {
+            copies[row]++;
+            if (millis != NONE && (receivedAt[row] == NONE || millis < receivedAt[row])) {
+                receivedAt[row] = millis;
+            }
+        }
+
+        UUID id(int row) {
+            return new UUID(msb[row], lsb[row]);
+        }
+
+        // Slot holding the id, or the free slot where it would go
+        private int slot(long m, long l) {
+            int mask = capacity - 1;
+            long h = (m ^ Long.rotateLeft(l, 32)) * 0x9E3779B97F4A7C15L;
+            int row = (int) (h >>> 32) & mask;
+            while (used[row] && (msb[row] != m || lsb[row] != l)) {
+                row = (row + 1) & mask;
+            }
+            return row;
+        }
+
+        private void grow() {
+            boolean[] oldUsed = used;
+            long[] oldMsb = msb, oldLsb = lsb, oldCreated = createdAt, oldSent = sentAt, oldReceived = receivedAt;
+            int[] oldCopies = copies;
+            capacity *= 2;
+            used = new boolean[capacity];
+            msb = new long[capacity];
+            lsb = new long[capacity];
+            createdAt = new long[capacity];
+            sentAt = new long[capacity];
+            receivedAt = new long[capacity];
+            copies = new int[capacity];
+            for (int i = 0; i < oldUsed.length; i++) {
+                if (oldUsed[i]) {
+                    int row = slot(oldMsb[i], oldLsb[i]);
+                    used[row] = true;
+                    msb[row] = oldMsb[i];
+                    lsb[row] = oldLsb[i];
+                    createdAt[row] = oldCreated[i];
+                    sentAt[row] = oldSent[i];
+                    receivedAt[row] = oldReceived[i];
+                    copies[row] = oldCopies[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * One append-only file of 24-byte message records per hemogramas slice. Writers share
+     * the channels and append whole buffers under the channel's lock, so records never
+     * interleave.
+     */
+    private static final class SpillFiles implements AutoCloseable {
+
+        private final Path directory;
+        private final FileChannel[] channels;
+
+        SpillFiles(Path directory, int slices) throws IOException {
+            this.directory = Files.createDirectories(directory);
+            this.channels = new FileChannel[slices];
+        }
+
+        Path file(int slice) {
+            return directory.resolve("slice-" + slice + ".bin");
+        }
+
+        void append(int slice, ByteBuffer buffer) {
+            buffer.flip();
+            try {
+                FileChannel channel = channel(slice);
+                synchronized (channel) {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write " + file(slice), e);
+            }
+            buffer.clear();
+        }
+
+        private FileChannel channel(int slice) throws IOException {
+            synchronized (channels) {
+                if (channels[slice] == null) {
+                    channels[slice] = FileChannel.open(file(slice), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                }
+                return channels[slice];
+            }
+        }
+
+        void closeWriters() throws IOException {
+            synchronized (channels) {
+                for (int i = 0; i < channels.length; i++) {
+                    if (channels[i] != null) {
+                        channels[i].close();
+                        channels[i] = null;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeWriters();
+            // Whatever is left belongs to a failed run
+            for (int slice = 0; slice < channels.length; slice++) {
+                Files.deleteIfExists(file(slice));
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Counts of one slice, merged into the run total.
+     */
+    private static final class Tally {
+
+        final int sampleSize;
+        long hemogramas;
+        long sent;
+        long messages;
+        long uncorrelated;
+        long matched;
+        long missing;
+        long duplicated;
+        long extraCopies;
+        long unacknowledged;
+        long unknown;
+        long late;
+        final Histogram latency = new Histogram(3);
+        final Map<String, List<UUID>> samples = new LinkedHashMap<>();
+
+        Tally(int sampleSize) {
+            this.sampleSize = sampleSize;
+        }
+
+        void sample(String finding, UUID id) {
+            List<UUID> ids = samples.computeIfAbsent(finding, _ -> new ArrayList<>());
+            if (ids.size() < sampleSize) {
+                ids.add(id);
+            }
+        }
+
+        synchronized void merge(Tally other) {
+            hemogramas += other.hemogramas;
+            sent += other.sent;
+            messages += other.messages;
+            uncorrelated += other.uncorrelated;
+            matched += other.matched;
+            missing += other.missing;
+            duplicated += other.duplicated;
+            extraCopies += other.extraCopies;
+            unacknowledged += other.unacknowledged;
+            unknown += other.unknown;
+            late += other.late;
+            latency.add(other.latency);
+            other.samples.forEach((finding, ids) -> ids.forEach(id -> sample(finding, id)));
+        }
+
+        synchronized ReconciliationReport report(Instant startedAt, Instant finishedAt, Instant cutoff, int slices) {
+            Map<String, Long> percentiles = new LinkedHashMap<>();
+            percentiles.put("p50", latency.getValueAtPercentile(50));
+            percentiles.put("p90", latency.getValueAtPercentile(90));
+            percentiles.put("p99", latency.getValueAtPercentile(99));
+            percentiles.put("p999", latency.getValueAtPercentile(99.9));
+            percentiles.put("max", latency.getMaxValue());
+            return ReconciliationReport.builder()
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .cutoff(cutoff)
+                    .slices(slices)
+                    .hemogramas(hemogramas)
+                    .sent(sent)
+                    .messages(messages)
+                    .uncorrelated(uncorrelated)
+                    .matched(matched)
+                    .missing(missing)
+                    .duplicated(duplicated)
+                    .extraCopies(extraCopies)
+                    .unacknowledged(unacknowledged)
+                    .unknown(unknown)
+                    .late(late)
+                    .latencyMs(percentiles)
+                    .samples(Map.copyOf(samples))
+                    .build();
+        }
+    }
+}
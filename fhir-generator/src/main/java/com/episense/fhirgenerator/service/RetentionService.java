@@ -0,0 +1,150 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.RetentionProperties;
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.entity.HemogramaArchive;
+import com.episense.fhirgenerator.repository.HemogramaArchiveRepository;
+import com.episense.fhirgenerator.repository.HemogramaRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.cassandra.core.cql.QueryOptions;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the {@code hemogramas} table bounded. Rows expire under the configured TTL, which
+ * the delivery repositories write with each row and which the retry job renews on rows it
+ * still retries; this service checks the settings on startup and archives each day of
+ * rows to a compressed file before it expires.
+ *
+ * <p>Archival streams rows page by page straight into the file, so memory stays flat
+ * however large a day is. A day is recorded in {@code hemograma_archive} only after its
+ * file is complete; an interrupted run writes the day again on the next run.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RetentionService {
+
+    private static final String TABLE = "hemogramas";
+
+    private final RetentionProperties retentionProperties;
+    private final HemogramaRepository hemogramaRepository;
+    private final HemogramaArchiveRepository hemogramaArchiveRepository;
+    private final ShardCoordinator shardCoordinator;
+    private final ObjectMapper objectMapper;
+
+    @PostConstruct
+    public void init() {
+        if (!retentionProperties.isEnabled()) {
+            return;
+        }
+        if (retentionProperties.isArchiveEnabled()
+                && retentionProperties.getArchiveAfter().plusDays(1).compareTo(retentionProperties.getTtl()) > 0) {
+            throw new IllegalStateException("episense.retention.archive-after (" + retentionProperties.getArchiveAfter()
+                    + ") must be at least one day shorter than episense.retention.ttl (" + retentionProperties.getTtl() + ")");
+        }
+        if (retentionProperties.getRenewBefore().compareTo(retentionProperties.getTtl()) >= 0) {
+            throw new IllegalStateException("episense.retention.renew-before (" + retentionProperties.getRenewBefore()
+                    + ") must be shorter than episense.retention.ttl (" + retentionProperties.getTtl() + ")");
+        }
+        log.info("Retention on {}: ttl={}, renewed {} before expiry while undelivered, archive after={} into {}", TABLE,
+                retentionProperties.getTtl(), retentionProperties.getRenewBefore(),
+                retentionProperties.isArchiveEnabled() ? retentionProperties.getArchiveAfter() : "disabled",
+                retentionProperties.getArchiveDirectory());
+    }
+
+    @Scheduled(cron = "${episense.retention.archive-cron:0 30 3 * * *}", zone = "UTC")
+    public void archiveExpiring() {
+        if (!retentionProperties.isEnabled() || !retentionProperties.isArchiveEnabled() || !shardCoordinator.isPrimary()) {
+            return;
+        }
+        try {
+            Set<LocalDate> archived = hemogramaArchiveRepository.findAll().stream()
+                    .map(HemogramaArchive::getDay)
+                    .collect(Collectors.toSet());
+            for (LocalDate day : pendingDays(Instant.now(), retentionProperties, archived)) {
+                archiveDay(day);
+            }
+        } catch (Exception e) {
+            log.error("Error archiving hemogramas", e);
+        }
+    }
+
+    /**
+     * Writes every row created on {@code day} (UTC) to its archive file.
+     */
+    public HemogramaArchive archiveDay(LocalDate day) throws IOException {
+        Instant from = day.atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant to = day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Path file = Path.of(retentionProperties.getArchiveDirectory()).resolve("hemogramas-" + day + ".ndjson.gz");
+        long start = System.currentTimeMillis();
+        long rows;
+        try (Stream<Hemograma> stream = hemogramaRepository.streamCreatedBetween(from, to,
+                QueryOptions.builder().pageSize(retentionProperties.getArchivePageSize()).build())) {
+            rows = writeArchive(stream, file, objectMapper);
+        }
+        HemogramaArchive archive = hemogramaArchiveRepository.save(HemogramaArchive.builder()
+                .day(day)
+                .file(file.toString())
+                .rowCount(rows)
+                .archivedAt(Instant.now())
+                .build());
+        log.info("Archived {} hemogramas created on {} to {} in {}ms",
+                rows, day, file, System.currentTimeMillis() - start);
+        return archive;
+    }
+
+    /**
+     * Days that are old enough to archive but whose rows have not expired yet, oldest first.
+     */
+    static List<LocalDate> pendingDays(Instant now, RetentionProperties properties, Set<LocalDate> archived) {
+        LocalDate first = LocalDate.ofInstant(now.minus(properties.getTtl()), ZoneOffset.UTC).plusDays(1);
+        Instant cutoff = now.minus(properties.getArchiveAfter());
+        List<LocalDate> days = new ArrayList<>();
+        for (LocalDate day = first; !day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().isAfter(cutoff); day = day.plusDays(1)) {
+            if (!archived.contains(day)) {
+                days.add(day);
+            }
+        }
+        return days;
+    }
+
+    /**
+     * Writes rows as gzip-compressed NDJSON, one entity per line. The file only appears
+     * under its final name once it is complete.
+     */
+    static long writeArchive(Stream<Hemograma> rows, Path file, ObjectMapper objectMapper) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path partial = file.resolveSibling(file.getFileName() + ".part");
+        long count = 0;
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(partial), 64 * 1024)) {
+            Iterator<Hemograma> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(iterator.next()));
+                out.write('\n');
+                count++;
+            }
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+}
@@ -0,0 +1,46 @@
+package com.episense.fhirgenerator.service;
+
+/**
+ * Plain loops implementing {@link AnalyteKernel}, used when the Vector API is unavailable.
+ */
+final class ScalarAnalyteKernel implements AnalyteKernel {
+
+    private static final double TWO_PI = 2 * Math.PI;
+
+    @Override
+    public void normals(long seed, long offset, double[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            long k = 2 * (offset + i);
+            double u1 = AnalyteKernel.toUnit(AnalyteKernel.mix64(seed + k * GOLDEN_GAMMA));
+            double u2 = AnalyteKernel.toUnit(AnalyteKernel.mix64(seed + (k + 1) * GOLDEN_GAMMA));
+            out[i] = Math.sqrt(-2.0 * Math.log(u1)) * Math.cos(TWO_PI * u2);
+        }
+    }
+
+    @Override
+    public void transform(double[] z, double[] out, int length, boolean logNormal, double center, double spread) {
+        if (logNormal) {
+            for (int i = 0; i < length; i++) {
+                out[i] = center * Math.exp(spread * z[i]);
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                out[i] = center + spread * z[i];
+            }
+        }
+    }
+
+    @Override
+    public void multiply(double[] a, double[] b, double[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = a[i] * b[i];
+        }
+    }
+
+    @Override
+    public void round2(double[] values, int length) {
+        for (int i = 0; i < length; i++) {
+            values[i] = (long) (values[i] * 100.0 + 0.5) / 100.0;
+        }
+    }
+}
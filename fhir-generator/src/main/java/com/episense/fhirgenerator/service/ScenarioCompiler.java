@@ -0,0 +1,156 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.model.ScenarioDefinition;
+import com.episense.fhirgenerator.model.ScenarioWorkUnit;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles a {@link ScenarioDefinition} into city-day {@link ScenarioWorkUnit}s.
+ *
+ * <p>For each city and day the expected volume is:</p>
+ * <ul>
+ *   <li><b>Baseline:</b> {@code daily-cases × seasonal(day) × steps(day)}, of which
+ *       {@code anomaly-rate} are anomalous</li>
+ *   <li><b>Waves:</b> new infections of each discrete SIR wave × {@code detection-rate},
+ *       all anomalous and added on top of the baseline</li>
+ *   <li><b>Severity:</b> {@code severe-ratio} of the anomalous cases are SIB_GRAVE</li>
+ * </ul>
+ *
+ * <p>Compilation is deterministic, so a plan can be recompiled to resume a run.</p>
+ */
+@Service
+public class ScenarioCompiler {
+
+    public List<ScenarioWorkUnit> compile(ScenarioDefinition scenario) {
+        validate(scenario);
+
+        int days = (int) ChronoUnit.DAYS.between(scenario.getStartDate(), scenario.getEndDate()) + 1;
+        List<ScenarioWorkUnit> units = new ArrayList<>(days * scenario.getCities().size());
+
+        for (ScenarioDefinition.CityCurve curve : scenario.getCities()) {
+            double[] waveCases = waveIncidence(curve, scenario.getStartDate(), days);
+
+            for (int d = 0; d < days; d++) {
+                LocalDate date = scenario.getStartDate().plusDays(d);
+                ScenarioDefinition.Baseline baseline = curve.getBaseline();
+
+                double baselineTotal = Math.max(0, baseline.getDailyCases()
+                        * seasonalFactor(baseline, date)
+                        * stepFactor(curve, date));
+                double baselineAnomalies = baselineTotal * baseline.getAnomalyRate();
+
+                int anomalies = (int) Math.round(baselineAnomalies + waveCases[d]);
+                int grave = (int) Math.round(anomalies * scenario.getSevereRatio());
+
+                units.add(ScenarioWorkUnit.builder()
+                        .city(curve.getCity())
+                        .date(date)
+                        .normalCount((int) Math.round(baselineTotal - baselineAnomalies))
+                        .suspeitaCount(anomalies - grave)
+                        .graveCount(grave)
+                        .build());
+            }
+        }
+        return units;
+    }
+
+    private double seasonalFactor(ScenarioDefinition.Baseline baseline, LocalDate date) {
+        if (baseline.getSeasonalAmplitude() == 0) {
+            return 1.0;
+        }
+        double phase = 2 * Math.PI * (date.getDayOfYear() - baseline.getSeasonalPeakDay())
+                / baseline.getSeasonalPeriodDays();
+        return 1.0 + baseline.getSeasonalAmplitude() * Math.cos(phase);
+    }
+
+    private double stepFactor(ScenarioDefinition.CityCurve curve, LocalDate date) {
+        double factor = 1.0;
+        for (ScenarioDefinition.Step step : curve.getSteps()) {
+            if (!date.isBefore(step.getDate())) {
+                factor *= step.getMultiplier();
+            }
+        }
+        return factor;
+    }
+
+    /**
+     * Detected cases per scenario day summed over all waves of a city.
+     * Waves that start before the scenario are simulated from their own start.
+     */
+    private double[] waveIncidence(ScenarioDefinition.CityCurve curve, LocalDate scenarioStart, int days) {
+        double[] incidence = new double[days];
+
+        for (ScenarioDefinition.Wave wave : curve.getWaves()) {
+            double n = wave.getPopulation();
+            double gamma = 1.0 / wave.getInfectiousDays();
+            double beta = wave.getR0() * gamma;
+            double s = n - wave.getInitialInfected();
+            double i = wave.getInitialInfected();
+
+            int offset = (int) ChronoUnit.DAYS.between(scenarioStart, wave.getStartDate());
+            for (int t = offset; t < days; t++) {
+                // A discrete step can overshoot once r0 x infectious-days is large; never infect more than are susceptible
+                double newInfections = Math.max(0, Math.min(s, beta * s * i / n));
+                double recoveries = Math.min(i, gamma * i);
+                s -= newInfections;
+                i += newInfections - recoveries;
+                if (t >= 0) {
+                    incidence[t] += newInfections * wave.getDetectionRate();
+                }
+            }
+        }
+        return incidence;
+    }
+
+    private void validate(ScenarioDefinition scenario) {
+        if (scenario.getName() == null || scenario.getName().isBlank()) {
+            throw new IllegalArgumentException("Scenario name is required");
+        }
+        if (scenario.getStartDate() == null || scenario.getEndDate() == null
+                || scenario.getEndDate().isBefore(scenario.getStartDate())) {
+            throw new IllegalArgumentException("Scenario " + scenario.getName() + " needs start-date <= end-date");
+        }
+        if (scenario.getCities().isEmpty()) {
+            throw new IllegalArgumentException("Scenario " + scenario.getName() + " has no cities");
+        }
+        requireRate("severe-ratio", scenario.getSevereRatio());
+
+        for (ScenarioDefinition.CityCurve curve : scenario.getCities()) {
+            if (curve.getCity() == null || curve.getCity().isBlank()) {
+                throw new IllegalArgumentException("Every scenario city needs a 'city' (City|UF)");
+            }
+            requireRate(curve.getCity() + " anomaly-rate", curve.getBaseline().getAnomalyRate());
+            if (curve.getBaseline().getSeasonalPeriodDays() <= 0) {
+                throw new IllegalArgumentException(curve.getCity() + " seasonal-period-days must be > 0");
+            }
+            for (ScenarioDefinition.Wave wave : curve.getWaves()) {
+                if (wave.getStartDate() == null || wave.getPopulation() <= 0 || wave.getInfectiousDays() <= 0
+                        || wave.getR0() <= 0) {
+                    throw new IllegalArgumentException(curve.getCity()
+                            + " waves need start-date, population > 0, infectious-days > 0 and r0 > 0");
+                }
+                if (wave.getInitialInfected() < 0 || wave.getInitialInfected() > wave.getPopulation()) {
+                    throw new IllegalArgumentException(curve.getCity() + " initial-infected must be between 0 and population ("
+                            + wave.getPopulation() + ") but was " + wave.getInitialInfected());
+                }
+                requireRate(curve.getCity() + " detection-rate", wave.getDetectionRate());
+            }
+            for (ScenarioDefinition.Step step : curve.getSteps()) {
+                if (step.getDate() == null) {
+                    throw new IllegalArgumentException(curve.getCity() + " steps need a date");
+                }
+            }
+        }
+    }
+
+    private void requireRate(String name, double value) {
+        if (value < 0.0 || value > 1.0) {
+            throw new IllegalArgumentException(name + " must be between 0.0 and 1.0 but was " + value);
+        }
+    }
+}
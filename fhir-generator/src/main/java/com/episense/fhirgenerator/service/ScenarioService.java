@@ -0,0 +1,180 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.ScenarioProperties;
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.entity.ScenarioProgress;
+import com.episense.fhirgenerator.model.AnomalyType;
+import com.episense.fhirgenerator.model.DeliveryLane;
+import com.episense.fhirgenerator.model.ScenarioDefinition;
+import com.episense.fhirgenerator.model.ScenarioWorkUnit;
+import com.episense.fhirgenerator.repository.ScenarioProgressRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads declarative scenarios from YAML, compiles them into a plan and runs the plan.
+ *
+ * <p>Work units (one city-day each) are generated in parallel. Every finished unit is
+ * recorded in {@code scenario_progress}, so running the same scenario again skips what
+ * is already done and an interrupted run resumes at unit granularity.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ScenarioService {
+
+    private final ScenarioCompiler scenarioCompiler;
+    private final ScenarioProgressRepository scenarioProgressRepository;
+    private final HemogramaService hemogramaService;
+    private final ExternalApiService externalApiService;
+    private final ShardCoordinator shardCoordinator;
+    private final ScenarioProperties scenarioProperties;
+    private final ResourceLoader resourceLoader;
+
+    private final Set<String> runningScenarios = ConcurrentHashMap.newKeySet();
+
+    public ScenarioDefinition load(String name) {
+        Resource resource = resourceLoader.getResource(scenarioProperties.getLocation() + name + ".yml");
+        if (!resource.exists()) {
+            throw new IllegalArgumentException("Scenario not found: " + name);
+        }
+        try {
+            List<PropertySource<?>> sources = new YamlPropertySourceLoader().load(name, resource);
+            ScenarioDefinition scenario = new Binder(ConfigurationPropertySources.from(sources))
+                    .bind("scenario", ScenarioDefinition.class)
+                    .orElseThrow(() -> new IllegalArgumentException("Missing 'scenario' root in " + name));
+            if (scenario.getName() == null) {
+                scenario.setName(name);
+            }
+            return scenario;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not read scenario " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    public List<ScenarioWorkUnit> plan(String name) {
+        return scenarioCompiler.compile(load(name));
+    }
+
+    /**
+     * Runs a scenario, skipping units already completed by an earlier run.
+     *
+     * @param restart forget previous progress and generate every unit again
+     */
+    public Map<String, Object> run(String name, boolean restart) {
+        ScenarioDefinition scenario = load(name);
+        List<ScenarioWorkUnit> plan = scenarioCompiler.compile(scenario);
+
+        if (!runningScenarios.add(scenario.getName())) {
+            throw new IllegalStateException("Scenario " + scenario.getName() + " is already running");
+        }
+        try {
+            return execute(scenario, plan, restart);
+        } finally {
+            runningScenarios.remove(scenario.getName());
+        }
+    }
+
+    private Map<String, Object> execute(ScenarioDefinition scenario, List<ScenarioWorkUnit> plan, boolean restart) {
+        if (restart) {
+            scenarioProgressRepository.deleteByScenario(scenario.getName());
+        }
+        Set<String> completed = new HashSet<>();
+        for (ScenarioProgress progress : scenarioProgressRepository.findByScenario(scenario.getName())) {
+            completed.add(unitKey(progress.getCity(), progress.getDay()));
+        }
+
+        List<ScenarioWorkUnit> pending = plan.stream()
+                .filter(unit -> !completed.contains(unitKey(unit.getCity(), unit.getDate())))
+                .filter(unit -> shardCoordinator.ownsCity(unit.getCity()))
+                .toList();
+
+        log.info("Running scenario '{}': {} units planned, {} already completed, {} to generate ({} parallel)",
+                scenario.getName(), plan.size(), completed.size(), pending.size(), scenarioProperties.getParallelism());
+
+        long startTime = System.currentTimeMillis();
+        AtomicInteger generated = new AtomicInteger();
+        AtomicInteger failedUnits = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, scenarioProperties.getParallelism()));
+
+        try {
+            List<CompletableFuture<Void>> futures = pending.stream()
+                    .map(unit -> CompletableFuture.runAsync(() -> {
+                        try {
+                            generated.addAndGet(runUnit(scenario.getName(), unit));
+                        } catch (Exception e) {
+                            failedUnits.incrementAndGet();
+                            log.error("Scenario '{}' unit {} {} failed: {}",
+                                    scenario.getName(), unit.getCity(), unit.getDate(), e.getMessage());
+                        }
+                    }, executor))
+                    .toList();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } finally {
+            executor.shutdown();
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
+        log.info("Scenario '{}' finished in {}ms: {} hemogramas, {} failed units",
+                scenario.getName(), duration, generated.get(), failedUnits.get());
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("scenario", scenario.getName());
+        summary.put("plannedUnits", plan.size());
+        summary.put("skippedUnits", plan.size() - pending.size());
+        summary.put("generatedUnits", pending.size() - failedUnits.get());
+        summary.put("failedUnits", failedUnits.get());
+        summary.put("hemogramas", generated.get());
+        summary.put("durationMs", duration);
+        return summary;
+    }
+
+    private int runUnit(String scenarioName, ScenarioWorkUnit unit) {
+        List<Hemograma> hemogramas = new ArrayList<>(unit.getTotal());
+        generate(hemogramas, unit, AnomalyType.SIB_GRAVE, unit.getGraveCount());
+        generate(hemogramas, unit, AnomalyType.SIB_SUSPEITA, unit.getSuspeitaCount());
+        generate(hemogramas, unit, AnomalyType.NORMAL, unit.getNormalCount());
+
+        if (scenarioProperties.isSendAfterGeneration() && !hemogramas.isEmpty()) {
+            externalApiService.sendHemogramas(hemogramas, DeliveryLane.SCENARIO);
+        }
+
+        scenarioProgressRepository.save(ScenarioProgress.builder()
+                .scenario(scenarioName)
+                .city(unit.getCity())
+                .day(unit.getDate())
+                .generated(hemogramas.size())
+                .completedAt(Instant.now())
+                .build());
+        return hemogramas.size();
+    }
+
+    private void generate(List<Hemograma> target, ScenarioWorkUnit unit, AnomalyType anomalyType, int count) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<LocalDateTime> collectionDates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Spread collections over opening hours of the lab (06:00-20:00)
+            collectionDates.add(unit.getDate().atTime(6, 0).plusMinutes(random.nextInt(14 * 60)));
+        }
+        target.addAll(hemogramaService.generateAndSaveHemogramas("SCN", unit.getCity(), anomalyType, collectionDates));
+    }
+
+    private String unitKey(String city, LocalDate day) {
+        return city + "@" + day;
+    }
+}
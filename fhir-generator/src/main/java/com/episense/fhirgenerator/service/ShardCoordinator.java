@@ -0,0 +1,209 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.ShardingProperties;
+import com.episense.fhirgenerator.repository.ShardLeaseRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Coordinates which cities and outbox records this generator instance is responsible for.
+ *
+ * <p>Each instance registers a heartbeat, computes its fair share
+ * ({@code ceil(shards / liveInstances)}) and then renews, releases or claims shard
+ * leases to converge on that share. Surplus shards are released before anyone else
+ * can claim them, so two live instances never own the same shard.</p>
+ *
+ * <p>The heartbeat runs on a thread of its own rather than on the shared scheduler,
+ * whose generation and retry jobs can block it for longer than a lease lives.</p>
+ *
+ * <p>With sharding disabled every shard is owned locally and behaviour is unchanged.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ShardCoordinator {
+
+    private final ShardLeaseRepository shardLeaseRepository;
+    private final ShardingProperties shardingProperties;
+
+    private String instanceId;
+    private volatile Set<Integer> ownedShards = Set.of();
+    private ScheduledExecutorService heartbeatExecutor;
+
+    @PostConstruct
+    public void init() {
+        instanceId = shardingProperties.getInstanceId() != null
+                ? shardingProperties.getInstanceId()
+                : defaultInstanceId();
+        if (shardingProperties.isEnabled()) {
+            log.info("Sharding enabled: instance={}, shards={}, leaseTtl={}s",
+                    instanceId, shardingProperties.getShards(), shardingProperties.getLeaseTtlSeconds());
+            heartbeat();
+            long interval = shardingProperties.getHeartbeatIntervalMs();
+            heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(
+                    runnable -> Thread.ofPlatform().name("shard-heartbeat").daemon().unstarted(runnable));
+            heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (!shardingProperties.isEnabled()) {
+            return;
+        }
+        if (heartbeatExecutor != null) {
+            heartbeatExecutor.shutdownNow();
+        }
+        try {
+            for (Integer shard : ownedShards) {
+                shardLeaseRepository.release(shard, instanceId);
+            }
+            shardLeaseRepository.unregisterInstance(instanceId);
+            log.info("Released {} shard leases on shutdown", ownedShards.size());
+        } catch (Exception e) {
+            log.warn("Could not release shard leases on shutdown, they will expire: {}", e.getMessage());
+        }
+        ownedShards = Set.of();
+    }
+
+    /**
+     * Renews, releases and claims leases once; runs every
+     * {@code episense.sharding.heartbeat-interval-ms} while sharding is enabled.
+     */
+    public void heartbeat() {
+        if (!shardingProperties.isEnabled()) {
+            return;
+        }
+        int ttl = shardingProperties.getLeaseTtlSeconds();
+        int shards = shardingProperties.getShards();
+
+        try {
+            shardLeaseRepository.registerInstance(instanceId, ttl);
+            int liveInstances = Math.max(1, shardLeaseRepository.countLiveInstances());
+            int fairShare = (shards + liveInstances - 1) / liveInstances;
+
+            Set<Integer> owned = new TreeSet<>();
+            for (Integer shard : ownedShards) {
+                if (shardLeaseRepository.renew(shard, instanceId, ttl)) {
+                    owned.add(shard);
+                } else {
+                    log.warn("Lost lease on shard {}", shard);
+                }
+            }
+
+            Iterator<Integer> surplus = owned.iterator();
+            while (owned.size() > fairShare && surplus.hasNext()) {
+                int shard = surplus.next();
+                shardLeaseRepository.release(shard, instanceId);
+                surplus.remove();
+                log.info("Released shard {} to rebalance ({} live instances)", shard, liveInstances);
+            }
+
+            for (int shard = 0; shard < shards && owned.size() < fairShare; shard++) {
+                if (!owned.contains(shard) && shardLeaseRepository.tryClaim(shard, instanceId, ttl)) {
+                    owned.add(shard);
+                    log.info("Claimed shard {}", shard);
+                }
+            }
+
+            ownedShards = Collections.unmodifiableSet(owned);
+            log.debug("Shard heartbeat: owned={}, fairShare={}, liveInstances={}", owned, fairShare, liveInstances);
+        } catch (Exception e) {
+            // Without a successful renewal we can no longer be sure the leases are ours
+            log.error("Shard heartbeat failed, dropping {} leases: {}", ownedShards.size(), e.getMessage());
+            ownedShards = Set.of();
+        }
+    }
+
+    /**
+     * Whether this instance should generate data for the given city ({@code City|UF}).
+     */
+    public boolean ownsCity(String city) {
+        return owns(shardOf(city.hashCode()));
+    }
+
+    /**
+     * Outbox shard of a record. It is stored with the record, so that each instance only
+     * reads the records of the shards it owns.
+     */
+    public int shardOfRecord(UUID id) {
+        return shardOf(id.hashCode());
+    }
+
+    /**
+     * The outbox shards whose records this instance delivers: every shard when sharding
+     * is disabled.
+     */
+    public Collection<Integer> getOwnedOutboxShards() {
+        if (!shardingProperties.isEnabled()) {
+            return IntStream.range(0, shardingProperties.getShards()).boxed().toList();
+        }
+        return ownedShards;
+    }
+
+    /**
+     * Whether this instance runs singleton jobs, such as archival, that must not run on
+     * every instance. Follows the owner of shard 0.
+     */
+    public boolean isPrimary() {
+        return owns(0);
+    }
+
+    /**
+     * Identity of this instance, also used as the owner of delivery leases.
+     */
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * The currently owned shards; a new instance is published on every heartbeat.
+     */
+    public Set<Integer> getOwnedShards() {
+        return ownedShards;
+    }
+
+    public List<String> filterOwnedCities(List<String> cities) {
+        if (!shardingProperties.isEnabled()) {
+            return cities;
+        }
+        return cities.stream().filter(this::ownsCity).toList();
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", shardingProperties.isEnabled());
+        status.put("instanceId", instanceId);
+        status.put("shards", shardingProperties.getShards());
+        status.put("ownedShards", ownedShards);
+        return status;
+    }
+
+    private boolean owns(int shard) {
+        return !shardingProperties.isEnabled() || ownedShards.contains(shard);
+    }
+
+    private int shardOf(int hash) {
+        return Math.floorMod(hash, shardingProperties.getShards());
+    }
+
+    private static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "generator";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
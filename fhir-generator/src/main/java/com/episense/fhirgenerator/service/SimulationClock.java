@@ -0,0 +1,97 @@
+package com.episense.fhirgenerator.service;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Clock that generated collection dates are taken from.
+ *
+ * <p>Normally the system clock. While a simulation runs it is warped: simulated time
+ * starts at a chosen instant and advances {@code speedup} times faster than wall time,
+ * so N simulated days pass in N * 86400 / speedup seconds.</p>
+ */
+@Component
+public class SimulationClock extends Clock {
+
+    private final ZoneId zone;
+    private volatile Warp warp;
+
+    /**
+     * Mapping from monotonic wall time to simulated time.
+     */
+    private record Warp(Instant simulatedStart, long wallStartNanos, double speedup) {
+
+        Instant at(long wallNanos) {
+            return simulatedStart.plusNanos((long) ((wallNanos - wallStartNanos) * speedup));
+        }
+
+        long wallNanosAt(Instant simulated) {
+            return wallStartNanos + (long) (Duration.between(simulatedStart, simulated).toNanos() / speedup);
+        }
+    }
+
+    public SimulationClock() {
+        this(ZoneId.systemDefault());
+    }
+
+    private SimulationClock(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        SimulationClock clock = new SimulationClock(zone);
+        clock.warp = warp;
+        return clock;
+    }
+
+    @Override
+    public Instant instant() {
+        Warp current = warp;
+        return current == null ? Instant.now() : current.at(System.nanoTime());
+    }
+
+    public boolean isWarped() {
+        return warp != null;
+    }
+
+    /**
+     * Starts simulated time at {@code start}, running {@code speedup} times faster than wall time.
+     */
+    public void warp(LocalDateTime start, double speedup) {
+        if (!(speedup > 0)) {
+            throw new IllegalArgumentException("speedup must be positive");
+        }
+        warp = new Warp(start.atZone(zone).toInstant(), System.nanoTime(), speedup);
+    }
+
+    /**
+     * Back to the system clock.
+     */
+    public void reset() {
+        warp = null;
+    }
+
+    /**
+     * Wall time left until the warped clock reaches {@code simulated}; zero once it has
+     * passed or when the clock is not warped.
+     */
+    public Duration wallTimeUntil(LocalDateTime simulated) {
+        Warp current = warp;
+        if (current == null) {
+            return Duration.ZERO;
+        }
+        long remaining = current.wallNanosAt(simulated.atZone(zone).toInstant()) - System.nanoTime();
+        return remaining > 0 ? Duration.ofNanos(remaining) : Duration.ZERO;
+    }
+}
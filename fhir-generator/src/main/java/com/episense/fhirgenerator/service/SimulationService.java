@@ -0,0 +1,221 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.SimulationProperties;
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.model.DeliveryLane;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays days of live traffic in minutes by running the generator against a warped
+ * {@link SimulationClock}.
+ *
+ * <p>Simulated time advances in ticks. Once the clock has passed the end of a tick, the
+ * exams collected during it are generated with the smart batch strategy (bursts
+ * included) and sent on the live lane before the next tick starts, so the receiving
+ * side sees the same day-by-day arrival pattern as in production, only faster. When
+ * generating and sending a tick takes longer than its share of wall time the run falls
+ * behind rather than skipping ticks; {@link #status()} reports the lag.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SimulationService {
+
+    // Lab opening hours, as for scenarios
+    private static final LocalTime OPENS = LocalTime.of(6, 0);
+    private static final LocalTime CLOSES = LocalTime.of(20, 0);
+    private static final double OPEN_SECONDS = Duration.between(OPENS, CLOSES).toSeconds();
+
+    private final HemogramaService hemogramaService;
+    private final ExternalApiService externalApiService;
+    private final SimulationClock simulationClock;
+    private final SimulationProperties simulationProperties;
+
+    private volatile Run run;
+
+    private static final class Run {
+        final LocalDateTime from;
+        final LocalDateTime to;
+        final int dailyCount;
+        final double speedup;
+        final Instant startedAt = Instant.now();
+        final AtomicLong generated = new AtomicLong();
+        volatile LocalDateTime reached;
+        volatile Instant finishedAt;
+        volatile Thread thread;
+
+        Run(LocalDateTime from, LocalDateTime to, int dailyCount, double speedup) {
+            this.from = from;
+            this.to = to;
+            this.dailyCount = dailyCount;
+            this.speedup = speedup;
+            this.reached = from;
+        }
+
+        boolean isRunning() {
+            return finishedAt == null;
+        }
+    }
+
+    /**
+     * Starts replaying {@code days} simulated days from {@code from} within {@code wallDuration}.
+     * Defaults come from {@link SimulationProperties}; without {@code from} the simulation
+     * ends today.
+     *
+     * @throws IllegalStateException when a simulation is already running
+     */
+    public synchronized Map<String, Object> start(LocalDate from, Integer days, Duration wallDuration, Integer dailyCount) {
+        if (run != null && run.isRunning()) {
+            throw new IllegalStateException("A simulation is already running");
+        }
+        int simulatedDays = days != null ? days : simulationProperties.getDays();
+        Duration wall = wallDuration != null ? wallDuration : simulationProperties.getWallDuration();
+        int perDay = dailyCount != null ? dailyCount : simulationProperties.getDailyCount();
+        if (simulatedDays < 1 || perDay < 0 || wall.isNegative() || wall.isZero()) {
+            throw new IllegalArgumentException("days must be positive, wall duration positive and daily count non-negative");
+        }
+        if (!simulationProperties.getTick().isPositive()) {
+            throw new IllegalArgumentException("episense.simulation.tick must be positive");
+        }
+        LocalDate firstDay = from != null ? from : LocalDate.now().minusDays(simulatedDays - 1L);
+        double speedup = Duration.ofDays(simulatedDays).toNanos() / (double) wall.toNanos();
+
+        Run next = new Run(firstDay.atStartOfDay(), firstDay.plusDays(simulatedDays).atStartOfDay(), perDay, speedup);
+        simulationClock.warp(next.from, speedup);
+        run = next;
+        next.thread = Thread.ofPlatform().name("simulation").daemon().start(() -> execute(next));
+        log.info("Simulating {} days from {} in {} ({}x, {} exams/day)", simulatedDays, firstDay, wall,
+                Math.round(speedup), perDay);
+        return status();
+    }
+
+    /**
+     * Stops the running simulation after its current tick and restores the system clock.
+     */
+    public synchronized Map<String, Object> stop() {
+        Run current = run;
+        if (current != null && current.isRunning()) {
+            current.thread.interrupt();
+            try {
+                current.thread.join(Duration.ofSeconds(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return status();
+    }
+
+    public boolean isRunning() {
+        Run current = run;
+        return current != null && current.isRunning();
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        Run current = run;
+        status.put("running", current != null && current.isRunning());
+        if (current == null) {
+            return status;
+        }
+        status.put("from", current.from);
+        status.put("to", current.to);
+        status.put("speedup", Math.round(current.speedup));
+        status.put("reached", current.reached);
+        status.put("generated", current.generated.get());
+        status.put("startedAt", current.startedAt);
+        if (current.isRunning()) {
+            LocalDateTime now = LocalDateTime.now(simulationClock);
+            status.put("simulatedNow", now);
+            // Wall time by which generation trails the warped clock
+            long behindNanos = Duration.between(current.reached, now).toNanos();
+            status.put("lagMs", Math.max(0, Math.round(behindNanos / current.speedup / 1_000_000)));
+        } else {
+            status.put("finishedAt", current.finishedAt);
+        }
+        return status;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        stop();
+    }
+
+    private void execute(Run current) {
+        Duration tick = simulationProperties.getTick();
+        double examsPerSecond = current.dailyCount / OPEN_SECONDS;
+        double owed = 0;
+        LocalDateTime start = current.from;
+        try {
+            while (start.isBefore(current.to)) {
+                LocalDateTime end = start.plus(tick);
+                Duration wait = simulationClock.wallTimeUntil(end);
+                if (wait.isPositive()) {
+                    Thread.sleep(wait);
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+
+                owed += examsPerSecond * openSecondsBetween(start, end);
+                int count = (int) owed;
+                owed -= count;
+                if (count > 0) {
+                    List<Hemograma> hemogramas = hemogramaService.generateSmartBatch(count, start);
+                    current.generated.addAndGet(hemogramas.size());
+                    externalApiService.sendHemogramas(hemogramas, DeliveryLane.LIVE);
+                }
+                current.reached = end;
+                if (!end.toLocalDate().equals(start.toLocalDate())) {
+                    log.info("Simulated {} ({} hemogramas so far)", start.toLocalDate(), current.generated.get());
+                }
+                start = end;
+            }
+            log.info("Simulation of {} to {} completed: {} hemogramas in {}", current.from.toLocalDate(),
+                    current.to.toLocalDate().minusDays(1), current.generated.get(),
+                    Duration.between(current.startedAt, Instant.now()));
+        } catch (InterruptedException e) {
+            log.info("Simulation stopped at {} ({} hemogramas)", current.reached, current.generated.get());
+        } catch (RuntimeException e) {
+            log.error("Simulation failed at {}", current.reached, e);
+        } finally {
+            simulationClock.reset();
+            current.finishedAt = Instant.now();
+        }
+    }
+
+    /**
+     * Seconds of {@code [start, end)} during which the lab is open.
+     */
+    static double openSecondsBetween(LocalDateTime start, LocalDateTime end) {
+        double seconds = 0;
+        for (LocalDate day = start.toLocalDate(); !day.atStartOfDay().isAfter(end); day = day.plusDays(1)) {
+            LocalDateTime opens = max(day.atTime(OPENS), start);
+            LocalDateTime closes = min(day.atTime(CLOSES), end);
+            if (opens.isBefore(closes)) {
+                seconds += Duration.between(opens, closes).toNanos() / 1e9;
+            }
+        }
+        return seconds;
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+}
@@ -0,0 +1,69 @@
+package com.episense.fhirgenerator.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket capping the global request rate to fhir-server, and the rate of
+ * per-record log lines.
+ *
+ * <p>Callers reserve a token under a short lock and then sleep outside of it, so a
+ * waiting sender never blocks others from reserving. A non-positive rate disables
+ * the limit.</p>
+ */
+class TokenBucket {
+
+    private final double permitsPerNano;
+    private final double capacity;
+
+    private double tokens;
+    private long lastRefill;
+
+    TokenBucket(double permitsPerSecond, int burst) {
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, burst);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    boolean isUnlimited() {
+        return permitsPerNano <= 0;
+    }
+
+    void acquire() throws InterruptedException {
+        if (isUnlimited()) {
+            return;
+        }
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Takes a token only if one is available now, without waiting or going into debt.
+     */
+    synchronized boolean tryAcquire() {
+        if (isUnlimited()) {
+            return true;
+        }
+        refill();
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    private synchronized long reserve() {
+        refill();
+        tokens -= 1;
+        // A negative balance is debt paid back by waiting for the refill
+        return tokens >= 0 ? 0 : (long) (-tokens / permitsPerNano);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,103 @@
+package com.episense.fhirgenerator.service;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link AnalyteKernel} on the JDK Vector API. Random bits, Box-Muller and the
+ * distribution transforms run on whole registers; loop tails go through the scalar
+ * kernel, which computes the same values.
+ *
+ * <p>Only instantiated by {@link AnalyteKernel#best()} when {@code jdk.incubator.vector}
+ * is in the boot layer.</p>
+ */
+final class VectorAnalyteKernel implements AnalyteKernel {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final int LANES = DOUBLES.length();
+    private static final double TWO_PI = 2 * Math.PI;
+
+    private final ScalarAnalyteKernel tail = new ScalarAnalyteKernel();
+
+    VectorAnalyteKernel() {
+        if (LONGS.length() != LANES) {
+            throw new IllegalStateException("Long and double vectors differ in lane count");
+        }
+    }
+
+    @Override
+    public void normals(long seed, long offset, double[] out, int length) {
+        int bound = DOUBLES.loopBound(length);
+        // Counter of element i is 2 * (offset + i); each lane advances by 2 * LANES per step
+        LongVector counter = LongVector.zero(LONGS).addIndex(2).add(2 * offset);
+        LongVector step = LongVector.broadcast(LONGS, 2L * LANES);
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            DoubleVector u1 = unit(counter, seed);
+            DoubleVector u2 = unit(counter.add(1), seed);
+            DoubleVector radius = u1.lanewise(VectorOperators.LOG).mul(-2.0).lanewise(VectorOperators.SQRT);
+            radius.mul(u2.mul(TWO_PI).lanewise(VectorOperators.COS)).intoArray(out, i);
+            counter = counter.add(step);
+        }
+        if (i < length) {
+            double[] rest = new double[length - i];
+            tail.normals(seed, offset + i, rest, rest.length);
+            System.arraycopy(rest, 0, out, i, rest.length);
+        }
+    }
+
+    @Override
+    public void transform(double[] z, double[] out, int length, boolean logNormal, double center, double spread) {
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            DoubleVector scaled = DoubleVector.fromArray(DOUBLES, z, i).mul(spread);
+            DoubleVector value = logNormal
+                    ? scaled.lanewise(VectorOperators.EXP).mul(center)
+                    : scaled.add(center);
+            value.intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = logNormal ? center * Math.exp(spread * z[i]) : center + spread * z[i];
+        }
+    }
+
+    @Override
+    public void multiply(double[] a, double[] b, double[] out, int length) {
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            DoubleVector.fromArray(DOUBLES, a, i).mul(DoubleVector.fromArray(DOUBLES, b, i)).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = a[i] * b[i];
+        }
+    }
+
+    @Override
+    public void round2(double[] values, int length) {
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            // Truncating conversion of non-negative values after adding 0.5 rounds half up
+            DoubleVector scaled = DoubleVector.fromArray(DOUBLES, values, i).mul(100.0).add(0.5);
+            ((DoubleVector) scaled.convert(VectorOperators.D2L, 0).convert(VectorOperators.L2D, 0))
+                    .div(100.0).intoArray(values, i);
+        }
+        for (; i < length; i++) {
+            values[i] = (long) (values[i] * 100.0 + 0.5) / 100.0;
+        }
+    }
+
+    private static DoubleVector unit(LongVector counter, long seed) {
+        LongVector z = counter.mul(GOLDEN_GAMMA).add(seed);
+        z = z.lanewise(VectorOperators.XOR, z.lanewise(VectorOperators.LSHR, 30)).mul(0xBF58476D1CE4E5B9L);
+        z = z.lanewise(VectorOperators.XOR, z.lanewise(VectorOperators.LSHR, 27)).mul(0x94D049BB133111EBL);
+        z = z.lanewise(VectorOperators.XOR, z.lanewise(VectorOperators.LSHR, 31));
+        LongVector mantissa = z.lanewise(VectorOperators.LSHR, 11).add(1);
+        return ((DoubleVector) mantissa.convert(VectorOperators.L2D, 0)).mul(0x1.0p-53);
+    }
+}
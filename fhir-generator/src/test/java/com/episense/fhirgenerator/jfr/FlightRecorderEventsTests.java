@@ -0,0 +1,63 @@
+package com.episense.fhirgenerator.jfr;
+
+import com.episense.fhirgenerator.config.ExternalApiProperties;
+import com.episense.fhirgenerator.config.StorageProperties;
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.service.FhirServerStub;
+import com.episense.fhirgenerator.service.GeneratorFixture;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlightRecorderEventsTests {
+
+    private static final int RECORDS = 10;
+    private static final List<String> EVENTS = List.of(
+            "episense.HemogramaBuild", "episense.BundleCreate", "episense.BundleEncode",
+            "episense.HemogramaSave", "episense.BundleDelivery", "episense.MarkSent");
+
+    @Test
+    void recordsOneEventPerStageAndRecord(@TempDir Path dir) throws Exception {
+        List<RecordedEvent> events;
+        try (FhirServerStub stub = new FhirServerStub(0, 0.0, 4);
+             GeneratorFixture fixture = new GeneratorFixture(stub.url(), StorageProperties.BundleMode.EAGER,
+                     ExternalApiProperties.Compression.GZIP);
+             Recording recording = new Recording()) {
+            EVENTS.forEach(recording::enable);
+            recording.start();
+
+            List<Hemograma> hemogramas = fixture.hemogramaService.generateBatch(RECORDS, "Trindade|GO", 1.0, LocalDateTime.now());
+            fixture.externalApiService.sendHemogramas(hemogramas);
+
+            recording.stop();
+            Path file = dir.resolve("test.jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        }
+
+        Map<String, Long> counts = events.stream()
+                .collect(Collectors.groupingBy(e -> e.getEventType().getName(), Collectors.counting()));
+        assertThat(counts).containsOnlyKeys(EVENTS).allSatisfy((_, count) -> assertThat(count).isEqualTo(RECORDS));
+
+        Map<String, RecordedEvent> firstByType = events.stream()
+                .collect(Collectors.toMap(e -> e.getEventType().getName(), Function.identity(), (a, _) -> a));
+        RecordedEvent delivery = firstByType.get("episense.BundleDelivery");
+        assertThat(delivery.getString("city")).isEqualTo("Trindade");
+        assertThat(delivery.getString("lane")).isEqualTo("LIVE");
+        assertThat(delivery.getString("contentEncoding")).isEqualTo("gzip");
+        assertThat(delivery.getInt("statusCode")).isEqualTo(202);
+        assertThat(delivery.getLong("wireSize")).isLessThan(delivery.getLong("payloadSize"));
+        assertThat(firstByType.get("episense.HemogramaSave").getString("anomalyType")).startsWith("SIB_");
+    }
+}
@@ -0,0 +1,141 @@
+package com.episense.fhirgenerator.perf;
+
+import com.episense.fhirgenerator.config.ExternalApiProperties;
+import com.episense.fhirgenerator.config.StorageProperties;
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.service.FhirServerStub;
+import com.episense.fhirgenerator.service.GeneratorFixture;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End-to-end throughput regression suite: generate → persist → send against an
+ * in-process fhir-server stub and an in-memory repository. Runs offline, no ScyllaDB.
+ *
+ * <p>Run with {@code mvn test -Pperf}. Tunables (system properties):</p>
+ * <ul>
+ *   <li>{@code perf.records} (3000), {@code perf.latency-ms} (5), {@code perf.error-rate} (0.01),
+ *       {@code perf.max-connections} (8), {@code perf.compression} (NONE)</li>
+ *   <li>{@code perf.min-generation-per-second} (200), {@code perf.min-delivery-per-second} (100),
+ *       {@code perf.max-retained-heap-mb} (256)</li>
+ * </ul>
+ * A JSON report per storage mode is written to {@code target/perf/}.
+ */
+@Tag("performance")
+class DeliveryThroughputPerformanceTests {
+
+    private static final int RECORDS = Integer.getInteger("perf.records", 3000);
+    private static final long LATENCY_MS = Long.getLong("perf.latency-ms", 5);
+    private static final double ERROR_RATE = Double.parseDouble(System.getProperty("perf.error-rate", "0.01"));
+    private static final int MAX_CONNECTIONS = Integer.getInteger("perf.max-connections", 8);
+    private static final double MIN_GENERATION_PER_SECOND =
+            Double.parseDouble(System.getProperty("perf.min-generation-per-second", "200"));
+    private static final double MIN_DELIVERY_PER_SECOND =
+            Double.parseDouble(System.getProperty("perf.min-delivery-per-second", "100"));
+    private static final long MAX_RETAINED_HEAP_MB = Long.getLong("perf.max-retained-heap-mb", 256);
+    private static final ExternalApiProperties.Compression COMPRESSION =
+            ExternalApiProperties.Compression.valueOf(System.getProperty("perf.compression", "NONE"));
+    private static FhirServerStub stub;
+
+    @BeforeAll
+    static void startStub() throws Exception {
+        stub = new FhirServerStub(LATENCY_MS, ERROR_RATE, MAX_CONNECTIONS);
+    }
+
+    @AfterAll
+    static void stopStub() throws Exception {
+        stub.close();
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageProperties.BundleMode.class)
+    void generatePersistSend(StorageProperties.BundleMode bundleMode) throws Exception {
+        GeneratorFixture fixture = new GeneratorFixture(stub.url(), bundleMode, COMPRESSION);
+        long acceptedBefore = stub.accepted();
+        long bytesBefore = stub.requestBytes();
+
+        long heapBefore = retainedHeap();
+        resetPeakHeap();
+
+        long generationStart = System.nanoTime();
+        List<Hemograma> hemogramas = fixture.hemogramaService.generateBatch(RECORDS, "Trindade|GO", 0.25, LocalDateTime.now());
+        double generationSeconds = (System.nanoTime() - generationStart) / 1e9;
+
+        long deliveryStart = System.nanoTime();
+        fixture.externalApiService.sendHemogramas(hemogramas);
+        double deliverySeconds = (System.nanoTime() - deliveryStart) / 1e9;
+        fixture.close();
+
+        long peakHeap = peakHeap();
+        long retainedDelta = retainedHeap() - heapBefore;
+        long accepted = stub.accepted() - acceptedBefore;
+        long sent = fixture.sentCount();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("bundleMode", bundleMode);
+        report.put("records", RECORDS);
+        report.put("stubLatencyMs", LATENCY_MS);
+        report.put("stubErrorRate", ERROR_RATE);
+        report.put("stubMaxConnections", MAX_CONNECTIONS);
+        report.put("generationSeconds", generationSeconds);
+        report.put("generationPerSecond", RECORDS / generationSeconds);
+        report.put("deliverySeconds", deliverySeconds);
+        report.put("deliveryPerSecond", RECORDS / deliverySeconds);
+        report.put("acceptedByStub", accepted);
+        report.put("markedSent", sent);
+        report.put("compression", COMPRESSION);
+        report.put("requestBytes", stub.requestBytes() - bytesBefore);
+        report.put("uncompressedBytes", (long) fixture.counter("episense.delivery.bytes", "uncompressed"));
+        report.put("peakHeapMb", peakHeap / (1024 * 1024));
+        report.put("retainedHeapDeltaMb", retainedDelta / (1024 * 1024));
+        writeReport(bundleMode, report);
+
+        assertThat(sent).isEqualTo(accepted);
+        assertThat(RECORDS / generationSeconds).isGreaterThanOrEqualTo(MIN_GENERATION_PER_SECOND);
+        assertThat(RECORDS / deliverySeconds).isGreaterThanOrEqualTo(MIN_DELIVERY_PER_SECOND);
+        assertThat(retainedDelta / (1024 * 1024)).isLessThanOrEqualTo(MAX_RETAINED_HEAP_MB);
+    }
+
+    private static long retainedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void resetPeakHeap() {
+        heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    private static long peakHeap() {
+        return heapPools().stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+    }
+
+    private static void writeReport(StorageProperties.BundleMode bundleMode, Map<String, Object> report) throws Exception {
+        Path dir = Path.of("target", "perf");
+        Files.createDirectories(dir);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(dir.resolve("throughput-" + bundleMode.name().toLowerCase() + ".json").toFile(), report);
+    }
+}
@@ -0,0 +1,153 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.AnomalyProperties;
+import com.episense.fhirgenerator.config.PopulationProperties;
+import com.episense.fhirgenerator.config.SchedulerProperties;
+import com.episense.fhirgenerator.model.AnomalyType;
+import com.episense.fhirgenerator.model.GenerationConfig;
+import com.episense.fhirgenerator.service.AnalyteSampler.Columns;
+import com.episense.fhirgenerator.service.PatientRegistry.Analyte;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class AnalyteSamplerTests {
+
+    private static final int ROWS = 20_000;
+
+    private final AnomalyProperties properties = new AnomalyProperties();
+    private final GenerationConfig config = GenerationConfig.of(properties, new SchedulerProperties());
+    private final PatientRegistry registry = new PatientRegistry(new PopulationProperties(), null);
+    private final AnalyteSampler sampler = new AnalyteSampler(registry);
+
+    @ParameterizedTest
+    @EnumSource(AnomalyType.class)
+    void valuesStayWithinTheRangesThatDefineEachPattern(AnomalyType type) {
+        registry.build(List.of("Trindade|GO"), new long[]{1}, 1_000, 7L);
+        AnomalyType[] types = new AnomalyType[ROWS];
+        Arrays.fill(types, type);
+        int[] patients = new int[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            patients[i] = i % 2 == 0 ? i % 1_000 : -1;
+        }
+
+        Columns values = sampler.sample(config, types, patients);
+
+        for (int row = 0; row < ROWS; row++) {
+            double leukocytes = values.get(Analyte.WHITE_BLOOD_CELLS, row);
+            double neutrophils = values.get(Analyte.NEUTROPHILS, row);
+            double bands = values.get(Analyte.NEUTROPHILS_BAND_FORM, row);
+            boolean leucocytosis = leukocytes > properties.getLeucocytosisThreshold();
+            boolean neutrophilia = neutrophils > properties.getNeutrophiliaThreshold();
+            boolean leftShift = bands > properties.getLeftShiftThreshold();
+            switch (type) {
+                case NORMAL -> assertThat(leucocytosis || neutrophilia || leftShift).isFalse();
+                case LEUCOCYTOSIS -> assertThat(leucocytosis && !neutrophilia && !leftShift).isTrue();
+                case SIB_SUSPEITA -> assertThat(leucocytosis && neutrophilia && !leftShift).isTrue();
+                case SIB_GRAVE -> assertThat(neutrophilia && leftShift).isTrue();
+            }
+            assertThat(neutrophils).isLessThanOrEqualTo(leukocytes);
+            assertThat(values.get(Analyte.HEMOGLOBIN, row)).isBetween(13.0, 17.0);
+            assertThat(values.get(Analyte.PLATELETS, row)).isBetween(150.0, 400.0);
+            assertThat(values.get(Analyte.BASOPHILS, row)).isBetween(0.0, 2.0);
+            assertThat(values.get(Analyte.MCV, row) * 100).isCloseTo(Math.rint(values.get(Analyte.MCV, row) * 100), within(1e-6));
+        }
+    }
+
+    @Test
+    void normalLeukogramIsRightSkewedAndNeutrophilsFollowLeukocytes() {
+        AnomalyType[] types = new AnomalyType[ROWS];
+        Arrays.fill(types, AnomalyType.NORMAL);
+        int[] patients = new int[ROWS];
+        Arrays.fill(patients, -1);
+
+        Columns values = sampler.sample(config, types, patients);
+
+        double[] leukocytes = column(values, Analyte.WHITE_BLOOD_CELLS);
+        double[] neutrophils = column(values, Analyte.NEUTROPHILS);
+        double median = sorted(leukocytes)[ROWS / 2];
+        // Log-normal between 4000 and 10500: median at the geometric middle, mean above it
+        assertThat(median).isCloseTo(Math.sqrt(4000.0 * 10500.0), within(150.0));
+        assertThat(mean(leukocytes)).isGreaterThan(median);
+        assertThat(correlation(leukocytes, neutrophils)).isGreaterThan(0.6);
+    }
+
+    @Test
+    void rowsKeepTheirOwnPatternWhenTypesAreMixed() {
+        AnomalyType[] all = AnomalyType.values();
+        AnomalyType[] types = new AnomalyType[5_000];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = all[(i * 7) % all.length];
+        }
+        int[] patients = new int[types.length];
+        Arrays.fill(patients, -1);
+
+        Columns values = sampler.sample(config, types, patients);
+
+        assertThat(values.size()).isEqualTo(types.length);
+        for (int row = 0; row < types.length; row++) {
+            boolean severe = values.get(Analyte.NEUTROPHILS_BAND_FORM, row) > properties.getLeftShiftThreshold();
+            assertThat(severe).isEqualTo(types[row] == AnomalyType.SIB_GRAVE);
+        }
+    }
+
+    @Test
+    void kernelsDrawStandardNormalsAndAgreeWithEachOther() {
+        int length = 100_003;
+        double[] scalar = new double[length];
+        new ScalarAnalyteKernel().normals(42L, 5L, scalar, length);
+
+        assertThat(mean(scalar)).isCloseTo(0.0, within(0.02));
+        assertThat(variance(scalar)).isCloseTo(1.0, within(0.02));
+
+        AnalyteKernel best = AnalyteKernel.best();
+        double[] other = new double[length];
+        best.normals(42L, 5L, other, length);
+        for (int i = 0; i < length; i++) {
+            assertThat(other[i]).isCloseTo(scalar[i], within(1e-9));
+        }
+        // Offsets address the same stream
+        double[] shifted = new double[10];
+        best.normals(42L, 105L, shifted, shifted.length);
+        assertThat(shifted[0]).isCloseTo(scalar[100], within(1e-9));
+    }
+
+    private static double[] column(Columns values, Analyte analyte) {
+        double[] column = new double[values.size()];
+        for (int row = 0; row < column.length; row++) {
+            column[row] = values.get(analyte, row);
+        }
+        return column;
+    }
+
+    private static double[] sorted(double[] values) {
+        double[] copy = values.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    private static double mean(double[] values) {
+        return Arrays.stream(values).average().orElseThrow();
+    }
+
+    private static double variance(double[] values) {
+        double mean = mean(values);
+        return Arrays.stream(values).map(v -> (v - mean) * (v - mean)).sum() / values.length;
+    }
+
+    private static double correlation(double[] a, double[] b) {
+        double meanA = mean(a);
+        double meanB = mean(b);
+        double cov = 0;
+        for (int i = 0; i < a.length; i++) {
+            cov += (a[i] - meanA) * (b[i] - meanB);
+        }
+        return cov / a.length / Math.sqrt(variance(a) * variance(b));
+    }
+}
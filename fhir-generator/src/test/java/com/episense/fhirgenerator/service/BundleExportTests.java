@@ -0,0 +1,79 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.ExternalApiProperties;
+import com.episense.fhirgenerator.config.StorageProperties;
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BundleExportTests {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 12);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @ParameterizedTest
+    @EnumSource(StorageProperties.BundleMode.class)
+    void exportsOneCompactBundlePerLineAndResumesAfterCursor(StorageProperties.BundleMode bundleMode) throws Exception {
+        try (GeneratorFixture fixture = new GeneratorFixture("http://127.0.0.1:9/api/fhir", bundleMode,
+                ExternalApiProperties.Compression.NONE)) {
+            fixture.hemogramaService.generateBatch(30, "Trindade|GO", 0.5, DAY.atTime(10, 0));
+            fixture.hemogramaService.generateBatch(20, "Goiania|GO", 0.5, DAY.atTime(11, 0));
+            fixture.hemogramaService.generateBatch(10, "Trindade|GO", 0.5, DAY.plusDays(1).atTime(9, 0));
+            fixture.hemogramaService.generateBatch(5, "Trindade|GO", 0.5, LocalDateTime.now());
+
+            List<String> lines = export(fixture, Set.of("Trindade|GO"), null);
+
+            assertThat(lines).hasSize(40);
+            List<JsonNode> bundles = lines.stream().map(this::readTree).toList();
+            assertThat(bundles).allSatisfy(b -> assertThat(b.get("resourceType").asText()).isEqualTo("Bundle"));
+            assertThat(bundles.stream().map(b -> b.get("id").asText()).distinct()).hasSize(40);
+            assertThat(export(fixture, Set.of(), null)).hasSize(60);
+
+            String cursor = bundles.get(14).get("id").asText();
+            assertThat(export(fixture, Set.of("Trindade|GO"), ExportService.parseCursor(cursor)))
+                    .containsExactlyElementsOf(lines.subList(15, 40));
+        }
+    }
+
+    @Test
+    void rowsWithoutStateMatchTheirCityName() throws Exception {
+        try (GeneratorFixture fixture = new GeneratorFixture("http://127.0.0.1:9/api/fhir",
+                StorageProperties.BundleMode.LAZY, ExternalApiProperties.Compression.NONE)) {
+            List<Hemograma> trindade = fixture.hemogramaService.generateBatch(10, "Trindade|GO", 0.5, DAY.atTime(10, 0));
+            fixture.hemogramaService.generateBatch(10, "Goiania|GO", 0.5, DAY.atTime(11, 0));
+            // As stored before the state column existed
+            trindade.subList(0, 4).forEach(h -> h.setState(null));
+
+            assertThat(export(fixture, Set.of("Trindade|GO"), null)).hasSize(10);
+            assertThat(export(fixture, Set.of("Trindade"), null)).hasSize(4);
+        }
+    }
+
+    private List<String> export(GeneratorFixture fixture, Set<String> cities, UUID after) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fixture.exportService.export(DAY, DAY.plusDays(1), cities, after, out);
+        return out.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    private JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
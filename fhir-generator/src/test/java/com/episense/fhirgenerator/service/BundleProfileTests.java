@@ -0,0 +1,108 @@
+package com.episense.fhirgenerator.service;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.validation.FhirValidator;
+import ca.uhn.fhir.validation.ResultSeverityEnum;
+import ca.uhn.fhir.validation.SingleValidationMessage;
+import com.episense.fhirgenerator.config.ExternalApiProperties;
+import com.episense.fhirgenerator.config.StorageProperties;
+import com.episense.fhirgenerator.config.ValidationProperties;
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.model.BundleProfile;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BundleProfileTests {
+
+    private static final FhirContext FHIR_CONTEXT = FhirContext.forR4();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void minimalBundlesKeepEverythingTheBackendReads() throws Exception {
+        try (GeneratorFixture fixture = new GeneratorFixture("http://127.0.0.1:9/api/fhir",
+                StorageProperties.BundleMode.EAGER, ExternalApiProperties.Compression.NONE)) {
+            fixture.fhirProperties.setBundleProfile(BundleProfile.MINIMAL);
+            List<Hemograma> hemogramas = fixture.hemogramaService.generateBatch(50, "Trindade|GO", 0.5,
+                    LocalDateTime.of(2026, 3, 12, 10, 0));
+
+            for (Hemograma hemograma : hemogramas) {
+                String json = hemograma.getFhirBundleJson();
+                assertThat(json).doesNotContain("\n", "display", "referenceRange", "Encounter");
+                JsonNode bundle = objectMapper.readTree(json);
+                assertThat(bundle.get("id").asText()).isEqualTo("bundle-" + hemograma.getId());
+                assertThat(bundle.get("timestamp").asText()).isNotEmpty();
+
+                JsonNode address = bundle.at("/entry/0/resource/address/0");
+                assertThat(address.get("city").asText()).isEqualTo(hemograma.getCity());
+                assertThat(address.get("state").asText()).isEqualTo(hemograma.getState());
+
+                JsonNode observation = bundle.at("/entry/1/resource");
+                assertThat(observation.get("resourceType").asText()).isEqualTo("Observation");
+                assertThat(observation.get("effectiveDateTime").asText()).isNotEmpty();
+                Map<String, Double> values = new HashMap<>();
+                observation.get("component").forEach(component -> {
+                    assertThat(component.at("/valueQuantity/code").asText()).isEqualTo("cells/uL");
+                    values.put(component.at("/code/coding/0/code").asText(),
+                            component.at("/valueQuantity/value").asDouble());
+                });
+                assertThat(values).containsOnly(
+                        Map.entry("6690-2", hemograma.getWhiteBloodCells()),
+                        Map.entry("751-8", hemograma.getNeutrophils()),
+                        Map.entry("764-1", hemograma.getNeutrophilsBandForm()));
+            }
+        }
+    }
+
+    @Test
+    void leanerProfilesAddNoValidationErrors() {
+        FhirValidator validator = new BundleValidationService(FHIR_CONTEXT, new ValidationProperties(),
+                new SimpleMeterRegistry()).validator();
+        try (GeneratorFixture fixture = new GeneratorFixture("http://127.0.0.1:9/api/fhir",
+                StorageProperties.BundleMode.EAGER, ExternalApiProperties.Compression.NONE)) {
+            Map<BundleProfile, Set<String>> errors = new EnumMap<>(BundleProfile.class);
+            for (BundleProfile profile : BundleProfile.values()) {
+                errors.put(profile, validator.validateWithResult(fixture.hemogramaService.generateDebugFhir(profile))
+                        .getMessages().stream()
+                        .filter(m -> m.getSeverity().ordinal() >= ResultSeverityEnum.ERROR.ordinal())
+                        .map(SingleValidationMessage::getMessage)
+                        .collect(Collectors.toSet()));
+            }
+
+            // FULL has errors of its own (the cells/uL unit, urn:uuid fullUrls that are not UUIDs)
+            assertThat(errors.get(BundleProfile.FULL)).containsAll(errors.get(BundleProfile.STANDARD));
+            assertThat(errors.get(BundleProfile.FULL)).containsAll(errors.get(BundleProfile.MINIMAL));
+        }
+    }
+
+    @Test
+    void eachProfileIsSmallerThanTheOneAboveIt() {
+        try (GeneratorFixture fixture = new GeneratorFixture("http://127.0.0.1:9/api/fhir",
+                StorageProperties.BundleMode.EAGER, ExternalApiProperties.Compression.NONE)) {
+            Map<BundleProfile, Integer> sizes = fixture.hemogramaService.bundleSizesByProfile();
+
+            assertThat(sizes.get(BundleProfile.STANDARD)).isLessThan(sizes.get(BundleProfile.FULL) / 2);
+            assertThat(sizes.get(BundleProfile.MINIMAL)).isLessThan(sizes.get(BundleProfile.STANDARD) * 2 / 3);
+
+            fixture.hemogramaService.generateBatch(10, "Goiania|GO", 0.0, LocalDateTime.of(2026, 3, 12, 10, 0));
+            fixture.fhirProperties.setBundleProfile(BundleProfile.STANDARD);
+            fixture.hemogramaService.generateBatch(10, "Goiania|GO", 0.0, LocalDateTime.of(2026, 3, 12, 10, 0));
+            assertThat(fixture.meterRegistry.get("episense.bundle.size").tag("profile", "full").summary().count())
+                    .isEqualTo(10);
+            assertThat(fixture.meterRegistry.get("episense.bundle.size").tag("profile", "standard").summary().count())
+                    .isEqualTo(10);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.episense.fhirgenerator.service;
+
+import ca.uhn.fhir.context.FhirContext;
+import com.episense.fhirgenerator.config.ValidationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BundleValidationServiceTests {
+
+    private static final FhirContext FHIR_CONTEXT = FhirContext.forR4();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void validatesFirstBundleOfEveryCodePathAndReportsIssues() {
+        ValidationProperties properties = new ValidationProperties();
+        properties.setEnabled(true);
+        properties.setSampleRate(0.0);
+        BundleValidationService service = new BundleValidationService(FHIR_CONTEXT, properties, meterRegistry);
+        service.init();
+
+        String valid = encode(validBundle());
+        Bundle invalid = validBundle();
+        ((Observation) invalid.getEntryFirstRep().getResource()).setStatus(null);
+
+        service.offer(valid, "NORMAL/eager");
+        service.offer(valid, "NORMAL/eager");
+        service.offer(encode(invalid), "SIB_GRAVE/eager");
+        service.destroy();
+
+        assertThat(bundles("valid", "new-path")).isEqualTo(1);
+        assertThat(bundles("invalid", "new-path")).isEqualTo(1);
+        assertThat(meterRegistry.find("episense.validation.bundles").tag("trigger", "sampled").counter()).isNull();
+        assertThat(meterRegistry.get("episense.validation.issues").tag("severity", "error").counter().count()).isPositive();
+        assertThat(meterRegistry.get("episense.validation.duration").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void disabledServiceIgnoresBundles() {
+        BundleValidationService service = new BundleValidationService(FHIR_CONTEXT, new ValidationProperties(), meterRegistry);
+        service.init();
+
+        service.offer(encode(validBundle()), "NORMAL/eager");
+        service.destroy();
+
+        assertThat(service.isEnabled()).isFalse();
+        assertThat(meterRegistry.getMeters()).isEmpty();
+    }
+
+    private double bundles(String result, String trigger) {
+        return meterRegistry.get("episense.validation.bundles").tag("result", result).tag("trigger", trigger).counter().count();
+    }
+
+    private static Bundle validBundle() {
+        Observation observation = new Observation();
+        observation.setId("cbc-1");
+        observation.setStatus(Observation.ObservationStatus.FINAL);
+        observation.getCode().addCoding().setSystem("http://loinc.org").setCode("58410-2");
+        Patient patient = new Patient();
+        patient.setId("patient-1");
+        Bundle bundle = new Bundle().setType(Bundle.BundleType.COLLECTION);
+        bundle.addEntry().setFullUrl("urn:uuid:0f4f8a1c-5f43-4c5e-9d62-2b0f1c8a7e11").setResource(observation);
+        bundle.addEntry().setFullUrl("urn:uuid:6a1e0c2b-3d4f-4a5b-8c6d-7e8f9a0b1c2d").setResource(patient);
+        return bundle;
+    }
+
+    private static String encode(Bundle bundle) {
+        return FHIR_CONTEXT.newJsonParser().encodeResourceToString(bundle);
+    }
+}
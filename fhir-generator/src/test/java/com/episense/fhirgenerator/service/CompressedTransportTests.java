@@ -0,0 +1,84 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.ExternalApiProperties;
+import com.episense.fhirgenerator.config.StorageProperties;
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.model.DeliveryLane;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompressedTransportTests {
+
+    private static final int RECORDS = 40;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @ParameterizedTest
+    @EnumSource(value = ExternalApiProperties.Compression.class, names = {"GZIP", "ZSTD"})
+    void decodedBodiesMatchStoredBundlesAndShrinkOnTheWire(ExternalApiProperties.Compression compression) throws Exception {
+        try (FhirServerStub stub = new FhirServerStub(0, 0.0, 4);
+             GeneratorFixture fixture = new GeneratorFixture(stub.url(), StorageProperties.BundleMode.EAGER, compression)) {
+            stub.captureBodies(true);
+
+            List<Hemograma> hemogramas = fixture.hemogramaService.generateBatch(RECORDS, "Trindade|GO", 0.5, LocalDateTime.now());
+            fixture.externalApiService.sendHemogramas(hemogramas);
+
+            assertThat(stub.accepted()).isEqualTo(RECORDS);
+            assertThat(fixture.sentCount()).isEqualTo(RECORDS);
+
+            // Compaction only drops whitespace: the decoded JSON is the stored bundle
+            JsonNode first = objectMapper.readTree(stub.capturedBodies().getFirst());
+            assertThat(hemogramas.stream().map(h -> readTree(h.getFhirBundleJson())).toList()).contains(first);
+
+            double uncompressed = fixture.counter("episense.delivery.bytes", "uncompressed");
+            double wire = fixture.counter("episense.delivery.bytes", "wire");
+            assertThat(wire).isEqualTo(stub.requestBytes());
+            assertThat(uncompressed / wire).isGreaterThan(4.0);
+        }
+    }
+
+    @Test
+    void retriedRecordsAreSentFromTheStoredBundleBytes() throws Exception {
+        try (FhirServerStub stub = new FhirServerStub(0, 1.0, 2);
+             GeneratorFixture fixture = new GeneratorFixture(stub.url(), StorageProperties.BundleMode.EAGER,
+                     ExternalApiProperties.Compression.NONE)) {
+            List<Hemograma> hemogramas = fixture.hemogramaService.generateBatch(5, "Trindade|GO", 0.0, LocalDateTime.now());
+            Map<UUID, String> stored = hemogramas.stream()
+                    .collect(Collectors.toMap(Hemograma::getId, Hemograma::getFhirBundleJson));
+            fixture.externalApiService.sendHemogramas(hemogramas);
+            stub.errorRate(0.0);
+            stub.captureBodies(true);
+
+            List<Hemograma> pending = fixture.hemogramaService.findOwnedNotSent();
+            // As read by the delivery queries, which leave out fhir_bundle_json
+            pending.forEach(h -> h.setFhirBundleJson(null));
+            fixture.externalApiService.sendHemogramas(pending, DeliveryLane.RETRY);
+
+            assertThat(stub.accepted()).isEqualTo(5);
+            assertThat(fixture.repository.bundleReads).hasValue(5);
+            assertThat(stub.capturedBodies()).map(b -> new String(b, StandardCharsets.UTF_8))
+                    .containsExactlyInAnyOrderElementsOf(stored.values());
+            assertThat(fixture.sentCount()).isEqualTo(5);
+        }
+    }
+
+    private JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.ExternalApiProperties;
+import com.episense.fhirgenerator.config.StorageProperties;
+import com.episense.fhirgenerator.entity.DeadLetter;
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.model.DeliveryLane;
+import com.episense.fhirgenerator.model.DeliveryState;
+import com.episense.fhirgenerator.model.FailureClass;
+import com.episense.fhirgenerator.repository.HemogramaRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeliveryClaimTests {
+
+    private static final int RECORDS = 60;
+
+    @Test
+    void concurrentBatchAndRetryPathsSendEachRecordOnce() throws Exception {
+        try (FhirServerStub stub = new FhirServerStub(5, 0.0, 8);
+             GeneratorFixture fixture = newFixture(stub)) {
+            List<Hemograma> hemogramas = fixture.hemogramaService.generateBatch(RECORDS, "Trindade|GO", 0.5, LocalDateTime.now());
+
+            CompletableFuture<Void> live = CompletableFuture.runAsync(
+                    () -> fixture.externalApiService.sendHemogramas(hemogramas, DeliveryLane.LIVE));
+            CompletableFuture<Void> retry = CompletableFuture.runAsync(
+                    () -> fixture.externalApiService.sendHemogramas(fixture.hemogramaService.findOwnedNotSent(), DeliveryLane.RETRY));
+            CompletableFuture.allOf(live, retry).join();
+
+            assertThat(stub.accepted()).isEqualTo(RECORDS);
+            assertThat(fixture.sentCount()).isEqualTo(RECORDS);
+            assertThat(hemogramas).allSatisfy(h -> assertThat(h.getDeliveryState()).isEqualTo(DeliveryState.SENT));
+        }
+    }
+
+    @Test
+    void liveLeasesAreSkippedAndExpiredLeasesReclaimed() throws Exception {
+        try (FhirServerStub stub = new FhirServerStub(0, 0.0, 2);
+             GeneratorFixture fixture = newFixture(stub)) {
+            List<Hemograma> hemogramas = fixture.hemogramaService.generateBatch(2, "Trindade|GO", 0.0, LocalDateTime.now());
+            Hemograma held = hemogramas.get(0);
+            Hemograma abandoned = hemogramas.get(1);
+            assertThat(fixture.hemogramaService.claimForDelivery(held, Duration.ofMinutes(1))).isTrue();
+            assertThat(fixture.hemogramaService.claimForDelivery(abandoned, Duration.ofMillis(-1))).isTrue();
+
+            List<Hemograma> claimable = fixture.hemogramaService.findOwnedNotSent();
+            assertThat(claimable).containsExactly(abandoned);
+
+            fixture.externalApiService.sendHemogramas(hemogramas, DeliveryLane.RETRY);
+
+            assertThat(stub.accepted()).isEqualTo(1);
+            assertThat(held.getDeliveryState()).isEqualTo(DeliveryState.IN_FLIGHT);
+            assertThat(abandoned.getDeliveryState()).isEqualTo(DeliveryState.SENT);
+            assertThat(abandoned.getDeliveryAttempts()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void recordsGoDeadAfterMaxAttempts() throws Exception {
+        try (FhirServerStub stub = new FhirServerStub(0, 1.0, 2);
+             GeneratorFixture fixture = newFixture(stub)) {
+            fixture.externalApiProperties.setMaxDeliveryAttempts(2);
+            List<Hemograma> hemogramas = fixture.hemogramaService.generateBatch(1, "Trindade|GO", 0.0, LocalDateTime.now());
+
+            fixture.externalApiService.sendHemogramas(hemogramas);
+            assertThat(hemogramas.getFirst().getDeliveryState()).isEqualTo(DeliveryState.PENDING);
+            fixture.externalApiService.sendHemogramas(fixture.hemogramaService.findOwnedNotSent(), DeliveryLane.RETRY);
+
+            assertThat(stub.rejected()).isEqualTo(2);
+            assertThat(hemogramas.getFirst().getDeliveryState()).isEqualTo(DeliveryState.DEAD);
+            assertThat(hemogramas.getFirst().getApiResponseStatus()).isEqualTo(503);
+            assertThat(fixture.hemogramaService.findOwnedNotSent()).isEmpty();
+            assertThat(fixture.deadLetterService.list(10)).singleElement().satisfies(deadLetter -> {
+                assertThat(deadLetter.getFailureClass()).isEqualTo(FailureClass.RETRYABLE);
+                assertThat(deadLetter.getReason()).isEqualTo("Gave up after 2 attempts (last status 503)");
+            });
+        }
+    }
+
+    @Test
+    void terminalRejectionsAreDeadLetteredAtOnceAndCanBeRequeued() throws Exception {
+        try (FhirServerStub stub = new FhirServerStub(0, 1.0, 2);
+             GeneratorFixture fixture = newFixture(stub)) {
+            stub.failureStatus(422);
+            List<Hemograma> hemogramas = fixture.hemogramaService.generateBatch(3, "Trindade|GO", 0.0, LocalDateTime.now());
+
+            fixture.externalApiService.sendHemogramas(hemogramas);
+
+            assertThat(stub.rejected()).isEqualTo(3);
+            // Dead records leave the outbox shards, so retry cycles no longer read them
+            assertThat(fixture.repository.findAll())
+                    .allSatisfy(h -> assertThat(h.getOutboxShard()).isEqualTo(HemogramaRepository.DEAD_SHARD));
+            assertThat(fixture.hemogramaService.findOwnedNotSent()).isEmpty();
+            assertThat(fixture.meterRegistry.get("episense.delivery.dead_letters").tag("class", "terminal").counter().count())
+                    .isEqualTo(3);
+            DeadLetter deadLetter = fixture.deadLetterService.list(10).getFirst();
+            assertThat(deadLetter.getFailureClass()).isEqualTo(FailureClass.TERMINAL);
+            assertThat(deadLetter.getStatusCode()).isEqualTo(422);
+            assertThat(deadLetter.getAttempts()).isEqualTo(1);
+            assertThat(deadLetter.getResponseExcerpt()).contains("OperationOutcome");
+
+            stub.errorRate(0.0);
+            assertThat(fixture.deadLetterService.requeue(deadLetter.getId())).isTrue();
+            assertThat(fixture.deadLetterService.requeueAll()).isEqualTo(2);
+            assertThat(fixture.deadLetterService.list(10)).isEmpty();
+            assertThat(fixture.repository.findAll()).allSatisfy(h -> assertThat(h.getOutboxShard()).isBetween(0, 15));
+            fixture.externalApiService.sendHemogramas(fixture.hemogramaService.findOwnedNotSent(), DeliveryLane.RETRY);
+
+            assertThat(stub.accepted()).isEqualTo(3);
+            assertThat(hemogramas).allSatisfy(h -> assertThat(h.getDeliveryState()).isEqualTo(DeliveryState.SENT));
+        }
+    }
+
+    @Test
+    void unsentRecordsLeaveTheOutboxOnceSentAndLegacyRecordsJoinIt() throws Exception {
+        try (FhirServerStub stub = new FhirServerStub(0, 0.0, 2);
+             GeneratorFixture fixture = newFixture(stub)) {
+            List<Hemograma> hemogramas = fixture.hemogramaService.generateBatch(4, "Trindade|GO", 0.0, LocalDateTime.now());
+            assertThat(hemogramas).allSatisfy(h -> assertThat(h.getOutboxShard()).isBetween(0, 15));
+
+            // Written before outbox shards existed
+            Hemograma legacy = hemogramas.getFirst();
+            legacy.setOutboxShard(null);
+            assertThat(fixture.hemogramaService.findOwnedNotSent()).hasSize(3).doesNotContain(legacy);
+            assertThat(fixture.hemogramaService.assignLegacyOutboxShards()).isEqualTo(1);
+            assertThat(fixture.hemogramaService.findOwnedNotSent()).hasSize(4);
+
+            fixture.externalApiService.sendHemogramas(hemogramas);
+
+            assertThat(hemogramas).allSatisfy(h -> assertThat(h.getOutboxShard()).isEqualTo(-1));
+            assertThat(fixture.hemogramaService.findOwnedNotSent()).isEmpty();
+            assertThat(fixture.hemogramaService.assignLegacyOutboxShards()).isZero();
+        }
+    }
+
+    private static GeneratorFixture newFixture(FhirServerStub stub) {
+        return new GeneratorFixture(stub.url(), StorageProperties.BundleMode.EAGER, ExternalApiProperties.Compression.NONE);
+    }
+}
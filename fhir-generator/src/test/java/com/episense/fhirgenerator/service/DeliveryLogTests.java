@@ -0,0 +1,84 @@
+package com.episense.fhirgenerator.service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.episense.fhirgenerator.config.LoggingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeliveryLogTests {
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger(DeliveryLog.class);
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private Level previousLevel;
+
+    @BeforeEach
+    void captureLogs() {
+        previousLevel = logger.getLevel();
+        logger.setLevel(Level.DEBUG);
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void restoreLogs() {
+        logger.detachAppender(appender);
+        logger.setLevel(previousLevel);
+    }
+
+    @Test
+    void recordLinesAreRateLimitedWhileTheSummaryCountsEveryOutcome() {
+        LoggingProperties properties = new LoggingProperties();
+        properties.setSuccessSampleRate(1.0);
+        properties.setMaxRecordLinesPerSecond(0.001);
+        properties.setRecordLineBurst(5);
+        DeliveryLog deliveryLog = new DeliveryLog(properties);
+
+        IntStream.range(0, 1_000).parallel().forEach(i -> deliveryLog.sent("primary", UUID.randomUUID(), 201));
+        IntStream.range(0, 20).forEach(i -> deliveryLog.failed("primary", UUID.randomUUID(), 503, "Service Unavailable"));
+        deliveryLog.failed("staging", UUID.randomUUID(), null, "Connection refused");
+
+        assertThat(appender.list).hasSize(5);
+        assertThat(deliveryLog.summary())
+                .contains("primary {201=1000, 503=20}")
+                .contains("staging {none=1}")
+                .endsWith("(1016 record lines suppressed)");
+        // Counts start over with each summary
+        assertThat(deliveryLog.summary()).isNull();
+    }
+
+    @Test
+    void successesAreSampledAndFailuresAreNot() {
+        LoggingProperties properties = new LoggingProperties();
+        properties.setSuccessSampleRate(0.0);
+        properties.setMaxRecordLinesPerSecond(0);
+        DeliveryLog deliveryLog = new DeliveryLog(properties);
+
+        IntStream.range(0, 100).forEach(i -> deliveryLog.sent("primary", UUID.randomUUID(), 200));
+        deliveryLog.failed("primary", UUID.randomUUID(), 400, "Bad Request");
+
+        assertThat(appender.list).singleElement()
+                .satisfies(event -> assertThat(event.getLevel()).isEqualTo(Level.WARN));
+        assertThat(deliveryLog.summary()).contains("primary {200=100, 400=1}").endsWith("(0 record lines suppressed)");
+    }
+
+    @Test
+    void statusCountsOfABatchAreOrderedByCode() {
+        DeliveryLog.StatusCounts statuses = new DeliveryLog.StatusCounts();
+        statuses.add(503);
+        statuses.add(201);
+        statuses.add(null);
+        statuses.add(201);
+
+        assertThat(statuses).hasToString("{201=2, 503=1, none=1}");
+    }
+}
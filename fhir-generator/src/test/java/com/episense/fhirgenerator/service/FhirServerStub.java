@@ -0,0 +1,147 @@
+package com.episense.fhirgenerator.service;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * In-process stand-in for fhir-server's {@code POST /api/fhir}.
+ *
+ * <p>Latency and error rate are injected per request. {@code maxConnections} bounds the
+ * handler pool, so requests beyond it queue the way they would against a saturated server.
+ * Gzip and zstd bodies are decoded like actix-web does in fhir-server.</p>
+ */
+public class FhirServerStub implements AutoCloseable {
+
+    private static final byte[] FAILURE_BODY =
+            "{\"resourceType\":\"OperationOutcome\",\"issue\":[{\"severity\":\"error\"}]}".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final long latencyMs;
+    private volatile double errorRate;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicLong decodedBytes = new AtomicLong();
+    private final List<byte[]> capturedBodies = new CopyOnWriteArrayList<>();
+    private volatile boolean captureBodies;
+    private volatile int failureStatus = 503;
+
+    public FhirServerStub(long latencyMs, double errorRate, int maxConnections) throws IOException {
+        this.latencyMs = latencyMs;
+        this.errorRate = errorRate;
+        this.handlers = Executors.newFixedThreadPool(maxConnections);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/api/fhir", this::handle);
+        this.server.setExecutor(handlers);
+        this.server.start();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api/fhir";
+    }
+
+    public long accepted() {
+        return accepted.get();
+    }
+
+    long rejected() {
+        return rejected.get();
+    }
+
+    public long requestBytes() {
+        return requestBytes.get();
+    }
+
+    /**
+     * Bytes after undoing {@code Content-Encoding}, i.e. what fhir-server would parse.
+     */
+    long decodedBytes() {
+        return decodedBytes.get();
+    }
+
+    /**
+     * Keeps decoded request bodies for inspection. Off by default to keep memory flat.
+     */
+    void captureBodies(boolean capture) {
+        this.captureBodies = capture;
+    }
+
+    void errorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Status returned for failed requests, 503 by default.
+     */
+    void failureStatus(int status) {
+        this.failureStatus = status;
+    }
+
+    List<byte[]> capturedBodies() {
+        return capturedBodies;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            byte[] wire = body.readAllBytes();
+            requestBytes.addAndGet(wire.length);
+            byte[] decoded = decode(wire, exchange.getRequestHeaders().getFirst("Content-Encoding"));
+            decodedBytes.addAndGet(decoded.length);
+            if (captureBodies) {
+                capturedBodies.add(decoded);
+            }
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+            boolean fail = ThreadLocalRandom.current().nextDouble() < errorRate;
+            (fail ? rejected : accepted).incrementAndGet();
+            if (fail) {
+                exchange.sendResponseHeaders(failureStatus, FAILURE_BODY.length);
+                exchange.getResponseBody().write(FAILURE_BODY);
+            } else {
+                exchange.sendResponseHeaders(202, -1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] decode(byte[] wire, String contentEncoding) throws IOException {
+        if (contentEncoding == null) {
+            return wire;
+        }
+        InputStream decoder = switch (contentEncoding) {
+            case "gzip" -> new GZIPInputStream(new ByteArrayInputStream(wire));
+            case "zstd" -> new ZstdInputStream(new ByteArrayInputStream(wire));
+            default -> throw new IOException("Unsupported Content-Encoding: " + contentEncoding);
+        };
+        try (decoder) {
+            return decoder.readAllBytes();
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        server.stop(0);
+        handlers.shutdown();
+        handlers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.AnomalyProperties;
+import com.episense.fhirgenerator.config.MunicipalityProperties;
+import com.episense.fhirgenerator.config.SchedulerProperties;
+import com.episense.fhirgenerator.config.ShardingProperties;
+import com.episense.fhirgenerator.model.GenerationConfig;
+import com.episense.fhirgenerator.model.Municipality;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GenerationConfigServiceTests {
+
+    @Test
+    void invalidUpdatesAreRejectedWithoutTakingEffect() {
+        GenerationConfigService service = newService(new AnomalyProperties());
+        GenerationConfig before = service.current();
+
+        assertThatThrownBy(() -> service.update(c -> c.toBuilder().percentage(1.5).minBatchSize(0).build()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("percentage")
+                .hasMessageContaining("batch sizes");
+
+        assertThat(service.current()).isSameAs(before);
+        assertThat(service.applied().version()).isZero();
+    }
+
+    @Test
+    void concurrentUpdatesAreAllApplied() {
+        GenerationConfigService service = newService(new AnomalyProperties());
+
+        IntStream.range(0, 200).parallel().forEach(_ -> service.update(
+                c -> c.toBuilder().maxBatchSize(c.maxBatchSize() + 1).build()));
+
+        assertThat(service.current().maxBatchSize()).isEqualTo(new SchedulerProperties().getMaxBatchSize() + 200);
+        assertThat(service.applied().version()).isEqualTo(200);
+        assertThat(service.reset().config().maxBatchSize()).isEqualTo(new SchedulerProperties().getMaxBatchSize());
+    }
+
+    @Test
+    void invalidStartupConfigurationFailsFast() {
+        AnomalyProperties properties = new AnomalyProperties();
+        properties.setNeutrophiliaRange(new double[]{5000.0, 25000.0});
+
+        assertThatThrownBy(() -> newService(properties))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("neutrophilia-range");
+    }
+
+    @Test
+    void catalogFollowsOutbreakCitiesOfTheCurrentSnapshot() {
+        GenerationConfigService service = newService(new AnomalyProperties());
+        ShardCoordinator shardCoordinator = new ShardCoordinator(null, new ShardingProperties());
+        shardCoordinator.init();
+        MunicipalityCatalog catalog = new MunicipalityCatalog(new MunicipalityProperties(), service, shardCoordinator,
+                new DefaultResourceLoader());
+        catalog.init();
+        MunicipalityCatalog.Selection before = catalog.ownedSelection();
+
+        service.update(c -> c.toBuilder().outbreakCities(List.of("Anapolis|GO")).build());
+
+        MunicipalityCatalog.Selection after = catalog.ownedSelection();
+        assertThat(after).isNotSameAs(before);
+        assertThat(after.sampleOutbreak().key()).isEqualTo("Anapolis|GO");
+        assertThat(catalog.all()).extracting(Municipality::key).contains("Anapolis|GO").doesNotContain("Trindade|GO");
+    }
+
+    private static GenerationConfigService newService(AnomalyProperties properties) {
+        GenerationConfigService service = new GenerationConfigService(properties, new SchedulerProperties());
+        service.init();
+        return service;
+    }
+}
@@ -0,0 +1,94 @@
+package com.episense.fhirgenerator.service;
+
+import ca.uhn.fhir.context.FhirContext;
+import com.episense.fhirgenerator.config.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.util.Map;
+
+/**
+ * Wires the generation and delivery services by hand around an in-memory repository,
+ * so tests can run without a Spring context or ScyllaDB.
+ */
+public class GeneratorFixture implements AutoCloseable {
+
+    private static final FhirContext FHIR_CONTEXT = FhirContext.forR4();
+
+    final InMemoryHemogramaRepository repository = new InMemoryHemogramaRepository();
+    final InMemoryDeadLetterRepository deadLetterRepository = new InMemoryDeadLetterRepository();
+    final InMemoryMirrorDeliveryRepository mirrorDeliveryRepository = new InMemoryMirrorDeliveryRepository();
+    final AnomalyProperties anomalyProperties = new AnomalyProperties();
+    final StorageProperties storageProperties = new StorageProperties();
+    final ExternalApiProperties externalApiProperties = new ExternalApiProperties();
+    final PopulationProperties populationProperties = new PopulationProperties();
+    final MunicipalityProperties municipalityProperties = new MunicipalityProperties();
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    final SimulationClock simulationClock = new SimulationClock();
+    final SimulationProperties simulationProperties = new SimulationProperties();
+    final FhirProperties fhirProperties = new FhirProperties();
+    final GenerationConfigService generationConfigService = new GenerationConfigService(anomalyProperties,
+            new SchedulerProperties());
+
+    public final HemogramaService hemogramaService;
+    public final ExternalApiService externalApiService;
+    final ExportService exportService;
+    final DeadLetterService deadLetterService;
+    final MirrorDeliveryService mirrorDeliveryService;
+    final SimulationService simulationService;
+
+    public GeneratorFixture(String url, StorageProperties.BundleMode bundleMode, ExternalApiProperties.Compression compression) {
+        this(url, bundleMode, compression, Map.of());
+    }
+
+    public GeneratorFixture(String url, StorageProperties.BundleMode bundleMode, ExternalApiProperties.Compression compression,
+                     Map<String, ExternalApiProperties.Mirror> mirrors) {
+        storageProperties.setBundleMode(bundleMode);
+        externalApiProperties.getMirrors().putAll(mirrors);
+        externalApiProperties.setUrl(url);
+        externalApiProperties.setTimeout(5000L);
+        externalApiProperties.setCompression(compression);
+
+        generationConfigService.init();
+        ShardCoordinator shardCoordinator = new ShardCoordinator(new InMemoryShardLeaseRepository(), new ShardingProperties());
+        shardCoordinator.init();
+
+        MunicipalityCatalog municipalityCatalog = new MunicipalityCatalog(
+                municipalityProperties, generationConfigService, shardCoordinator, new DefaultResourceLoader());
+        municipalityCatalog.init();
+        populationProperties.setSize(100_000);
+        PatientRegistry patientRegistry = new PatientRegistry(populationProperties, municipalityCatalog);
+        patientRegistry.init();
+
+        hemogramaService = new HemogramaService(repository, FHIR_CONTEXT.newJsonParser().setPrettyPrint(true),
+                FHIR_CONTEXT, generationConfigService, storageProperties, new GroundTruthService(), shardCoordinator,
+                patientRegistry, municipalityCatalog,
+                new BundleValidationService(FHIR_CONTEXT, new ValidationProperties(), meterRegistry),
+                new AnalyteSampler(patientRegistry), simulationClock, fhirProperties, meterRegistry);
+        deadLetterService = new DeadLetterService(deadLetterRepository, repository, shardCoordinator);
+        mirrorDeliveryService = new MirrorDeliveryService(mirrorDeliveryRepository, shardCoordinator);
+        externalApiService = new ExternalApiService(
+                new RestTemplateConfig(externalApiProperties).restTemplate(new RestTemplateBuilder()),
+                hemogramaService, externalApiProperties, new PayloadEncoder(externalApiProperties), meterRegistry,
+                deadLetterService, mirrorDeliveryService, new DeliveryLog(new LoggingProperties()));
+        externalApiService.init();
+        simulationService = new SimulationService(hemogramaService, externalApiService, simulationClock,
+                simulationProperties);
+        exportService = new ExportService(repository, hemogramaService, new PayloadEncoder(externalApiProperties));
+    }
+
+    public long sentCount() {
+        return repository.count() - repository.findNotSent().size();
+    }
+
+    public double counter(String name, String kind) {
+        return meterRegistry.get(name).tag("kind", kind).counter().count();
+    }
+
+    @Override
+    public void close() {
+        simulationService.destroy();
+        externalApiService.destroy();
+    }
+}
@@ -0,0 +1,90 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.model.AnomalyType;
+import com.episense.fhirgenerator.model.ExpectedAlarm;
+import com.episense.fhirgenerator.model.HemogramaData;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GroundTruthServiceTests {
+
+    private final GroundTruthService groundTruthService = new GroundTruthService();
+
+    @Test
+    void weightsSevereCasesTwiceAndIgnoresNormal() {
+        LocalDateTime day = LocalDateTime.of(2025, 1, 20, 10, 0);
+        record("Trindade", "GO", day, AnomalyType.SIB_GRAVE, 3);
+        record("Trindade", "GO", day, AnomalyType.SIB_SUSPEITA, 4);
+        record("Trindade", "GO", day, AnomalyType.NORMAL, 50);
+
+        assertThat(groundTruthService.evaluate("Trindade|GO", day.toLocalDate()).getObservedValue())
+                .isEqualTo(10);
+    }
+
+    @Test
+    void flagsOutbreakDayAboveUpperControlLimit() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 8, 0);
+        for (int i = 0; i < 15; i++) {
+            record("Trindade", "GO", start.plusDays(i), AnomalyType.SIB_SUSPEITA, 2 + i % 2);
+        }
+        LocalDateTime outbreakDay = start.plusDays(15);
+        record("Trindade", "GO", outbreakDay, AnomalyType.SIB_GRAVE, 30);
+
+        ExpectedAlarm alarm = groundTruthService.evaluate("Trindade|GO", outbreakDay.toLocalDate());
+
+        assertThat(alarm.isInsufficientData()).isFalse();
+        assertThat(alarm.isBreach()).isTrue();
+        assertThat(alarm.getDirection()).isEqualTo(ExpectedAlarm.Direction.INCREASE);
+        assertThat(groundTruthService.findExpectedAlarms())
+                .extracting(ExpectedAlarm::getDate)
+                .containsExactly(outbreakDay.toLocalDate());
+    }
+
+    @Test
+    void flagsDayWithoutCasesBelowLowerControlLimit() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 8, 0);
+        for (int i = 0; i < 15; i++) {
+            record("Trindade", "GO", start.plusDays(i), AnomalyType.SIB_SUSPEITA, 10 + i % 2);
+        }
+        // Nothing is recorded on day 15
+        LocalDate silentDay = start.plusDays(15).toLocalDate();
+        record("Trindade", "GO", start.plusDays(16), AnomalyType.SIB_SUSPEITA, 10);
+
+        ExpectedAlarm alarm = groundTruthService.evaluate("Trindade|GO", silentDay);
+
+        assertThat(alarm.isBreach()).isTrue();
+        assertThat(alarm.getDirection()).isEqualTo(ExpectedAlarm.Direction.DECREASE);
+        // The ramp-up from nothing on the first days is an increase of its own
+        assertThat(groundTruthService.findExpectedAlarms())
+                .filteredOn(found -> found.getDirection() == ExpectedAlarm.Direction.DECREASE)
+                .extracting(ExpectedAlarm::getDate)
+                .containsExactly(silentDay);
+    }
+
+    @Test
+    void reportsInsufficientDataForSparseBaseline() {
+        LocalDate target = LocalDate.of(2025, 2, 1);
+        record("Goiania", "GO", target.atStartOfDay(), AnomalyType.SIB_GRAVE, 100);
+
+        ExpectedAlarm alarm = groundTruthService.evaluate("Goiania|GO", target);
+
+        assertThat(alarm.isInsufficientData()).isTrue();
+        assertThat(alarm.isBreach()).isFalse();
+    }
+
+    private void record(String city, String state, LocalDateTime date, AnomalyType type, int times) {
+        HemogramaData data = HemogramaData.builder()
+                .city(city)
+                .state(state)
+                .collectionDate(date)
+                .anomalyType(type)
+                .build();
+        for (int i = 0; i < times; i++) {
+            groundTruthService.record(data);
+        }
+    }
+}
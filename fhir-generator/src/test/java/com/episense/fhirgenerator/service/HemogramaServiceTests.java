@@ -0,0 +1,46 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.ExternalApiProperties;
+import com.episense.fhirgenerator.config.StorageProperties;
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.model.BundleProfile;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HemogramaServiceTests {
+
+    private static final LocalDateTime COLLECTED = LocalDateTime.of(2026, 3, 12, 10, 0);
+
+    @ParameterizedTest
+    @EnumSource(BundleProfile.class)
+    void lazyRowsRebuildTheBundleAnEagerRowStores(BundleProfile profile) {
+        try (GeneratorFixture eager = fixture(StorageProperties.BundleMode.EAGER, profile);
+             GeneratorFixture lazy = fixture(StorageProperties.BundleMode.LAZY, profile)) {
+            List<Hemograma> stored = eager.hemogramaService.generateBatch(30, "Trindade|GO", 0.5, COLLECTED);
+
+            for (Hemograma hemograma : stored) {
+                // The same row as LAZY mode persists it: every column but the bundle
+                Hemograma row = hemograma.toBuilder().fhirBundleJson(null).build();
+                lazy.repository.save(row);
+
+                assertThat(hemograma.getFhirBundleJson()).isNotNull();
+                assertThat(lazy.hemogramaService.getBundleJson(lazy.repository.findById(row.getId()).orElseThrow()))
+                        .isEqualTo(hemograma.getFhirBundleJson());
+            }
+            assertThat(lazy.hemogramaService.generateBatch(5, "Trindade|GO", 0.5, COLLECTED))
+                    .allSatisfy(h -> assertThat(h.getFhirBundleJson()).isNull());
+        }
+    }
+
+    private static GeneratorFixture fixture(StorageProperties.BundleMode bundleMode, BundleProfile profile) {
+        GeneratorFixture fixture = new GeneratorFixture("http://127.0.0.1:9/api/fhir", bundleMode,
+                ExternalApiProperties.Compression.NONE);
+        fixture.fhirProperties.setBundleProfile(profile);
+        return fixture;
+    }
+}
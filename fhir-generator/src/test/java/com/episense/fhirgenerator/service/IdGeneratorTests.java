@@ -0,0 +1,49 @@
+package com.episense.fhirgenerator.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdGeneratorTests {
+
+    @Test
+    void producesVersion7UuidsCarryingTheTimestamp() {
+        long millis = 1_760_000_000_000L;
+        UUID id = IdGenerator.newId(millis);
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        assertThat(id.getMostSignificantBits() >>> 16).isEqualTo(millis);
+    }
+
+    @Test
+    void idsAndPatientIdsSortByCreationTime() {
+        UUID earlier = IdGenerator.newId(1_000L);
+        UUID later = IdGenerator.newId(2_000L);
+
+        assertThat(earlier.toString()).isLessThan(later.toString());
+        assertThat(IdGenerator.toBase32(earlier)).isLessThan(IdGenerator.toBase32(later));
+    }
+
+    @Test
+    void encodesAll128BitsInCrockfordBase32() {
+        assertThat(IdGenerator.toBase32(new UUID(0, 0))).isEqualTo("00000000000000000000000000");
+        assertThat(IdGenerator.toBase32(new UUID(-1, -1))).isEqualTo("7ZZZZZZZZZZZZZZZZZZZZZZZZZ");
+        assertThat(IdGenerator.toBase32(new UUID(0, 32))).isEqualTo("00000000000000000000000010");
+        assertThat(IdGenerator.newPatientId("PATIENT")).matches("PATIENT-[0-9A-HJKMNP-TV-Z]{26}");
+    }
+
+    @Test
+    void patientIdsDoNotCollideAcrossThreads() {
+        Set<String> ids = IntStream.range(0, 500_000).parallel()
+                .mapToObj(_ -> IdGenerator.newPatientId("PAT"))
+                .collect(HashSet::new, Set::add, Set::addAll);
+
+        assertThat(ids).hasSize(500_000);
+    }
+}
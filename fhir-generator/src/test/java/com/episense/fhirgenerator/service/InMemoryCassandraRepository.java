@@ -0,0 +1,105 @@
+package com.episense.fhirgenerator.service;
+
+import org.springframework.data.cassandra.repository.CassandraRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.StreamSupport;
+
+/**
+ * Thread-safe in-memory implementation of the generic {@link CassandraRepository} operations.
+ */
+abstract class InMemoryCassandraRepository<T, ID> implements CassandraRepository<T, ID> {
+
+    protected final Map<ID, T> rows = new ConcurrentHashMap<>();
+    private final Function<T, ID> idOf;
+
+    InMemoryCassandraRepository(Function<T, ID> idOf) {
+        this.idOf = idOf;
+    }
+
+    @Override
+    public <S extends T> S save(S entity) {
+        rows.put(idOf.apply(entity), entity);
+        return entity;
+    }
+
+    @Override
+    public <S extends T> List<S> saveAll(Iterable<S> entities) {
+        List<S> saved = new ArrayList<>();
+        entities.forEach(e -> saved.add(save(e)));
+        return saved;
+    }
+
+    @Override
+    public <S extends T> S insert(S entity) {
+        return save(entity);
+    }
+
+    @Override
+    public <S extends T> List<S> insert(Iterable<S> entities) {
+        return saveAll(entities);
+    }
+
+    @Override
+    public Optional<T> findById(ID id) {
+        return Optional.ofNullable(rows.get(id));
+    }
+
+    @Override
+    public boolean existsById(ID id) {
+        return rows.containsKey(id);
+    }
+
+    @Override
+    public List<T> findAll() {
+        return new ArrayList<>(rows.values());
+    }
+
+    @Override
+    public List<T> findAllById(Iterable<ID> ids) {
+        return StreamSupport.stream(ids.spliterator(), false).map(rows::get).filter(Objects::nonNull).toList();
+    }
+
+    @Override
+    public Slice<T> findAll(Pageable pageable) {
+        List<T> all = findAll();
+        int from = (int) Math.min(pageable.getOffset(), all.size());
+        int to = Math.min(from + pageable.getPageSize(), all.size());
+        return new SliceImpl<>(all.subList(from, to), pageable, to < all.size());
+    }
+
+    @Override
+    public long count() {
+        return rows.size();
+    }
+
+    @Override
+    public void deleteById(ID id) {
+        rows.remove(id);
+    }
+
+    @Override
+    public void delete(T entity) {
+        rows.remove(idOf.apply(entity));
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends ID> ids) {
+        ids.forEach(rows::remove);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends T> entities) {
+        entities.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        rows.clear();
+    }
+}
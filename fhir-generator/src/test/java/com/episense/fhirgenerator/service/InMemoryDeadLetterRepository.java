@@ -0,0 +1,16 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.entity.DeadLetter;
+import com.episense.fhirgenerator.repository.DeadLetterRepository;
+
+import java.util.UUID;
+
+/**
+ * In-memory stand-in for the ScyllaDB-backed {@link DeadLetterRepository}.
+ */
+class InMemoryDeadLetterRepository extends InMemoryCassandraRepository<DeadLetter, UUID> implements DeadLetterRepository {
+
+    InMemoryDeadLetterRepository() {
+        super(DeadLetter::getId);
+    }
+}
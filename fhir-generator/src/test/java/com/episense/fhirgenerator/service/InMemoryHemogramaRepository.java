@@ -0,0 +1,159 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.model.DeliveryState;
+import com.episense.fhirgenerator.repository.HemogramaRepository;
+import org.springframework.data.cassandra.core.cql.QueryOptions;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Thread-safe in-memory stand-in for the ScyllaDB-backed {@link HemogramaRepository}.
+ */
+class InMemoryHemogramaRepository extends InMemoryCassandraRepository<Hemograma, UUID> implements HemogramaRepository {
+
+    // The text column, which outlives changes to the entity that was saved
+    private final Map<UUID, byte[]> bundles = new ConcurrentHashMap<>();
+    final AtomicInteger bundleReads = new AtomicInteger();
+
+    InMemoryHemogramaRepository() {
+        super(Hemograma::getId);
+    }
+
+    @Override
+    public <S extends Hemograma> S save(S entity) {
+        if (entity.getFhirBundleJson() != null) {
+            bundles.put(entity.getId(), entity.getFhirBundleJson().getBytes(StandardCharsets.UTF_8));
+        }
+        return super.save(entity);
+    }
+
+    @Override
+    public List<Hemograma> findNotSent() {
+        return rows.values().stream().filter(h -> !Boolean.TRUE.equals(h.getSentToApi())).toList();
+    }
+
+    @Override
+    public List<Hemograma> findNotSentInShard(int shard) {
+        return rows.values().stream().filter(h -> Objects.equals(h.getOutboxShard(), shard)).toList();
+    }
+
+    @Override
+    public List<Hemograma> findWithoutBundleByIdIn(Collection<UUID> ids) {
+        return findAllById(ids);
+    }
+
+    @Override
+    public List<Hemograma> findByPatientId(String patientId) {
+        return rows.values().stream().filter(h -> patientId.equals(h.getPatientId())).toList();
+    }
+
+    @Override
+    public Stream<Hemograma> streamCreatedBetween(Instant from, Instant to, QueryOptions options) {
+        return rows.values().stream()
+                .filter(h -> !h.getCreatedAt().isBefore(from) && h.getCreatedAt().isBefore(to));
+    }
+
+    @Override
+    public Stream<Hemograma> streamCollectedBetween(Instant from, Instant to, QueryOptions options) {
+        // UUID order stands in for token order
+        return rows.values().stream()
+                .filter(h -> !h.getCollectionDate().isBefore(from) && h.getCollectionDate().isBefore(to))
+                .sorted(Comparator.comparing(Hemograma::getId));
+    }
+
+    @Override
+    public Stream<Hemograma> streamCollectedBetweenAfter(UUID after, Instant from, Instant to, QueryOptions options) {
+        return streamCollectedBetween(from, to, options).filter(h -> h.getId().compareTo(after) > 0);
+    }
+
+    @Override
+    public Hemograma insertExpiring(Hemograma hemograma) {
+        return insert(hemograma);
+    }
+
+    @Override
+    public boolean claim(UUID id, DeliveryState observedState, Instant observedLeaseUntil,
+                         String owner, Instant leaseUntil, int attempts, Instant expiresAt) {
+        return update(id, h -> h.getDeliveryState() == observedState && Objects.equals(h.getLeaseUntil(), observedLeaseUntil), h -> {
+            h.setDeliveryState(DeliveryState.IN_FLIGHT);
+            h.setLeaseOwner(owner);
+            h.setLeaseUntil(leaseUntil);
+            h.setDeliveryAttempts(attempts);
+        });
+    }
+
+    @Override
+    public boolean markSent(UUID id, Instant sentAt, int apiResponseStatus, Instant expiresAt) {
+        return update(id, h -> h.getDeliveryState() != DeliveryState.SENT, h -> {
+            h.setDeliveryState(DeliveryState.SENT);
+            h.setSentToApi(true);
+            h.setOutboxShard(SENT_SHARD);
+            h.setSentAt(sentAt);
+            h.setApiResponseStatus(apiResponseStatus);
+        });
+    }
+
+    @Override
+    public boolean release(UUID id, String owner, DeliveryState nextState, Integer apiResponseStatus, Instant releasedAt,
+                           Instant expiresAt) {
+        return update(id, h -> h.getDeliveryState() == DeliveryState.IN_FLIGHT && Objects.equals(h.getLeaseOwner(), owner), h -> {
+            h.setDeliveryState(nextState);
+            if (apiResponseStatus != null) {
+                h.setApiResponseStatus(apiResponseStatus);
+            }
+            h.setLeaseUntil(releasedAt);
+            if (nextState == DeliveryState.DEAD) {
+                h.setOutboxShard(DEAD_SHARD);
+            }
+        });
+    }
+
+    @Override
+    public boolean assignOutboxShard(UUID id, int shard, Instant expiresAt) {
+        return update(id, h -> !Boolean.TRUE.equals(h.getSentToApi()), h -> h.setOutboxShard(shard));
+    }
+
+    @Override
+    public boolean requeue(UUID id, int shard, Instant expiresAt) {
+        return update(id, h -> h.getDeliveryState() == DeliveryState.DEAD, h -> {
+            h.setDeliveryState(DeliveryState.PENDING);
+            h.setDeliveryAttempts(0);
+            h.setOutboxShard(shard);
+        });
+    }
+
+    @Override
+    public boolean renewIfExpiring(Hemograma observed) {
+        // Rows never expire here
+        return false;
+    }
+
+    @Override
+    public ByteBuffer findBundle(UUID id) {
+        bundleReads.incrementAndGet();
+        byte[] bundle = bundles.get(id);
+        return bundle != null ? ByteBuffer.wrap(bundle) : null;
+    }
+
+    // Compare-and-set on a stored row, like a lightweight transaction
+    private boolean update(UUID id, Predicate<Hemograma> condition, Consumer<Hemograma> change) {
+        boolean[] applied = new boolean[1];
+        rows.computeIfPresent(id, (_, h) -> {
+            if (condition.test(h)) {
+                change.accept(h);
+                applied[0] = true;
+            }
+            return h;
+        });
+        return applied[0];
+    }
+}
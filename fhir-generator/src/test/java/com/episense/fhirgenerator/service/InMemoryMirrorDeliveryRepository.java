@@ -0,0 +1,122 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.entity.MirrorDelivery;
+import com.episense.fhirgenerator.model.DeliveryState;
+import com.episense.fhirgenerator.repository.HemogramaDeliveryRepository;
+import com.episense.fhirgenerator.repository.MirrorDeliveryRepository;
+import org.springframework.data.cassandra.core.mapping.BasicMapId;
+import org.springframework.data.cassandra.core.mapping.MapId;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe in-memory stand-in for the ScyllaDB-backed {@link MirrorDeliveryRepository}.
+ */
+class InMemoryMirrorDeliveryRepository extends InMemoryCassandraRepository<MirrorDelivery, MapId>
+        implements MirrorDeliveryRepository {
+
+    InMemoryMirrorDeliveryRepository() {
+        super(d -> key(d.getHemogramaId(), d.getMirror()));
+    }
+
+    @Override
+    public List<MirrorDelivery> findNotSent(String mirror) {
+        return rows.values().stream()
+                .filter(d -> mirror.equals(d.getMirror()) && !Boolean.TRUE.equals(d.getSent()))
+                .toList();
+    }
+
+    @Override
+    public List<MirrorDelivery> findNotSentInShard(int shard, String mirror) {
+        return rows.values().stream()
+                .filter(d -> mirror.equals(d.getMirror()) && Objects.equals(d.getOutboxShard(), shard))
+                .toList();
+    }
+
+    List<MirrorDelivery> findByMirror(String mirror) {
+        return rows.values().stream().filter(d -> mirror.equals(d.getMirror())).toList();
+    }
+
+    @Override
+    public boolean defer(MirrorDelivery pending) {
+        return insertIfNotExists(pending);
+    }
+
+    @Override
+    public boolean claim(UUID hemogramaId, String mirror, DeliveryState observedState, Instant observedLeaseUntil,
+                         String owner, Instant leaseUntil, int attempts, Instant expiresAt) {
+        return update(hemogramaId, mirror,
+                d -> d.getDeliveryState() == observedState && Objects.equals(d.getLeaseUntil(), observedLeaseUntil), d -> {
+                    d.setDeliveryState(DeliveryState.IN_FLIGHT);
+                    d.setLeaseOwner(owner);
+                    d.setLeaseUntil(leaseUntil);
+                    d.setDeliveryAttempts(attempts);
+                });
+    }
+
+    @Override
+    public boolean markSent(UUID hemogramaId, String mirror, Instant sentAt, int apiResponseStatus,
+                            Instant expiresAt) {
+        return update(hemogramaId, mirror, d -> d.getDeliveryState() != DeliveryState.SENT, d -> {
+            d.setDeliveryState(DeliveryState.SENT);
+            d.setSent(true);
+            d.setOutboxShard(HemogramaDeliveryRepository.SENT_SHARD);
+            d.setSentAt(sentAt);
+            d.setApiResponseStatus(apiResponseStatus);
+        });
+    }
+
+    @Override
+    public boolean assignOutboxShard(UUID hemogramaId, String mirror, int shard, Instant expiresAt) {
+        return update(hemogramaId, mirror, d -> !Boolean.TRUE.equals(d.getSent()), d -> d.setOutboxShard(shard));
+    }
+
+    @Override
+    public boolean release(UUID hemogramaId, String mirror, String owner, DeliveryState nextState,
+                           Integer apiResponseStatus, Instant releasedAt, Instant expiresAt) {
+        return update(hemogramaId, mirror,
+                d -> d.getDeliveryState() == DeliveryState.IN_FLIGHT && Objects.equals(d.getLeaseOwner(), owner), d -> {
+                    d.setDeliveryState(nextState);
+                    if (apiResponseStatus != null) {
+                        d.setApiResponseStatus(apiResponseStatus);
+                    }
+                    d.setLeaseUntil(releasedAt);
+                    if (nextState == DeliveryState.DEAD) {
+                        d.setOutboxShard(HemogramaDeliveryRepository.DEAD_SHARD);
+                    }
+                });
+    }
+
+    @Override
+    public boolean renewIfExpiring(MirrorDelivery observed) {
+        // Rows never expire here
+        return false;
+    }
+
+    // INSERT ... IF NOT EXISTS
+    private boolean insertIfNotExists(MirrorDelivery delivery) {
+        return rows.putIfAbsent(key(delivery.getHemogramaId(), delivery.getMirror()), delivery) == null;
+    }
+
+    // Compare-and-set on a stored row, like a lightweight transaction
+    private boolean update(UUID hemogramaId, String mirror, Predicate<MirrorDelivery> condition, Consumer<MirrorDelivery> change) {
+        boolean[] applied = new boolean[1];
+        rows.computeIfPresent(key(hemogramaId, mirror), (_, d) -> {
+            if (condition.test(d)) {
+                change.accept(d);
+                applied[0] = true;
+            }
+            return d;
+        });
+        return applied[0];
+    }
+
+    private static MapId key(UUID hemogramaId, String mirror) {
+        return BasicMapId.id("hemogramaId", hemogramaId).with("mirror", mirror);
+    }
+}
@@ -0,0 +1,75 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.repository.ShardLeaseRepository;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe in-memory stand-in for the ScyllaDB-backed {@link ShardLeaseRepository},
+ * with leases and instance heartbeats that expire after their TTL.
+ */
+class InMemoryShardLeaseRepository extends ShardLeaseRepository {
+
+    private record Lease(String owner, Instant expiresAt) {
+    }
+
+    private final Map<Integer, Lease> leases = new ConcurrentHashMap<>();
+    private final Map<String, Instant> instances = new ConcurrentHashMap<>();
+
+    InMemoryShardLeaseRepository() {
+        super(null);
+    }
+
+    @Override
+    public boolean tryClaim(int shard, String owner, int ttlSeconds) {
+        Lease claimed = new Lease(owner, expiry(ttlSeconds));
+        // INSERT ... IF NOT EXISTS, where an expired lease no longer exists
+        return leases.compute(shard, (_, lease) -> isLive(lease) ? lease : claimed) == claimed;
+    }
+
+    @Override
+    public boolean renew(int shard, String owner, int ttlSeconds) {
+        Lease renewed = new Lease(owner, expiry(ttlSeconds));
+        return leases.computeIfPresent(shard,
+                (_, lease) -> isLive(lease) && lease.owner().equals(owner) ? renewed : lease) == renewed;
+    }
+
+    @Override
+    public void release(int shard, String owner) {
+        leases.computeIfPresent(shard, (_, lease) -> lease.owner().equals(owner) ? null : lease);
+    }
+
+    @Override
+    public void registerInstance(String instanceId, int ttlSeconds) {
+        instances.put(instanceId, expiry(ttlSeconds));
+    }
+
+    @Override
+    public void unregisterInstance(String instanceId) {
+        instances.remove(instanceId);
+    }
+
+    @Override
+    public int countLiveInstances() {
+        Instant now = Instant.now();
+        return (int) instances.values().stream().filter(expiresAt -> expiresAt.isAfter(now)).count();
+    }
+
+    /**
+     * Current owner of a shard, or {@code null} when its lease is missing or expired.
+     */
+    String ownerOf(int shard) {
+        Lease lease = leases.get(shard);
+        return isLive(lease) ? lease.owner() : null;
+    }
+
+    private static boolean isLive(Lease lease) {
+        return lease != null && lease.expiresAt().isAfter(Instant.now());
+    }
+
+    private static Instant expiry(int ttlSeconds) {
+        return Instant.now().plusSeconds(ttlSeconds);
+    }
+}
@@ -0,0 +1,84 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.model.DeliveryLane;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LaneDispatcherTests {
+
+    private LaneDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void liveWorkOvertakesDeepBackfillQueue() throws Exception {
+        dispatcher = new LaneDispatcher(
+                Map.of(DeliveryLane.LIVE, 8, DeliveryLane.BACKFILL, 1), new TokenBucket(0, 1), 1);
+        List<DeliveryLane> order = Collections.synchronizedList(new ArrayList<>());
+
+        // Park the single worker so both queues fill up before anything is picked
+        CountDownLatch gate = new CountDownLatch(1);
+        CompletableFuture<Void> blocker = dispatcher.submit(DeliveryLane.BACKFILL, () -> await(gate));
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(dispatcher.submit(DeliveryLane.BACKFILL, () -> order.add(DeliveryLane.BACKFILL)));
+        }
+        for (int i = 0; i < 8; i++) {
+            futures.add(dispatcher.submit(DeliveryLane.LIVE, () -> order.add(DeliveryLane.LIVE)));
+        }
+        gate.countDown();
+        blocker.join();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        int lastLive = order.lastIndexOf(DeliveryLane.LIVE);
+        assertThat(lastLive).isLessThan(10);
+        assertThat(dispatcher.queued(DeliveryLane.BACKFILL)).isZero();
+    }
+
+    @Test
+    void tokenBucketCapsRequestRate() throws Exception {
+        dispatcher = new LaneDispatcher(Map.of(), new TokenBucket(50, 1), 4);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 26; i++) {
+            futures.add(dispatcher.submit(DeliveryLane.LIVE, () -> { }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        // One burst token, then 25 more at 50/s
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(450);
+    }
+
+    @Test
+    void failedSendCompletesExceptionally() {
+        dispatcher = new LaneDispatcher(Map.of(), new TokenBucket(0, 1), 1);
+
+        CompletableFuture<Void> future = dispatcher.submit(DeliveryLane.RETRY, () -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertThat(future).failsWithin(5, TimeUnit.SECONDS);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.ExternalApiProperties;
+import com.episense.fhirgenerator.config.StorageProperties;
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.entity.MirrorDelivery;
+import com.episense.fhirgenerator.model.DeliveryLane;
+import com.episense.fhirgenerator.model.DeliveryState;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MirrorDeliveryTests {
+
+    private static final int RECORDS = 30;
+
+    @Test
+    void slowMirrorHoldsUpNeitherThePrimaryNorOtherMirrors() throws Exception {
+        try (FhirServerStub primary = new FhirServerStub(0, 0.0, 4);
+             FhirServerStub capture = new FhirServerStub(0, 0.0, 4);
+             FhirServerStub staging = new FhirServerStub(100, 0.0, 1);
+             GeneratorFixture fixture = new GeneratorFixture(primary.url(), StorageProperties.BundleMode.LAZY,
+                     ExternalApiProperties.Compression.GZIP, Map.of(
+                             "capture", mirror(capture.url(), 4, 1_000),
+                             "staging", mirror(staging.url(), 1, 10)))) {
+            primary.captureBodies(true);
+            capture.captureBodies(true);
+            List<Hemograma> hemogramas = fixture.hemogramaService.generateBatch(RECORDS, "Trindade|GO", 0.3, LocalDateTime.now());
+
+            long started = System.nanoTime();
+            fixture.externalApiService.sendHemogramas(hemogramas, DeliveryLane.LIVE);
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+
+            // Staging alone needs RECORDS x 100 ms
+            assertThat(elapsed).isLessThan(Duration.ofMillis(RECORDS * 100 / 2));
+            assertThat(primary.accepted()).isEqualTo(RECORDS);
+            assertThat(hemogramas).allSatisfy(h -> assertThat(h.getDeliveryState()).isEqualTo(DeliveryState.SENT));
+            awaitCount(capture::accepted, RECORDS);
+            assertThat(staging.accepted()).isLessThan(RECORDS);
+
+            // Encoded once: every endpoint parses the same bytes
+            assertThat(bodies(capture)).containsExactlyInAnyOrderElementsOf(bodies(primary));
+
+            // Bundles still queued for staging have a row as well, so a crash loses none
+            assertThat(fixture.mirrorDeliveryRepository.findByMirror("staging")).hasSize(RECORDS);
+
+            // What did not fit in the staging queue waits for its retry job
+            List<MirrorDelivery> deferred = fixture.mirrorDeliveryRepository.findByMirror("staging").stream()
+                    .filter(d -> d.getDeliveryState() == DeliveryState.PENDING)
+                    .toList();
+            assertThat(deferred).isNotEmpty();
+            fixture.externalApiService.retryMirrors().join();
+            awaitCount(staging::accepted, RECORDS);
+
+            assertThat(fixture.mirrorDeliveryRepository.findByMirror("staging")).hasSize(RECORDS)
+                    .allSatisfy(d -> assertThat(d.getSent()).isTrue());
+            assertThat(fixture.mirrorDeliveryRepository.findByMirror("capture")).hasSize(RECORDS);
+            assertThat(primary.accepted()).isEqualTo(RECORDS);
+        }
+    }
+
+    @Test
+    void mirrorFailuresAreRetriedWithoutResendingToThePrimary() throws Exception {
+        try (FhirServerStub primary = new FhirServerStub(0, 0.0, 2);
+             FhirServerStub staging = new FhirServerStub(0, 1.0, 2);
+             GeneratorFixture fixture = new GeneratorFixture(primary.url(), StorageProperties.BundleMode.EAGER,
+                     ExternalApiProperties.Compression.NONE, Map.of("staging", mirror(staging.url(), 2, 1_000)))) {
+            List<Hemograma> hemogramas = fixture.hemogramaService.generateBatch(5, "Trindade|GO", 0.0, LocalDateTime.now());
+
+            fixture.externalApiService.sendHemogramas(hemogramas, DeliveryLane.LIVE);
+            awaitCount(staging::rejected, 5);
+
+            assertThat(fixture.sentCount()).isEqualTo(5);
+            awaitCount(() -> fixture.mirrorDeliveryService.findOwnedNotSent("staging").size(), 5);
+            assertThat(fixture.mirrorDeliveryRepository.findByMirror("staging")).allSatisfy(d -> {
+                assertThat(d.getDeliveryAttempts()).isEqualTo(1);
+                assertThat(d.getApiResponseStatus()).isEqualTo(503);
+            });
+
+            // The primary's retry lane skips records the mirror has a row for
+            fixture.externalApiService.sendHemogramas(hemogramas, DeliveryLane.RETRY);
+            assertThat(staging.rejected()).isEqualTo(5);
+
+            staging.errorRate(0.0);
+            fixture.externalApiService.retryMirrors().join();
+
+            assertThat(staging.accepted()).isEqualTo(5);
+            assertThat(primary.accepted()).isEqualTo(5);
+            assertThat(fixture.mirrorDeliveryRepository.findByMirror("staging")).allSatisfy(d -> {
+                assertThat(d.getDeliveryState()).isEqualTo(DeliveryState.SENT);
+                assertThat(d.getDeliveryAttempts()).isEqualTo(2);
+            });
+            assertThat(fixture.meterRegistry.get("episense.delivery.mirror")
+                    .tag("mirror", "staging").tag("outcome", "sent").counter().count()).isEqualTo(5);
+        }
+    }
+
+    @Test
+    void recordsLeftToThePrimaryRetryJobReachTheMirrorsToo() throws Exception {
+        try (FhirServerStub primary = new FhirServerStub(0, 0.0, 2);
+             FhirServerStub staging = new FhirServerStub(0, 0.0, 2);
+             GeneratorFixture fixture = new GeneratorFixture(primary.url(), StorageProperties.BundleMode.EAGER,
+                     ExternalApiProperties.Compression.NONE, Map.of("staging", mirror(staging.url(), 2, 1_000)))) {
+            // Stored but never sent, as by an instance that stopped before its live send
+            fixture.hemogramaService.generateBatch(5, "Trindade|GO", 0.0, LocalDateTime.now());
+
+            fixture.externalApiService.sendHemogramas(fixture.hemogramaService.findOwnedNotSent(), DeliveryLane.RETRY);
+            awaitCount(staging::accepted, 5);
+
+            assertThat(primary.accepted()).isEqualTo(5);
+            assertThat(fixture.mirrorDeliveryRepository.findByMirror("staging")).hasSize(5)
+                    .allSatisfy(d -> assertThat(d.getDeliveryState()).isEqualTo(DeliveryState.SENT));
+        }
+    }
+
+    private static ExternalApiProperties.Mirror mirror(String url, int concurrency, int queueCapacity) {
+        ExternalApiProperties.Mirror mirror = new ExternalApiProperties.Mirror();
+        mirror.setUrl(url);
+        mirror.setConcurrency(concurrency);
+        mirror.setQueueCapacity(queueCapacity);
+        return mirror;
+    }
+
+    private static List<String> bodies(FhirServerStub stub) {
+        return stub.capturedBodies().stream().map(b -> new String(b, StandardCharsets.UTF_8)).toList();
+    }
+
+    private static void awaitCount(LongSupplier count, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(15).toNanos();
+        while (count.getAsLong() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(count.getAsLong()).isEqualTo(expected);
+    }
+}
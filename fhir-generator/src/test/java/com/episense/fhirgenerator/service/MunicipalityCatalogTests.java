@@ -0,0 +1,83 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.AnomalyProperties;
+import com.episense.fhirgenerator.config.MunicipalityProperties;
+import com.episense.fhirgenerator.config.SchedulerProperties;
+import com.episense.fhirgenerator.config.ShardingProperties;
+import com.episense.fhirgenerator.model.Municipality;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class MunicipalityCatalogTests {
+
+    @Test
+    void aliasTableDrawsInProportionToWeights() {
+        double[] weights = {1, 0, 6, 3};
+        AliasTable table = new AliasTable(weights);
+        SplittableRandom random = new SplittableRandom(7);
+
+        int[] counts = new int[weights.length];
+        int draws = 1_000_000;
+        for (int i = 0; i < draws; i++) {
+            counts[table.sample(random)]++;
+        }
+
+        assertThat(counts[1]).isZero();
+        assertThat(counts[0] / (double) draws).isCloseTo(0.1, within(0.005));
+        assertThat(counts[2] / (double) draws).isCloseTo(0.6, within(0.005));
+        assertThat(counts[3] / (double) draws).isCloseTo(0.3, within(0.005));
+    }
+
+    @Test
+    void loadsMunicipalitiesFromFileAndSamplesByPopulation() {
+        MunicipalityProperties properties = new MunicipalityProperties();
+        properties.setFile("classpath:municipalities/sample.csv");
+        MunicipalityCatalog catalog = catalog(properties);
+
+        Municipality goiania = catalog.resolve("Goiania|GO");
+        assertThat(goiania.ibgeCode()).isEqualTo("5208707");
+        assertThat(goiania.state()).isSameAs("GO");
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            counts.merge(catalog.sampleNormal().key(), 1, Integer::sum);
+        }
+        // Sao Paulo has ~80x the population of Trindade
+        assertThat(counts.get("Sao Paulo|SP") / (double) counts.get("Trindade|GO")).isBetween(65.0, 95.0);
+    }
+
+    @Test
+    void configuredCitiesAreParsedOnceWithEqualWeights() {
+        MunicipalityCatalog catalog = catalog(new MunicipalityProperties());
+
+        Municipality first = catalog.resolve("Curitiba|PR");
+        assertThat(catalog.resolve("Curitiba|PR")).isSameAs(first);
+        assertThat(first.city()).isEqualTo("Curitiba");
+        assertThat(catalog.resolve("Anapolis").state()).isNull();
+
+        MunicipalityCatalog.Selection owned = catalog.ownedSelection();
+        assertThat(owned.hasOutbreakCities()).isTrue();
+        assertThat(catalog.ownedSelection()).isSameAs(owned);
+        assertThat(catalog.all()).hasSize(new AnomalyProperties().getNormalCities().size()
+                + new AnomalyProperties().getOutbreakCities().size());
+    }
+
+    private MunicipalityCatalog catalog(MunicipalityProperties properties) {
+        ShardCoordinator shardCoordinator = new ShardCoordinator(null, new ShardingProperties());
+        shardCoordinator.init();
+        GenerationConfigService generationConfigService = new GenerationConfigService(new AnomalyProperties(),
+                new SchedulerProperties());
+        generationConfigService.init();
+        MunicipalityCatalog catalog = new MunicipalityCatalog(
+                properties, generationConfigService, shardCoordinator, new DefaultResourceLoader());
+        catalog.init();
+        return catalog;
+    }
+}
@@ -0,0 +1,91 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.PopulationProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PatientRegistryTests {
+
+    private static final List<String> CITIES = List.of("Trindade|GO", "Goiania|GO", "Sao Paulo|SP", "Curitiba|PR");
+    private static final long[] EQUAL_WEIGHTS = {1, 1, 1, 1};
+    private static final int POPULATION = 400_000;
+
+    private final PatientRegistry registry = new PatientRegistry(new PopulationProperties(), null);
+
+    @BeforeEach
+    void setUp() {
+        registry.build(CITIES, EQUAL_WEIGHTS, POPULATION, 42L);
+    }
+
+    @Test
+    void patientsAreDrawnFromTheirHomeCityAndReturn() {
+        Map<String, Integer> visits = new HashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            String patientId = registry.samplePatientId("Goiania|GO");
+            int index = registry.indexOf(patientId);
+            // Cities are laid out in order, 100k patients each
+            assertThat(index).isBetween(100_000, 199_999);
+            visits.merge(patientId, 1, Integer::sum);
+        }
+
+        assertThat(visits.values()).anyMatch(count -> count > 1);
+        assertThat(registry.samplePatientId("Unknown|XX")).isNull();
+    }
+
+    @Test
+    void frequentVisitorsTakeAnOutsizedShareOfExams() {
+        int exams = 200_000;
+        int chronic = 0;
+        for (int i = 0; i < exams; i++) {
+            int index = registry.indexOf(registry.samplePatientId("Trindade|GO")) % 100_000;
+            // The chronic tier (1% of each city) sits at the end of the city block
+            if (index >= 99_000) {
+                chronic++;
+            }
+        }
+
+        // 1% of patients at 52 exams/year against 0.6*1 + 0.3*4 + 0.09*12 + 0.01*52 = 3.4
+        assertThat((double) chronic / exams).isBetween(0.14, 0.17);
+    }
+
+    @Test
+    void residentsFollowPopulationWeightsWithAtLeastOnePerCity() {
+        PatientRegistry weighted = new PatientRegistry(new PopulationProperties(), null);
+        weighted.build(List.of("Sao Paulo|SP", "Trindade|GO", "Serra da Saudade|MG"), new long[]{11_450_000, 142_000, 10}, 100_000, 1L);
+
+        assertThat(weighted.size()).isEqualTo(100_001);
+        assertThat(weighted.indexOf(weighted.samplePatientId("Serra da Saudade|MG"))).isEqualTo(100_000);
+    }
+
+    @Test
+    void baselinesAreStableForTheSameSeed() {
+        PatientRegistry other = new PatientRegistry(new PopulationProperties(), null);
+        other.build(CITIES, EQUAL_WEIGHTS, POPULATION, 42L);
+
+        for (int index : new int[]{0, 12_345, POPULATION - 1}) {
+            for (PatientRegistry.Analyte analyte : PatientRegistry.Analyte.values()) {
+                assertThat(other.baseline(index, analyte)).isEqualTo(registry.baseline(index, analyte)).isBetween(0.0, 1.0);
+            }
+        }
+        assertThat(registry.size()).isEqualTo(POPULATION);
+        assertThat(registry.indexOf("PAT-0000")).isEqualTo(-1);
+    }
+
+    @Test
+    void rejectsPopulationsBeyondOneBuffer() {
+        PatientRegistry oversized = new PatientRegistry(new PopulationProperties(), null);
+
+        assertThatThrownBy(() -> oversized.build(CITIES, EQUAL_WEIGHTS, PatientRegistry.MAX_SIZE + 1, 1L))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("episense.population.size");
+        assertThatThrownBy(() -> oversized.build(CITIES, EQUAL_WEIGHTS, 0, 1L))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
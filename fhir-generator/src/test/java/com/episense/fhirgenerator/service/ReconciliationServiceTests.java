@@ -0,0 +1,171 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.ReconciliationProperties;
+import com.episense.fhirgenerator.model.ReconciliationReport;
+import com.episense.fhirgenerator.repository.ReconciliationRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReconciliationServiceTests {
+
+    private static final int MATCHED = 3_000;
+
+    @TempDir
+    Path workDirectory;
+
+    @Test
+    void sortsEverySentHemogramaIntoExactlyOneFinding() throws Exception {
+        InMemoryReconciliationRepository repository = new InMemoryReconciliationRepository();
+        Instant now = Instant.now();
+        Instant created = now.minus(Duration.ofMinutes(5));
+
+        List<UUID> matched = IntStream.range(0, MATCHED).mapToObj(_ -> UUID.randomUUID()).toList();
+        matched.forEach(id -> {
+            repository.hemograma(id, created, created.plusSeconds(1));
+            repository.message(bundle(id), created.plusSeconds(2));
+        });
+        UUID missing = repository.hemograma(UUID.randomUUID(), created, created.plusSeconds(1));
+        UUID duplicated = repository.hemograma(UUID.randomUUID(), created, created.plusSeconds(1));
+        repository.message(bundle(duplicated), created.plusSeconds(2));
+        repository.message(bundle(duplicated), created.plusSeconds(30));
+        UUID unacknowledged = repository.hemograma(UUID.randomUUID(), created, null);
+        repository.message(bundle(unacknowledged), created.plusSeconds(2));
+        repository.hemograma(UUID.randomUUID(), created, null);
+        UUID late = repository.hemograma(UUID.randomUUID(), now.minus(Duration.ofHours(1)), now.minus(Duration.ofHours(1)));
+        repository.message(bundle(late), now.minusSeconds(10));
+        // Marked as sent after the run started: its message may not have been scanned
+        repository.hemograma(UUID.randomUUID(), created, now.plus(Duration.ofMinutes(1)));
+        UUID unknown = UUID.randomUUID();
+        repository.message(bundle(unknown), now);
+        repository.message("{\"resourceType\":\"Bundle\",\"id\":\"other-system-1\"}", now);
+        repository.message("not json", now);
+
+        ReconciliationReport report = new ReconciliationService(repository, properties()).reconcile();
+
+        assertThat(report.hemogramas()).isEqualTo(MATCHED + 6);
+        assertThat(report.sent()).isEqualTo(MATCHED + 3);
+        assertThat(report.messages()).isEqualTo(MATCHED + 7);
+        assertThat(report.uncorrelated()).isEqualTo(2);
+        assertThat(report.matched()).isEqualTo(MATCHED + 2);
+        assertThat(report.missing()).isEqualTo(1);
+        assertThat(report.duplicated()).isEqualTo(1);
+        assertThat(report.extraCopies()).isEqualTo(1);
+        assertThat(report.unacknowledged()).isEqualTo(1);
+        assertThat(report.unknown()).isEqualTo(1);
+        assertThat(report.late()).isEqualTo(1);
+        assertThat(report.samples()).containsEntry("missing", List.of(missing))
+                .containsEntry("duplicated", List.of(duplicated))
+                .containsEntry("unacknowledged", List.of(unacknowledged))
+                .containsEntry("late", List.of(late));
+        // Latency runs from generation to the first copy received
+        assertThat(report.latencyMs().get("p50")).isEqualTo(2_000L);
+        assertThat(report.latencyMs().get("max")).isBetween(3_580_000L, 3_600_000L);
+
+        try (var leftovers = Files.list(workDirectory)) {
+            assertThat(leftovers).isEmpty();
+        }
+    }
+
+    @Test
+    void slicesCoverTheTokenRingWithoutGaps() {
+        int slices = 7;
+        assertThat(ReconciliationService.sliceStart(0, slices)).isEqualTo(Long.MIN_VALUE);
+        assertThat(ReconciliationService.sliceEnd(slices - 1, slices)).isEqualTo(Long.MAX_VALUE);
+        for (int slice = 0; slice < slices; slice++) {
+            long start = ReconciliationService.sliceStart(slice, slices);
+            long end = ReconciliationService.sliceEnd(slice, slices);
+            if (slice > 0) {
+                assertThat(start).isEqualTo(ReconciliationService.sliceEnd(slice - 1, slices));
+            }
+            assertThat(ReconciliationService.sliceOf(start + 1, slices)).isEqualTo(slice);
+            assertThat(ReconciliationService.sliceOf(end, slices)).isEqualTo(slice);
+        }
+    }
+
+    @Test
+    void correlationIdIsTheHemogramaIdInTheBundleId() {
+        UUID id = UUID.randomUUID();
+
+        assertThat(ReconciliationService.correlationId(
+                "{\"resourceType\":\"Bundle\",\"meta\":{\"id\":\"x\"},\"id\":\"bundle-" + id + "\",\"entry\":[]}"))
+                .isEqualTo(id);
+        assertThat(ReconciliationService.correlationId("{\"resourceType\":\"Bundle\",\"id\":\"bundle-nope\"}")).isNull();
+        assertThat(ReconciliationService.correlationId("{\"resourceType\":\"Bundle\",\"id\":42}")).isNull();
+        assertThat(ReconciliationService.correlationId("{\"resourceType\":\"Bundle\"}")).isNull();
+        assertThat(ReconciliationService.correlationId("[]")).isNull();
+        assertThat(ReconciliationService.correlationId(null)).isNull();
+    }
+
+    private ReconciliationProperties properties() {
+        ReconciliationProperties properties = new ReconciliationProperties();
+        properties.setSlices(8);
+        properties.setParallelism(3);
+        properties.setLateThreshold(Duration.ofMinutes(15));
+        properties.setWorkDirectory(workDirectory.toString());
+        return properties;
+    }
+
+    private static String bundle(UUID id) {
+        return "{\"resourceType\":\"Bundle\",\"id\":\"" + HemogramaService.BUNDLE_ID_PREFIX + id
+                + "\",\"type\":\"collection\",\"entry\":[]}";
+    }
+
+    /**
+     * Both tables as lists, placed on the ring by a stand-in for Murmur3. Messages are
+     * keyed by their own ids, as in fhir-server.
+     */
+    private static final class InMemoryReconciliationRepository implements ReconciliationRepository {
+
+        private final List<Delivery> hemogramas = new ArrayList<>();
+        private final Map<UUID, Message> messages = new ConcurrentHashMap<>();
+
+        UUID hemograma(UUID id, Instant createdAt, Instant sentAt) {
+            hemogramas.add(new Delivery(id, createdAt, sentAt));
+            return id;
+        }
+
+        void message(String payload, Instant receivedAt) {
+            messages.put(UUID.randomUUID(), new Message(payload, receivedAt));
+        }
+
+        @Override
+        public void scanHemogramas(long startExclusive, long endInclusive, Consumer<Delivery> consumer) {
+            hemogramas.stream()
+                    .filter(d -> inRange(tokenOf(d.id()), startExclusive, endInclusive))
+                    .forEach(consumer);
+        }
+
+        @Override
+        public void scanMessages(long startExclusive, long endInclusive, Consumer<Message> consumer) {
+            messages.forEach((key, message) -> {
+                if (inRange(tokenOf(key), startExclusive, endInclusive)) {
+                    consumer.accept(message);
+                }
+            });
+        }
+
+        @Override
+        public long tokenOf(UUID id) {
+            long token = (id.getMostSignificantBits() ^ id.getLeastSignificantBits()) * 0x9E3779B97F4A7C15L;
+            return token == Long.MIN_VALUE ? Long.MAX_VALUE : token;
+        }
+
+        private static boolean inRange(long token, long startExclusive, long endInclusive) {
+            return token > startExclusive && token <= endInclusive;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.RetentionProperties;
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetentionServiceTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    void pendingDaysAreCompleteDaysBetweenExpiryAndArchiveCutoff() {
+        RetentionProperties properties = new RetentionProperties();
+        properties.setTtl(Duration.ofDays(10));
+        properties.setArchiveAfter(Duration.ofDays(7));
+        Instant now = Instant.parse("2026-03-20T12:00:00Z");
+
+        List<LocalDate> pending = RetentionService.pendingDays(now, properties, Set.of(LocalDate.parse("2026-03-11")));
+
+        // 03-10 is partly expired already; 03-13 has rows younger than seven days
+        assertThat(pending).containsExactly(LocalDate.parse("2026-03-12"));
+    }
+
+    @Test
+    void writesRowsAsGzippedNdjson(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("archive").resolve("hemogramas-2026-03-12.ndjson.gz");
+        Stream<Hemograma> rows = IntStream.range(0, 500).mapToObj(i -> Hemograma.builder()
+                .id(IdGenerator.newId())
+                .patientId("POP-" + i)
+                .city("Trindade")
+                .createdAt(Instant.parse("2026-03-12T08:00:00Z"))
+                .fhirBundleJson("{\"resourceType\":\"Bundle\"}")
+                .build());
+
+        long count = RetentionService.writeArchive(rows, file, objectMapper);
+
+        assertThat(count).isEqualTo(500);
+        assertThat(dir.resolve("archive")).isDirectoryContaining(p -> p.equals(file))
+                .isDirectoryNotContaining("glob:**.part");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            List<Hemograma> read = reader.lines().map(this::readValue).toList();
+            assertThat(read).hasSize(500);
+            assertThat(read.getLast().getPatientId()).isEqualTo("POP-499");
+            assertThat(read.getFirst().getCreatedAt()).isEqualTo(Instant.parse("2026-03-12T08:00:00Z"));
+        }
+    }
+
+    private Hemograma readValue(String line) {
+        try {
+            return objectMapper.readValue(line, Hemograma.class);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
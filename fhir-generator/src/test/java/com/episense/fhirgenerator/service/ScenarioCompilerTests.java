@@ -0,0 +1,135 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.ScenarioProperties;
+import com.episense.fhirgenerator.model.ScenarioDefinition;
+import com.episense.fhirgenerator.model.ScenarioWorkUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ScenarioCompilerTests {
+
+    private final ScenarioCompiler scenarioCompiler = new ScenarioCompiler();
+
+    @Test
+    void compilesOneUnitPerCityDayWithSeverityMix() {
+        ScenarioDefinition scenario = flatScenario(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 10));
+        scenario.getCities().getFirst().getBaseline().setAnomalyRate(0.5);
+
+        List<ScenarioWorkUnit> plan = scenarioCompiler.compile(scenario);
+
+        assertThat(plan).hasSize(10);
+        ScenarioWorkUnit unit = plan.getFirst();
+        assertThat(unit.getNormalCount()).isEqualTo(50);
+        assertThat(unit.getGraveCount()).isEqualTo(15);
+        assertThat(unit.getSuspeitaCount()).isEqualTo(35);
+    }
+
+    @Test
+    void sirWaveRisesAndFadesOnTopOfBaseline() {
+        ScenarioDefinition scenario = flatScenario(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 4, 30));
+        ScenarioDefinition.Wave wave = new ScenarioDefinition.Wave();
+        wave.setStartDate(LocalDate.of(2025, 2, 1));
+        wave.setR0(3.0);
+        wave.setPopulation(20000);
+        wave.setDetectionRate(0.5);
+        scenario.getCities().getFirst().getWaves().add(wave);
+
+        List<ScenarioWorkUnit> plan = scenarioCompiler.compile(scenario);
+        ScenarioWorkUnit before = plan.get(10);
+        ScenarioWorkUnit peak = plan.stream()
+                .max(Comparator.comparingInt(u -> u.getSuspeitaCount() + u.getGraveCount()))
+                .orElseThrow();
+        ScenarioWorkUnit after = plan.getLast();
+
+        assertThat(peak.getDate()).isAfter(wave.getStartDate());
+        assertThat(peak.getGraveCount() + peak.getSuspeitaCount())
+                .isGreaterThan(10 * (before.getGraveCount() + before.getSuspeitaCount()));
+        assertThat(after.getGraveCount() + after.getSuspeitaCount())
+                .isEqualTo(before.getGraveCount() + before.getSuspeitaCount());
+    }
+
+    @Test
+    void explosiveWaveNeverInfectsMoreThanItsPopulation() {
+        ScenarioDefinition scenario = flatScenario(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 3, 31));
+        ScenarioDefinition.Wave wave = new ScenarioDefinition.Wave();
+        wave.setStartDate(LocalDate.of(2025, 1, 1));
+        wave.setR0(40.0);
+        wave.setInfectiousDays(0.5);
+        wave.setPopulation(5000);
+        wave.setInitialInfected(500);
+        wave.setDetectionRate(1.0);
+        scenario.getCities().getFirst().getWaves().add(wave);
+        scenario.getCities().getFirst().getBaseline().setDailyCases(0);
+
+        List<ScenarioWorkUnit> plan = scenarioCompiler.compile(scenario);
+
+        assertThat(plan).allSatisfy(unit -> {
+            assertThat(unit.getSuspeitaCount()).isNotNegative();
+            assertThat(unit.getGraveCount()).isNotNegative();
+        });
+        assertThat(plan.stream().mapToInt(u -> u.getSuspeitaCount() + u.getGraveCount()).sum())
+                .isLessThanOrEqualTo(5000);
+    }
+
+    @Test
+    void rejectsWavesThatCannotSpread() {
+        ScenarioDefinition scenario = flatScenario(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 2));
+        ScenarioDefinition.Wave wave = new ScenarioDefinition.Wave();
+        wave.setStartDate(LocalDate.of(2025, 1, 1));
+        wave.setR0(0);
+        scenario.getCities().getFirst().getWaves().add(wave);
+
+        assertThatThrownBy(() -> scenarioCompiler.compile(scenario))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("r0 > 0");
+
+        wave.setR0(2.0);
+        wave.setInitialInfected(wave.getPopulation() + 1);
+        assertThatThrownBy(() -> scenarioCompiler.compile(scenario))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("initial-infected");
+    }
+
+    @Test
+    void rejectsInvalidRates() {
+        ScenarioDefinition scenario = flatScenario(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 2));
+        scenario.setSevereRatio(1.5);
+
+        assertThatThrownBy(() -> scenarioCompiler.compile(scenario))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("severe-ratio");
+    }
+
+    @Test
+    void bundledScenarioLoadsAndCompiles() {
+        ScenarioService scenarioService = new ScenarioService(scenarioCompiler, null, null, null, null,
+                new ScenarioProperties(), new DefaultResourceLoader());
+
+        List<ScenarioWorkUnit> plan = scenarioService.plan("goias-dengue-wave");
+
+        assertThat(plan).hasSize(3 * 120);
+        assertThat(plan).extracting(ScenarioWorkUnit::getCity)
+                .contains("Trindade|GO", "Goiania|GO", "Sao Paulo|SP");
+    }
+
+    private ScenarioDefinition flatScenario(LocalDate start, LocalDate end) {
+        ScenarioDefinition.CityCurve curve = new ScenarioDefinition.CityCurve();
+        curve.setCity("Trindade|GO");
+        curve.getBaseline().setDailyCases(100);
+        curve.getBaseline().setAnomalyRate(0.05);
+
+        ScenarioDefinition scenario = new ScenarioDefinition();
+        scenario.setName("test");
+        scenario.setStartDate(start);
+        scenario.setEndDate(end);
+        scenario.getCities().add(curve);
+        return scenario;
+    }
+}
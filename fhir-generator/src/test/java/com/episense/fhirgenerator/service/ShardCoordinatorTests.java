@@ -0,0 +1,73 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.ShardingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardCoordinatorTests {
+
+    private static final int SHARDS = 16;
+
+    private final InMemoryShardLeaseRepository leases = new InMemoryShardLeaseRepository();
+    private final List<ShardCoordinator> coordinators = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        coordinators.forEach(ShardCoordinator::destroy);
+    }
+
+    @Test
+    void leasesAreRenewedWithoutTheSharedScheduler() throws Exception {
+        ShardCoordinator coordinator = start("generator-1", 1, 100);
+
+        // Nothing but the coordinator's own thread renews the one-second leases meanwhile
+        Thread.sleep(2_500);
+
+        assertThat(coordinator.getOwnedShards()).hasSize(SHARDS);
+        assertThat(IntStream.range(0, SHARDS)).allSatisfy(shard -> assertThat(leases.ownerOf(shard)).isEqualTo("generator-1"));
+    }
+
+    @Test
+    void shardsAreRebalancedAsInstancesJoinAndLeave() {
+        // Heartbeats are driven by hand
+        ShardCoordinator first = start("generator-1", 30, 3_600_000);
+        assertThat(first.getOwnedShards()).hasSize(SHARDS);
+
+        ShardCoordinator second = start("generator-2", 30, 3_600_000);
+        assertThat(second.getOwnedShards()).isEmpty();
+
+        first.heartbeat();
+        second.heartbeat();
+        assertThat(first.getOwnedShards()).hasSize(SHARDS / 2);
+        assertThat(second.getOwnedShards()).hasSize(SHARDS / 2);
+        Set<Integer> all = new HashSet<>(first.getOwnedShards());
+        all.addAll(second.getOwnedShards());
+        assertThat(all).hasSize(SHARDS);
+
+        second.destroy();
+        coordinators.remove(second);
+        first.heartbeat();
+        assertThat(first.getOwnedShards()).hasSize(SHARDS);
+    }
+
+    private ShardCoordinator start(String instanceId, int leaseTtlSeconds, long heartbeatIntervalMs) {
+        ShardingProperties properties = new ShardingProperties();
+        properties.setEnabled(true);
+        properties.setShards(SHARDS);
+        properties.setInstanceId(instanceId);
+        properties.setLeaseTtlSeconds(leaseTtlSeconds);
+        properties.setHeartbeatIntervalMs(heartbeatIntervalMs);
+        ShardCoordinator coordinator = new ShardCoordinator(leases, properties);
+        coordinator.init();
+        coordinators.add(coordinator);
+        return coordinator;
+    }
+}
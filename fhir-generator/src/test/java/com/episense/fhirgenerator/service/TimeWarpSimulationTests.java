@@ -0,0 +1,78 @@
+package com.episense.fhirgenerator.service;
+
+import com.episense.fhirgenerator.config.ExternalApiProperties;
+import com.episense.fhirgenerator.config.StorageProperties;
+import com.episense.fhirgenerator.entity.Hemograma;
+import com.episense.fhirgenerator.model.DeliveryState;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class TimeWarpSimulationTests {
+
+    private static final LocalDate FROM = LocalDate.of(2026, 3, 1);
+
+    @Test
+    void replaysSimulatedDaysInWallSecondsAndInTimeOrder() throws Exception {
+        try (FhirServerStub stub = new FhirServerStub(0, 0.0, 4);
+             GeneratorFixture fixture = new GeneratorFixture(stub.url(), StorageProperties.BundleMode.LAZY,
+                     ExternalApiProperties.Compression.NONE)) {
+            fixture.simulationProperties.setTick(Duration.ofHours(1));
+            fixture.generationConfigService.update(c -> c.toBuilder().burstProbability(0.0).build());
+
+            long started = System.nanoTime();
+            fixture.simulationService.start(FROM, 3, Duration.ofSeconds(3), 28);
+            assertThat(fixture.simulationClock.isWarped()).isTrue();
+            long deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+            while (fixture.simulationService.isRunning() && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+
+            // 28 exams per day over the 14 opening hours, 3 days
+            assertThat(stub.accepted()).isEqualTo(84);
+            assertThat(elapsed.toMillis()).isCloseTo(3000, within(1500L));
+            assertThat(fixture.simulationClock.isWarped()).isFalse();
+            assertThat(fixture.simulationService.status()).containsEntry("generated", 84L);
+
+            List<Hemograma> stored = fixture.repository.findAll();
+            assertThat(stored).allSatisfy(h -> {
+                LocalDateTime collected = LocalDateTime.ofInstant(h.getCollectionDate(), ZoneId.systemDefault());
+                assertThat(collected.toLocalDate()).isBetween(FROM, FROM.plusDays(2));
+                assertThat(collected.toLocalTime()).isBetween(LocalTime.of(6, 0), LocalTime.of(19, 0));
+                assertThat(h.getDeliveryState()).isEqualTo(DeliveryState.SENT);
+            });
+            // Sent as simulated time advanced: later collections were sent later
+            List<Instant> sentInCollectionOrder = stored.stream()
+                    .sorted((a, b) -> a.getCollectionDate().compareTo(b.getCollectionDate()))
+                    .map(Hemograma::getSentAt)
+                    .toList();
+            assertThat(sentInCollectionOrder.getFirst()).isBefore(sentInCollectionOrder.getLast());
+        }
+    }
+
+    @Test
+    void stopRestoresTheSystemClock() throws Exception {
+        try (FhirServerStub stub = new FhirServerStub(0, 0.0, 2);
+             GeneratorFixture fixture = new GeneratorFixture(stub.url(), StorageProperties.BundleMode.LAZY,
+                     ExternalApiProperties.Compression.NONE)) {
+            fixture.simulationService.start(FROM, 30, Duration.ofMinutes(10), 10);
+            LocalDateTime simulated = LocalDateTime.now(fixture.simulationClock);
+            assertThat(simulated.toLocalDate()).isEqualTo(FROM);
+
+            fixture.simulationService.stop();
+
+            assertThat(fixture.simulationService.isRunning()).isFalse();
+            assertThat(LocalDate.now(fixture.simulationClock)).isEqualTo(LocalDate.now());
+        }
+    }
+}